@@ -16,6 +16,8 @@
  */
 package org.junit.contrib.assertthrows;
 
+import java.util.List;
+import java.util.concurrent.Callable;
 import org.junit.contrib.assertthrows.proxy.ProxyFactory;
 import org.junit.contrib.assertthrows.verify.ExceptionVerifier;
 import org.junit.contrib.assertthrows.verify.ResultVerifier;
@@ -104,10 +106,26 @@ public abstract class AssertThrows {
      * call it manually.
      */
     private void verify() {
+        verify(verifier, new Callable<Void>() {
+            public Void call() throws Exception {
+                test();
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Call the test and verify it throws an exception, as long as the verifier
+     * requests it.
+     *
+     * @param verifier the result verifier
+     * @param test the test
+     */
+    static void verify(ResultVerifier verifier, Callable<?> test) {
         while (true) {
             Throwable lastThrown = null;
             try {
-                test();
+                test.call();
                 // can't call verifier.verify here, because it can
                 // throw an exception itself (which must not  be caught)
             } catch (Throwable e) {
@@ -120,6 +138,37 @@ public abstract class AssertThrows {
         }
     }
 
+    /**
+     * Build one assertion error for a list of failures. If there is only one
+     * failure and it is an assertion error, it is returned as is. Otherwise,
+     * the message lists all failures, and the first failure is the cause.
+     *
+     * @param failures the failures (must not be empty)
+     * @param count the total number of verifications
+     * @param what what was verified, for example "asynchronous verifications"
+     * @return the assertion error
+     */
+    static AssertionError combine(List<? extends Throwable> failures, int count, String what) {
+        Throwable first = failures.get(0);
+        if (failures.size() == 1 && first instanceof AssertionError) {
+            return (AssertionError) first;
+        }
+        StringBuilder buff = new StringBuilder();
+        buff.append(failures.size()).append(" of ").append(count).
+                append(' ').append(what).append(" failed:");
+        int i = 1;
+        for (Throwable e : failures) {
+            buff.append('\n').append(i++).append(") ");
+            if (!(e instanceof AssertionError)) {
+                buff.append(e.getClass().getSimpleName()).append(": ");
+            }
+            buff.append(e.getMessage());
+        }
+        AssertionError ae = new AssertionError(buff.toString());
+        ae.initCause(first);
+        return ae;
+    }
+
     /**
      * Verify that the next method call on the returned object throws an
      * exception.
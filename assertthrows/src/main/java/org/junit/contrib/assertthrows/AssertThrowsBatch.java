@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.assertthrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A batch of independent exception checks that are run in parallel. The
+ * tasks are collected first, and then run using an executor service (for
+ * example a <code>java.util.concurrent.ForkJoinPool</code>) when calling
+ * {@link #verify()}:
+ * <pre>
+ * AssertThrowsBatch batch = new AssertThrowsBatch();
+ * for (final String s : invalidNumbers) {
+ *     batch.add(new AssertThrowsTask(NumberFormatException.class) {
+ *         public void test() {
+ *             Integer.parseInt(s);
+ *         }
+ *     });
+ * }
+ * batch.verify();
+ * </pre>
+ * All tasks are run, even if some of them fail. The failures are reported in
+ * one assertion error, in the order the tasks were added. The exception
+ * thrown by each task is available using
+ * {@link AssertThrowsTask#getLastThrown()}; the thread local state used by
+ * {@link AssertThrows#getLastThrown()} is not shared between tasks.
+ *
+ * @author Thomas Mueller
+ */
+public class AssertThrowsBatch {
+
+    private final ExecutorService executor;
+    private final List<AssertThrowsTask> tasks = new ArrayList<AssertThrowsTask>();
+
+    /**
+     * Create a batch that uses a new thread pool (with one thread per
+     * processor) for each call to {@link #verify()}.
+     */
+    public AssertThrowsBatch() {
+        this(null);
+    }
+
+    /**
+     * Create a batch that uses the given executor service. The executor
+     * service is not shut down by this class.
+     *
+     * @param executor the executor service, or null to use a new thread pool
+     *            for each call to {@link #verify()}
+     */
+    public AssertThrowsBatch(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Add a task to the batch.
+     *
+     * @param task the task (must not be null)
+     */
+    public void add(AssertThrowsTask task) {
+        if (task == null) {
+            throw new NullPointerException("The passed task is null");
+        }
+        tasks.add(task);
+    }
+
+    /**
+     * Get the number of tasks that were added and not run yet.
+     *
+     * @return the number of tasks
+     */
+    public int size() {
+        return tasks.size();
+    }
+
+    /**
+     * Run all tasks that were added so far, and wait until they are done. If
+     * one task failed, its assertion error is thrown. If multiple tasks
+     * failed, an assertion error that lists all failures is thrown (with the
+     * first failure as the cause).
+     *
+     * @throws AssertionError if any task failed
+     */
+    public void verify() {
+        List<AssertThrowsTask> list = new ArrayList<AssertThrowsTask>(tasks);
+        tasks.clear();
+        if (list.isEmpty()) {
+            return;
+        }
+        ExecutorService e = executor;
+        if (e == null) {
+            int threads = Math.min(list.size(),
+                    Runtime.getRuntime().availableProcessors());
+            e = Executors.newFixedThreadPool(threads);
+        }
+        try {
+            run(e, list);
+        } finally {
+            if (e != executor) {
+                e.shutdown();
+            }
+        }
+    }
+
+    private static void run(ExecutorService executor, List<AssertThrowsTask> list) {
+        List<Future<Void>> futures = new ArrayList<Future<Void>>(list.size());
+        for (final AssertThrowsTask task : list) {
+            futures.add(executor.submit(new Callable<Void>() {
+                public Void call() {
+                    task.run();
+                    return null;
+                }
+            }));
+        }
+        List<Throwable> failures = new ArrayList<Throwable>();
+        try {
+            for (Future<Void> f : futures) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    failures.add(e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            for (Future<Void> f : futures) {
+                f.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            AssertionError ae = new AssertionError("Interrupted while waiting");
+            ae.initCause(e);
+            throw ae;
+        }
+        if (!failures.isEmpty()) {
+            throw AssertThrows.combine(failures, list.size(), "exception checks");
+        }
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.assertthrows;
+
+import java.util.concurrent.Callable;
+import org.junit.contrib.assertthrows.verify.ExceptionVerifier;
+import org.junit.contrib.assertthrows.verify.ResultVerifier;
+import org.junit.contrib.assertthrows.verify.VerificationScope;
+
+/**
+ * A deferred exception check. This is the same as {@link AssertThrows},
+ * except that the {@link #test} method is not called by the constructor, but
+ * later, when the task is run by an {@link AssertThrowsBatch}:
+ * <pre>
+ * AssertThrowsBatch batch = new AssertThrowsBatch();
+ * batch.add(new AssertThrowsTask(NumberFormatException.class) {
+ *     public void test() {
+ *         Integer.parseInt("x");
+ *     }
+ * });
+ * batch.verify();
+ * </pre>
+ * Tasks of the same batch may run concurrently, so they must not share
+ * mutable state. A task can only be run once.
+ *
+ * @author Thomas Mueller
+ */
+public abstract class AssertThrowsTask {
+
+    private final ResultVerifier verifier;
+    private volatile boolean done;
+    private volatile Throwable lastThrown;
+
+    /**
+     * Verify an exception or error is thrown.
+     */
+    public AssertThrowsTask() {
+        this(new ExceptionVerifier());
+    }
+
+    /**
+     * Verify an exception of the given class or any subclass is thrown.
+     *
+     * @param expectedExceptionClass the expected exception class (must not be
+     *            null)
+     */
+    public AssertThrowsTask(Class<? extends Exception> expectedExceptionClass) {
+        this(new ExceptionVerifier(expectedExceptionClass));
+    }
+
+    /**
+     * Verify this exact exception is thrown (same class and message).
+     *
+     * @param expectedException the expected exception (must not be null)
+     */
+    public AssertThrowsTask(Exception expectedException) {
+        this(new ExceptionVerifier(expectedException));
+    }
+
+    /**
+     * Use the given verifier to verify the result.
+     *
+     * @param verifier the result verifier
+     */
+    protected AssertThrowsTask(ResultVerifier verifier) {
+        if (verifier == null) {
+            throw new NullPointerException("The passed verifier is null");
+        }
+        this.verifier = verifier;
+    }
+
+    /**
+     * The test method. It is expected to throw an exception.
+     */
+    public abstract void test() throws Exception;
+
+    /**
+     * Get the exception or error thrown by the last call to {@link #test} of
+     * this task. The result is null if the task was not run yet, or if the
+     * method did not throw.
+     *
+     * @return the last exception or error thrown, or null
+     */
+    public Throwable getLastThrown() {
+        return lastThrown;
+    }
+
+    /**
+     * Run the task in the current thread, within its own
+     * {@link VerificationScope}. The thread local state of the task (the last
+     * thrown exception, and the last verifying proxy) is discarded afterwards,
+     * so it does not leak to the next task that runs in the same thread, and
+     * the state of the caller is restored if the task is run inline by the
+     * calling thread.
+     *
+     * @throws AssertionError if the verification failed
+     */
+    void run() {
+        if (done) {
+            throw new IllegalStateException("The task was already run");
+        }
+        done = true;
+        VerificationScope scope = VerificationScope.open();
+        try {
+            AssertThrows.verify(verifier, new Callable<Void>() {
+                public Void call() throws Exception {
+                    test();
+                    return null;
+                }
+            });
+            ExceptionVerifier.verifyLastProxyWasUsed();
+        } finally {
+            lastThrown = ExceptionVerifier.getLastThrown();
+            // already verified above, or the task failed
+            ExceptionVerifier.clearLastProxy();
+            scope.close();
+        }
+    }
+
+}
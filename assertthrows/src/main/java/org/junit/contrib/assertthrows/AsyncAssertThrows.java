@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.assertthrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.contrib.assertthrows.verify.AsyncVerifier;
+import org.junit.contrib.assertthrows.verify.ExceptionVerifier;
+import org.junit.contrib.assertthrows.verify.FutureVerifier;
+import org.junit.contrib.assertthrows.verify.PublisherVerifier;
+import org.junit.contrib.assertthrows.verify.ResultVerifier;
+
+/**
+ * A facility to test for exceptions of asynchronous methods, that is, methods
+ * that return a {@link java.util.concurrent.Future} which is expected to
+ * complete exceptionally. Many assertions can be pending at the same time;
+ * {@link #verify()} waits until all of them are verified:
+ * <pre>
+ * AsyncAssertThrows async = new AsyncAssertThrows(5, TimeUnit.SECONDS);
+ * async.assertThrows(IOException.class, service).load("x");
+ * async.assertThrows(new IllegalStateException("closed"), service).save("y");
+ * async.verify();
+ * </pre>
+ * If the proxied method returns a future, the call on the proxy returns null.
+ * If the method throws an exception itself, or if it doesn't return a future,
+ * the result is verified immediately, the same as when using
+ * {@link AssertThrows#assertThrows(Object)}.
+ * <p>
+ * Publishers (<code>java.util.concurrent.Flow.Publisher</code> and
+ * compatible) that are expected to signal an error can be verified in the
+ * same way:
+ * <pre>
+ * async.assertSignalsError(IOException.class, 1000, publisher);
+ * async.verify();
+ * </pre>
+ *
+ * @author Thomas Mueller
+ */
+public class AsyncAssertThrows {
+
+    private final long timeout;
+    private final TimeUnit unit;
+    private final List<AsyncVerifier> verifiers = new ArrayList<AsyncVerifier>();
+
+    /**
+     * Create a new instance.
+     *
+     * @param timeout the maximum time each future may take to complete, or
+     *            each publisher may take to signal the error
+     * @param unit the time unit of the timeout
+     */
+    public AsyncAssertThrows(long timeout, TimeUnit unit) {
+        this.timeout = timeout;
+        this.unit = unit;
+    }
+
+    /**
+     * Verify that the future returned by the next method call on the returned
+     * object completes with an exception.
+     *
+     * @param <T> the class of the object
+     * @param obj the object to wrap (must not be null)
+     * @return a proxy for the object
+     */
+    public <T> T assertThrows(T obj) {
+        return createVerifyingProxy(new ExceptionVerifier(), obj);
+    }
+
+    /**
+     * Verify that the future returned by the next method call on the returned
+     * object completes with an exception of this type.
+     *
+     * @param <T> the class of the object
+     * @param expectedExceptionClass the expected exception class (must not be
+     *            null)
+     * @param obj the object to wrap (must not be null)
+     * @return a proxy for the object
+     */
+    public <T> T assertThrows(Class<? extends Exception> expectedExceptionClass, T obj) {
+        return createVerifyingProxy(new ExceptionVerifier(expectedExceptionClass), obj);
+    }
+
+    /**
+     * Verify that the future returned by the next method call on the returned
+     * object completes with the expected exception (same class and message).
+     *
+     * @param <T> the class of the object
+     * @param expectedException the expected exception (must not be null)
+     * @param obj the object to wrap (must not be null)
+     * @return a proxy for the object
+     */
+    public <T> T assertThrows(Exception expectedException, T obj) {
+        return createVerifyingProxy(new ExceptionVerifier(expectedException), obj);
+    }
+
+    private <T> T createVerifyingProxy(ResultVerifier verifier, T obj) {
+        FutureVerifier v = new FutureVerifier(verifier, timeout, unit);
+        T proxy = ExceptionVerifier.createVerifyingProxy(v, obj);
+        add(v);
+        return proxy;
+    }
+
+    /**
+     * Verify that the publisher signals an error of this type.
+     *
+     * @param expectedExceptionClass the expected exception class (must not be
+     *            null)
+     * @param publisher the publisher
+     */
+    public void assertSignalsError(Class<? extends Exception> expectedExceptionClass,
+            Object publisher) {
+        assertSignalsError(new ExceptionVerifier(expectedExceptionClass), -1, publisher);
+    }
+
+    /**
+     * Verify that the publisher signals an error of this type after exactly
+     * the given number of items.
+     *
+     * @param expectedExceptionClass the expected exception class (must not be
+     *            null)
+     * @param expectedItems the number of items before the error
+     * @param publisher the publisher
+     */
+    public void assertSignalsError(Class<? extends Exception> expectedExceptionClass,
+            long expectedItems, Object publisher) {
+        assertSignalsError(new ExceptionVerifier(expectedExceptionClass),
+                expectedItems, publisher);
+    }
+
+    /**
+     * Verify that the publisher signals the expected exception (same class and
+     * message).
+     *
+     * @param expectedException the expected exception (must not be null)
+     * @param publisher the publisher
+     */
+    public void assertSignalsError(Exception expectedException, Object publisher) {
+        assertSignalsError(new ExceptionVerifier(expectedException), -1, publisher);
+    }
+
+    /**
+     * Verify that the publisher signals the expected exception (same class and
+     * message) after exactly the given number of items.
+     *
+     * @param expectedException the expected exception (must not be null)
+     * @param expectedItems the number of items before the error
+     * @param publisher the publisher
+     */
+    public void assertSignalsError(Exception expectedException,
+            long expectedItems, Object publisher) {
+        assertSignalsError(new ExceptionVerifier(expectedException),
+                expectedItems, publisher);
+    }
+
+    private void assertSignalsError(ResultVerifier verifier,
+            long expectedItems, Object publisher) {
+        PublisherVerifier v = new PublisherVerifier(verifier, expectedItems, timeout, unit);
+        add(v);
+        v.subscribe(publisher);
+    }
+
+    private void add(AsyncVerifier v) {
+        synchronized (verifiers) {
+            verifiers.add(v);
+        }
+    }
+
+    /**
+     * Wait until all pending futures and publishers are verified. If one
+     * verification failed, its assertion error is thrown. If multiple
+     * verifications failed, an assertion error that lists all failures is
+     * thrown (with the first failure as the cause).
+     *
+     * @throws AssertionError if any verification failed
+     */
+    public void verify() {
+        ExceptionVerifier.verifyLastProxyWasUsed();
+        List<AsyncVerifier> list;
+        synchronized (verifiers) {
+            list = new ArrayList<AsyncVerifier>(verifiers);
+            verifiers.clear();
+        }
+        List<AssertionError> failures = new ArrayList<AssertionError>();
+        Throwable lastThrown = null;
+        for (AsyncVerifier v : list) {
+            // don't report the exception of an earlier verification
+            ExceptionVerifier.setLastThrown(null);
+            try {
+                v.await();
+            } catch (AssertionError e) {
+                failures.add(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                AssertionError ae = new AssertionError("Interrupted while waiting");
+                ae.initCause(e);
+                throw ae;
+            }
+            Throwable t = ExceptionVerifier.getLastThrown();
+            if (t != null) {
+                lastThrown = t;
+            }
+        }
+        ExceptionVerifier.setLastThrown(lastThrown);
+        if (!failures.isEmpty()) {
+            throw AssertThrows.combine(failures, list.size(),
+                    "asynchronous verifications");
+        }
+    }
+
+}
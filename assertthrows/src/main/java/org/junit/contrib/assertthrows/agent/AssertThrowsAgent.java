@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.assertthrows.agent;
+
+import java.lang.instrument.Instrumentation;
+
+/**
+ * A Java agent that removes proxies from the hot path of
+ * <code>assertThrows(obj).method(args)</code> statements. To use it, start
+ * the JVM with <code>-javaagent:junit-assertthrows.jar</code>. The ASM
+ * library (<code>org.ow2.asm:asm</code>) needs to be in the classpath;
+ * otherwise the agent is disabled and proxies are used as usual.
+ * <p>
+ * See {@link AssertThrowsTransformer} for the call sites that are rewritten.
+ *
+ * @author Thomas Mueller
+ */
+public class AssertThrowsAgent {
+
+    private AssertThrowsAgent() {
+        // utility class
+    }
+
+    /**
+     * Install the agent when the JVM is started.
+     *
+     * @param args the agent arguments (ignored)
+     * @param inst the instrumentation
+     */
+    public static void premain(String args, Instrumentation inst) {
+        install(inst);
+    }
+
+    /**
+     * Install the agent into a running JVM. Only classes that are loaded
+     * afterwards are rewritten.
+     *
+     * @param args the agent arguments (ignored)
+     * @param inst the instrumentation
+     */
+    public static void agentmain(String args, Instrumentation inst) {
+        install(inst);
+    }
+
+    private static void install(Instrumentation inst) {
+        try {
+            Class.forName("org.objectweb.asm.ClassReader");
+            inst.addTransformer(new AssertThrowsTransformer());
+        } catch (Throwable e) {
+            System.err.println("The assertThrows agent is disabled, " +
+                    "because the ASM library is not available: " + e);
+        }
+    }
+
+}
@@ -0,0 +1,244 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.assertthrows.agent;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Rewrites <code>assertThrows</code> statements into a direct method call
+ * within a try/catch block. A statement such as
+ * <pre>
+ * assertThrows(IOException.class, reader).read(buffer, 0, 10);
+ * </pre>
+ * is compiled as if it was written as follows:
+ * <pre>
+ * Object expected = IOException.class;
+ * Reader r = (Reader) InlineVerifier.begin(reader);
+ * try {
+ *     int x = r.read(buffer, 0, 10);
+ *     InlineVerifier.returned(x, expected, ...);
+ * } catch (Throwable t) {
+ *     InlineVerifier.thrown(t, expected, ...);
+ * }
+ * </pre>
+ * Only statements that consist of one static
+ * {@link org.junit.contrib.assertthrows.AssertThrows#assertThrows(Object)}
+ * call (with or without the expected exception or class) followed by one
+ * method call, where the return value is not used, are rewritten. The
+ * arguments may contain constants, variables, fields, arithmetic, method
+ * calls and object or array creation. All other uses (for example when the return value is
+ * used) are not changed, and use a proxy as before.
+ *
+ * @author Thomas Mueller
+ */
+public class AssertThrowsTransformer implements ClassFileTransformer {
+
+    /**
+     * The internal name of the AssertThrows class.
+     */
+    static final String ASSERT_THROWS = "org/junit/contrib/assertthrows/AssertThrows";
+
+    private static final String AGENT_PACKAGE = "org/junit/contrib/assertthrows/agent/";
+
+    public byte[] transform(ClassLoader loader, String className,
+            Class<?> classBeingRedefined, ProtectionDomain protectionDomain,
+            byte[] classFile) {
+        if (className == null || className.startsWith(AGENT_PACKAGE)) {
+            return null;
+        }
+        try {
+            return transform(loader, classFile);
+        } catch (Throwable e) {
+            // never prevent a class from being loaded
+            return null;
+        }
+    }
+
+    /**
+     * Rewrite the assertThrows call sites of a class.
+     *
+     * @param loader the class loader that loads the class (its resources are
+     *            used to compute stack map frames), or null for the system
+     *            class loader
+     * @param classFile the class file
+     * @return the transformed class file, or null if nothing was changed (also
+     *         if a class file that is needed to compute the stack map frames
+     *         was not found)
+     */
+    public byte[] transform(final ClassLoader loader, byte[] classFile) {
+        if (!references(classFile, ASSERT_THROWS)) {
+            return null;
+        }
+        ClassReader reader = new ClassReader(classFile);
+        final Map<String, Integer> maxLocals = new HashMap<String, Integer>();
+        final int[] version = new int[1];
+        reader.accept(new ClassVisitor(Opcodes.ASM9) {
+            public void visit(int v, int access, String name, String signature,
+                    String superName, String[] interfaces) {
+                version[0] = v & 0xffff;
+            }
+            public MethodVisitor visitMethod(int access, final String name,
+                    final String desc, String signature, String[] exceptions) {
+                return new MethodVisitor(Opcodes.ASM9) {
+                    public void visitMaxs(int maxStack, int max) {
+                        maxLocals.put(name + desc, max);
+                    }
+                };
+            }
+        }, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        if (version[0] < Opcodes.V1_5) {
+            // constant class literals are required
+            return null;
+        }
+        // Java 6 and newer class files need stack map frames
+        boolean frames = version[0] >= Opcodes.V1_6;
+        final ClassWriter writer = new FrameWriter(
+                frames ? ClassWriter.COMPUTE_FRAMES : ClassWriter.COMPUTE_MAXS,
+                loader, reader.getClassName(), reader.getSuperName());
+        final boolean[] changed = new boolean[1];
+        try {
+            reader.accept(new ClassVisitor(Opcodes.ASM9, writer) {
+                public MethodVisitor visitMethod(int access, String name, String desc,
+                        String signature, String[] exceptions) {
+                    MethodVisitor mv = super.visitMethod(access, name, desc, signature, exceptions);
+                    Integer max = maxLocals.get(name + desc);
+                    if (mv == null || max == null) {
+                        return mv;
+                    }
+                    return new CallSiteRewriter(mv, max) {
+                        void rewritten() {
+                            changed[0] = true;
+                        }
+                    };
+                }
+            }, frames ? ClassReader.SKIP_FRAMES : 0);
+        } catch (TypeNotPresentException e) {
+            // the stack map frames can't be computed: don't change the class
+            return null;
+        }
+        return changed[0] ? writer.toByteArray() : null;
+    }
+
+    /**
+     * Check whether the constant pool contains the given name (a quick check
+     * before parsing the class).
+     */
+    private static boolean references(byte[] classFile, String name) {
+        try {
+            return new String(classFile, "ISO-8859-1").indexOf(name) >= 0;
+        } catch (UnsupportedEncodingException e) {
+            return true;
+        }
+    }
+
+    /**
+     * A class writer that computes stack map frames without loading classes.
+     * The class hierarchy is read from the class files, using the resources
+     * of the given class loader, because loading classes while a class is
+     * transformed could fail or change the order in which classes are
+     * initialized. If a class file is not found, a
+     * {@link TypeNotPresentException} is thrown (guessing a common superclass
+     * could result in wrong frames).
+     */
+    static class FrameWriter extends ClassWriter {
+
+        private static final String OBJECT = "java/lang/Object";
+
+        private final ClassLoader loader;
+
+        /**
+         * The internal names of the superclasses (null for java/lang/Object).
+         */
+        private final HashMap<String, String> superNames = new HashMap<String, String>();
+
+        private final HashSet<String> interfaceNames = new HashSet<String>();
+
+        FrameWriter(int flags, ClassLoader loader, String className, String superName) {
+            super(flags);
+            this.loader = loader == null ? ClassLoader.getSystemClassLoader() : loader;
+            // the class that is transformed is not read again
+            superNames.put(className, superName);
+            superNames.put(OBJECT, null);
+        }
+
+        protected String getCommonSuperClass(String type1, String type2) {
+            if (type1.equals(type2)) {
+                return type1;
+            }
+            resolve(type1);
+            resolve(type2);
+            if (interfaceNames.contains(type1) || interfaceNames.contains(type2)) {
+                // the verifier treats interfaces like java/lang/Object
+                return OBJECT;
+            }
+            HashSet<String> supers = new HashSet<String>();
+            for (String t = type1; t != null; t = getSuperName(t)) {
+                supers.add(t);
+            }
+            for (String t = type2; t != null; t = getSuperName(t)) {
+                if (supers.contains(t)) {
+                    return t;
+                }
+            }
+            return OBJECT;
+        }
+
+        private String getSuperName(String type) {
+            resolve(type);
+            return superNames.get(type);
+        }
+
+        private void resolve(String type) {
+            if (superNames.containsKey(type)) {
+                return;
+            }
+            InputStream in = loader.getResourceAsStream(type + ".class");
+            if (in == null) {
+                throw new TypeNotPresentException(type.replace('/', '.'), null);
+            }
+            try {
+                ClassReader r = new ClassReader(in);
+                superNames.put(type, r.getSuperName());
+                if ((r.getAccess() & Opcodes.ACC_INTERFACE) != 0) {
+                    interfaceNames.add(type);
+                }
+            } catch (IOException e) {
+                throw new TypeNotPresentException(type.replace('/', '.'), e);
+            } finally {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,591 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.assertthrows.agent;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.TypePath;
+
+/**
+ * A method visitor that rewrites assertThrows statements. Starting at each
+ * line number (the start of a statement), the instructions are buffered as
+ * long as they may belong to an assertThrows statement. If the statement
+ * matches, the rewritten code is written; otherwise the buffered
+ * instructions are written unchanged.
+ * <p>
+ * Only the number of values on the operand stack is tracked. As javac
+ * starts each statement with an empty operand stack, and the statement must
+ * end with a void method call or a pop instruction, the operand stack is
+ * known to be empty before and after the statement.
+ *
+ * @author Thomas Mueller
+ */
+abstract class CallSiteRewriter extends MethodVisitor implements Opcodes {
+
+    private static final String INLINE_VERIFIER =
+        "org/junit/contrib/assertthrows/agent/InlineVerifier";
+    private static final String BEGIN_DESC =
+        "(Ljava/lang/Object;)Ljava/lang/Object;";
+    private static final String CALL_SITE_DESC =
+        "Ljava/lang/Object;Ljava/lang/Class;Ljava/lang/String;Ljava/lang/String;[Ljava/lang/Object;)V";
+
+    /**
+     * Not within an assertThrows statement.
+     */
+    private static final int NONE = 0;
+
+    /**
+     * Before the assertThrows call.
+     */
+    private static final int BEFORE = 1;
+
+    /**
+     * After the assertThrows call (a cast is expected).
+     */
+    private static final int CAST = 2;
+
+    /**
+     * The arguments of the method call.
+     */
+    private static final int ARGS = 3;
+
+    /**
+     * After the method call (a pop instruction is expected).
+     */
+    private static final int RESULT = 4;
+
+    private final int tempVar;
+    private final List<Insn> buffer = new ArrayList<Insn>();
+    private final List<Object[]> tryCatchBlocks = new ArrayList<Object[]>();
+    private boolean disabled;
+    private int state;
+    private int values;
+    private int assertIndex;
+    private MethodInsn call;
+
+    /**
+     * Create a new rewriter.
+     *
+     * @param mv the target method visitor
+     * @param maxLocals the number of local variables of the method (the
+     *            rewritten code uses additional local variables)
+     */
+    CallSiteRewriter(MethodVisitor mv, int maxLocals) {
+        super(ASM9, mv);
+        this.tempVar = maxLocals;
+    }
+
+    /**
+     * Called when a call site was rewritten.
+     */
+    abstract void rewritten();
+
+    public void visitTryCatchBlock(Label start, Label end, Label handler, String type) {
+        if (disabled) {
+            super.visitTryCatchBlock(start, end, handler, type);
+        } else {
+            // the rewritten try/catch blocks must come first in the exception
+            // table, as they are the innermost blocks
+            tryCatchBlocks.add(new Object[] { start, end, handler, type });
+        }
+    }
+
+    public AnnotationVisitor visitTryCatchAnnotation(int typeRef, TypePath typePath,
+            String desc, boolean visible) {
+        // the annotation refers to the index in the exception table,
+        // which would change
+        disabled = true;
+        visitTryCatchBlocks();
+        return super.visitTryCatchAnnotation(typeRef, typePath, desc, visible);
+    }
+
+    private void visitTryCatchBlocks() {
+        for (Object[] b : tryCatchBlocks) {
+            super.visitTryCatchBlock((Label) b[0], (Label) b[1], (Label) b[2], (String) b[3]);
+        }
+        tryCatchBlocks.clear();
+    }
+
+    public void visitLineNumber(int line, Label start) {
+        flush();
+        super.visitLineNumber(line, start);
+        if (!disabled) {
+            state = BEFORE;
+            values = 0;
+        }
+    }
+
+    public void visitLabel(Label label) {
+        flush();
+        super.visitLabel(label);
+    }
+
+    public void visitFrame(int type, int numLocal, Object[] local, int numStack, Object[] stack) {
+        flush();
+        super.visitFrame(type, numLocal, local, numStack, stack);
+    }
+
+    public void visitIincInsn(int var, int increment) {
+        flush();
+        super.visitIincInsn(var, increment);
+    }
+
+    public void visitJumpInsn(int opcode, Label label) {
+        flush();
+        super.visitJumpInsn(opcode, label);
+    }
+
+    public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+        flush();
+        super.visitTableSwitchInsn(min, max, dflt, labels);
+    }
+
+    public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+        flush();
+        super.visitLookupSwitchInsn(dflt, keys, labels);
+    }
+
+    public void visitMultiANewArrayInsn(String desc, int dims) {
+        flush();
+        super.visitMultiANewArrayInsn(desc, dims);
+    }
+
+    public void visitInvokeDynamicInsn(String name, String desc, Handle bsm, Object... bsmArgs) {
+        flush();
+        super.visitInvokeDynamicInsn(name, desc, bsm, bsmArgs);
+    }
+
+    public void visitMaxs(int maxStack, int maxLocals) {
+        flush();
+        visitTryCatchBlocks();
+        super.visitMaxs(maxStack, maxLocals);
+    }
+
+    public void visitEnd() {
+        flush();
+        super.visitEnd();
+    }
+
+    public void visitInsn(int opcode) {
+        if (state == RESULT) {
+            int size = Type.getReturnType(call.desc).getSize();
+            if ((opcode == POP && size == 1) || (opcode == POP2 && size == 2)) {
+                rewrite();
+                return;
+            }
+        }
+        int pop = -1, push = 0;
+        if (opcode >= ACONST_NULL && opcode <= DCONST_1) {
+            pop = 0;
+            push = 1;
+        } else if (opcode == DUP) {
+            pop = 1;
+            push = 2;
+        } else if (opcode >= IASTORE && opcode <= SASTORE) {
+            pop = 3;
+        } else if ((opcode >= IALOAD && opcode <= SALOAD) ||
+                (opcode >= IADD && opcode <= DREM) ||
+                (opcode >= ISHL && opcode <= LXOR) ||
+                (opcode >= LCMP && opcode <= DCMPG)) {
+            // binary operations
+            pop = 2;
+            push = 1;
+        } else if ((opcode >= INEG && opcode <= DNEG) ||
+                (opcode >= I2L && opcode <= I2S) ||
+                opcode == ARRAYLENGTH) {
+            // unary operations
+            pop = 1;
+            push = 1;
+        }
+        add(new Insn(opcode), pop, push);
+    }
+
+    public void visitIntInsn(int opcode, int operand) {
+        add(new IntInsn(opcode, operand), opcode == NEWARRAY ? 1 : 0, 1);
+    }
+
+    public void visitVarInsn(int opcode, int var) {
+        boolean load = opcode >= ILOAD && opcode <= ALOAD;
+        add(new VarInsn(opcode, var), load ? 0 : -1, 1);
+    }
+
+    public void visitTypeInsn(int opcode, String type) {
+        if (state == CAST && opcode == CHECKCAST) {
+            buffer.add(new TypeInsn(opcode, type));
+            state = ARGS;
+            values = 0;
+            return;
+        }
+        int pop = -1;
+        if (opcode == NEW) {
+            pop = 0;
+        } else if (opcode == ANEWARRAY || opcode == CHECKCAST) {
+            pop = 1;
+        }
+        add(new TypeInsn(opcode, type), pop, 1);
+    }
+
+    public void visitFieldInsn(int opcode, String owner, String name, String desc) {
+        int pop = -1;
+        if (opcode == GETSTATIC) {
+            pop = 0;
+        } else if (opcode == GETFIELD) {
+            pop = 1;
+        }
+        add(new FieldInsn(opcode, owner, name, desc), pop, 1);
+    }
+
+    public void visitLdcInsn(Object value) {
+        add(new LdcInsn(value), 0, 1);
+    }
+
+    public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+        MethodInsn insn = new MethodInsn(opcode, owner, name, desc, itf);
+        int argCount = Type.getArgumentTypes(desc).length;
+        if (state == BEFORE && opcode == INVOKESTATIC &&
+                AssertThrowsTransformer.ASSERT_THROWS.equals(owner) &&
+                "assertThrows".equals(name) && isAssertThrows(desc) &&
+                values == argCount) {
+            assertIndex = buffer.size();
+            buffer.add(insn);
+            state = CAST;
+            return;
+        } else if (state == ARGS && argCount == values &&
+                (opcode == INVOKEVIRTUAL || opcode == INVOKEINTERFACE) &&
+                !owner.startsWith("[")) {
+            // this call uses the proxy as the target
+            buffer.add(insn);
+            call = insn;
+            if (Type.getReturnType(desc) == Type.VOID_TYPE) {
+                rewrite();
+            } else {
+                state = RESULT;
+            }
+            return;
+        }
+        int pop = argCount + (opcode == INVOKESTATIC ? 0 : 1);
+        if (opcode == INVOKESTATIC && AssertThrowsTransformer.ASSERT_THROWS.equals(owner)) {
+            // a nested assertThrows call
+            pop = -1;
+        }
+        int push = Type.getReturnType(desc) == Type.VOID_TYPE ? 0 : 1;
+        add(insn, pop, push);
+    }
+
+    private static boolean isAssertThrows(String desc) {
+        return desc.equals(BEGIN_DESC) ||
+                desc.equals("(Ljava/lang/Class;Ljava/lang/Object;)Ljava/lang/Object;") ||
+                desc.equals("(Ljava/lang/Exception;Ljava/lang/Object;)Ljava/lang/Object;");
+    }
+
+    /**
+     * Buffer or write an instruction.
+     *
+     * @param insn the instruction
+     * @param pop the number of values the instruction removes from the stack,
+     *            or -1 if the instruction is not supported
+     * @param push the number of values the instruction adds
+     */
+    private void add(Insn insn, int pop, int push) {
+        if (state == NONE) {
+            insn.accept(mv);
+            return;
+        }
+        if (state == BEFORE || state == ARGS) {
+            if (pop >= 0 && pop <= values) {
+                buffer.add(insn);
+                values += push - pop;
+                return;
+            }
+        }
+        flush();
+        insn.accept(mv);
+    }
+
+    /**
+     * Write the buffered instructions unchanged.
+     */
+    private void flush() {
+        for (Insn insn : buffer) {
+            insn.accept(mv);
+        }
+        buffer.clear();
+        state = NONE;
+    }
+
+    /**
+     * Write the rewritten statement.
+     */
+    private void rewrite() {
+        List<Insn> list = new ArrayList<Insn>(buffer);
+        buffer.clear();
+        state = NONE;
+        for (int i = 0; i < assertIndex; i++) {
+            list.get(i).accept(mv);
+        }
+        MethodInsn assertCall = (MethodInsn) list.get(assertIndex);
+        boolean withExpected = !assertCall.desc.equals(BEGIN_DESC);
+        if (withExpected) {
+            mv.visitInsn(SWAP);
+            mv.visitVarInsn(ASTORE, tempVar);
+        }
+        mv.visitMethodInsn(INVOKESTATIC, INLINE_VERIFIER, "begin", BEGIN_DESC, false);
+        // the cast, the arguments (without the call)
+        for (int i = assertIndex + 1; i < list.size() - 1; i++) {
+            list.get(i).accept(mv);
+        }
+        // store the arguments, so they are available for the message
+        Type[] argTypes = Type.getArgumentTypes(call.desc);
+        int[] vars = new int[argTypes.length];
+        int next = tempVar + 1;
+        for (int i = 0; i < argTypes.length; i++) {
+            vars[i] = next;
+            next += argTypes[i].getSize();
+        }
+        for (int i = argTypes.length - 1; i >= 0; i--) {
+            mv.visitVarInsn(argTypes[i].getOpcode(ISTORE), vars[i]);
+        }
+        for (int i = 0; i < argTypes.length; i++) {
+            mv.visitVarInsn(argTypes[i].getOpcode(ILOAD), vars[i]);
+        }
+        Label start = new Label(), end = new Label();
+        Label handler = new Label(), after = new Label();
+        mv.visitTryCatchBlock(start, end, handler, "java/lang/Throwable");
+        mv.visitLabel(start);
+        call.accept(mv);
+        mv.visitLabel(end);
+        Type returnType = Type.getReturnType(call.desc);
+        if (returnType == Type.VOID_TYPE) {
+            mv.visitInsn(ACONST_NULL);
+        } else {
+            box(returnType);
+        }
+        pushCallSite(withExpected, argTypes, vars);
+        mv.visitMethodInsn(INVOKESTATIC, INLINE_VERIFIER, "returned",
+                "(Ljava/lang/Object;" + CALL_SITE_DESC, false);
+        mv.visitJumpInsn(GOTO, after);
+        mv.visitLabel(handler);
+        pushCallSite(withExpected, argTypes, vars);
+        mv.visitMethodInsn(INVOKESTATIC, INLINE_VERIFIER, "thrown",
+                "(Ljava/lang/Throwable;" + CALL_SITE_DESC, false);
+        mv.visitLabel(after);
+        rewritten();
+    }
+
+    private void pushCallSite(boolean withExpected, Type[] argTypes, int[] vars) {
+        if (withExpected) {
+            mv.visitVarInsn(ALOAD, tempVar);
+        } else {
+            mv.visitInsn(ACONST_NULL);
+        }
+        mv.visitLdcInsn(Type.getObjectType(call.owner));
+        mv.visitLdcInsn(call.name);
+        mv.visitLdcInsn(call.desc);
+        pushInt(argTypes.length);
+        mv.visitTypeInsn(ANEWARRAY, "java/lang/Object");
+        for (int i = 0; i < argTypes.length; i++) {
+            mv.visitInsn(DUP);
+            pushInt(i);
+            mv.visitVarInsn(argTypes[i].getOpcode(ILOAD), vars[i]);
+            box(argTypes[i]);
+            mv.visitInsn(AASTORE);
+        }
+    }
+
+    private void pushInt(int x) {
+        if (x <= 5) {
+            mv.visitInsn(ICONST_0 + x);
+        } else if (x <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(BIPUSH, x);
+        } else {
+            mv.visitIntInsn(SIPUSH, x);
+        }
+    }
+
+    private void box(Type type) {
+        String wrapper;
+        switch (type.getSort()) {
+        case Type.BOOLEAN:
+            wrapper = "java/lang/Boolean";
+            break;
+        case Type.BYTE:
+            wrapper = "java/lang/Byte";
+            break;
+        case Type.CHAR:
+            wrapper = "java/lang/Character";
+            break;
+        case Type.SHORT:
+            wrapper = "java/lang/Short";
+            break;
+        case Type.INT:
+            wrapper = "java/lang/Integer";
+            break;
+        case Type.LONG:
+            wrapper = "java/lang/Long";
+            break;
+        case Type.FLOAT:
+            wrapper = "java/lang/Float";
+            break;
+        case Type.DOUBLE:
+            wrapper = "java/lang/Double";
+            break;
+        default:
+            // an object or array
+            return;
+        }
+        mv.visitMethodInsn(INVOKESTATIC, wrapper, "valueOf",
+                "(" + type.getDescriptor() + ")L" + wrapper + ";", false);
+    }
+
+    /**
+     * A buffered instruction without operand.
+     */
+    static class Insn {
+
+        final int opcode;
+
+        Insn(int opcode) {
+            this.opcode = opcode;
+        }
+
+        void accept(MethodVisitor mv) {
+            mv.visitInsn(opcode);
+        }
+
+    }
+
+    /**
+     * A buffered instruction with an int operand.
+     */
+    static class IntInsn extends Insn {
+
+        private final int operand;
+
+        IntInsn(int opcode, int operand) {
+            super(opcode);
+            this.operand = operand;
+        }
+
+        void accept(MethodVisitor mv) {
+            mv.visitIntInsn(opcode, operand);
+        }
+
+    }
+
+    /**
+     * A buffered local variable instruction.
+     */
+    static class VarInsn extends Insn {
+
+        private final int var;
+
+        VarInsn(int opcode, int var) {
+            super(opcode);
+            this.var = var;
+        }
+
+        void accept(MethodVisitor mv) {
+            mv.visitVarInsn(opcode, var);
+        }
+
+    }
+
+    /**
+     * A buffered type instruction.
+     */
+    static class TypeInsn extends Insn {
+
+        private final String type;
+
+        TypeInsn(int opcode, String type) {
+            super(opcode);
+            this.type = type;
+        }
+
+        void accept(MethodVisitor mv) {
+            mv.visitTypeInsn(opcode, type);
+        }
+
+    }
+
+    /**
+     * A buffered field instruction.
+     */
+    static class FieldInsn extends Insn {
+
+        private final String owner, name, desc;
+
+        FieldInsn(int opcode, String owner, String name, String desc) {
+            super(opcode);
+            this.owner = owner;
+            this.name = name;
+            this.desc = desc;
+        }
+
+        void accept(MethodVisitor mv) {
+            mv.visitFieldInsn(opcode, owner, name, desc);
+        }
+
+    }
+
+    /**
+     * A buffered method call.
+     */
+    static class MethodInsn extends Insn {
+
+        final String owner, name, desc;
+        private final boolean itf;
+
+        MethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+            super(opcode);
+            this.owner = owner;
+            this.name = name;
+            this.desc = desc;
+            this.itf = itf;
+        }
+
+        void accept(MethodVisitor mv) {
+            mv.visitMethodInsn(opcode, owner, name, desc, itf);
+        }
+
+    }
+
+    /**
+     * A buffered constant.
+     */
+    static class LdcInsn extends Insn {
+
+        private final Object value;
+
+        LdcInsn(Object value) {
+            super(LDC);
+            this.value = value;
+        }
+
+        void accept(MethodVisitor mv) {
+            mv.visitLdcInsn(value);
+        }
+
+    }
+
+}
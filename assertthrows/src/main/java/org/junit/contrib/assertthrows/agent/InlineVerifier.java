@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.assertthrows.agent;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.contrib.assertthrows.verify.ExceptionVerifier;
+import org.junit.contrib.assertthrows.verify.ResultVerifier;
+
+/**
+ * The methods that are called by rewritten <code>assertThrows</code> call
+ * sites. They use the same verification logic and messages as the proxies
+ * created by {@link ExceptionVerifier#createVerifyingProxy(ResultVerifier, Object)}.
+ * These methods are not meant to be called directly.
+ *
+ * @author Thomas Mueller
+ */
+public class InlineVerifier {
+
+    private static final ConcurrentHashMap<String, Method> METHODS =
+        new ConcurrentHashMap<String, Method>();
+
+    private InlineVerifier() {
+        // utility class
+    }
+
+    /**
+     * Called instead of creating the proxy.
+     *
+     * @param obj the object
+     * @return the object
+     */
+    public static Object begin(Object obj) {
+        if (obj == null) {
+            throw new NullPointerException("The passed object is null");
+        }
+        ExceptionVerifier.verifyLastProxyWasUsed();
+        return obj;
+    }
+
+    /**
+     * Called when the method returned normally.
+     *
+     * @param returnValue the (boxed) return value, or null for void methods
+     * @param expected the expected exception class, the expected exception,
+     *            or null if any exception is expected
+     * @param owner the class that declares the method
+     * @param name the method name
+     * @param desc the method descriptor
+     * @param args the (boxed) arguments
+     * @throws AssertionError always
+     */
+    public static void returned(Object returnValue, Object expected,
+            Class<?> owner, String name, String desc, Object[] args) {
+        verify(returnValue, null, expected, owner, name, desc, args);
+    }
+
+    /**
+     * Called when the method threw an exception or error.
+     *
+     * @param t the exception or error
+     * @param expected the expected exception class, the expected exception,
+     *            or null if any exception is expected
+     * @param owner the class that declares the method
+     * @param name the method name
+     * @param desc the method descriptor
+     * @param args the (boxed) arguments
+     * @throws AssertionError if the exception is not the expected one
+     */
+    public static void thrown(Throwable t, Object expected,
+            Class<?> owner, String name, String desc, Object[] args) {
+        verify(null, t, expected, owner, name, desc, args);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void verify(Object returnValue, Throwable t, Object expected,
+            Class<?> owner, String name, String desc, Object[] args) {
+        ResultVerifier verifier;
+        if (expected == null) {
+            verifier = new ExceptionVerifier();
+        } else if (expected instanceof Class) {
+            verifier = new ExceptionVerifier((Class<? extends Exception>) expected);
+        } else {
+            verifier = new ExceptionVerifier((Exception) expected);
+        }
+        try {
+            // the method is only needed for the message
+            verifier.verify(returnValue, t, null, (Object[]) null);
+        } catch (AssertionError e) {
+            Method m = getMethod(owner, name, desc);
+            if (m != null) {
+                verifier.verify(returnValue, t, m, args);
+            }
+            throw e;
+        }
+    }
+
+    private static Method getMethod(Class<?> owner, String name, String desc) {
+        String key = owner.getName() + "." + name + desc;
+        Method m = METHODS.get(key);
+        if (m == null) {
+            m = findMethod(owner, name, desc);
+            if (m != null) {
+                METHODS.put(key, m);
+            }
+        }
+        return m;
+    }
+
+    private static Method findMethod(Class<?> c, String name, String desc) {
+        if (c == null) {
+            return null;
+        }
+        for (Method m : c.getDeclaredMethods()) {
+            if (m.getName().equals(name) && getDescriptor(m).equals(desc)) {
+                return m;
+            }
+        }
+        Method m = findMethod(c.getSuperclass(), name, desc);
+        for (int i = 0; m == null && i < c.getInterfaces().length; i++) {
+            m = findMethod(c.getInterfaces()[i], name, desc);
+        }
+        return m;
+    }
+
+    private static String getDescriptor(Method m) {
+        StringBuilder buff = new StringBuilder("(");
+        for (Class<?> p : m.getParameterTypes()) {
+            buff.append(getDescriptor(p));
+        }
+        return buff.append(')').append(getDescriptor(m.getReturnType())).toString();
+    }
+
+    private static String getDescriptor(Class<?> c) {
+        if (c.isArray()) {
+            return c.getName().replace('.', '/');
+        } else if (!c.isPrimitive()) {
+            return "L" + c.getName().replace('.', '/') + ";";
+        } else if (c == boolean.class) {
+            return "Z";
+        } else if (c == long.class) {
+            return "J";
+        } else if (c == void.class) {
+            return "V";
+        }
+        // B, C, D, F, I, S
+        return String.valueOf(Character.toUpperCase(c.getName().charAt(0)));
+    }
+
+}
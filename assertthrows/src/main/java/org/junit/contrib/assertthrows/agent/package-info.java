@@ -0,0 +1,5 @@
+/**
+ * An optional Java agent that rewrites assertThrows call sites
+ * into inline try/catch blocks.
+ */
+package org.junit.contrib.assertthrows.agent;
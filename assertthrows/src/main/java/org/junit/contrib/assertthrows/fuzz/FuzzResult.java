@@ -0,0 +1,202 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.assertthrows.fuzz;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of a fuzzing run: the number of calls per outcome, the
+ * throughput, and the (shrunk) arguments of the calls that threw an
+ * unexpected exception.
+ *
+ * @author Thomas Mueller
+ */
+public class FuzzResult {
+
+    private final long[] counts = new long[Outcome.values().length];
+    private final List<Failure> failures = new ArrayList<Failure>();
+    private final long seed;
+    private long nanos;
+
+    FuzzResult(long seed) {
+        this.seed = seed;
+    }
+
+    synchronized void add(long[] c) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += c[i];
+        }
+    }
+
+    synchronized void addFailure(Failure f) {
+        failures.add(f);
+    }
+
+    void setNanos(long nanos) {
+        this.nanos = nanos;
+    }
+
+    /**
+     * Get the number of calls with the given outcome.
+     *
+     * @param outcome the outcome
+     * @return the number of calls
+     */
+    public synchronized long getCount(Outcome outcome) {
+        return counts[outcome.ordinal()];
+    }
+
+    /**
+     * Get the total number of calls (not including the calls that were made
+     * to shrink the arguments).
+     *
+     * @return the number of calls
+     */
+    public synchronized long getCalls() {
+        long sum = 0;
+        for (long c : counts) {
+            sum += c;
+        }
+        return sum;
+    }
+
+    /**
+     * Get the elapsed time of the run, in nanoseconds.
+     *
+     * @return the elapsed time
+     */
+    public long getNanos() {
+        return nanos;
+    }
+
+    /**
+     * Get the throughput: the number of calls per second (over all threads).
+     *
+     * @return the number of calls per second
+     */
+    public double getCallsPerSecond() {
+        return nanos == 0 ? 0 : getCalls() * 1e9 / nanos;
+    }
+
+    /**
+     * Get the seed of the random number generators. Running again with the
+     * same seed and the same number of threads generates the same arguments.
+     *
+     * @return the seed
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Get the failures (one per unexpected exception class).
+     *
+     * @return the failures
+     */
+    public synchronized List<Failure> getFailures() {
+        return Collections.unmodifiableList(new ArrayList<Failure>(failures));
+    }
+
+    /**
+     * Verify that no call threw an unexpected exception.
+     *
+     * @throws AssertionError if there was an unexpected exception
+     */
+    public void verify() {
+        List<Failure> list = getFailures();
+        if (list.isEmpty()) {
+            return;
+        }
+        StringBuilder buff = new StringBuilder();
+        buff.append(getCount(Outcome.UNEXPECTED_EXCEPTION)).append(" of ").
+                append(getCalls()).append(" calls threw an unexpected exception (seed ").
+                append(seed).append("):");
+        int i = 1;
+        for (Failure f : list) {
+            buff.append('\n').append(i++).append(") ").append(f);
+        }
+        AssertionError ae = new AssertionError(buff.toString());
+        ae.initCause(list.get(0).getThrown());
+        throw ae;
+    }
+
+    public String toString() {
+        return "calls: " + getCalls() +
+                ", expected exceptions: " + getCount(Outcome.EXPECTED_EXCEPTION) +
+                ", unexpected exceptions: " + getCount(Outcome.UNEXPECTED_EXCEPTION) +
+                ", successful: " + getCount(Outcome.SUCCESS) +
+                ", calls/s: " + (long) getCallsPerSecond();
+    }
+
+    /**
+     * A call that threw an unexpected exception.
+     */
+    public static class Failure {
+
+        private final Method method;
+        private final Object[] originalArguments;
+        private final Object[] arguments;
+        private final Throwable thrown;
+
+        Failure(Method method, Object[] originalArguments, Object[] arguments, Throwable thrown) {
+            this.method = method;
+            this.originalArguments = originalArguments;
+            this.arguments = arguments;
+            this.thrown = thrown;
+        }
+
+        /**
+         * Get the shrunk arguments.
+         *
+         * @return the arguments
+         */
+        public Object[] getArguments() {
+            return arguments.clone();
+        }
+
+        /**
+         * Get the arguments of the call before shrinking.
+         *
+         * @return the arguments
+         */
+        public Object[] getOriginalArguments() {
+            return originalArguments.clone();
+        }
+
+        /**
+         * Get the exception thrown when calling the method with the shrunk
+         * arguments.
+         *
+         * @return the exception
+         */
+        public Throwable getThrown() {
+            return thrown;
+        }
+
+        public String toString() {
+            String args = Arrays.deepToString(arguments);
+            return method.getName() + "(" + args.substring(1, args.length() - 1) +
+                    ") threw " + thrown;
+        }
+
+    }
+
+}
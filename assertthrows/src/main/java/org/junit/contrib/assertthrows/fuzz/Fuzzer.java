@@ -0,0 +1,325 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.assertthrows.fuzz;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.contrib.assertthrows.proxy.ProxyFactory;
+import org.junit.contrib.assertthrows.proxy.ReflectionUtils;
+import org.junit.contrib.assertthrows.verify.ExceptionVerifier;
+import org.junit.contrib.assertthrows.verify.ResultVerifier;
+
+/**
+ * Calls a method many times with generated arguments, using all processors,
+ * and classifies the outcome of each call. The method to fuzz is selected by
+ * calling it on a proxy (the arguments of this call are ignored):
+ * <pre>
+ * Fuzzer fuzzer = new Fuzzer(IllegalArgumentException.class);
+ * fuzzer.fuzz(parser).parse(null, 0);
+ * FuzzResult result = fuzzer.run();
+ * result.verify();
+ * </pre>
+ * Exceptions that are accepted by the result verifier are expected; all other
+ * exceptions are unexpected. For each unexpected exception class, the
+ * arguments are shrunk (simplified) as long as the method still throws an
+ * unexpected exception of the same class.
+ * <p>
+ * The object must be thread-safe, as the method is called concurrently.
+ *
+ * @author Thomas Mueller
+ */
+public class Fuzzer {
+
+    private static final int MAX_SHRINK_CALLS = 1000;
+
+    private final ResultVerifier verifier;
+    private final Map<Class<?>, Generator<Object>> generators =
+        new HashMap<Class<?>, Generator<Object>>();
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long calls = 10000;
+    private long seed = new Random().nextLong();
+    private int maxFailures = 10;
+    private Object target;
+    private Method method;
+
+    /**
+     * Create a fuzzer where exceptions of the given class (or a subclass) are
+     * expected.
+     *
+     * @param expectedExceptionClass the expected exception class
+     */
+    public Fuzzer(Class<? extends Exception> expectedExceptionClass) {
+        this(new ExceptionVerifier(expectedExceptionClass));
+    }
+
+    /**
+     * Create a fuzzer that uses the given verifier to classify exceptions. If
+     * the verifier throws an assertion error, the exception is unexpected.
+     * The return value of the verifier is ignored.
+     *
+     * @param verifier the verifier
+     */
+    public Fuzzer(ResultVerifier verifier) {
+        if (verifier == null) {
+            throw new NullPointerException("The passed verifier is null");
+        }
+        this.verifier = verifier;
+    }
+
+    /**
+     * Set the number of threads. The default is the number of processors.
+     *
+     * @param threads the number of threads
+     */
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads: " + threads);
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * Set the total number of calls. The default is 10000.
+     *
+     * @param calls the number of calls
+     */
+    public void setCalls(long calls) {
+        if (calls < 0) {
+            throw new IllegalArgumentException("calls: " + calls);
+        }
+        this.calls = calls;
+    }
+
+    /**
+     * Set the seed of the random number generators. By default, a random seed
+     * is used; it is included in the result.
+     *
+     * @param seed the seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Set the maximum number of distinct failures to collect and shrink. The
+     * default is 10.
+     *
+     * @param maxFailures the maximum number of failures
+     */
+    public void setMaxFailures(int maxFailures) {
+        this.maxFailures = maxFailures;
+    }
+
+    /**
+     * Use the given generator for all parameters of this type. For primitive
+     * types, the generator must not return null.
+     *
+     * @param type the parameter type
+     * @param generator the generator
+     */
+    @SuppressWarnings("unchecked")
+    public void setGenerator(Class<?> type, Generator<?> generator) {
+        generators.put(type, (Generator<Object>) generator);
+    }
+
+    /**
+     * Select the method to fuzz: the next method call on the returned proxy
+     * selects the method (the call itself does nothing and returns the
+     * default value).
+     *
+     * @param <T> the class of the object
+     * @param obj the object to call (must not be null)
+     * @return a proxy for the object
+     */
+    public <T> T fuzz(T obj) {
+        if (obj == null) {
+            throw new NullPointerException("The passed object is null");
+        }
+        target = obj;
+        method = null;
+        ProxyFactory factory = ProxyFactory.getFactory(obj.getClass());
+        return factory.createProxy(obj, new InvocationHandler() {
+            public Object invoke(Object proxy, Method m, Object[] args) {
+                if ("finalize".equals(m.getName())) {
+                    // called by the garbage collector
+                    return null;
+                }
+                method = m;
+                return ReflectionUtils.getDefaultValue(m.getReturnType());
+            }
+        });
+    }
+
+    /**
+     * Call the selected method with generated arguments, using multiple
+     * threads, and wait until all calls are done.
+     *
+     * @return the result
+     * @throws IllegalStateException if no method was selected, or if there is
+     *             no generator for a parameter type
+     */
+    public FuzzResult run() {
+        if (method == null) {
+            throw new IllegalStateException("No method was called on the fuzzing proxy");
+        }
+        try {
+            method.setAccessible(true);
+        } catch (RuntimeException e) {
+            // not allowed, but it may still work
+        }
+        Class<?>[] types = method.getParameterTypes();
+        final Generator<?>[] gens = new Generator<?>[types.length];
+        for (int i = 0; i < types.length; i++) {
+            Generator<Object> g = generators.get(types[i]);
+            if (g == null) {
+                g = Generators.forClass(types[i]);
+            }
+            if (g == null) {
+                throw new IllegalStateException(
+                        "No generator for the parameter type " + types[i].getName() +
+                        " of the method " + method.getName());
+            }
+            gens[i] = g;
+        }
+        final FuzzResult result = new FuzzResult(seed);
+        final Set<String> seen = new HashSet<String>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        try {
+            Future<?>[] futures = new Future<?>[threads];
+            for (int i = 0; i < threads; i++) {
+                final long count = calls / threads + (i < calls % threads ? 1 : 0);
+                final Random random = new Random(seed + i);
+                futures[i] = executor.submit(new Callable<Void>() {
+                    public Void call() {
+                        runWorker(random, count, gens, result, seen);
+                        return null;
+                    }
+                });
+            }
+            for (Future<?> f : futures) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted", e);
+        } catch (ExecutionException e) {
+            Throwable t = e.getCause();
+            if (t instanceof RuntimeException) {
+                throw (RuntimeException) t;
+            } else if (t instanceof Error) {
+                throw (Error) t;
+            }
+            throw new IllegalStateException("Fuzzing failed", t);
+        } finally {
+            executor.shutdownNow();
+        }
+        result.setNanos(System.nanoTime() - start);
+        return result;
+    }
+
+    private void runWorker(Random random, long count, Generator<?>[] gens,
+            FuzzResult result, Set<String> seen) {
+        long[] counts = new long[Outcome.values().length];
+        Object[] args = new Object[gens.length];
+        for (long i = 0; i < count; i++) {
+            for (int j = 0; j < gens.length; j++) {
+                args[j] = gens[j].generate(random);
+            }
+            Throwable t = call(args);
+            Outcome o = classify(t, args);
+            counts[o.ordinal()]++;
+            if (o == Outcome.UNEXPECTED_EXCEPTION) {
+                // the stack trace is not used, as the JVM may omit it for
+                // exceptions that are thrown often
+                String key = t.getClass().getName();
+                synchronized (seen) {
+                    if (seen.size() >= maxFailures || !seen.add(key)) {
+                        continue;
+                    }
+                }
+                result.addFailure(shrink(gens, args.clone(), t));
+            }
+        }
+        result.add(counts);
+    }
+
+    @SuppressWarnings("unchecked")
+    private FuzzResult.Failure shrink(Generator<?>[] gens, Object[] original, Throwable thrown) {
+        Object[] current = original.clone();
+        int shrinkCalls = 0;
+        boolean progress = true;
+        while (progress && shrinkCalls < MAX_SHRINK_CALLS) {
+            progress = false;
+            for (int i = 0; i < gens.length && !progress; i++) {
+                List<Object> candidates = ((Generator<Object>) gens[i]).shrink(current[i]);
+                for (Object c : candidates) {
+                    if (shrinkCalls++ >= MAX_SHRINK_CALLS) {
+                        break;
+                    }
+                    Object[] test = current.clone();
+                    test[i] = c;
+                    Throwable t = call(test);
+                    if (t != null && t.getClass() == thrown.getClass() &&
+                            classify(t, test) == Outcome.UNEXPECTED_EXCEPTION) {
+                        current = test;
+                        thrown = t;
+                        progress = true;
+                        break;
+                    }
+                }
+            }
+        }
+        return new FuzzResult.Failure(method, original, current, thrown);
+    }
+
+    private Throwable call(Object[] args) {
+        try {
+            method.invoke(target, args);
+            return null;
+        } catch (InvocationTargetException e) {
+            return e.getTargetException();
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Can not call " + method, e);
+        }
+    }
+
+    private Outcome classify(Throwable t, Object[] args) {
+        if (t == null) {
+            return Outcome.SUCCESS;
+        }
+        try {
+            verifier.verify(null, t, method, args);
+            return Outcome.EXPECTED_EXCEPTION;
+        } catch (AssertionError e) {
+            return Outcome.UNEXPECTED_EXCEPTION;
+        }
+    }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.assertthrows.fuzz;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates argument values of a given type.
+ * Implementations must be thread-safe; the random number generator that is
+ * passed is only used by one thread.
+ *
+ * @param <T> the value type
+ * @author Thomas Mueller
+ */
+public interface Generator<T> {
+
+    /**
+     * Generate a value.
+     *
+     * @param random the random number generator to use
+     * @return the value
+     */
+    T generate(Random random);
+
+    /**
+     * Get simpler values than the given value. This is used to find a minimal
+     * argument list that still causes the same failure. The simplest
+     * candidates should be returned first.
+     *
+     * @param value the value
+     * @return the simpler values (an empty list if there are none)
+     */
+    List<T> shrink(T value);
+
+}
@@ -0,0 +1,393 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.assertthrows.fuzz;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.contrib.assertthrows.proxy.ReflectionUtils;
+
+/**
+ * Type-driven generators for the primitive types and their wrappers, strings,
+ * and enums. Edge cases (such as 0, -1, the minimum and maximum value, the
+ * empty string, and null for object types) are generated more often than
+ * other values.
+ *
+ * @author Thomas Mueller
+ */
+public class Generators {
+
+    private static final String CHARS = "aZ09 -_.,;:'\"\\/\t\n\u00e4\u20ac\ud800";
+
+    private Generators() {
+        // utility class
+    }
+
+    /**
+     * Get the default generator for the given type.
+     *
+     * @param c the type
+     * @return the generator, or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public static Generator<Object> forClass(Class<?> c) {
+        boolean nullable = !c.isPrimitive();
+        Class<?> type = ReflectionUtils.getNonPrimitiveClass(c);
+        if (type == Boolean.class) {
+            return new BooleanGenerator(nullable);
+        } else if (type == Byte.class) {
+            return new IntegerGenerator(type, Byte.MIN_VALUE, Byte.MAX_VALUE, nullable);
+        } else if (type == Short.class) {
+            return new IntegerGenerator(type, Short.MIN_VALUE, Short.MAX_VALUE, nullable);
+        } else if (type == Character.class) {
+            return new IntegerGenerator(type, Character.MIN_VALUE, Character.MAX_VALUE, nullable);
+        } else if (type == Integer.class) {
+            return new IntegerGenerator(type, Integer.MIN_VALUE, Integer.MAX_VALUE, nullable);
+        } else if (type == Long.class) {
+            return new IntegerGenerator(type, Long.MIN_VALUE, Long.MAX_VALUE, nullable);
+        } else if (type == Float.class || type == Double.class) {
+            return new FloatingPointGenerator(type, nullable);
+        } else if (type == String.class) {
+            return new StringGenerator();
+        } else if (type.isEnum()) {
+            return new EnumGenerator((Class<? extends Enum<?>>) type);
+        }
+        return null;
+    }
+
+    /**
+     * Get a generator that always returns the same value.
+     *
+     * @param value the value
+     * @return the generator
+     */
+    public static Generator<Object> constant(final Object value) {
+        return new Generator<Object>() {
+            public Object generate(Random random) {
+                return value;
+            }
+            public List<Object> shrink(Object v) {
+                return Collections.emptyList();
+            }
+        };
+    }
+
+    /**
+     * Get a generator that returns one of the given values.
+     *
+     * @param values the values (the first value is considered the simplest)
+     * @return the generator
+     */
+    public static Generator<Object> oneOf(final Object... values) {
+        if (values.length == 0) {
+            throw new IllegalArgumentException("No values");
+        }
+        return new Generator<Object>() {
+            public Object generate(Random random) {
+                return values[random.nextInt(values.length)];
+            }
+            public List<Object> shrink(Object v) {
+                List<Object> list = new ArrayList<Object>();
+                for (Object x : values) {
+                    if (x == v || (x != null && x.equals(v))) {
+                        break;
+                    }
+                    list.add(x);
+                }
+                return list;
+            }
+        };
+    }
+
+    /**
+     * Generates booleans.
+     */
+    static class BooleanGenerator implements Generator<Object> {
+
+        private final boolean nullable;
+
+        BooleanGenerator(boolean nullable) {
+            this.nullable = nullable;
+        }
+
+        public Object generate(Random random) {
+            if (nullable && random.nextInt(10) == 0) {
+                return null;
+            }
+            return random.nextBoolean();
+        }
+
+        public List<Object> shrink(Object value) {
+            List<Object> list = new ArrayList<Object>();
+            if (Boolean.TRUE.equals(value)) {
+                list.add(false);
+            }
+            return list;
+        }
+
+    }
+
+    /**
+     * Generates values of an integral type (including char), as a long
+     * internally.
+     */
+    static class IntegerGenerator implements Generator<Object> {
+
+        private final Class<?> type;
+        private final long min, max;
+        private final boolean nullable;
+        private final long[] edgeCases;
+
+        IntegerGenerator(Class<?> type, long min, long max, boolean nullable) {
+            this.type = type;
+            this.min = min;
+            this.max = max;
+            this.nullable = nullable;
+            edgeCases = new long[] { 0, 1, -1, 2, min, max, min + 1, max - 1 };
+        }
+
+        public Object generate(Random random) {
+            int x = random.nextInt(16);
+            if (nullable && x == 0) {
+                return null;
+            }
+            long v;
+            if (x < 4) {
+                v = edgeCases[random.nextInt(edgeCases.length)];
+            } else if (x < 10) {
+                // small values
+                v = random.nextInt(201) - 100;
+            } else {
+                v = uniform(random);
+            }
+            return convert(v);
+        }
+
+        /**
+         * Get a value that is uniformly distributed between min and max
+         * (inclusive).
+         *
+         * @param random the random number generator
+         * @return the value
+         */
+        private long uniform(Random random) {
+            if (type == Long.class) {
+                return random.nextLong();
+            } else if (type == Integer.class) {
+                return random.nextInt();
+            }
+            return min + random.nextInt((int) (max - min + 1));
+        }
+
+        private Object convert(long v) {
+            v = Math.max(min, Math.min(max, v));
+            if (type == Byte.class) {
+                return (byte) v;
+            } else if (type == Short.class) {
+                return (short) v;
+            } else if (type == Character.class) {
+                return (char) v;
+            } else if (type == Integer.class) {
+                return (int) v;
+            }
+            return v;
+        }
+
+        private static long toLong(Object value) {
+            if (value instanceof Character) {
+                return ((Character) value).charValue();
+            }
+            return ((Number) value).longValue();
+        }
+
+        public List<Object> shrink(Object value) {
+            List<Object> list = new ArrayList<Object>();
+            if (value == null) {
+                return list;
+            }
+            long v = toLong(value);
+            if (v == 0) {
+                return list;
+            }
+            list.add(convert(0));
+            if (v < 0 && v != Long.MIN_VALUE) {
+                list.add(convert(-v));
+            }
+            if (v / 2 != 0) {
+                list.add(convert(v / 2));
+            }
+            long closer = v < 0 ? v + 1 : v - 1;
+            if (closer != 0 && closer != v / 2) {
+                list.add(convert(closer));
+            }
+            return list;
+        }
+
+    }
+
+    /**
+     * Generates float or double values.
+     */
+    static class FloatingPointGenerator implements Generator<Object> {
+
+        private static final double[] EDGE_CASES = {
+            0.0, -0.0, 1.0, -1.0, 0.5, Double.NaN,
+            Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+            Double.MIN_VALUE, Double.MAX_VALUE, -Double.MAX_VALUE
+        };
+
+        private final boolean isFloat;
+        private final boolean nullable;
+
+        FloatingPointGenerator(Class<?> type, boolean nullable) {
+            this.isFloat = type == Float.class;
+            this.nullable = nullable;
+        }
+
+        public Object generate(Random random) {
+            int x = random.nextInt(16);
+            if (nullable && x == 0) {
+                return null;
+            }
+            double v;
+            if (x < 5) {
+                v = EDGE_CASES[random.nextInt(EDGE_CASES.length)];
+            } else if (x < 10) {
+                v = random.nextInt(201) - 100;
+            } else {
+                v = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(20));
+            }
+            return convert(v);
+        }
+
+        private Object convert(double v) {
+            if (isFloat) {
+                return (float) v;
+            }
+            return v;
+        }
+
+        public List<Object> shrink(Object value) {
+            List<Object> list = new ArrayList<Object>();
+            if (value == null) {
+                return list;
+            }
+            double v = ((Number) value).doubleValue();
+            if (v == 0) {
+                return list;
+            }
+            list.add(convert(0));
+            if (Double.isNaN(v) || Double.isInfinite(v)) {
+                return list;
+            }
+            if (v < 0) {
+                list.add(convert(-v));
+            }
+            double r = Math.rint(v);
+            if (r != v) {
+                list.add(convert(r));
+            }
+            if (Math.abs(v) >= 1) {
+                list.add(convert(Math.rint(v / 2)));
+            }
+            return list;
+        }
+
+    }
+
+    /**
+     * Generates strings.
+     */
+    static class StringGenerator implements Generator<Object> {
+
+        public Object generate(Random random) {
+            int x = random.nextInt(16);
+            if (x == 0) {
+                return null;
+            } else if (x == 1) {
+                return "";
+            } else if (x < 6) {
+                // a number, or almost a number
+                String s = Integer.toString(random.nextInt(2001) - 1000);
+                if (x == 5) {
+                    s += CHARS.charAt(random.nextInt(CHARS.length()));
+                }
+                return s;
+            }
+            int len = random.nextInt(x < 12 ? 8 : 64) + 1;
+            char[] chars = new char[len];
+            for (int i = 0; i < len; i++) {
+                if (random.nextInt(4) == 0) {
+                    chars[i] = CHARS.charAt(random.nextInt(CHARS.length()));
+                } else {
+                    chars[i] = (char) (' ' + random.nextInt(95));
+                }
+            }
+            return new String(chars);
+        }
+
+        public List<Object> shrink(Object value) {
+            List<Object> list = new ArrayList<Object>();
+            if (value == null) {
+                return list;
+            }
+            String s = (String) value;
+            int len = s.length();
+            if (len == 0) {
+                return list;
+            }
+            list.add("");
+            if (len > 1) {
+                list.add(s.substring(0, len / 2));
+                list.add(s.substring(len / 2));
+            }
+            for (int i = 0; i < len && len > 1; i++) {
+                list.add(s.substring(0, i) + s.substring(i + 1));
+            }
+            return list;
+        }
+
+    }
+
+    /**
+     * Generates enum constants.
+     */
+    static class EnumGenerator implements Generator<Object> {
+
+        private final Object[] constants;
+
+        EnumGenerator(Class<? extends Enum<?>> type) {
+            constants = type.getEnumConstants();
+        }
+
+        public Object generate(Random random) {
+            int x = random.nextInt(constants.length + 1);
+            return x == constants.length ? null : constants[x];
+        }
+
+        public List<Object> shrink(Object value) {
+            List<Object> list = new ArrayList<Object>();
+            if (value != null && constants.length > 0 && value != constants[0]) {
+                list.add(constants[0]);
+            }
+            return list;
+        }
+
+    }
+
+}
@@ -0,0 +1,5 @@
+/**
+ * Fuzzing of methods: calls a method many times with generated arguments,
+ * and classifies the results.
+ */
+package org.junit.contrib.assertthrows.fuzz;
@@ -77,21 +77,42 @@ public class CglibProxyFactory extends ProxyFactory {
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public <T> T createProxy(T obj, final InvocationHandler handler) {
-        Class<?> c = obj.getClass();
         net.sf.cglib.proxy.InvocationHandler cglibHandler =
                 new net.sf.cglib.proxy.InvocationHandler() {
             public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
                 return handler.invoke(proxy, method, args);
             }
         };
+        return createProxy(obj, cglibHandler);
+    }
+
+    @Override
+    public <T> T createRebindableProxy(T obj, InvocationHandler handler) {
+        return createProxy(obj, new HandlerAdapter(handler));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T createProxy(T obj, Callback callback) {
+        Class<?> c = obj.getClass();
         Class<?> proxyClass = createProxyClass(c);
         Factory proxy = (Factory) newInstance(c, proxyClass);
-        proxy.setCallbacks(new Callback[] { cglibHandler, NoOp.INSTANCE });
+        proxy.setCallbacks(new Callback[] { callback, NoOp.INSTANCE });
         return (T) proxy;
     }
 
+    @Override
+    public boolean rebindProxy(Object proxy, InvocationHandler handler) {
+        if (proxy instanceof Factory) {
+            Callback callback = ((Factory) proxy).getCallback(0);
+            if (callback instanceof HandlerAdapter) {
+                ((HandlerAdapter) callback).handler = handler;
+                return true;
+            }
+        }
+        return false;
+    }
+
     private Object newInstance(Class<?> baseClass, Class<?> c) {
         ObjectCreator creator = getObjectCreator();
         try {
@@ -137,6 +158,24 @@ public class CglibProxyFactory extends ProxyFactory {
         }
     }
 
+    /**
+     * A cglib invocation handler that calls the (replaceable) invocation
+     * handler.
+     */
+    static class HandlerAdapter implements net.sf.cglib.proxy.InvocationHandler {
+
+        volatile InvocationHandler handler;
+
+        HandlerAdapter(InvocationHandler handler) {
+            this.handler = handler;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            return handler.invoke(proxy, method, args);
+        }
+
+    }
+
     /**
      * A tool to create new objects, if possible without calling any constructors.
      */
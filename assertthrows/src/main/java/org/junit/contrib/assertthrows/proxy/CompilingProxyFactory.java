@@ -49,6 +49,13 @@ public class CompilingProxyFactory extends ProxyFactory {
      */
     private HashMap<Class<?>, Class<?>> proxyMap = new HashMap<Class<?>, Class<?>>();
 
+    /**
+     * The invocation handler fields of the proxy classes. Implementation
+     * note: this field might be set to null by Tomcat when unloading a web
+     * application that uses this proxy factory.
+     */
+    private HashMap<Class<?>, Field[]> handlerFields = new HashMap<Class<?>, Field[]>();
+
     private boolean useSystemJavaCompiler = true;
 
     @SuppressWarnings("unchecked")
@@ -68,6 +75,42 @@ public class CompilingProxyFactory extends ProxyFactory {
         }
     }
 
+    public boolean rebindProxy(Object proxy, InvocationHandler handler) {
+        Class<?> pc = proxy.getClass();
+        if (getProxyMap().get(pc.getSuperclass()) != pc) {
+            return false;
+        }
+        Field[] fields = getHandlerFields(pc);
+        try {
+            fields[0].set(proxy, handler);
+            fields[1].set(proxy, handler instanceof PrimitiveInvocationHandler ? handler : null);
+            return true;
+        } catch (IllegalAccessException e) {
+            return false;
+        }
+    }
+
+    private synchronized Field[] getHandlerFields(Class<?> pc) {
+        if (handlerFields == null) {
+            handlerFields = new HashMap<Class<?>, Field[]>();
+        }
+        Field[] fields = handlerFields.get(pc);
+        if (fields == null) {
+            fields = new Field[2];
+            for (Field f : pc.getDeclaredFields()) {
+                if (f.getType() == InvocationHandler.class) {
+                    fields[0] = f;
+                } else if (f.getType() == PrimitiveInvocationHandler.class) {
+                    fields[1] = f;
+                }
+            }
+            fields[0].setAccessible(true);
+            fields[1].setAccessible(true);
+            handlerFields.put(pc, fields);
+        }
+        return fields;
+    }
+
     public void setUseSystemJavaCompiler(boolean useSystemJavaCompiler) {
         this.useSystemJavaCompiler = useSystemJavaCompiler;
         getCompiler().setUseSystemJavaCompiler(useSystemJavaCompiler);
@@ -218,6 +261,8 @@ public class CompilingProxyFactory extends ProxyFactory {
         private Class<?> extendsClass;
         private Constructor<?> constructor;
         private String invocationHandlerFieldName = "ih";
+        private String primitiveHandlerFieldName = "pih";
+        private String methodsFieldName = "methods";
 
         void setName(String packageName, String className) {
             this.packageName = packageName;
@@ -227,9 +272,13 @@ public class CompilingProxyFactory extends ProxyFactory {
         void generateClassProxy(Class<?> clazz) {
             imports.clear();
             addImport(InvocationHandler.class);
+            addImport(PrimitiveInvocationHandler.class);
+            addImport(PrimitiveInvoker.class);
             addImport(Method.class);
             addImport(clazz);
             invocationHandlerFieldName = getUniqueFieldName(clazz, invocationHandlerFieldName);
+            primitiveHandlerFieldName = getUniqueFieldName(clazz, primitiveHandlerFieldName);
+            methodsFieldName = getUniqueFieldName(clazz, methodsFieldName);
             extendsClass = clazz;
             int doNotOverride = Modifier.FINAL | Modifier.STATIC |
                     Modifier.PRIVATE | Modifier.ABSTRACT | Modifier.VOLATILE;
@@ -345,10 +394,43 @@ public class CompilingProxyFactory extends ProxyFactory {
             if (extendsClass != null) {
                 writer.print(" extends " + getClassName(extendsClass));
             }
+            writer.print(" implements PrimitiveInvoker");
             writer.println(" {");
-            writer.print("    private final InvocationHandler ");
+            writer.println("    private static final Method[] " + methodsFieldName +
+                    " = new Method[" + methods.size() + "];");
+            if (methods.size() > 0) {
+                // the methods are only looked up once,
+                // and not on each call
+                writer.println("    static {");
+                writer.println("        try {");
+                int i = 0;
+                for (Method m : methods.values()) {
+                    writer.println("            " + methodsFieldName + "[" + i + "] = " +
+                            getClassName(m.getDeclaringClass()) +
+                            ".class.getDeclaredMethod(\"" + m.getName() + "\",");
+                    writer.print("                new Class[] {");
+                    int j = 0;
+                    for (Class<?> p : m.getParameterTypes()) {
+                        if (j > 0) {
+                            writer.print(", ");
+                        }
+                        writer.print(getClassName(p) + ".class");
+                        j++;
+                    }
+                    writer.println("});");
+                    i++;
+                }
+                writer.println("        } catch (NoSuchMethodException e) {");
+                writer.println("            throw new IllegalStateException(e);");
+                writer.println("        }");
+                writer.println("    }");
+            }
+            writer.print("    private InvocationHandler ");
             writer.print(invocationHandlerFieldName);
             writer.println(";");
+            writer.print("    private PrimitiveInvocationHandler ");
+            writer.print(primitiveHandlerFieldName);
+            writer.println(";");
 
             writer.println("    public " + className + "() {");
             writer.println("        this(new InvocationHandler() {");
@@ -393,6 +475,10 @@ public class CompilingProxyFactory extends ProxyFactory {
             writer.print("        this.");
             writer.print(invocationHandlerFieldName);
             writer.println(" = ih;");
+            writer.print("        this.");
+            writer.print(primitiveHandlerFieldName);
+            writer.println(" = ih instanceof PrimitiveInvocationHandler ?");
+            writer.println("                (PrimitiveInvocationHandler) ih : null;");
             writer.println("    }");
             writer.println("    @SuppressWarnings(\"unchecked\")");
             writer.println("    private static <T extends RuntimeException> T " +
@@ -402,6 +488,8 @@ public class CompilingProxyFactory extends ProxyFactory {
             writer.println("        }");
             writer.println("        return (T) e;");
             writer.println("    }");
+            writeInvokeTarget(writer);
+            int methodIndex = 0;
             for (Method m : methods.values()) {
                 Class<?> retClass = m.getReturnType();
                 writer.print("    ");
@@ -450,47 +538,24 @@ public class CompilingProxyFactory extends ProxyFactory {
                     writer.print("p" + i);
                 }
                 writer.println(");");
+                if (isPrimitiveMethod(m)) {
+                    writer.print("            } else if (");
+                    writer.print(primitiveHandlerFieldName);
+                    writer.println(" != null) {");
+                    writePrimitiveCall(writer, m, methodIndex);
+                }
                 writer.println("            } else {");
+                writer.print("                ");
                 if (retClass != void.class) {
                     writer.print("return (");
-                    if (retClass == boolean.class) {
-                        writer.print("Boolean");
-                    } else if (retClass == byte.class) {
-                        writer.print("Byte");
-                    } else if (retClass == char.class) {
-                        writer.print("Character");
-                    } else if (retClass == short.class) {
-                        writer.print("Short");
-                    } else if (retClass == int.class) {
-                        writer.print("Integer");
-                    } else if (retClass == long.class) {
-                        writer.print("Long");
-                    } else if (retClass == float.class) {
-                        writer.print("Float");
-                    } else if (retClass == double.class) {
-                        writer.print("Double");
-                    } else {
-                        writer.print(getClassName(retClass));
-                    }
+                    writer.print(getClassName(ReflectionUtils.getNonPrimitiveClass(retClass)));
                     writer.print(") ");
                 }
                 writer.print(invocationHandlerFieldName);
                 writer.print(".invoke(this, ");
-                writer.println(getClassName(m.getDeclaringClass()) +
-                        ".class.getDeclaredMethod(\"" + m.getName() +
-                        "\",");
-                writer.print("                new Class[] {");
-                int i = 0;
-                for (Class<?> p : m.getParameterTypes()) {
-                    if (i > 0) {
-                        writer.print(", ");
-                    }
-                    writer.print(getClassName(p) + ".class");
-                    i++;
-                }
-                writer.println("}),");
-                writer.print("                new Object[] {");
-                for (i = 0; i < m.getParameterTypes().length; i++) {
+                writer.println(methodsFieldName + "[" + methodIndex + "],");
+                writer.print("                        new Object[] {");
+                for (int i = 0; i < m.getParameterTypes().length; i++) {
                     if (i > 0) {
                         writer.print(", ");
                     }
@@ -502,11 +567,141 @@ public class CompilingProxyFactory extends ProxyFactory {
                 writer.println("            throw convertException(e);");
                 writer.println("        }");
                 writer.println("    }");
+                methodIndex++;
             }
             writer.println("}");
             writer.flush();
         }
 
+        /**
+         * Check whether calls to this method can be dispatched to a
+         * {@link PrimitiveInvocationHandler}, that is, whether the method
+         * is public, has at most two parameters, all parameters are
+         * primitive, and the return type is primitive or void. Only public
+         * methods are supported because {@link PrimitiveInvoker} calls the
+         * target object from the package of the proxy.
+         *
+         * @param m the method
+         * @return true if the method only uses primitive types
+         */
+        static boolean isPrimitiveMethod(Method m) {
+            Class<?>[] pc = m.getParameterTypes();
+            if (!Modifier.isPublic(m.getModifiers()) ||
+                    pc.length > 2 || !m.getReturnType().isPrimitive()) {
+                return false;
+            }
+            for (Class<?> p : pc) {
+                if (!p.isPrimitive()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Write the implementation of {@link PrimitiveInvoker}, which calls
+         * the primitive methods on the target object directly.
+         *
+         * @param writer the writer
+         */
+        private void writeInvokeTarget(PrintWriter writer) {
+            writer.println("    public long invokeTarget(Object target, Method method,");
+            writer.println("            long p0, long p1) throws Throwable {");
+            writer.println("        " + getClassName(extendsClass) + " t = (" +
+                    getClassName(extendsClass) + ") target;");
+            int methodIndex = 0;
+            for (Method m : methods.values()) {
+                if (isPrimitiveMethod(m)) {
+                    writer.println("        if (method == " + methodsFieldName +
+                            "[" + methodIndex + "]) {");
+                    StringBuilder buff = new StringBuilder();
+                    buff.append("t.").append(m.getName()).append('(');
+                    Class<?>[] pc = m.getParameterTypes();
+                    for (int i = 0; i < pc.length; i++) {
+                        Class<?> p = pc[i];
+                        String name = "p" + i;
+                        if (i > 0) {
+                            buff.append(", ");
+                        }
+                        if (p == boolean.class) {
+                            buff.append(name).append(" != 0L");
+                        } else if (p == float.class) {
+                            buff.append("Float.intBitsToFloat((int) ").append(name).append(')');
+                        } else if (p == double.class) {
+                            buff.append("Double.longBitsToDouble(").append(name).append(')');
+                        } else if (p == long.class) {
+                            buff.append(name);
+                        } else {
+                            buff.append('(').append(getClassName(p)).append(") ").append(name);
+                        }
+                    }
+                    buff.append(')');
+                    String call = buff.toString();
+                    Class<?> retClass = m.getReturnType();
+                    writer.print("            ");
+                    if (retClass == void.class) {
+                        writer.println(call + ";");
+                        writer.println("            return 0L;");
+                    } else if (retClass == boolean.class) {
+                        writer.println("return " + call + " ? 1L : 0L;");
+                    } else if (retClass == float.class) {
+                        writer.println("return (long) Float.floatToRawIntBits(" + call + ");");
+                    } else if (retClass == double.class) {
+                        writer.println("return Double.doubleToRawLongBits(" + call + ");");
+                    } else {
+                        writer.println("return (long) " + call + ";");
+                    }
+                    writer.println("        }");
+                }
+                methodIndex++;
+            }
+            writer.println("        throw new IllegalArgumentException(" +
+                    "\"Not a primitive method: \" + method);");
+            writer.println("    }");
+        }
+
+        private void writePrimitiveCall(PrintWriter writer, Method m, int methodIndex) {
+            Class<?> retClass = m.getReturnType();
+            StringBuilder buff = new StringBuilder();
+            buff.append(primitiveHandlerFieldName).append(".invokePrimitive(this, ");
+            buff.append(methodsFieldName).append('[').append(methodIndex).append(']');
+            Class<?>[] pc = m.getParameterTypes();
+            for (int i = 0; i < pc.length; i++) {
+                Class<?> p = pc[i];
+                String name = "p" + i;
+                buff.append(", ");
+                if (p == boolean.class) {
+                    buff.append('(').append(name).append(" ? 1L : 0L)");
+                } else if (p == float.class) {
+                    buff.append("(long) Float.floatToRawIntBits(").append(name).append(')');
+                } else if (p == double.class) {
+                    buff.append("Double.doubleToRawLongBits(").append(name).append(')');
+                } else {
+                    buff.append("(long) ").append(name);
+                }
+            }
+            buff.append(')');
+            String call = buff.toString();
+            writer.print("                ");
+            if (retClass == void.class) {
+                writer.println(call + ";");
+                return;
+            }
+            writer.print("return ");
+            if (retClass == boolean.class) {
+                writer.print(call + " != 0L");
+            } else if (retClass == float.class) {
+                writer.print("Float.intBitsToFloat((int) " + call + ")");
+            } else if (retClass == double.class) {
+                writer.print("Double.longBitsToDouble(" + call + ")");
+            } else if (retClass == long.class) {
+                writer.print(call);
+            } else {
+                writer.print("(" + getClassName(retClass) + ") " + call);
+            }
+            writer.println(";");
+        }
+
     }
 
 }
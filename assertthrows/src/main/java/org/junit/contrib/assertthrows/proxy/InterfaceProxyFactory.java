@@ -16,8 +16,14 @@
  */
 package org.junit.contrib.assertthrows.proxy;
 
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A generator for proxies that generate one or multiple interfaces.
@@ -37,9 +43,60 @@ public class InterfaceProxyFactory extends ProxyFactory {
         return INSTANCE;
     }
 
+    /**
+     * The constructors of the proxy classes, by target class. The keys are
+     * weak and the values are soft references, because the proxy class
+     * references the class loader of the target class. The map is read
+     * without locking, as it is used for each proxy that is created.
+     * Implementation note: this field might be set to null by Tomcat when
+     * unloading a web application that uses this proxy factory.
+     */
+    private ConcurrentHashMap<Object, SoftReference<Constructor<?>>> constructors =
+        new ConcurrentHashMap<Object, SoftReference<Constructor<?>>>();
+
+    /**
+     * The keys of classes that were garbage collected.
+     */
+    private final ReferenceQueue<Class<?>> staleKeys = new ReferenceQueue<Class<?>>();
+
+    public <T> T createRebindableProxy(T obj, InvocationHandler handler) {
+        return createProxy(obj, new HandlerAdapter(handler));
+    }
+
     @SuppressWarnings("unchecked")
     public <T> T createProxy(T obj, final InvocationHandler handler) {
-        Class<?> c = obj.getClass();
+        Constructor<?> constructor = getProxyConstructor(obj.getClass());
+        try {
+            return (T) constructor.newInstance(new Object[] { handler });
+        } catch (Exception e) {
+            IllegalArgumentException ia = new IllegalArgumentException(
+                    "Could not create a new instance of the class " +
+                    constructor.getDeclaringClass().getName());
+            ia.initCause(e);
+            throw ia;
+        }
+    }
+
+    /**
+     * Get the (cached) constructor of the proxy class for the given class.
+     *
+     * @param c the target class
+     * @return the constructor
+     */
+    Constructor<?> getProxyConstructor(Class<?> c) {
+        ConcurrentHashMap<Object, SoftReference<Constructor<?>>> map = constructors;
+        if (map == null) {
+            map = new ConcurrentHashMap<Object, SoftReference<Constructor<?>>>();
+            constructors = map;
+        }
+        SoftReference<Constructor<?>> ref = map.get(new LookupKey(c));
+        Constructor<?> constructor = ref == null ? null : ref.get();
+        if (constructor != null) {
+            return constructor;
+        }
+        for (Object k; (k = staleKeys.poll()) != null;) {
+            map.remove(k);
+        }
         Class<?>[] interfaces = c.getInterfaces();
         if (interfaces.length == 0) {
             throw new IllegalArgumentException(
@@ -48,7 +105,108 @@ public class InterfaceProxyFactory extends ProxyFactory {
                     ", because the class " + c.getName() +
                     " does not implement any interfaces");
         }
-        return (T) Proxy.newProxyInstance(c.getClassLoader(), interfaces, handler);
+        Class<?> proxyClass = Proxy.getProxyClass(c.getClassLoader(), interfaces);
+        try {
+            constructor = proxyClass.getConstructor(new Class<?>[] { InvocationHandler.class });
+        } catch (NoSuchMethodException e) {
+            IllegalArgumentException ia = new IllegalArgumentException(
+                    "Could not create a proxy class for " + c.getName());
+            ia.initCause(e);
+            throw ia;
+        }
+        map.put(new WeakKey(c, staleKeys), new SoftReference<Constructor<?>>(constructor));
+        return constructor;
+    }
+
+    public boolean rebindProxy(Object proxy, InvocationHandler handler) {
+        if (Proxy.isProxyClass(proxy.getClass())) {
+            InvocationHandler h = Proxy.getInvocationHandler(proxy);
+            if (h instanceof HandlerAdapter) {
+                ((HandlerAdapter) h).handler = handler;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the class of a map key.
+     *
+     * @param key the key
+     * @return the class, or null if it was garbage collected
+     */
+    static Class<?> getKeyClass(Object key) {
+        if (key instanceof WeakKey) {
+            return ((WeakKey) key).get();
+        } else if (key instanceof LookupKey) {
+            return ((LookupKey) key).c;
+        }
+        return null;
+    }
+
+    /**
+     * A map key that weakly references the class.
+     */
+    static class WeakKey extends WeakReference<Class<?>> {
+
+        private final int hashCode;
+
+        WeakKey(Class<?> c, ReferenceQueue<Class<?>> queue) {
+            super(c, queue);
+            hashCode = System.identityHashCode(c);
+        }
+
+        public int hashCode() {
+            return hashCode;
+        }
+
+        public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            }
+            Class<?> c = get();
+            return c != null && c == getKeyClass(o);
+        }
+
+    }
+
+    /**
+     * A short-lived key to look up a class, without creating a weak
+     * reference.
+     */
+    static class LookupKey {
+
+        final Class<?> c;
+
+        LookupKey(Class<?> c) {
+            this.c = c;
+        }
+
+        public int hashCode() {
+            return System.identityHashCode(c);
+        }
+
+        public boolean equals(Object o) {
+            return c == getKeyClass(o);
+        }
+
+    }
+
+    /**
+     * An invocation handler that calls the (replaceable) invocation handler.
+     */
+    static class HandlerAdapter implements InvocationHandler {
+
+        volatile InvocationHandler handler;
+
+        HandlerAdapter(InvocationHandler handler) {
+            this.handler = handler;
+        }
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            return handler.invoke(proxy, method, args);
+        }
+
     }
 
 }
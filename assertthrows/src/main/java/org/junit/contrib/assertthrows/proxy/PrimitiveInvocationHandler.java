@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.assertthrows.proxy;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+
+/**
+ * An invocation handler with additional entry points for methods that only
+ * use primitive types. Class proxies generated by the
+ * {@link CompilingProxyFactory} call these methods directly (without boxing
+ * the arguments or the return value) if the method is public, has at most
+ * two parameters, all parameters are primitive, and the return type is
+ * primitive or void. All other methods are dispatched to
+ * {@link #invoke(Object, Method, Object[])}. Such proxies also implement
+ * {@link PrimitiveInvoker}, which the handler can use to call the method on
+ * the target object without boxing.
+ * <p>
+ * Primitive values are passed as raw bits in a long: boolean values are 1 or
+ * 0, integral types and char are widened to long, float values are converted
+ * using <code>Float.floatToRawIntBits</code> and double values using
+ * <code>Double.doubleToRawLongBits</code>. The return value uses the same
+ * encoding (the return value is ignored for void methods). Use
+ * {@link ReflectionUtils#toRawBits(Object)} and
+ * {@link ReflectionUtils#fromRawBits(Class, long)} to convert between the
+ * raw bits and the boxed values.
+ *
+ * @author Thomas Mueller
+ */
+public interface PrimitiveInvocationHandler extends InvocationHandler {
+
+    /**
+     * Process a method call without parameters.
+     *
+     * @param proxy the proxy
+     * @param method the method
+     * @return the raw bits of the return value
+     * @throws Throwable the exception thrown by the method
+     */
+    long invokePrimitive(Object proxy, Method method) throws Throwable;
+
+    /**
+     * Process a method call with one primitive parameter.
+     *
+     * @param proxy the proxy
+     * @param method the method
+     * @param p0 the raw bits of the first parameter
+     * @return the raw bits of the return value
+     * @throws Throwable the exception thrown by the method
+     */
+    long invokePrimitive(Object proxy, Method method, long p0) throws Throwable;
+
+    /**
+     * Process a method call with two primitive parameters.
+     *
+     * @param proxy the proxy
+     * @param method the method
+     * @param p0 the raw bits of the first parameter
+     * @param p1 the raw bits of the second parameter
+     * @return the raw bits of the return value
+     * @throws Throwable the exception thrown by the method
+     */
+    long invokePrimitive(Object proxy, Method method, long p0, long p1) throws Throwable;
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.assertthrows.proxy;
+
+import java.lang.reflect.Method;
+
+/**
+ * Implemented by the class proxies generated by the
+ * {@link CompilingProxyFactory}. It allows a
+ * {@link PrimitiveInvocationHandler} to call the proxied method on the
+ * target object directly, without reflection and without boxing the
+ * arguments or the return value. Values are passed as raw bits, as
+ * documented in {@link PrimitiveInvocationHandler}.
+ *
+ * @author Thomas Mueller
+ */
+public interface PrimitiveInvoker {
+
+    /**
+     * Call a method on the target object. Only methods that are dispatched to
+     * {@link PrimitiveInvocationHandler#invokePrimitive} by this proxy are
+     * supported. Unused parameters should be 0.
+     *
+     * @param target the target object (an instance of the proxied class)
+     * @param method the method, as passed to the invocation handler
+     * @param p0 the raw bits of the first parameter
+     * @param p1 the raw bits of the second parameter
+     * @return the raw bits of the return value (0 for void methods)
+     * @throws Throwable the exception thrown by the method
+     * @throws IllegalArgumentException if the method is not supported
+     */
+    long invokeTarget(Object target, Method method, long p0, long p1) throws Throwable;
+
+}
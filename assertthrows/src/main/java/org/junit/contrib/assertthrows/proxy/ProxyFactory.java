@@ -113,4 +113,36 @@ public abstract class ProxyFactory {
      */
     public abstract <T> T createProxy(T obj, InvocationHandler handler);
 
+    /**
+     * Create a proxy object whose invocation handler can be replaced later
+     * using {@link #rebindProxy(Object, InvocationHandler)}. Proxies created
+     * using {@link #createProxy(Object, InvocationHandler)} may not support
+     * this, because supporting it can make each method call slower.
+     *
+     * @param <T> the type
+     * @param obj the object
+     * @param handler the invocation handler
+     * @return the proxy
+     * @throws IllegalArgumentException a proxy could not be generated for the given object
+     */
+    public <T> T createRebindableProxy(T obj, InvocationHandler handler) {
+        return createProxy(obj, handler);
+    }
+
+    /**
+     * Replace the invocation handler of a proxy that was created by this
+     * factory. This allows to re-use a proxy object instead of creating a new
+     * one for the same object. Not all factories support this, and some only
+     * support it for proxies created using
+     * {@link #createRebindableProxy(Object, InvocationHandler)}.
+     *
+     * @param proxy the proxy
+     * @param handler the new invocation handler
+     * @return true if the handler was replaced, false if this is not supported
+     *         for the given proxy
+     */
+    public boolean rebindProxy(Object proxy, InvocationHandler handler) {
+        return false;
+    }
+
 }
@@ -26,6 +26,20 @@ import java.lang.reflect.Modifier;
  */
 public class ReflectionUtils {
 
+    /**
+     * The boxed default values. Float and Double values are not cached by
+     * the valueOf methods, so they are kept here to avoid allocating a new
+     * object each time a default value is returned.
+     */
+    private static final Boolean DEFAULT_BOOLEAN = Boolean.FALSE;
+    private static final Byte DEFAULT_BYTE = Byte.valueOf((byte) 0);
+    private static final Character DEFAULT_CHAR = Character.valueOf((char) 0);
+    private static final Short DEFAULT_SHORT = Short.valueOf((short) 0);
+    private static final Integer DEFAULT_INT = Integer.valueOf(0);
+    private static final Long DEFAULT_LONG = Long.valueOf(0L);
+    private static final Float DEFAULT_FLOAT = Float.valueOf(0F);
+    private static final Double DEFAULT_DOUBLE = Double.valueOf(0D);
+
     /**
      * Get the default value for the given class. For non-primitive classes,
      * this is null, and for primitive classes this is the zero or false.
@@ -38,21 +52,75 @@ public class ReflectionUtils {
             return null;
         }
         if (c == boolean.class) {
-            return false;
+            return DEFAULT_BOOLEAN;
         } else if (c == byte.class) {
-            return (byte) 0;
+            return DEFAULT_BYTE;
         } else if (c == char.class) {
-            return (char) 0;
+            return DEFAULT_CHAR;
         } else if (c == short.class) {
-            return (short) 0;
+            return DEFAULT_SHORT;
         } else if (c == int.class) {
+            return DEFAULT_INT;
+        } else if (c == long.class) {
+            return DEFAULT_LONG;
+        } else if (c == float.class) {
+            return DEFAULT_FLOAT;
+        } else if (c == double.class) {
+            return DEFAULT_DOUBLE;
+        }
+        return null;
+    }
+
+    /**
+     * Convert a boxed primitive value to the raw bits as used by the
+     * {@link PrimitiveInvocationHandler}.
+     *
+     * @param value the boxed value (Boolean, Character, or a Number), or null
+     * @return the raw bits (0 for null)
+     */
+    public static long toRawBits(Object value) {
+        if (value == null) {
             return 0;
+        } else if (value instanceof Boolean) {
+            return ((Boolean) value).booleanValue() ? 1 : 0;
+        } else if (value instanceof Character) {
+            return ((Character) value).charValue();
+        } else if (value instanceof Float) {
+            return Float.floatToRawIntBits(((Float) value).floatValue());
+        } else if (value instanceof Double) {
+            return Double.doubleToRawLongBits(((Double) value).doubleValue());
+        }
+        return ((Number) value).longValue();
+    }
+
+    /**
+     * Convert the raw bits as used by the {@link PrimitiveInvocationHandler}
+     * to a boxed value.
+     *
+     * @param c the primitive class
+     * @param bits the raw bits
+     * @return the boxed value, or null for void and non-primitive classes
+     */
+    public static Object fromRawBits(Class<?> c, long bits) {
+        if (!c.isPrimitive()) {
+            return null;
+        }
+        if (c == boolean.class) {
+            return Boolean.valueOf(bits != 0);
+        } else if (c == byte.class) {
+            return Byte.valueOf((byte) bits);
+        } else if (c == char.class) {
+            return Character.valueOf((char) bits);
+        } else if (c == short.class) {
+            return Short.valueOf((short) bits);
+        } else if (c == int.class) {
+            return Integer.valueOf((int) bits);
         } else if (c == long.class) {
-            return 0L;
+            return Long.valueOf(bits);
         } else if (c == float.class) {
-            return 0F;
+            return Float.valueOf(Float.intBitsToFloat((int) bits));
         } else if (c == double.class) {
-            return 0D;
+            return Double.valueOf(Double.longBitsToDouble(bits));
         }
         return null;
     }
@@ -20,6 +20,8 @@ import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import org.junit.contrib.assertthrows.proxy.PrimitiveInvocationHandler;
+import org.junit.contrib.assertthrows.proxy.PrimitiveInvoker;
 import org.junit.contrib.assertthrows.proxy.ProxyFactory;
 import org.junit.contrib.assertthrows.proxy.ReflectionUtils;
 
@@ -30,10 +32,7 @@ import org.junit.contrib.assertthrows.proxy.ReflectionUtils;
  */
 public class ExceptionVerifier implements ResultVerifier {
 
-    private static final ThreadLocal<Throwable> LAST_THROWN =
-        new ThreadLocal<Throwable>();
-    private static final ThreadLocal<WeakReference<VerifyingInvocationHandler>> LAST_HANDLER =
-        new ThreadLocal<WeakReference<VerifyingInvocationHandler>>();
+    private static volatile boolean reuseProxies;
 
     private final Class<? extends Exception> expectedExceptionClass;
     private final Exception expectedException;
@@ -95,7 +94,38 @@ public class ExceptionVerifier implements ResultVerifier {
         VerifyingInvocationHandler handler = new VerifyingInvocationHandler(verifier, obj);
         setLastProxyHandler(handler);
         ProxyFactory factory = ProxyFactory.getFactory(obj.getClass());
-        return factory.createProxy(obj, handler);
+        if (!reuseProxies) {
+            return factory.createProxy(obj, handler);
+        }
+        VerificationScope s = VerificationScope.current(true);
+        if (s.reusableTarget == obj && factory.rebindProxy(s.reusableProxy, handler)) {
+            @SuppressWarnings("unchecked")
+            T proxy = (T) s.reusableProxy;
+            return proxy;
+        }
+        T proxy = factory.createRebindableProxy(obj, handler);
+        s.reusableTarget = obj;
+        s.reusableProxy = proxy;
+        return proxy;
+    }
+
+    /**
+     * Enable or disable re-using proxies. If enabled, the last proxy of the
+     * current thread (within the current {@link VerificationScope}) is
+     * re-used when creating a proxy for the same object again, by replacing
+     * the invocation handler of the proxy. That way, repeated assertions on
+     * the same object don't need to create a new proxy each time.
+     * <p>
+     * This changes the behavior of proxies that are kept by the test: a
+     * proxy returned by an earlier call then verifies using the current
+     * verifier. Also, the re-usable proxy (and the object) is referenced by
+     * the thread until the scope is closed, or until a proxy for another
+     * object is created. By default, proxies are not re-used.
+     *
+     * @param reuseProxies whether to re-use proxies
+     */
+    public static void setReuseProxies(boolean reuseProxies) {
+        ExceptionVerifier.reuseProxies = reuseProxies;
     }
 
     /**
@@ -104,22 +134,55 @@ public class ExceptionVerifier implements ResultVerifier {
      * Also, wrong usage is detected when the proxy is garbage collected.
      * However if may make sense to call this method explicitly in a tearDown
      * method or JUnit 4 Rule. This method is thread-safe, as it uses a
-     * ThreadLocal internally.
+     * ThreadLocal internally (see also {@link VerificationScope}).
      */
     public static void verifyLastProxyWasUsed() {
-        WeakReference<VerifyingInvocationHandler> w = LAST_HANDLER.get();
-        if (w != null) {
-            VerifyingInvocationHandler last = w.get();
-            if (last != null) {
-                last.verifyCalled();
-            }
+        VerificationScope s = VerificationScope.current(false);
+        if (s == null || s.lastHandler == null) {
+            return;
+        }
+        WeakReference<InvocationHandler> w = s.lastHandler;
+        // once verified, the handler is no longer needed
+        s.lastHandler = null;
+        s.releaseIfEmpty();
+        VerifyingInvocationHandler last = (VerifyingInvocationHandler) w.get();
+        if (last != null) {
+            last.verifyCalled();
+        }
+    }
+
+    /**
+     * Forget the last proxy of the current thread, without verifying it was
+     * used. This is needed when a thread is re-used for independent tests,
+     * and a test failed before using the proxy.
+     */
+    public static void clearLastProxy() {
+        VerificationScope s = VerificationScope.current(false);
+        if (s != null) {
+            s.lastHandler = null;
+            s.releaseIfEmpty();
         }
     }
 
     private static void setLastProxyHandler(VerifyingInvocationHandler handler) {
-        WeakReference<VerifyingInvocationHandler> w =
-            new WeakReference<VerifyingInvocationHandler>(handler);
-        LAST_HANDLER.set(w);
+        VerificationScope.current(true).lastHandler =
+            new WeakReference<InvocationHandler>(handler);
+    }
+
+    /**
+     * Check whether the exception is accepted without further checks, that
+     * is, whether {@link #verify} would return false without looking at the
+     * method, the arguments, or the exception message.
+     *
+     * @param t the exception or error, or null
+     * @return true if the exception is expected
+     */
+    boolean isExpected(Throwable t) {
+        if (t == null || expectedException != null) {
+            return false;
+        }
+        return expectedExceptionClass == null ||
+                expectedExceptionClass.isAssignableFrom(t.getClass());
     }
 
     public boolean verify(Object returnValue, Throwable t, Method m, Object... args) {
@@ -214,28 +277,39 @@ public class ExceptionVerifier implements ResultVerifier {
     }
 
     /**
-     * Set the last thrown exception or error for the current thread.
+     * Set the last thrown exception or error for the current thread (within
+     * the current {@link VerificationScope}, if one is open).
      *
-     * @param t the exception or error
+     * @param t the exception or error, or null to clear it
      */
     public static void setLastThrown(Throwable t) {
-        LAST_THROWN.set(t);
+        VerificationScope s = VerificationScope.current(t != null);
+        if (s != null) {
+            s.lastThrown = t;
+            if (t == null) {
+                s.releaseIfEmpty();
+            }
+        }
     }
 
     /**
-     * Get the last thrown exception (if any) or error for the current thread.
+     * Get the last thrown exception (if any) or error for the current thread
+     * (within the current {@link VerificationScope}, if one is open).
      *
      * @return the exception or error, or null
      */
     public static Throwable getLastThrown() {
-        return LAST_THROWN.get();
+        VerificationScope s = VerificationScope.current(false);
+        return s == null ? null : s.lastThrown;
     }
 
     /**
      * An invocation handler that calls a result verifier after each method
-     * call.
+     * call. Methods that only use primitive types are called without boxing
+     * if the proxy supports it, and if the exception is expected, the
+     * verifier is called without boxing as well.
      */
-    private static class VerifyingInvocationHandler implements InvocationHandler {
+    private static class VerifyingInvocationHandler implements PrimitiveInvocationHandler {
 
         private final Object obj;
         private final ResultVerifier verifier;
@@ -285,6 +359,51 @@ public class ExceptionVerifier implements ResultVerifier {
                 }
             }
         }
+
+        public long invokePrimitive(Object proxy, Method method) throws Throwable {
+            return invokePrimitive(proxy, method, 0, 0);
+        }
+
+        public long invokePrimitive(Object proxy, Method method, long p0) throws Throwable {
+            return invokePrimitive(proxy, method, p0, 0);
+        }
+
+        public long invokePrimitive(Object proxy, Method method, long p0, long p1) throws Throwable {
+            if (!(proxy instanceof PrimitiveInvoker) || "finalize".equals(method.getName())) {
+                return ReflectionUtils.toRawBits(invoke(proxy, method, toArgs(method, p0, p1)));
+            }
+            PrimitiveInvoker invoker = (PrimitiveInvoker) proxy;
+            called = null;
+            while (true) {
+                long ret = 0;
+                Throwable thrown = null;
+                try {
+                    ret = invoker.invokeTarget(obj, method, p0, p1);
+                } catch (Throwable t) {
+                    thrown = t;
+                }
+                // subclasses may override verify, so only take the shortcut
+                // for plain exception verifiers
+                if (verifier.getClass() == ExceptionVerifier.class &&
+                        ((ExceptionVerifier) verifier).isExpected(thrown)) {
+                    // the raw bits of the default value of all primitive types
+                    return 0;
+                }
+                Object r = thrown == null ? ReflectionUtils.fromRawBits(method.getReturnType(), ret) : null;
+                if (!verifier.verify(r, thrown, method, toArgs(method, p0, p1))) {
+                    return 0;
+                }
+            }
+        }
+
+        private static Object[] toArgs(Method method, long p0, long p1) {
+            Class<?>[] pc = method.getParameterTypes();
+            Object[] args = new Object[pc.length];
+            for (int i = 0; i < pc.length; i++) {
+                args[i] = ReflectionUtils.fromRawBits(pc[i], i == 0 ? p0 : p1);
+            }
+            return args;
+        }
     }
 
 }
@@ -0,0 +1,359 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.assertthrows.verify;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A result verifier for methods that return a {@link Future}. The exception
+ * is not expected to be thrown by the method itself, but the returned future
+ * is expected to complete exceptionally within the given time. The
+ * verification is done asynchronously: the method call returns immediately,
+ * and {@link #await()} waits until all futures are verified.
+ * <p>
+ * No thread is blocked per future: if the returned object is a
+ * <code>java.util.concurrent.CompletionStage</code> (Java 8 and newer), a
+ * completion callback is registered. The same is done for futures with an
+ * <code>addListener(Runnable, Executor)</code> method (such as the
+ * <code>ListenableFuture</code> of Guava). Other futures are polled by a
+ * single shared daemon thread, which also handles the timeouts. The poll
+ * interval starts small and is doubled after each poll (up to a limit), so
+ * that many long-running futures don't keep the thread busy.
+ * <p>
+ * If the method does not return a future, or if it throws an exception
+ * itself, the result is passed to the wrapped verifier directly.
+ *
+ * @author Thomas Mueller
+ */
+public class FutureVerifier implements ResultVerifier, AsyncVerifier {
+
+    private static final long MIN_POLL_MICROS = 100;
+    private static final long MAX_POLL_MICROS = 20000;
+
+    /**
+     * Runs listeners in the thread that completes the future.
+     */
+    private static final Executor DIRECT_EXECUTOR = new Executor() {
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private static final Class<?> COMPLETION_STAGE;
+    private static final Class<?> BI_CONSUMER;
+    private static final Method WHEN_COMPLETE;
+
+    private static ScheduledExecutorService scheduler;
+
+    static {
+        Class<?> stage = null, consumer = null;
+        Method whenComplete = null;
+        try {
+            stage = Class.forName("java.util.concurrent.CompletionStage");
+            consumer = Class.forName("java.util.function.BiConsumer");
+            whenComplete = stage.getMethod("whenComplete", consumer);
+        } catch (Exception e) {
+            // Java 7 or older: poll all futures
+            stage = null;
+        }
+        COMPLETION_STAGE = stage;
+        BI_CONSUMER = consumer;
+        WHEN_COMPLETE = whenComplete;
+    }
+
+    private final ResultVerifier verifier;
+    private final long timeoutNanos;
+    private final List<Pending> pending = new ArrayList<Pending>();
+
+    /**
+     * Create a new verifier.
+     *
+     * @param verifier the verifier that is called when the future completed
+     *            (usually an {@link ExceptionVerifier})
+     * @param timeout the maximum time to wait for the future to complete
+     * @param unit the time unit of the timeout
+     */
+    public FutureVerifier(ResultVerifier verifier, long timeout, TimeUnit unit) {
+        if (verifier == null) {
+            throw new NullPointerException("The passed verifier is null");
+        }
+        this.verifier = verifier;
+        this.timeoutNanos = unit.toNanos(timeout);
+    }
+
+    public boolean verify(Object returnValue, Throwable t, Method m, Object... args) {
+        if (t != null || !(returnValue instanceof Future<?>)) {
+            return verifier.verify(returnValue, t, m, args);
+        }
+        Pending p = new Pending(m, args);
+        synchronized (pending) {
+            pending.add(p);
+        }
+        p.start((Future<?>) returnValue);
+        return false;
+    }
+
+    /**
+     * Wait until all futures returned so far are verified, and throw the
+     * first verification error if there was one. The last exception the
+     * futures completed with is available using
+     * {@link ExceptionVerifier#getLastThrown()} afterwards.
+     *
+     * @throws AssertionError if the verification failed for any future
+     * @throws InterruptedException if the current thread was interrupted
+     */
+    public void await() throws InterruptedException {
+        List<AssertionError> failures = awaitFailures();
+        if (!failures.isEmpty()) {
+            throw failures.get(0);
+        }
+    }
+
+    private List<AssertionError> awaitFailures() throws InterruptedException {
+        List<Pending> list;
+        synchronized (pending) {
+            list = new ArrayList<Pending>(pending);
+        }
+        List<AssertionError> failures = new ArrayList<AssertionError>();
+        Throwable lastThrown = null;
+        for (Pending p : list) {
+            // the timeout task completes the latch at the latest
+            p.done.await();
+            if (p.failure != null) {
+                failures.add(p.failure);
+            }
+            lastThrown = p.thrown;
+        }
+        if (!list.isEmpty()) {
+            ExceptionVerifier.setLastThrown(lastThrown);
+        }
+        return failures;
+    }
+
+    /**
+     * Get the shared scheduler that is used to poll futures and to handle
+     * timeouts. It uses a single daemon thread.
+     *
+     * @return the scheduler
+     */
+    static synchronized ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            ScheduledThreadPoolExecutor s = new ScheduledThreadPoolExecutor(1,
+                    new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "assertThrows future verifier");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            scheduler = s;
+        }
+        return scheduler;
+    }
+
+    /**
+     * Get the exception a future completed with.
+     *
+     * @param t the exception or error passed to the completion callback
+     * @return the exception thrown by the task
+     */
+    static Throwable unwrap(Throwable t) {
+        while (t != null && t.getCause() != null &&
+                (t instanceof ExecutionException ||
+                "java.util.concurrent.CompletionException".equals(t.getClass().getName()))) {
+            t = t.getCause();
+        }
+        return t;
+    }
+
+    /**
+     * The verification of one returned future.
+     */
+    private class Pending implements Runnable, InvocationHandler {
+
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile AssertionError failure;
+        volatile Throwable thrown;
+
+        private final Method method;
+        private final Object[] args;
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private Future<?> future;
+        private ScheduledFuture<?> poll;
+        private ScheduledFuture<?> timeout;
+        private long pollMicros = MIN_POLL_MICROS;
+
+        Pending(Method method, Object[] args) {
+            this.method = method;
+            this.args = args;
+        }
+
+        void start(Future<?> f) {
+            this.future = f;
+            ScheduledExecutorService s = getScheduler();
+            synchronized (this) {
+                timeout = s.schedule(new Runnable() {
+                    public void run() {
+                        timeout();
+                    }
+                }, timeoutNanos, TimeUnit.NANOSECONDS);
+                if (COMPLETION_STAGE != null && COMPLETION_STAGE.isInstance(f)) {
+                    Object callback = Proxy.newProxyInstance(
+                            BI_CONSUMER.getClassLoader(), new Class<?>[] { BI_CONSUMER }, this);
+                    try {
+                        WHEN_COMPLETE.invoke(f, callback);
+                        return;
+                    } catch (Exception e) {
+                        // poll instead
+                    }
+                }
+                if (addListener(f)) {
+                    return;
+                }
+                poll = s.schedule(this, 0, TimeUnit.MICROSECONDS);
+            }
+        }
+
+        /**
+         * Register this as the listener of a ListenableFuture-style future.
+         *
+         * @param f the future
+         * @return true if the listener was registered
+         */
+        private boolean addListener(Future<?> f) {
+            try {
+                Method m = f.getClass().getMethod("addListener", Runnable.class, Executor.class);
+                m.setAccessible(true);
+                m.invoke(f, this, DIRECT_EXECUTOR);
+                return true;
+            } catch (Exception e) {
+                return false;
+            }
+        }
+
+        /**
+         * The completion callback (BiConsumer.accept).
+         */
+        public Object invoke(Object proxy, Method m, Object[] a) {
+            if ("accept".equals(m.getName()) && a != null && a.length == 2) {
+                complete(a[0], unwrap((Throwable) a[1]));
+                return null;
+            }
+            // equals, hashCode, toString
+            if ("equals".equals(m.getName())) {
+                return proxy == a[0];
+            } else if ("hashCode".equals(m.getName())) {
+                return System.identityHashCode(proxy);
+            }
+            return "FutureVerifier callback for " + method;
+        }
+
+        /**
+         * Poll the future (also used as the listener of the future).
+         */
+        public void run() {
+            if (!future.isDone()) {
+                schedulePoll();
+                return;
+            }
+            Object value = null;
+            Throwable t = null;
+            try {
+                value = future.get();
+            } catch (ExecutionException e) {
+                t = unwrap(e);
+            } catch (CancellationException e) {
+                t = e;
+            } catch (Throwable e) {
+                t = e;
+            }
+            complete(value, t);
+        }
+
+        void timeout() {
+            if (!completed.compareAndSet(false, true)) {
+                return;
+            }
+            cancelTasks();
+            failure = new AssertionError(
+                    "Expected the future returned by the method " +
+                    (method == null ? "" : method.getName() + " ") +
+                    "to complete exceptionally within " +
+                    TimeUnit.NANOSECONDS.toMillis(timeoutNanos) +
+                    " ms, but it did not complete");
+            done.countDown();
+        }
+
+        void complete(Object value, Throwable t) {
+            if (!completed.compareAndSet(false, true)) {
+                return;
+            }
+            cancelTasks();
+            thrown = t;
+            try {
+                verifier.verify(value, t, method, args);
+            } catch (AssertionError e) {
+                failure = e;
+            } catch (RuntimeException e) {
+                AssertionError ae = new AssertionError("Verification failed: " + e);
+                ae.initCause(e);
+                failure = ae;
+            } finally {
+                done.countDown();
+            }
+        }
+
+        /**
+         * Poll again, after twice the delay of the last poll (up to the
+         * limit).
+         */
+        private synchronized void schedulePoll() {
+            if (completed.get() || poll == null) {
+                // completed, or not polling
+                return;
+            }
+            poll = getScheduler().schedule(this, pollMicros, TimeUnit.MICROSECONDS);
+            pollMicros = Math.min(pollMicros * 2, MAX_POLL_MICROS);
+        }
+
+        private synchronized void cancelTasks() {
+            if (poll != null) {
+                poll.cancel(false);
+            }
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+        }
+
+    }
+
+}
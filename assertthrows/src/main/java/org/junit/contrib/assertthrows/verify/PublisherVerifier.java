@@ -0,0 +1,382 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.assertthrows.verify;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Verifies that a publisher signals the expected exception using
+ * <code>onError</code>. This works with
+ * <code>java.util.concurrent.Flow.Publisher</code> (Java 9 and newer) as well
+ * as with <code>org.reactivestreams.Publisher</code>, and any other publisher
+ * that follows the same protocol: the publisher has a
+ * <code>subscribe(Subscriber)</code> method, the subscriber interface has the
+ * methods <code>onSubscribe</code>, <code>onNext</code>, <code>onError</code>,
+ * and <code>onComplete</code>, and the subscription has the methods
+ * <code>request(long)</code> and <code>cancel()</code>.
+ * <p>
+ * The demand is bounded: items are requested in batches, and items are
+ * counted but not kept, so that publishers with millions of items can be
+ * verified. The verification fails if the publisher completes normally, if
+ * the error is not signalled within the given time, or, if the expected
+ * number of items is set, if the error is not signalled after exactly this
+ * number of items.
+ *
+ * @author Thomas Mueller
+ */
+public class PublisherVerifier implements AsyncVerifier {
+
+    private static final int DEFAULT_BATCH_SIZE = 256;
+
+    private final ResultVerifier verifier;
+    private final long expectedItems;
+    private final long timeoutNanos;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    private final CountDownLatch done = new CountDownLatch(1);
+    private final AtomicBoolean completed = new AtomicBoolean();
+    private volatile AssertionError failure;
+    private volatile Throwable thrown;
+    private final AtomicLong itemCount = new AtomicLong();
+    private ScheduledFuture<?> timeout;
+    private volatile Object subscription;
+    private volatile Method request, cancel;
+
+    /**
+     * The number of items requested but not received yet.
+     */
+    private final AtomicLong outstanding = new AtomicLong();
+
+    /**
+     * The number of pending calls to requestMore. Only the thread that
+     * increments it from 0 requests items, so that calls to request(n) are
+     * serialized (rule 2.7) and not recursive.
+     */
+    private final AtomicInteger wip = new AtomicInteger();
+
+    /**
+     * Create a new verifier.
+     *
+     * @param verifier the verifier for the signalled exception (usually an
+     *            {@link ExceptionVerifier})
+     * @param expectedItems the number of items that are expected before the
+     *            error is signalled, or -1 to accept any number of items
+     * @param timeout the maximum time to wait for the error
+     * @param unit the time unit of the timeout
+     */
+    public PublisherVerifier(ResultVerifier verifier, long expectedItems,
+            long timeout, TimeUnit unit) {
+        if (verifier == null) {
+            throw new NullPointerException("The passed verifier is null");
+        }
+        this.verifier = verifier;
+        this.expectedItems = expectedItems;
+        this.timeoutNanos = unit.toNanos(timeout);
+    }
+
+    /**
+     * Set the maximum number of items that are requested at once. The default
+     * is 256.
+     *
+     * @param batchSize the batch size (at least 1)
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize: " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Get the number of items received so far.
+     *
+     * @return the number of items
+     */
+    public long getItemCount() {
+        return itemCount.get();
+    }
+
+    /**
+     * Subscribe to the publisher. This method returns immediately; use
+     * {@link #await()} to wait for the result. A verifier can only be used
+     * for one publisher.
+     *
+     * @param publisher the publisher
+     * @throws IllegalArgumentException if the object is not a publisher
+     */
+    public void subscribe(Object publisher) {
+        if (publisher == null) {
+            throw new NullPointerException("The passed publisher is null");
+        }
+        Method subscribe = getSubscribeMethod(publisher.getClass());
+        if (subscribe == null) {
+            throw new IllegalArgumentException(
+                    "The class " + publisher.getClass().getName() +
+                    " does not have a subscribe(Subscriber) method");
+        }
+        Class<?> subscriberInterface = subscribe.getParameterTypes()[0];
+        Object subscriber = Proxy.newProxyInstance(
+                subscriberInterface.getClassLoader(),
+                new Class<?>[] { subscriberInterface },
+                new SubscriberHandler());
+        synchronized (this) {
+            timeout = FutureVerifier.getScheduler().schedule(new Runnable() {
+                public void run() {
+                    fail("Expected the publisher to signal an error within " +
+                            TimeUnit.NANOSECONDS.toMillis(timeoutNanos) +
+                            " ms, but got " + itemCount.get() + " items and no signal", null);
+                }
+            }, timeoutNanos, TimeUnit.NANOSECONDS);
+        }
+        try {
+            try {
+                subscribe.setAccessible(true);
+            } catch (RuntimeException e) {
+                // not allowed, but it may still work
+            }
+            subscribe.invoke(publisher, subscriber);
+        } catch (InvocationTargetException e) {
+            // the publisher did throw instead of signalling
+            signalled(e.getTargetException());
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException(
+                    "Could not subscribe to " + publisher.getClass().getName(), e);
+        }
+    }
+
+    public void await() throws InterruptedException {
+        done.await();
+        ExceptionVerifier.setLastThrown(thrown);
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private static Method getSubscribeMethod(Class<?> c) {
+        for (Method m : c.getMethods()) {
+            if ("subscribe".equals(m.getName()) &&
+                    m.getParameterTypes().length == 1 &&
+                    isSubscriberInterface(m.getParameterTypes()[0])) {
+                return m;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isSubscriberInterface(Class<?> c) {
+        if (!c.isInterface()) {
+            return false;
+        }
+        int found = 0;
+        for (Method m : c.getMethods()) {
+            String n = m.getName();
+            if ("onSubscribe".equals(n) || "onNext".equals(n) ||
+                    "onError".equals(n) || "onComplete".equals(n)) {
+                found++;
+            }
+        }
+        return found == 4;
+    }
+
+    private void onSubscribe(Object s) {
+        synchronized (this) {
+            if (subscription != null) {
+                // rule 2.5: cancel the second subscription
+                cancel(s);
+                return;
+            }
+            subscription = s;
+        }
+        Class<?> c = getSubscriptionInterface(s.getClass());
+        try {
+            request = c.getMethod("request", long.class);
+            cancel = c.getMethod("cancel");
+        } catch (NoSuchMethodException e) {
+            fail("The subscription " + s.getClass().getName() +
+                    " does not support request(long) and cancel()", null);
+            return;
+        }
+        requestMore();
+    }
+
+    private static Class<?> getSubscriptionInterface(Class<?> c) {
+        for (Class<?> i : c.getInterfaces()) {
+            try {
+                i.getMethod("request", long.class);
+                return i;
+            } catch (NoSuchMethodException e) {
+                // try the next one
+            }
+        }
+        return c;
+    }
+
+    private void onNext() {
+        long count = itemCount.incrementAndGet();
+        if (expectedItems >= 0 && count > expectedItems) {
+            fail("Expected the publisher to signal an error after " +
+                    expectedItems + " items, but got more items", null);
+            return;
+        }
+        if (outstanding.decrementAndGet() <= batchSize / 2) {
+            requestMore();
+        }
+    }
+
+    private void requestMore() {
+        if (wip.getAndIncrement() != 0) {
+            // another thread is requesting, or a synchronous publisher called
+            // onNext from within request: the loop below requests again
+            return;
+        }
+        int missed = 1;
+        do {
+            if (!completed.get()) {
+                long n = batchSize - outstanding.get();
+                if (expectedItems >= 0) {
+                    // request one more than expected, to detect too many items
+                    // (saturated, so that Long.MAX_VALUE doesn't overflow)
+                    long remaining = expectedItems - itemCount.get() - outstanding.get();
+                    if (remaining < Long.MAX_VALUE) {
+                        remaining++;
+                    }
+                    n = Math.min(n, remaining);
+                }
+                if (n > 0) {
+                    outstanding.addAndGet(n);
+                    try {
+                        request.invoke(subscription, n);
+                    } catch (Exception e) {
+                        fail("Could not request items: " + e, e);
+                    }
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void signalled(Throwable t) {
+        if (!completed.compareAndSet(false, true)) {
+            return;
+        }
+        cancelTimeout();
+        thrown = t;
+        try {
+            long count = itemCount.get();
+            if (t != null && expectedItems >= 0 && count != expectedItems) {
+                AssertionError ae = new AssertionError(
+                        "Expected the publisher to signal an error after " +
+                        expectedItems + " items, but got the error after " +
+                        count + " items");
+                ae.initCause(t);
+                throw ae;
+            }
+            verifier.verify(null, t, null);
+        } catch (AssertionError e) {
+            if (t == null) {
+                AssertionError ae = new AssertionError(
+                        "The publisher completed after " + itemCount.get() +
+                        " items without an error signal: " + e.getMessage());
+                ae.initCause(e);
+                e = ae;
+            }
+            failure = e;
+        } finally {
+            done.countDown();
+        }
+    }
+
+    private void fail(String message, Throwable cause) {
+        if (!completed.compareAndSet(false, true)) {
+            return;
+        }
+        cancelTimeout();
+        AssertionError ae = new AssertionError(message);
+        if (cause != null) {
+            ae.initCause(cause);
+        }
+        failure = ae;
+        Object s;
+        synchronized (this) {
+            s = subscription;
+        }
+        if (s != null) {
+            cancel(s);
+        }
+        done.countDown();
+    }
+
+    private void cancel(Object s) {
+        try {
+            Method m = cancel;
+            if (m == null) {
+                m = getSubscriptionInterface(s.getClass()).getMethod("cancel");
+            }
+            m.invoke(s);
+        } catch (Exception e) {
+            // ignore
+        }
+    }
+
+    private synchronized void cancelTimeout() {
+        if (timeout != null) {
+            timeout.cancel(false);
+        }
+    }
+
+    /**
+     * The subscriber (a proxy for the subscriber interface of the publisher).
+     */
+    private class SubscriberHandler implements InvocationHandler {
+
+        public Object invoke(Object proxy, Method m, Object[] args) {
+            String name = m.getName();
+            try {
+                if ("onNext".equals(name)) {
+                    onNext();
+                } else if ("onError".equals(name)) {
+                    signalled((Throwable) args[0]);
+                } else if ("onComplete".equals(name)) {
+                    signalled(null);
+                } else if ("onSubscribe".equals(name)) {
+                    onSubscribe(args[0]);
+                } else if ("equals".equals(name)) {
+                    return proxy == args[0];
+                } else if ("hashCode".equals(name)) {
+                    return System.identityHashCode(proxy);
+                } else if ("toString".equals(name)) {
+                    return "PublisherVerifier subscriber";
+                }
+            } catch (RuntimeException e) {
+                // signal methods must not throw (rule 2.13)
+                fail("Verification failed: " + e, e);
+            }
+            return null;
+        }
+
+    }
+
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.assertthrows.verify;
+
+import java.io.Closeable;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationHandler;
+
+/**
+ * A scope for the per-thread verification state: the last thrown exception,
+ * and the last verifying proxy. Without an explicit scope, this state is kept
+ * for the current thread until it is overwritten, which means the last thrown
+ * exception (including its causes) stays referenced by a pooled thread
+ * indefinitely. Within a scope, the state is only kept until the scope is
+ * closed:
+ * <pre>
+ * VerificationScope scope = VerificationScope.open();
+ * try {
+ *     assertThrows(list).get(0);
+ *     ...
+ * } finally {
+ *     scope.close();
+ * }
+ * </pre>
+ * With Java 7 and newer, a try-with-resources statement can be used instead.
+ * Closing a scope verifies the last proxy of the scope was used, and then
+ * restores the state of the enclosing scope (if any). When there is no
+ * enclosing scope, the thread local entry is removed, so that no state is
+ * left on the thread. Scopes must be closed in the reverse order they were
+ * opened, by the thread that opened them.
+ *
+ * @author Thomas Mueller
+ */
+public class VerificationScope implements Closeable {
+
+    private static final ThreadLocal<VerificationScope> CURRENT =
+        new ThreadLocal<VerificationScope>();
+
+    /**
+     * The last thrown exception or error.
+     */
+    Throwable lastThrown;
+
+    /**
+     * The handler of the last verifying proxy.
+     */
+    WeakReference<InvocationHandler> lastHandler;
+
+    /**
+     * The object of the proxy that may be re-used (only used if re-using
+     * proxies is enabled).
+     */
+    Object reusableTarget;
+
+    /**
+     * The proxy that may be re-used.
+     */
+    Object reusableProxy;
+
+    private final VerificationScope parent;
+    private final Thread owner;
+    private final boolean explicit;
+    private boolean closed;
+
+    private VerificationScope(VerificationScope parent, boolean explicit) {
+        this.parent = parent;
+        this.explicit = explicit;
+        this.owner = Thread.currentThread();
+    }
+
+    /**
+     * Open a new scope for the current thread.
+     *
+     * @return the scope
+     */
+    public static VerificationScope open() {
+        VerificationScope s = new VerificationScope(CURRENT.get(), true);
+        CURRENT.set(s);
+        return s;
+    }
+
+    /**
+     * Get the current scope of this thread.
+     *
+     * @param create whether to create an implicit scope if there is none
+     * @return the scope, or null
+     */
+    static VerificationScope current(boolean create) {
+        VerificationScope s = CURRENT.get();
+        if (s == null && create) {
+            s = new VerificationScope(null, false);
+            CURRENT.set(s);
+        }
+        return s;
+    }
+
+    /**
+     * Remove the implicit scope of this thread if it is empty.
+     */
+    void releaseIfEmpty() {
+        if (!explicit && lastThrown == null && lastHandler == null &&
+                reusableProxy == null) {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * Close the scope. The last proxy created within this scope is verified
+     * to have been used, and the state of the enclosing scope is restored.
+     * Closing a scope that is already closed has no effect.
+     *
+     * @throws AssertionError if the last proxy was not used
+     * @throws IllegalStateException if this is not the innermost scope, or if
+     *             it is closed by a different thread
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        if (Thread.currentThread() != owner) {
+            throw new IllegalStateException(
+                    "The scope must be closed by the thread that opened it");
+        }
+        if (CURRENT.get() != this) {
+            throw new IllegalStateException(
+                    "A nested scope was not closed");
+        }
+        try {
+            ExceptionVerifier.verifyLastProxyWasUsed();
+        } finally {
+            closed = true;
+            lastThrown = null;
+            lastHandler = null;
+            reusableTarget = null;
+            reusableProxy = null;
+            if (parent == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(parent);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.assertthrows;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.contrib.assertthrows.AssertThrows.assertThrows;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.contrib.assertthrows.verify.ExceptionVerifier;
+
+/**
+ * Tests running exception checks in parallel.
+ *
+ * @author Thomas Mueller
+ */
+public class AssertThrowsBatchTest {
+
+    @Test
+    public void testParallel() {
+        AssertThrowsBatch batch = new AssertThrowsBatch();
+        List<AssertThrowsTask> tasks = new ArrayList<AssertThrowsTask>();
+        for (int i = 0; i < 200; i++) {
+            final String s = "x" + i;
+            AssertThrowsTask task = new AssertThrowsTask(NumberFormatException.class) {
+                public void test() {
+                    Integer.parseInt(s);
+                }
+            };
+            tasks.add(task);
+            batch.add(task);
+        }
+        assertEquals(200, batch.size());
+        batch.verify();
+        assertEquals(0, batch.size());
+        for (int i = 0; i < tasks.size(); i++) {
+            assertEquals("For input string: \"x" + i + "\"",
+                    tasks.get(i).getLastThrown().getMessage());
+        }
+    }
+
+    @Test
+    public void testFailuresAreAggregated() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final AssertThrowsBatch batch = new AssertThrowsBatch(executor);
+            batch.add(new AssertThrowsTask() {
+                public void test() {
+                    // does not throw
+                }
+            });
+            batch.add(new AssertThrowsTask() {
+                public void test() {
+                    throw new IllegalStateException();
+                }
+            });
+            batch.add(new AssertThrowsTask(new IllegalArgumentException("a")) {
+                public void test() {
+                    throw new IllegalArgumentException("b");
+                }
+            });
+            new AssertThrows() { public void test() {
+                batch.verify();
+            }};
+            Throwable e = AssertThrows.getLastThrown();
+            assertEquals("2 of 3 exception checks failed:\n" +
+                    "1) Expected an exception to be thrown,\n" +
+                    "but the method returned successfully\n" +
+                    "2) Expected exception message <a>, but got <b>",
+                    e.getMessage());
+            assertTrue(e.getCause() instanceof AssertionError);
+            assertTrue(!executor.isShutdown());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testThreadStateIsolated() {
+        // one thread: every task sees a clean state
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final List<Throwable> seen = Collections.synchronizedList(new ArrayList<Throwable>());
+            AssertThrowsBatch batch = new AssertThrowsBatch(executor);
+            batch.add(new AssertThrowsTask() {
+                public void test() {
+                    // a proxy that is not used by this task
+                    assertThrows(new ArrayList<String>());
+                    throw new IllegalStateException();
+                }
+            });
+            AssertThrowsTask second = new AssertThrowsTask() {
+                public void test() {
+                    seen.add(AssertThrows.getLastThrown());
+                    List<String> list = new ArrayList<String>();
+                    assertThrows(list).get(0);
+                    throw new IllegalStateException();
+                }
+            };
+            batch.add(second);
+            try {
+                batch.verify();
+            } catch (AssertionError e) {
+                assertEquals("A proxy for the class\n" +
+                        "java.util.ArrayList\n" +
+                        "was created, but then no overridable method was called on it.\n" +
+                        "See the stack trace for where the proxy was created.",
+                        e.getMessage());
+                assertNull(seen.get(0));
+                assertTrue(second.getLastThrown() instanceof IllegalStateException);
+                return;
+            }
+            throw new AssertionError();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testInlineTasksKeepCallerState() {
+        final List<String> list = new ArrayList<String>();
+        new AssertThrows(IndexOutOfBoundsException.class) { public void test() {
+            list.get(0);
+        }};
+        Throwable callerThrown = AssertThrows.getLastThrown();
+        assertTrue(callerThrown instanceof IndexOutOfBoundsException);
+        // a verification of the caller that is still in progress
+        MyList pending = assertThrows(new MyList());
+        AssertThrowsBatch batch = new AssertThrowsBatch(new InlineExecutor());
+        batch.add(new AssertThrowsTask() {
+            public void test() {
+                assertThrows(new MyList()).get(0);
+                throw new IllegalStateException();
+            }
+        });
+        batch.verify();
+        assertTrue(callerThrown == AssertThrows.getLastThrown());
+        // the proxy of the caller is still pending
+        try {
+            ExceptionVerifier.verifyLastProxyWasUsed();
+            fail();
+        } catch (AssertionError e) {
+            assertTrue(e.getMessage().startsWith("A proxy for the class\n" +
+                    MyList.class.getName() + "\n"));
+        }
+        pending.get(1);
+    }
+
+    /**
+     * An executor that runs the tasks in the calling thread.
+     */
+    static class InlineExecutor extends AbstractExecutorService {
+
+        private boolean shutdown;
+
+        public void execute(Runnable command) {
+            command.run();
+        }
+
+        public void shutdown() {
+            shutdown = true;
+        }
+
+        public List<Runnable> shutdownNow() {
+            shutdown = true;
+            return Collections.emptyList();
+        }
+
+        public boolean isShutdown() {
+            return shutdown;
+        }
+
+        public boolean isTerminated() {
+            return shutdown;
+        }
+
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,518 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.assertthrows;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.contrib.assertthrows.proxy.ReflectionUtils;
+import org.junit.contrib.assertthrows.verify.ExceptionVerifier;
+
+/**
+ * Tests the verification of methods that return futures, and of publishers.
+ *
+ * @author Thomas Mueller
+ */
+public class AsyncAssertThrowsTest {
+
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testExceptionalCompletion() {
+        AsyncAssertThrows async = new AsyncAssertThrows(10, TimeUnit.SECONDS);
+        Service service = new Service();
+        async.assertThrows(service).fail(new IOException("x"));
+        async.assertThrows(IOException.class, service).fail(new IOException("x"));
+        async.assertThrows(new IOException("x"), service).fail(new IOException("x"));
+        async.verify();
+        assertEquals("x", AssertThrows.getLastThrown().getMessage());
+    }
+
+    @Test
+    public void testSuccessfulCompletion() {
+        final AsyncAssertThrows async = new AsyncAssertThrows(10, TimeUnit.SECONDS);
+        final Service service = new Service();
+        new AssertThrows() { public void test() {
+            async.assertThrows(IOException.class, service).succeed("ok");
+            async.verify();
+        }};
+        assertEquals("Expected an exception of type\n" +
+                "IOException to be thrown,\n" +
+                "but the method succeed(ok) returned ok",
+                AssertThrows.getLastThrown().getMessage());
+    }
+
+    @Test
+    public void testWrongException() {
+        final AsyncAssertThrows async = new AsyncAssertThrows(10, TimeUnit.SECONDS);
+        final Service service = new Service();
+        new AssertThrows() { public void test() {
+            async.assertThrows(new IOException("x"), service).fail(new IOException("y"));
+            async.verify();
+        }};
+        assertEquals("Expected exception message <x>, but got <y>",
+                AssertThrows.getLastThrown().getMessage());
+    }
+
+    @Test
+    public void testTimeout() {
+        final AsyncAssertThrows async = new AsyncAssertThrows(50, TimeUnit.MILLISECONDS);
+        final Service service = new Service();
+        new AssertThrows() { public void test() {
+            async.assertThrows(service).never();
+            async.verify();
+        }};
+        assertEquals("Expected the future returned by the method never " +
+                "to complete exceptionally within 50 ms, but it did not complete",
+                AssertThrows.getLastThrown().getMessage());
+    }
+
+    @Test
+    public void testSynchronousException() {
+        AsyncAssertThrows async = new AsyncAssertThrows(10, TimeUnit.SECONDS);
+        async.assertThrows(IllegalArgumentException.class, new Service()).fail(null);
+        async.verify();
+    }
+
+    @Test
+    public void testLastThrownIsCleared() {
+        ExceptionVerifier.setLastThrown(new IOException("stale"));
+        AsyncAssertThrows async = new AsyncAssertThrows(10, TimeUnit.SECONDS);
+        async.assertThrows(IllegalArgumentException.class, new Service()).fail(null);
+        async.verify();
+        assertNull(AssertThrows.getLastThrown());
+    }
+
+    @Test
+    public void testMultipleFailures() {
+        final AsyncAssertThrows async = new AsyncAssertThrows(10, TimeUnit.SECONDS);
+        final Service service = new Service();
+        new AssertThrows() { public void test() {
+            async.assertThrows(service).succeed("a");
+            async.assertThrows(service).fail(new IOException());
+            async.assertThrows(service).succeed("b");
+            async.verify();
+        }};
+        Throwable e = AssertThrows.getLastThrown();
+        assertEquals("2 of 3 asynchronous verifications failed:\n" +
+                "1) Expected an exception to be thrown,\n" +
+                "but the method succeed(a) returned a\n" +
+                "2) Expected an exception to be thrown,\n" +
+                "but the method succeed(b) returned b",
+                e.getMessage());
+        assertTrue(e.getCause() instanceof AssertionError);
+    }
+
+    @Test
+    public void testCompletionStage() throws Exception {
+        Class<?> c;
+        try {
+            c = Class.forName("java.util.concurrent.CompletableFuture");
+        } catch (ClassNotFoundException e) {
+            // Java 7 or older
+            return;
+        }
+        AsyncAssertThrows async = new AsyncAssertThrows(10, TimeUnit.SECONDS);
+        int count = 1000;
+        final Future<?>[] futures = new Future<?>[count];
+        for (int i = 0; i < count; i++) {
+            futures[i] = (Future<?>) c.newInstance();
+            async.assertThrows(IllegalStateException.class, new Service()).
+                    pending(futures[i]);
+        }
+        // complete all futures from another thread
+        executor.submit(new Callable<Void>() {
+            public Void call() throws Exception {
+                for (Future<?> f : futures) {
+                    ReflectionUtils.callMethod(f, "completeExceptionally",
+                            new IllegalStateException());
+                }
+                return null;
+            }
+        });
+        async.verify();
+    }
+
+    @Test
+    public void testListenableFuture() {
+        AsyncAssertThrows async = new AsyncAssertThrows(10, TimeUnit.SECONDS);
+        ListenableTask[] tasks = new ListenableTask[100];
+        for (int i = 0; i < tasks.length; i++) {
+            tasks[i] = new ListenableTask(new IOException("x"));
+            async.assertThrows(IOException.class, new Service()).pending(tasks[i]);
+            assertEquals(1, tasks[i].listeners.size());
+        }
+        for (ListenableTask t : tasks) {
+            executor.execute(t);
+        }
+        async.verify();
+        assertEquals("x", AssertThrows.getLastThrown().getMessage());
+    }
+
+    @Test
+    public void testPublisherSignalsError() {
+        AsyncAssertThrows async = new AsyncAssertThrows(10, TimeUnit.SECONDS);
+        RangePublisher p1 = new RangePublisher(1000000, new IOException("x"), null);
+        RangePublisher p2 = new RangePublisher(10, new IOException("y"), executor);
+        async.assertSignalsError(new IOException("x"), 1000000, p1);
+        async.assertSignalsError(IOException.class, p2);
+        async.verify();
+        assertEquals("y", AssertThrows.getLastThrown().getMessage());
+        assertTrue("max demand: " + p1.maxDemand, p1.maxDemand <= 256);
+    }
+
+    @Test
+    public void testPublisherCompletes() {
+        final AsyncAssertThrows async = new AsyncAssertThrows(10, TimeUnit.SECONDS);
+        new AssertThrows() { public void test() {
+            async.assertSignalsError(IOException.class,
+                    new RangePublisher(3, null, executor));
+            async.verify();
+        }};
+        assertEquals("The publisher completed after 3 items without an error signal: " +
+                "Expected an exception of type\n" +
+                "IOException to be thrown,\n" +
+                "but the method returned successfully",
+                AssertThrows.getLastThrown().getMessage());
+    }
+
+    @Test
+    public void testPublisherItemCount() {
+        final AsyncAssertThrows async = new AsyncAssertThrows(10, TimeUnit.SECONDS);
+        new AssertThrows() { public void test() {
+            async.assertSignalsError(IOException.class, 5,
+                    new RangePublisher(3, new IOException(), null));
+            async.verify();
+        }};
+        assertEquals("Expected the publisher to signal an error after 5 items, " +
+                "but got the error after 3 items",
+                AssertThrows.getLastThrown().getMessage());
+        final RangePublisher p = new RangePublisher(1000, new IOException(), null);
+        new AssertThrows() { public void test() {
+            async.assertSignalsError(IOException.class, 2, p);
+            async.verify();
+        }};
+        assertEquals("Expected the publisher to signal an error after 2 items, " +
+                "but got more items",
+                AssertThrows.getLastThrown().getMessage());
+        assertTrue(p.cancelled);
+        assertEquals(3, p.emitted);
+    }
+
+    @Test
+    public void testPublisherMaxItemCount() {
+        final AsyncAssertThrows async = new AsyncAssertThrows(10, TimeUnit.SECONDS);
+        final RangePublisher p = new RangePublisher(3, new IOException(), null);
+        new AssertThrows() { public void test() {
+            async.assertSignalsError(IOException.class, Long.MAX_VALUE, p);
+            async.verify();
+        }};
+        assertEquals("Expected the publisher to signal an error after " +
+                Long.MAX_VALUE + " items, but got the error after 3 items",
+                AssertThrows.getLastThrown().getMessage());
+        assertTrue(p.maxDemand > 0);
+    }
+
+    @Test
+    public void testPublisherRequestsSerialized() {
+        AsyncAssertThrows async = new AsyncAssertThrows(10, TimeUnit.SECONDS);
+        ConcurrentPublisher p = new ConcurrentPublisher(100000, executor);
+        async.assertSignalsError(IOException.class, p);
+        async.verify();
+        assertFalse("request(n) called concurrently", p.overlapped);
+        assertEquals(100000, p.emitted);
+        assertTrue("max demand: " + p.maxDemand, p.maxDemand <= 256);
+    }
+
+    @Test
+    public void testPublisherTimeout() {
+        final AsyncAssertThrows async = new AsyncAssertThrows(50, TimeUnit.MILLISECONDS);
+        final RangePublisher p = new RangePublisher(Long.MAX_VALUE, null, null);
+        p.setBlocked(true);
+        new AssertThrows() { public void test() {
+            async.assertSignalsError(IOException.class, p);
+            async.verify();
+        }};
+        assertEquals("Expected the publisher to signal an error within 50 ms, " +
+                "but got 0 items and no signal",
+                AssertThrows.getLastThrown().getMessage());
+        assertTrue(p.cancelled);
+    }
+
+    /**
+     * A publisher interface (the same as in Java 9 and Reactive Streams).
+     *
+     * @param <T> the item type
+     */
+    public interface Publisher<T> {
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * A subscriber interface.
+     *
+     * @param <T> the item type
+     */
+    public interface Subscriber<T> {
+        void onSubscribe(Subscription subscription);
+        void onNext(T item);
+        void onError(Throwable throwable);
+        void onComplete();
+    }
+
+    /**
+     * A subscription interface.
+     */
+    public interface Subscription {
+        void request(long n);
+        void cancel();
+    }
+
+    /**
+     * A publisher that emits the given number of items, and then signals an
+     * error or completes.
+     */
+    static class RangePublisher implements Publisher<Long>, Subscription {
+
+        long maxDemand;
+        volatile boolean cancelled;
+        volatile long emitted;
+        private final long count;
+        private final Exception error;
+        private final ExecutorService executor;
+        private Subscriber<? super Long> subscriber;
+        private long demand;
+        private boolean emitting, blocked;
+
+        RangePublisher(long count, Exception error, ExecutorService executor) {
+            this.count = count;
+            this.error = error;
+            this.executor = executor;
+        }
+
+        void setBlocked(boolean blocked) {
+            this.blocked = blocked;
+        }
+
+        public void subscribe(Subscriber<? super Long> s) {
+            this.subscriber = s;
+            s.onSubscribe(this);
+        }
+
+        public synchronized void request(long n) {
+            demand += n;
+            maxDemand = Math.max(maxDemand, demand);
+            if (emitting || blocked) {
+                return;
+            }
+            emitting = true;
+            if (executor == null) {
+                emit();
+            } else {
+                executor.submit(new Runnable() {
+                    public void run() {
+                        emit();
+                    }
+                });
+            }
+        }
+
+        synchronized void emit() {
+            while (!cancelled) {
+                if (emitted == count) {
+                    if (error == null) {
+                        subscriber.onComplete();
+                    } else {
+                        subscriber.onError(error);
+                    }
+                    cancelled = true;
+                    break;
+                }
+                if (demand == 0) {
+                    break;
+                }
+                demand--;
+                subscriber.onNext(emitted++);
+            }
+            emitting = false;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+    }
+
+    /**
+     * A publisher that emits each item from a task of its own, so that the
+     * signals arrive from different threads (one at a time), and that
+     * detects concurrent calls to request.
+     */
+    static class ConcurrentPublisher implements Publisher<Long>, Subscription {
+
+        volatile boolean overlapped;
+        long maxDemand;
+        long emitted;
+        private final AtomicInteger requesting = new AtomicInteger();
+        private final long count;
+        private final ExecutorService executor;
+        private Subscriber<? super Long> subscriber;
+        private long demand;
+        private boolean cancelled;
+
+        ConcurrentPublisher(long count, ExecutorService executor) {
+            this.count = count;
+            this.executor = executor;
+        }
+
+        public void subscribe(Subscriber<? super Long> s) {
+            this.subscriber = s;
+            s.onSubscribe(this);
+        }
+
+        public void request(long n) {
+            if (requesting.incrementAndGet() > 1) {
+                overlapped = true;
+            }
+            synchronized (this) {
+                demand += n;
+                maxDemand = Math.max(maxDemand, demand);
+            }
+            for (long i = 0; i < n; i++) {
+                executor.execute(new Runnable() {
+                    public void run() {
+                        emit();
+                    }
+                });
+                Thread.yield();
+            }
+            requesting.decrementAndGet();
+        }
+
+        synchronized void emit() {
+            if (cancelled) {
+                return;
+            }
+            if (emitted == count) {
+                cancelled = true;
+                subscriber.onError(new IOException());
+                return;
+            }
+            demand--;
+            subscriber.onNext(emitted++);
+        }
+
+        public synchronized void cancel() {
+            cancelled = true;
+        }
+
+    }
+
+    /**
+     * A service with asynchronous methods.
+     */
+    /**
+     * A future with completion listeners, similar to the ListenableFuture of
+     * Guava.
+     */
+    public static class ListenableTask extends FutureTask<String> {
+
+        final List<Runnable> listeners = new ArrayList<Runnable>();
+
+        ListenableTask(final Exception e) {
+            super(new Callable<String>() {
+                public String call() throws Exception {
+                    throw e;
+                }
+            });
+        }
+
+        public void addListener(Runnable listener, Executor executor) {
+            synchronized (listeners) {
+                if (!isDone()) {
+                    listeners.add(listener);
+                    return;
+                }
+            }
+            executor.execute(listener);
+        }
+
+        protected void done() {
+            synchronized (listeners) {
+                for (Runnable r : listeners) {
+                    r.run();
+                }
+            }
+        }
+
+    }
+
+    public class Service {
+
+        public Future<String> fail(final Exception e) {
+            if (e == null) {
+                throw new IllegalArgumentException();
+            }
+            return executor.submit(new Callable<String>() {
+                public String call() throws Exception {
+                    throw e;
+                }
+            });
+        }
+
+        public Future<String> succeed(final String value) {
+            return executor.submit(new Callable<String>() {
+                public String call() {
+                    return value;
+                }
+            });
+        }
+
+        public Future<String> never() {
+            return new FutureTask<String>(new Callable<String>() {
+                public String call() {
+                    return null;
+                }
+            });
+        }
+
+        public Future<?> pending(Future<?> f) {
+            return f;
+        }
+
+    }
+
+}
@@ -26,6 +26,8 @@ import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import org.junit.Test;
+import org.junit.contrib.assertthrows.verify.ExceptionVerifier;
+import org.junit.contrib.assertthrows.verify.VerificationScope;
 
 /**
  * Tests that are using a the <code>assertThrows</code> methods.
@@ -198,6 +200,34 @@ public class ProxyTest {
                 "See the stack trace for where the proxy was created.", t.getMessage());
     }
 
+    @Test
+    public void testReuseProxies() {
+        VerificationScope scope = VerificationScope.open();
+        ExceptionVerifier.setReuseProxies(true);
+        try {
+            final List<String> list = new ArrayList<String>();
+            List<String> p1 = assertThrows(list);
+            p1.get(0);
+            List<String> p2 = assertThrows(IndexOutOfBoundsException.class, list);
+            assertTrue(p1 == p2);
+            p2.get(0);
+            // the re-used proxy still verifies
+            new AssertThrows() { public void test() {
+                assertThrows(list).size();
+            }};
+            assertTrue(AssertThrows.getLastThrown().getMessage(),
+                    AssertThrows.getLastThrown().getMessage().startsWith(
+                    "Expected an exception to be thrown,\nbut the method size()"));
+            // a different object gets a new proxy
+            List<String> p3 = assertThrows(new ArrayList<String>());
+            assertTrue(p1 != p3);
+            p3.get(0);
+        } finally {
+            ExceptionVerifier.setReuseProxies(false);
+            scope.close();
+        }
+    }
+
     @Test
     public void testFinalizeNotSupported() {
         new AssertThrows() { public void test() {
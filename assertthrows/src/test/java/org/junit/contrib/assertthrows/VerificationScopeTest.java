@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.assertthrows;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.contrib.assertthrows.AssertThrows.assertThrows;
+import java.util.ArrayList;
+import org.junit.Test;
+import org.junit.contrib.assertthrows.verify.ExceptionVerifier;
+import org.junit.contrib.assertthrows.verify.VerificationScope;
+
+/**
+ * Tests the verification scope.
+ *
+ * @author Thomas Mueller
+ */
+public class VerificationScopeTest {
+
+    @Test
+    public void testStateIsReleased() {
+        VerificationScope scope = VerificationScope.open();
+        try {
+            new AssertThrows() { public void test() {
+                throw new IllegalStateException("x");
+            }};
+            assertEquals("x", AssertThrows.getLastThrown().getMessage());
+        } finally {
+            scope.close();
+        }
+        assertNull(AssertThrows.getLastThrown());
+        // closing twice has no effect
+        scope.close();
+    }
+
+    @Test
+    public void testNested() {
+        ExceptionVerifier.setLastThrown(null);
+        VerificationScope outer = VerificationScope.open();
+        new AssertThrows() { public void test() {
+            throw new IllegalStateException("outer");
+        }};
+        VerificationScope inner = VerificationScope.open();
+        assertNull(AssertThrows.getLastThrown());
+        new AssertThrows() { public void test() {
+            throw new IllegalStateException("inner");
+        }};
+        assertEquals("inner", AssertThrows.getLastThrown().getMessage());
+        inner.close();
+        assertEquals("outer", AssertThrows.getLastThrown().getMessage());
+        outer.close();
+        assertNull(AssertThrows.getLastThrown());
+    }
+
+    @Test
+    public void testUnusedProxy() {
+        VerificationScope scope = VerificationScope.open();
+        assertThrows(new ArrayList<String>());
+        try {
+            scope.close();
+            fail();
+        } catch (AssertionError e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("A proxy for the class"));
+        }
+        // the scope is closed even if the verification failed
+        ExceptionVerifier.verifyLastProxyWasUsed();
+    }
+
+    @Test
+    public void testWrongOrder() {
+        VerificationScope outer = VerificationScope.open();
+        VerificationScope inner = VerificationScope.open();
+        try {
+            outer.close();
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("A nested scope was not closed", e.getMessage());
+        }
+        inner.close();
+        outer.close();
+    }
+
+    @Test
+    public void testOtherThread() throws Exception {
+        final VerificationScope scope = VerificationScope.open();
+        final Throwable[] result = new Throwable[1];
+        Thread t = new Thread() {
+            public void run() {
+                try {
+                    scope.close();
+                } catch (Throwable e) {
+                    result[0] = e;
+                }
+            }
+        };
+        t.start();
+        t.join();
+        assertTrue(result[0] instanceof IllegalStateException);
+        scope.close();
+    }
+
+}
@@ -0,0 +1,313 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.assertthrows.agent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.contrib.assertthrows.AssertThrows.assertThrows;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.contrib.assertthrows.verify.ExceptionVerifier;
+
+/**
+ * Tests rewriting assertThrows call sites.
+ *
+ * @author Thomas Mueller
+ */
+public class AssertThrowsTransformerTest {
+
+    @Test
+    public void testJava5() throws Exception {
+        test(0);
+    }
+
+    @Test
+    public void testJava7() throws Exception {
+        // stack map frames are required
+        test(51);
+    }
+
+    @Test
+    public void testNotChanged() throws Exception {
+        AssertThrowsTransformer t = new AssertThrowsTransformer();
+        assertNull(t.transform(null, getClassFile(Service.class)));
+    }
+
+    @Test
+    public void testCommonSuperClassWithoutLoading() {
+        RecordingLoader loader = new RecordingLoader(false);
+        AssertThrowsTransformer.FrameWriter w = new AssertThrowsTransformer.FrameWriter(
+                0, loader, "test/Transformed", "java/lang/Number");
+        assertEquals("java/lang/Number",
+                w.getCommonSuperClass("java/lang/Integer", "java/lang/Long"));
+        assertEquals("java/lang/Number",
+                w.getCommonSuperClass("test/Transformed", "java/lang/Long"));
+        assertEquals("java/lang/Object",
+                w.getCommonSuperClass("java/util/List", "java/lang/Long"));
+        assertEquals("java/util/AbstractList",
+                w.getCommonSuperClass("java/util/ArrayList", "java/util/Vector"));
+        assertEquals(0, loader.loaded.size());
+        try {
+            w.getCommonSuperClass("test/Missing", "java/lang/Long");
+            fail();
+        } catch (TypeNotPresentException e) {
+            assertEquals("test.Missing", e.typeName());
+        }
+    }
+
+    @Test
+    public void testMissingClassFileNotTransformed() throws Exception {
+        byte[] b = getClassFile(Samples.class);
+        // stack map frames are required
+        b[6] = 0;
+        b[7] = 51;
+        AssertThrowsTransformer t = new AssertThrowsTransformer();
+        assertNotNull(t.transform(new RecordingLoader(false), b));
+        assertNull(t.transform(new RecordingLoader(true), b));
+    }
+
+    private void test(int version) throws Exception {
+        Class<?> original = Samples.class;
+        Class<?> rewritten = new TransformingLoader(version).loadClass(original.getName());
+        assertTrue(original != rewritten);
+
+        // the same behavior
+        for (String m : new String[] { "expected", "expectedClass",
+                "expectedException", "valueUsed", "arguments" }) {
+            assertEquals(m, null, call(original, m));
+            assertEquals(m, null, call(rewritten, m));
+        }
+        // the same messages
+        for (String m : new String[] { "returned", "returnedVoid",
+                "wrongClass", "wrongMessage", "nullObject" }) {
+            String expected = call(original, m);
+            assertNotNull(m, expected);
+            assertEquals(m, expected, call(rewritten, m));
+        }
+        assertEquals("Expected an exception to be thrown,\n" +
+                "but the method add(x) returned true",
+                call(rewritten, "returned"));
+
+        // a final class can not be proxied
+        assertTrue(call(original, "finalClass").startsWith("Can not create a proxy"));
+        // the handler of the proxy that could not be created
+        ExceptionVerifier.clearLastProxy();
+        assertNull(call(rewritten, "finalClass"));
+    }
+
+    private static String call(Class<?> c, String methodName) throws Exception {
+        Method m = c.getMethod(methodName);
+        try {
+            m.invoke(null);
+            return null;
+        } catch (InvocationTargetException e) {
+            return e.getTargetException().getMessage();
+        }
+    }
+
+    static byte[] getClassFile(Class<?> c) throws IOException {
+        String resource = c.getName().replace('.', '/') + ".class";
+        InputStream in = c.getClassLoader().getResourceAsStream(resource);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buff = new byte[4096];
+            for (int len; (len = in.read(buff)) > 0;) {
+                out.write(buff, 0, len);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * A class loader that records which classes are loaded, and optionally
+     * hides all class files.
+     */
+    static class RecordingLoader extends ClassLoader {
+
+        final List<String> loaded = new ArrayList<String>();
+        private final boolean hideClassFiles;
+
+        RecordingLoader(boolean hideClassFiles) {
+            super(RecordingLoader.class.getClassLoader());
+            this.hideClassFiles = hideClassFiles;
+        }
+
+        protected synchronized Class<?> loadClass(String name, boolean resolve)
+                throws ClassNotFoundException {
+            loaded.add(name);
+            return super.loadClass(name, resolve);
+        }
+
+        public URL getResource(String name) {
+            return hideClassFiles ? null : super.getResource(name);
+        }
+
+    }
+
+    /**
+     * A class loader that rewrites the samples class.
+     */
+    static class TransformingLoader extends ClassLoader {
+
+        private final int version;
+
+        TransformingLoader(int version) {
+            super(TransformingLoader.class.getClassLoader());
+            this.version = version;
+        }
+
+        protected synchronized Class<?> loadClass(String name, boolean resolve)
+                throws ClassNotFoundException {
+            if (!name.equals(Samples.class.getName())) {
+                return super.loadClass(name, resolve);
+            }
+            Class<?> c = findLoadedClass(name);
+            if (c != null) {
+                return c;
+            }
+            try {
+                byte[] b = getClassFile(Samples.class);
+                if (version != 0) {
+                    b[6] = (byte) (version >> 8);
+                    b[7] = (byte) version;
+                }
+                b = new AssertThrowsTransformer().transform(this, b);
+                return defineClass(name, b, 0, b.length);
+            } catch (IOException e) {
+                throw new ClassNotFoundException(name, e);
+            }
+        }
+
+    }
+
+    /**
+     * A class without assertThrows calls.
+     */
+    public static class Service {
+
+        public void test() {
+            // nothing to do
+        }
+
+        public void fail(String message) {
+            throw new IllegalStateException(message);
+        }
+
+    }
+
+    /**
+     * A final class.
+     */
+    public static final class FinalService {
+
+        public void fail(String message) {
+            throw new IllegalStateException(message);
+        }
+
+    }
+
+    /**
+     * The samples to rewrite.
+     */
+    public static class Samples {
+
+        static List<String> emptyList() {
+            return new ArrayList<String>();
+        }
+
+        public static void commonSuperClass(boolean flag) {
+            // computing the frames requires the common superclass
+            Number n = flag ? (Number) Integer.valueOf(1) : Long.valueOf(2);
+            assertThrows(new Service()).fail(n.toString());
+        }
+
+        public static void expected() {
+            List<String> list = emptyList();
+            assertThrows(list).get(0);
+        }
+
+        public static void expectedClass() {
+            assertThrows(IndexOutOfBoundsException.class, emptyList()).remove(1);
+        }
+
+        public static void expectedException() {
+            assertThrows(new IllegalStateException("x"), new Service()).fail("x");
+        }
+
+        public static void valueUsed() {
+            List<String> list = emptyList();
+            String s = assertThrows(list).get(0);
+            if (s != null) {
+                fail();
+            }
+        }
+
+        public static void arguments() {
+            List<String> list = emptyList();
+            long x = 10;
+            for (int i = 0; i < 3; i++) {
+                try {
+                    assertThrows(list).set((int) x + i, "a" + i);
+                } catch (RuntimeException e) {
+                    // the rewritten try/catch block is the innermost
+                    fail();
+                }
+            }
+            assertThrows(list).addAll(1, java.util.Arrays.asList("a", "b"));
+        }
+
+        public static void returned() {
+            List<String> list = emptyList();
+            assertThrows(list).add("x");
+        }
+
+        public static void returnedVoid() {
+            assertThrows(emptyList()).clear();
+        }
+
+        public static void wrongClass() {
+            assertThrows(IllegalStateException.class, emptyList()).get(0);
+        }
+
+        public static void wrongMessage() {
+            assertThrows(new IndexOutOfBoundsException("x"), emptyList()).get(0);
+        }
+
+        public static void nullObject() {
+            List<String> list = null;
+            assertThrows(list).get(0);
+        }
+
+        public static void finalClass() {
+            assertThrows(new FinalService()).fail("x");
+        }
+
+    }
+
+}
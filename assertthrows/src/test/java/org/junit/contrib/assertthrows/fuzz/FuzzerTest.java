@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.assertthrows.fuzz;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.Test;
+
+/**
+ * Tests the fuzzer.
+ *
+ * @author Thomas Mueller
+ */
+public class FuzzerTest {
+
+    @Test
+    public void testExpectedExceptions() {
+        Fuzzer fuzzer = new Fuzzer(NumberFormatException.class);
+        fuzzer.setCalls(20000);
+        fuzzer.setThreads(4);
+        Service service = new Service();
+        fuzzer.fuzz(service).parse(null, 0);
+        FuzzResult result = fuzzer.run();
+        result.verify();
+        assertEquals(20000, result.getCalls());
+        assertEquals(20000, service.calls.get());
+        assertTrue(result.toString(), result.getCount(Outcome.EXPECTED_EXCEPTION) > 0);
+        assertTrue(result.toString(), result.getCount(Outcome.SUCCESS) > 0);
+        assertEquals(0, result.getCount(Outcome.UNEXPECTED_EXCEPTION));
+        assertTrue(result.getCallsPerSecond() > 0);
+    }
+
+    @Test
+    public void testShrink() {
+        Fuzzer fuzzer = new Fuzzer(IllegalArgumentException.class);
+        fuzzer.setSeed(1);
+        fuzzer.fuzz(new Service()).cut(null, 0);
+        FuzzResult result = fuzzer.run();
+        List<FuzzResult.Failure> failures = result.getFailures();
+        assertEquals(result.toString(), 2, failures.size());
+        int npe = 0, index = 0;
+        for (FuzzResult.Failure f : failures) {
+            List<Object> args = Arrays.asList(f.getArguments());
+            if (f.getThrown() instanceof NullPointerException) {
+                assertEquals(Arrays.<Object>asList(null, 0), args);
+                npe++;
+            } else {
+                assertTrue(f.getThrown() instanceof IndexOutOfBoundsException);
+                assertEquals("", args.get(0));
+                assertTrue(args.toString(), args.get(1).equals(1) || args.get(1).equals(-1));
+                index++;
+            }
+        }
+        assertEquals(1, npe);
+        assertEquals(1, index);
+        try {
+            result.verify();
+            fail();
+        } catch (AssertionError e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(
+                    "calls threw an unexpected exception (seed 1):"));
+            assertTrue(e.getMessage(), e.getMessage().contains(
+                    "cut(null, 0) threw java.lang.NullPointerException"));
+        }
+    }
+
+    @Test
+    public void testCustomGenerator() {
+        Fuzzer fuzzer = new Fuzzer(IllegalArgumentException.class);
+        fuzzer.setGenerator(String.class, Generators.oneOf("abc", "abcdef"));
+        fuzzer.setGenerator(int.class, Generators.constant(2));
+        fuzzer.fuzz(new Service()).cut(null, 0);
+        FuzzResult result = fuzzer.run();
+        result.verify();
+        assertEquals(10000, result.getCount(Outcome.SUCCESS));
+    }
+
+    @Test
+    public void testNoGenerator() {
+        Fuzzer fuzzer = new Fuzzer(IllegalArgumentException.class);
+        fuzzer.fuzz(new Service()).sum(null);
+        try {
+            fuzzer.run();
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("No generator for the parameter type [I of the method sum",
+                    e.getMessage());
+        }
+    }
+
+    @Test
+    public void testShrinkIntegers() {
+        Generator<Object> g = Generators.forClass(int.class);
+        assertEquals(Arrays.<Object>asList(0, 50, 99), g.shrink(100));
+        assertEquals(Arrays.<Object>asList(0, 3, -1, -2), g.shrink(-3));
+        assertEquals(0, g.shrink(0).size());
+        Generator<Object> b = Generators.forClass(byte.class);
+        assertEquals(Arrays.<Object>asList((byte) 0, (byte) 127, (byte) -64, (byte) -127),
+                b.shrink((byte) -128));
+    }
+
+    @Test
+    public void testIntegerDistribution() {
+        assertDistribution(int.class, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        assertDistribution(short.class, Short.MIN_VALUE, Short.MAX_VALUE);
+    }
+
+    private static void assertDistribution(Class<?> c, long min, long max) {
+        Generator<Object> g = Generators.forClass(c);
+        Random random = new Random(1);
+        int count = 16000, bounds = 0, large = 0;
+        HashSet<Object> distinct = new HashSet<Object>();
+        for (int i = 0; i < count; i++) {
+            long v = ((Number) g.generate(random)).longValue();
+            if (v == min || v == max) {
+                bounds++;
+            } else if (Math.abs(v) > 100) {
+                large++;
+                distinct.add(v);
+            }
+        }
+        // the edge cases are 1/4 of the values, two of the eight are bounds
+        assertTrue(c + " bounds: " + bounds, bounds < count / 10);
+        // 6 of 16 values are random within the whole range
+        assertTrue(c + " large: " + large, large > count / 4);
+        assertTrue(c + " distinct: " + distinct.size(), distinct.size() > large / 2);
+    }
+
+    /**
+     * A service to fuzz.
+     */
+    public static class Service {
+
+        final AtomicLong calls = new AtomicLong();
+
+        public int parse(String s, int radix) {
+            calls.incrementAndGet();
+            return Integer.parseInt(s, radix);
+        }
+
+        public String cut(String s, int begin) {
+            return s.substring(begin);
+        }
+
+        public int sum(int[] values) {
+            return values.length;
+        }
+
+    }
+
+}
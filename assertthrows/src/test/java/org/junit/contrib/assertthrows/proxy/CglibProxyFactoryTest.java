@@ -17,6 +17,8 @@
 package org.junit.contrib.assertthrows.proxy;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.util.Random;
@@ -125,6 +127,23 @@ public class CglibProxyFactoryTest {
         assertEquals(2, methodCount);
     }
 
+    @Test
+    public void testRebind() {
+        CglibProxyFactory factory = new CglibProxyFactory();
+        // only rebindable proxies have the (slower) replaceable handler
+        assertFalse(factory.rebindProxy(createProxy(new Random()), null));
+        Random r = factory.createRebindableProxy(new Random(), null);
+        assertTrue(factory.rebindProxy(r, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                buff.append("rebound ").append(method.getName());
+                return 1;
+            }
+        }));
+        assertEquals(1, r.nextInt(1));
+        assertEquals("rebound nextInt", buff.toString());
+        assertFalse(factory.rebindProxy(new Random(), null));
+    }
+
     <T> T createProxy(T obj) {
         return createProxy(obj, false);
     }
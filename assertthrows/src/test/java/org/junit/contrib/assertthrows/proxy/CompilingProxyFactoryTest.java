@@ -17,12 +17,17 @@
 package org.junit.contrib.assertthrows.proxy;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.Random;
 import org.junit.Test;
 import org.junit.contrib.assertthrows.AssertThrows;
+import org.junit.contrib.assertthrows.verify.ExceptionVerifier;
 
 /**
  * Test creating class proxies using the compiling proxy factory.
@@ -171,6 +176,104 @@ public class CompilingProxyFactoryTest {
         assertEquals("toString = ClassWithMultipleConstructors", buff.toString());
     }
 
+    @Test
+    public void testPrimitiveInvocationHandler() {
+        final ClassWithPrimitiveMethods obj = new ClassWithPrimitiveMethods();
+        CompilingProxyFactory factory = new CompilingProxyFactory();
+        if (disableSystemJavaCompiler()) {
+            factory.setUseSystemJavaCompiler(false);
+        }
+        ClassWithPrimitiveMethods proxy = factory.createProxy(obj,
+                new PrimitiveInvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) throws Exception {
+                buff.append(method.getName()).append(' ');
+                return method.invoke(obj, args);
+            }
+            public long invokePrimitive(Object proxy, Method method) throws Exception {
+                return invokePrimitive(method);
+            }
+            public long invokePrimitive(Object proxy, Method method, long p0) throws Exception {
+                return invokePrimitive(method, p0);
+            }
+            public long invokePrimitive(Object proxy, Method method,
+                    long p0, long p1) throws Exception {
+                return invokePrimitive(method, p0, p1);
+            }
+            private long invokePrimitive(Method method, long... bits) throws Exception {
+                methodCallCount++;
+                Class<?>[] pc = method.getParameterTypes();
+                Object[] args = new Object[bits.length];
+                for (int i = 0; i < bits.length; i++) {
+                    args[i] = ReflectionUtils.fromRawBits(pc[i], bits[i]);
+                }
+                return ReflectionUtils.toRawBits(method.invoke(obj, args));
+            }
+        });
+        assertEquals(5, proxy.add(2, 3));
+        assertEquals(1.5, proxy.half(3.0), 0.0);
+        assertEquals(-2.5f, proxy.negate(2.5f), 0.0f);
+        assertEquals(false, proxy.not(true));
+        assertEquals('b', proxy.next('a'));
+        proxy.reset();
+        assertEquals(6, methodCallCount);
+        assertEquals(6L, proxy.sum(1L, 2L, 3L));
+        assertEquals("ClassWithPrimitiveMethods", proxy.toString());
+        assertEquals(6, methodCallCount);
+        assertEquals("sum toString ", buff.toString());
+    }
+
+    @Test
+    public void testVerifyingProxyCallsPrimitiveMethodsUnboxed() {
+        CompilingProxyFactory factory = new CompilingProxyFactory();
+        if (disableSystemJavaCompiler()) {
+            factory.setUseSystemJavaCompiler(false);
+        }
+        ProxyFactory.setProxyFactory(ClassWithDivision.class, factory);
+        ClassWithDivision obj = new ClassWithDivision();
+        ExceptionVerifier.createVerifyingProxy(
+                new ExceptionVerifier(ArithmeticException.class), obj).divide(1, 0);
+        assertEquals(1, obj.callCount);
+        assertFalse(obj.calledByReflection);
+        try {
+            ExceptionVerifier.createVerifyingProxy(
+                    new ExceptionVerifier(ArithmeticException.class), obj).divide(4, 2);
+            fail();
+        } catch (AssertionError e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("divide(4, 2) returned 2"));
+        }
+        assertEquals(2, obj.callCount);
+        assertFalse(obj.calledByReflection);
+    }
+
+    @Test
+    public void testOverriddenVerifyIsCalledForPrimitiveMethods() {
+        CompilingProxyFactory factory = new CompilingProxyFactory();
+        if (disableSystemJavaCompiler()) {
+            factory.setUseSystemJavaCompiler(false);
+        }
+        ProxyFactory.setProxyFactory(ClassWithDivision.class, factory);
+        ClassWithDivision obj = new ClassWithDivision();
+        final String[] verified = new String[1];
+        ExceptionVerifier verifier = new ExceptionVerifier(ArithmeticException.class) {
+            public boolean verify(Object returnValue, Throwable t, Method m, Object... args) {
+                verified[0] = m.getName() + Arrays.toString(args);
+                if (t != null && "/ by zero".equals(t.getMessage())) {
+                    throw new AssertionError("Unexpected message: " + t.getMessage());
+                }
+                return super.verify(returnValue, t, m, args);
+            }
+        };
+        try {
+            ExceptionVerifier.createVerifyingProxy(verifier, obj).divide(1, 0);
+            fail();
+        } catch (AssertionError e) {
+            assertEquals("Unexpected message: / by zero", e.getMessage());
+        }
+        assertEquals("divide[1, 0]", verified[0]);
+        assertEquals(1, obj.callCount);
+        assertFalse(obj.calledByReflection);
+    }
+
     private void callCloneMethods(
             int expectedCallCount,
             ClassWithBridgeMethod obj) throws Exception {
@@ -186,6 +289,24 @@ public class CompilingProxyFactoryTest {
         assertEquals(2, methodCount);
     }
 
+    @Test
+    public void testRebind() {
+        CompilingProxyFactory factory = new CompilingProxyFactory();
+        if (disableSystemJavaCompiler()) {
+            factory.setUseSystemJavaCompiler(false);
+        }
+        Random r = factory.createProxy(new Random(), null);
+        assertTrue(factory.rebindProxy(r, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                buff.append("rebound ").append(method.getName());
+                return 1;
+            }
+        }));
+        assertEquals(1, r.nextInt(1));
+        assertEquals("rebound nextInt", buff.toString());
+        assertFalse(factory.rebindProxy(new Random(), null));
+    }
+
     <T> T createProxy(final T obj) {
         CompilingProxyFactory factory = new CompilingProxyFactory();
         if (disableSystemJavaCompiler()) {
@@ -303,6 +424,52 @@ public class CompilingProxyFactoryTest {
         }
     }
 
+    /**
+     * A class with methods that only use primitive types.
+     */
+    public static class ClassWithPrimitiveMethods {
+        public int add(int a, int b) {
+            return a + b;
+        }
+        public double half(double x) {
+            return x / 2;
+        }
+        public float negate(float x) {
+            return -x;
+        }
+        public boolean not(boolean x) {
+            return !x;
+        }
+        public char next(char x) {
+            return (char) (x + 1);
+        }
+        public long sum(long a, long b, long c) {
+            return a + b + c;
+        }
+        public void reset() {
+            // nothing to do
+        }
+        public String toString() {
+            return "ClassWithPrimitiveMethods";
+        }
+    }
+
+    /**
+     * A class with a primitive method that records how it was called.
+     */
+    public static class ClassWithDivision {
+        int callCount;
+        boolean calledByReflection;
+        public int divide(int a, int b) {
+            callCount++;
+            String caller = new Throwable().getStackTrace()[1].getClassName();
+            if (!caller.startsWith(ProxyFactory.PROXY_PACKAGE_NAME + ".")) {
+                calledByReflection = true;
+            }
+            return a / b;
+        }
+    }
+
     /**
      * A class with specially named fields (that conflict with the default field
      * names used in the compiling class proxy).
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.assertthrows.proxy;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * Compares creating interface proxies for a class that implements many
+ * interfaces using <code>Proxy.newProxyInstance</code> with creating them
+ * using the cached constructor of the interface proxy factory. This is not
+ * run as part of the build, run it using:
+ *
+ * <pre>
+ * java -cp ... org.junit.contrib.assertthrows.proxy.InterfaceProxyFactoryBenchmark [proxies]
+ * </pre>
+ *
+ * @author Thomas Mueller
+ */
+public class InterfaceProxyFactoryBenchmark {
+
+    private static final InvocationHandler HANDLER = new InvocationHandler() {
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            return null;
+        }
+    };
+
+    private static Object sink;
+
+    public static void main(String... args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        ManyInterfaces obj = new ManyInterfaces();
+        for (int i = 0; i < 5; i++) {
+            measureNewProxyInstance(obj, count);
+            measureCachedConstructor(obj, count);
+        }
+    }
+
+    private static void measureNewProxyInstance(Object obj, int count) {
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            Class<?> c = obj.getClass();
+            sink = Proxy.newProxyInstance(c.getClassLoader(), c.getInterfaces(), HANDLER);
+        }
+        report("Proxy.newProxyInstance", count, start);
+    }
+
+    private static void measureCachedConstructor(Object obj, int count) {
+        InterfaceProxyFactory factory = InterfaceProxyFactory.getInstance();
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            sink = factory.createProxy(obj, HANDLER);
+        }
+        report("InterfaceProxyFactory", count, start);
+    }
+
+    private static void report(String name, int count, long start) {
+        long nanos = System.nanoTime() - start;
+        System.out.println(String.format("%-24s %d proxies: %5d ms, %6.1f ns/proxy",
+                name, count, nanos / 1000000, (double) nanos / count));
+    }
+
+    /**
+     * A class implementing 16 interfaces.
+     */
+    public static class ManyInterfaces implements
+            I0, I1, I2, I3, I4, I5, I6, I7, I8, I9, I10, I11, I12, I13, I14, I15 {
+        public void m0() { /* nothing */ }
+        public void m1() { /* nothing */ }
+        public void m2() { /* nothing */ }
+        public void m3() { /* nothing */ }
+        public void m4() { /* nothing */ }
+        public void m5() { /* nothing */ }
+        public void m6() { /* nothing */ }
+        public void m7() { /* nothing */ }
+        public void m8() { /* nothing */ }
+        public void m9() { /* nothing */ }
+        public void m10() { /* nothing */ }
+        public void m11() { /* nothing */ }
+        public void m12() { /* nothing */ }
+        public void m13() { /* nothing */ }
+        public void m14() { /* nothing */ }
+        public void m15() { /* nothing */ }
+    }
+
+    public interface I0 { void m0(); }
+    public interface I1 { void m1(); }
+    public interface I2 { void m2(); }
+    public interface I3 { void m3(); }
+    public interface I4 { void m4(); }
+    public interface I5 { void m5(); }
+    public interface I6 { void m6(); }
+    public interface I7 { void m7(); }
+    public interface I8 { void m8(); }
+    public interface I9 { void m9(); }
+    public interface I10 { void m10(); }
+    public interface I11 { void m11(); }
+    public interface I12 { void m12(); }
+    public interface I13 { void m13(); }
+    public interface I14 { void m14(); }
+    public interface I15 { void m15(); }
+
+}
@@ -17,10 +17,14 @@
 package org.junit.contrib.assertthrows.proxy;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Queue;
 import org.junit.Test;
 import org.junit.contrib.assertthrows.AssertThrows;
 
@@ -51,6 +55,39 @@ public class InterfaceProxyFactoryTest {
         assertEquals("size = 0", buff.toString());
     }
 
+    @Test
+    public void testProxyClassIsCached() {
+        LinkedList<String> list = new LinkedList<String>();
+        List<String> p1 = createProxy(list);
+        Queue<String> p2 = createProxy(list);
+        assertTrue(p1.getClass() == p2.getClass());
+        // getConstructor returns a new copy on each call
+        InterfaceProxyFactory factory = InterfaceProxyFactory.getInstance();
+        assertTrue(factory.getProxyConstructor(LinkedList.class) ==
+                factory.getProxyConstructor(LinkedList.class));
+        p2.offer("x");
+        assertEquals(1, p1.size());
+        assertEquals("offer = truesize = 1", buff.toString());
+    }
+
+    @Test
+    public void testRebind() {
+        List<String> list = new ArrayList<String>();
+        InterfaceProxyFactory factory = InterfaceProxyFactory.getInstance();
+        // only rebindable proxies have the (slower) replaceable handler
+        assertFalse(factory.rebindProxy(createProxy(list), null));
+        List<String> proxy = factory.createRebindableProxy(list, null);
+        assertTrue(factory.rebindProxy(proxy, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                buff.append("rebound ").append(method.getName());
+                return 1;
+            }
+        }));
+        assertEquals(1, proxy.size());
+        assertEquals("rebound size", buff.toString());
+        assertFalse(factory.rebindProxy(list, null));
+    }
+
     <T> T createProxy(final T obj) {
         return InterfaceProxyFactory.getInstance().createProxy(obj, new InvocationHandler() {
             public Object invoke(Object proxy, Method method, Object[] args) throws Exception {
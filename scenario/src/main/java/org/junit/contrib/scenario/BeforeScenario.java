@@ -0,0 +1,53 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>
+ * Annotation for a method which is called by <code>ScenarioRunner</code>
+ * once before all test methods of a scenario. The methods annotated must
+ * <ul>
+ * <li>be public and return void</li>
+ * <li>take no parameters or a single parameter the {@link Scenario} is
+ * assigned to</li>
+ * </ul>
+ * Static methods are called on the test class. Instance methods are called
+ * on an instance created for the scenario only to run the &#064;BeforeScenario
+ * and &#064;AfterScenario methods, not on the instances the test methods are
+ * called on. To share an expensive fixture between the test methods of a
+ * scenario, assign it to a {@link ScenarioFixture &#064;ScenarioFixture}
+ * field; its value is copied to each test instance of the scenario.
+ * </p>
+ * <p>
+ * If a method fails, the test methods of the scenario are not run, but all
+ * &#064;AfterScenario methods are. The methods of superclasses are run before
+ * those of the current class.
+ * </p>
+ * 
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ * @see AfterScenario
+ * @see ScenarioRunner
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface BeforeScenario {
+
+}
@@ -0,0 +1,423 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>
+ * A source of {@link ParameterizedScenario}s read from a delimited text file
+ * (such as CSV or TSV). Each row of the file is one scenario: the first column
+ * is the name of the scenario, the remaining columns are its parameters. The
+ * parameters are converted to the parameter types of the test class
+ * constructor. For example:
+ * 
+ * <pre>
+ * &#064;Scenarios
+ * public static ScenarioList scenarios() {
+ * 	return DelimitedScenarioSource.csv(new File(&quot;sums.csv&quot;),
+ * 			CalculatorTest.class);
+ * }
+ * </pre>
+ * 
+ * </p>
+ * <p>
+ * The file is memory-mapped (in chunks, so files larger than 2 GB are
+ * supported) and the rows are parsed lazily while the scenarios are iterated.
+ * Together with the lazily evaluated {@link ScenarioList} created by
+ * {@link ScenarioList#fromIterable(Iterable)}, the heap used does not depend
+ * on the size of the file.
+ * </p>
+ * <p>
+ * Fields may be quoted with <code>"</code>, a quote within a quoted field is
+ * written as <code>""</code>. Empty fields are converted to <code>null</code>.
+ * Empty lines are ignored. The file must be encoded in an ASCII compatible
+ * charset such as UTF-8.
+ * </p>
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ */
+public final class DelimitedScenarioSource implements Iterable<Scenario> {
+
+	private static final int DEFAULT_CHUNK_SIZE = 64 * 1024 * 1024;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * Creates a lazily evaluated {@link ScenarioList} from a comma separated
+	 * file with a header line.
+	 * 
+	 * @param file
+	 *            the file to read.
+	 * @param testClass
+	 *            the test class whose constructor the parameters are
+	 *            converted for.
+	 * @return the <code>ScenarioList</code> backed by the file.
+	 */
+	public static ScenarioList csv(final File file, final Class<?> testClass) {
+		return ScenarioList.fromIterable(new DelimitedScenarioSource(file,
+				',', true, testClass));
+	}
+
+	/**
+	 * Creates a lazily evaluated {@link ScenarioList} from a tab separated
+	 * file with a header line.
+	 * 
+	 * @param file
+	 *            the file to read.
+	 * @param testClass
+	 *            the test class whose constructor the parameters are
+	 *            converted for.
+	 * @return the <code>ScenarioList</code> backed by the file.
+	 */
+	public static ScenarioList tsv(final File file, final Class<?> testClass) {
+		return ScenarioList.fromIterable(new DelimitedScenarioSource(file,
+				'\t', true, testClass));
+	}
+
+	private final File file;
+
+	private final byte delimiter;
+
+	private final boolean header;
+
+	private final Class<?>[] parameterTypes;
+
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+	/**
+	 * Creates a new source.
+	 * 
+	 * @param file
+	 *            the file to read.
+	 * @param delimiter
+	 *            the (ASCII) character separating the fields of a row.
+	 * @param header
+	 *            <code>true</code> if the first line of the file is a header
+	 *            line that should be skipped.
+	 * @param testClass
+	 *            the test class whose constructor the parameters are
+	 *            converted for. If the constructor takes a single
+	 *            {@link Scenario} parameter, the parameters are not converted.
+	 */
+	public DelimitedScenarioSource(final File file, final char delimiter,
+			final boolean header, final Class<?> testClass) {
+		super();
+		if (delimiter > 127 || delimiter == '"' || delimiter == '\n'
+				|| delimiter == '\r') {
+			throw new IllegalArgumentException("Unsupported delimiter: "
+					+ delimiter);
+		}
+		this.file = file;
+		this.delimiter = (byte) delimiter;
+		this.header = header;
+		this.parameterTypes = getParameterTypes(testClass);
+	}
+
+	private static Class<?>[] getParameterTypes(final Class<?> testClass) {
+		final Constructor<?>[] constructors = testClass.getConstructors();
+		if (constructors.length != 1) {
+			throw new IllegalArgumentException(
+					"Test class should have exactly one public constructor");
+		}
+		final Class<?>[] types = constructors[0].getParameterTypes();
+		if (types.length == 1 && Scenario.class.isAssignableFrom(types[0])) {
+			return null;
+		}
+		return types;
+	}
+
+	/**
+	 * Sets the size of the regions of the file mapped at once (for testing).
+	 */
+	void setChunkSize(final int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Returns an iterator parsing the rows of the file. The file is read again
+	 * for each iterator.
+	 */
+	public Iterator<Scenario> iterator() {
+		return new RowIterator();
+	}
+
+	/**
+	 * Converts a field to the type provided.
+	 */
+	static Object convert(final String value, final Class<?> type) {
+		if (value == null) {
+			if (type.isPrimitive()) {
+				throw new IllegalArgumentException(
+						"Empty value for primitive type " + type.getName());
+			}
+			return null;
+		}
+		if (type == String.class || type == Object.class
+				|| type == CharSequence.class) {
+			return value;
+		}
+		if (type == Integer.TYPE || type == Integer.class) {
+			return Integer.valueOf(value.trim());
+		}
+		if (type == Long.TYPE || type == Long.class) {
+			return Long.valueOf(value.trim());
+		}
+		if (type == Double.TYPE || type == Double.class) {
+			return Double.valueOf(value.trim());
+		}
+		if (type == Boolean.TYPE || type == Boolean.class) {
+			return Boolean.valueOf(value.trim());
+		}
+		if (type == Short.TYPE || type == Short.class) {
+			return Short.valueOf(value.trim());
+		}
+		if (type == Byte.TYPE || type == Byte.class) {
+			return Byte.valueOf(value.trim());
+		}
+		if (type == Float.TYPE || type == Float.class) {
+			return Float.valueOf(value.trim());
+		}
+		if (type == Character.TYPE || type == Character.class) {
+			if (value.length() != 1) {
+				throw new IllegalArgumentException("Not a character: "
+						+ value);
+			}
+			return Character.valueOf(value.charAt(0));
+		}
+		if (type.isEnum()) {
+			return toEnum(type, value.trim());
+		}
+		try {
+			final Method valueOf = type.getMethod("valueOf", String.class);
+			if (Modifier.isStatic(valueOf.getModifiers())
+					&& type.isAssignableFrom(valueOf.getReturnType())) {
+				return valueOf.invoke(null, value);
+			}
+		} catch (NoSuchMethodException e) {
+			// try the constructor
+		} catch (InvocationTargetException e) {
+			throw new IllegalArgumentException(e.getTargetException());
+		} catch (IllegalAccessException e) {
+			throw new IllegalArgumentException(e);
+		}
+		try {
+			return type.getConstructor(String.class).newInstance(value);
+		} catch (NoSuchMethodException e) {
+			throw new IllegalArgumentException("Can not convert to "
+					+ type.getName());
+		} catch (InvocationTargetException e) {
+			throw new IllegalArgumentException(e.getTargetException());
+		} catch (Exception e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	@SuppressWarnings( { "unchecked", "rawtypes" })
+	private static Object toEnum(final Class<?> type, final String value) {
+		return Enum.valueOf((Class) type, value);
+	}
+
+	/**
+	 * Iterator parsing one row after the other.
+	 */
+	private final class RowIterator implements Iterator<Scenario> {
+
+		private final long size;
+
+		private MappedByteBuffer buffer;
+
+		private long bufferStart;
+
+		private long position;
+
+		private int line;
+
+		private byte[] field = new byte[128];
+
+		private int fieldLength;
+
+		private Scenario next;
+
+		RowIterator() {
+			this.size = file.length();
+			if (header) {
+				readRow();
+			}
+		}
+
+		public boolean hasNext() {
+			while (next == null && position < size) {
+				final List<String> row = readRow();
+				if (row != null) {
+					next = toScenario(row);
+				}
+			}
+			return next != null;
+		}
+
+		public Scenario next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			final Scenario scenario = next;
+			next = null;
+			return scenario;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		private Scenario toScenario(final List<String> row) {
+			final String name = row.get(0) == null ? "line " + line : row
+					.get(0);
+			final Object[] parameters = new Object[row.size() - 1];
+			if (parameterTypes != null
+					&& parameterTypes.length != parameters.length) {
+				throw new IllegalArgumentException(String.format(
+						"Line %d of %s: expected %d parameters, got %d",
+						line, file, parameterTypes.length, parameters.length));
+			}
+			for (int i = 0; i < parameters.length; i++) {
+				final String value = row.get(i + 1);
+				try {
+					parameters[i] = parameterTypes == null ? value : convert(
+							value, parameterTypes[i]);
+				} catch (IllegalArgumentException e) {
+					throw new IllegalArgumentException(String.format(
+							"Line %d of %s, column %d: %s", line, file,
+							i + 2, e.getMessage()), e);
+				}
+			}
+			return new ParameterizedScenario(name, parameters);
+		}
+
+		/**
+		 * Reads the next row.
+		 * 
+		 * @return the fields of the row or <code>null</code> if the line is
+		 *         empty.
+		 */
+		private List<String> readRow() {
+			final List<String> row = new ArrayList<String>();
+			boolean quoted = false;
+			boolean empty = true;
+			fieldLength = 0;
+			line++;
+			while (true) {
+				final int b = byteAt(position);
+				if (b < 0) {
+					break;
+				}
+				position++;
+				if (quoted) {
+					if (b == '"') {
+						if (byteAt(position) == '"') {
+							position++;
+							append(b);
+						} else {
+							quoted = false;
+						}
+					} else {
+						if (b == '\n') {
+							line++;
+						}
+						append(b);
+					}
+				} else if (b == '"' && fieldLength == 0) {
+					quoted = true;
+					empty = false;
+				} else if (b == delimiter) {
+					row.add(takeField());
+					empty = false;
+				} else if (b == '\n') {
+					break;
+				} else if (b != '\r') {
+					append(b);
+					empty = false;
+				}
+			}
+			if (empty) {
+				return null;
+			}
+			row.add(takeField());
+			return row;
+		}
+
+		private void append(final int b) {
+			if (fieldLength == field.length) {
+				final byte[] grown = new byte[field.length * 2];
+				System.arraycopy(field, 0, grown, 0, fieldLength);
+				field = grown;
+			}
+			field[fieldLength++] = (byte) b;
+		}
+
+		private String takeField() {
+			final String value = fieldLength == 0 ? null : new String(field,
+					0, fieldLength, UTF_8);
+			fieldLength = 0;
+			return value;
+		}
+
+		/**
+		 * Returns the byte at the position provided, mapping the region of
+		 * the file starting at that position if required.
+		 * 
+		 * @return the byte or -1 at the end of the file.
+		 */
+		private int byteAt(final long pos) {
+			if (pos >= size) {
+				return -1;
+			}
+			if (buffer == null || pos < bufferStart
+					|| pos >= bufferStart + buffer.limit()) {
+				map(pos);
+			}
+			return buffer.get((int) (pos - bufferStart)) & 0xff;
+		}
+
+		private void map(final long start) {
+			try {
+				final RandomAccessFile raf = new RandomAccessFile(file, "r");
+				try {
+					buffer = raf.getChannel().map(
+							FileChannel.MapMode.READ_ONLY, start,
+							Math.min(chunkSize, size - start));
+					bufferStart = start;
+				} finally {
+					raf.close();
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException("Could not read " + file, e);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,79 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+import java.util.concurrent.Callable;
+
+/**
+ * <p>
+ * A <code>LazyScenario</code> is a {@link Scenario} whose parameters are
+ * passed to the constructor of the test class like those of a
+ * {@link ParameterizedScenario}, but are created on demand. The parameters are requested from the
+ * callable right before the tests of the scenario are run and released right
+ * after, so only the parameters of the scenarios currently running are held
+ * in memory. This is useful for scenarios with large payloads, for example:
+ * 
+ * <pre>
+ * ScenarioList.fromList(Arrays.asList(
+ *  new LazyScenario(&quot;small document&quot;, new Callable&lt;Object[]&gt;() {
+ *  	public Object[] call() throws Exception {
+ *  		return new Object[] { parse(&quot;small.xml&quot;) };
+ *  	}
+ *  }),
+ *  ...
+ * ));
+ * </pre>
+ * 
+ * </p>
+ * <p>
+ * The callable is called once for each run of the scenario and must not keep
+ * a reference to the parameters it returns. If the test methods of the
+ * scenario are run independently (see {@link ParallelScenarios#methods()}),
+ * it is called once for each test method. If the callable fails, it is not
+ * called again for the same run, and all tests of the scenario fail with the
+ * same exception. Lazy scenarios are never skipped by the result cache, as
+ * their parameters are not known up front.
+ * </p>
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ */
+public final class LazyScenario implements Scenario {
+
+	private final String name;
+
+	private final Callable<? extends Object[]> parameters;
+
+	public LazyScenario(final String name,
+			final Callable<? extends Object[]> parameters) {
+		super();
+		if (parameters == null) {
+			throw new NullPointerException("parameters may not be null");
+		}
+		this.name = name;
+		this.parameters = parameters;
+	}
+
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Creates the parameters of this scenario.
+	 */
+	Object[] createParameters() throws Exception {
+		return this.parameters.call();
+	}
+
+}
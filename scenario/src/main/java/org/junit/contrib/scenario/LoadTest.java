@@ -0,0 +1,91 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>
+ * Annotation for a test class run by <code>ScenarioRunner</code> whose
+ * scenarios are run as load tests. Each scenario is run for
+ * {@link #duration()} milliseconds, invoking its test methods (in turn) over
+ * and over again, either at a fixed {@link #rate()} or by a fixed number of
+ * {@link #concurrency() concurrent} threads. Afterwards, the achieved
+ * throughput and the latency percentiles of the scenario are reported to the
+ * listeners registered with
+ * {@link ScenarioRunner#addListener(LoadTestListener)}. A test method fails
+ * if any of its invocations failed.
+ * </p>
+ * <p>
+ * With a rate, the invocations are started at fixed intervals whether or not
+ * earlier invocations are done (an "open loop"), and the latency of each
+ * invocation is measured from the time it should have been started. A slow
+ * system under test therefore results in high latencies, instead of fewer
+ * invocations with seemingly normal latencies ("coordinated omission").
+ * Invocations that would start after the duration, or that exceed a backlog
+ * of 10000 waiting invocations, are not run but reported as missed.
+ * </p>
+ * <p>
+ * Load tests can be enabled for all test classes with the system property
+ * <code>junit.scenario.loadDuration</code> (in milliseconds), together with
+ * <code>junit.scenario.loadRate</code> and
+ * <code>junit.scenario.loadConcurrency</code>. The system properties take
+ * precedence over the annotation. Scenarios of load tests are never run in
+ * parallel with each other.
+ * </p>
+ * <p>
+ * If the system property <code>junit.scenario.loadReport</code> names a file,
+ * a line in JSON format is appended to that file for each scenario, for
+ * example to be evaluated by a CI build:
+ * 
+ * <pre>
+ * {&quot;testClass&quot;: &quot;com.example.ServiceLoadTest&quot;, &quot;scenario&quot;: &quot;lookup&quot;,
+ *  &quot;invocations&quot;: 1000, &quot;failures&quot;: 0, &quot;missed&quot;: 0,
+ *  &quot;elapsedNanos&quot;: 10000250000,
+ *  &quot;p50Nanos&quot;: 1250000, &quot;p90Nanos&quot;: 2100000, &quot;p99Nanos&quot;: 5300000,
+ *  &quot;maxNanos&quot;: 12000000}
+ * </pre>
+ * 
+ * </p>
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ * @see ScenarioRunner
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface LoadTest {
+
+	/**
+	 * The duration of the load test of each scenario in milliseconds.
+	 */
+	long duration() default 10000;
+
+	/**
+	 * The target number of invocations per second. If not positive, the test
+	 * methods are invoked back to back by {@link #concurrency()} threads.
+	 */
+	double rate() default 0;
+
+	/**
+	 * The maximum number of invocations running at the same time. If not
+	 * positive, at most 256 invocations run at the same time at a fixed rate,
+	 * and a single thread is used otherwise.
+	 */
+	int concurrency() default 0;
+
+}
@@ -0,0 +1,31 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+/**
+ * Listener for the results of load tests, see
+ * {@link ScenarioRunner#addListener(LoadTestListener)} and {@link LoadTest}.
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ */
+public interface LoadTestListener {
+
+	/**
+	 * Called after the load test of a scenario is done, before the results
+	 * of its test methods are reported.
+	 */
+	void loadTestFinished(LoadTestReport report);
+
+}
@@ -0,0 +1,147 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+/**
+ * The achieved throughput and the latencies of the load test of a scenario,
+ * see {@link LoadTest}. The latencies are measured from the time each
+ * invocation was scheduled.
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ */
+public final class LoadTestReport {
+
+	private final Class<?> testClass;
+
+	private final String scenarioName;
+
+	private final long invocations;
+
+	private final long failures;
+
+	private final long missed;
+
+	private final long elapsedNanos;
+
+	private final long p50Nanos;
+
+	private final long p90Nanos;
+
+	private final long p99Nanos;
+
+	private final long maxNanos;
+
+	LoadTestReport(final Class<?> testClass, final String scenarioName,
+			final long invocations, final long failures, final long missed,
+			final long elapsedNanos, final long p50Nanos, final long p90Nanos,
+			final long p99Nanos, final long maxNanos) {
+		super();
+		this.testClass = testClass;
+		this.scenarioName = scenarioName;
+		this.invocations = invocations;
+		this.failures = failures;
+		this.missed = missed;
+		this.elapsedNanos = elapsedNanos;
+		this.p50Nanos = p50Nanos;
+		this.p90Nanos = p90Nanos;
+		this.p99Nanos = p99Nanos;
+		this.maxNanos = maxNanos;
+	}
+
+	public Class<?> getTestClass() {
+		return this.testClass;
+	}
+
+	public String getScenarioName() {
+		return this.scenarioName;
+	}
+
+	/**
+	 * Returns the number of invocations of all test methods.
+	 */
+	public long getInvocations() {
+		return this.invocations;
+	}
+
+	/**
+	 * Returns the number of failed invocations of all test methods.
+	 */
+	public long getFailures() {
+		return this.failures;
+	}
+
+	/**
+	 * Returns the number of invocations that were scheduled at a fixed rate
+	 * but not run, because the system under test fell too far behind. These
+	 * are not included in the invocations and latencies.
+	 */
+	public long getMissed() {
+		return this.missed;
+	}
+
+	/**
+	 * Returns the duration of the load test in nanoseconds.
+	 */
+	public long getElapsedNanos() {
+		return this.elapsedNanos;
+	}
+
+	/**
+	 * Returns the achieved number of invocations per second.
+	 */
+	public double getThroughput() {
+		return elapsedNanos == 0 ? 0 : invocations * 1e9 / elapsedNanos;
+	}
+
+	/**
+	 * Returns the median latency in nanoseconds. Latencies of at least
+	 * 128 ns are rounded up to a relative precision of 1/64.
+	 */
+	public long getP50Nanos() {
+		return this.p50Nanos;
+	}
+
+	/**
+	 * Returns the 90th percentile of the latency in nanoseconds.
+	 */
+	public long getP90Nanos() {
+		return this.p90Nanos;
+	}
+
+	/**
+	 * Returns the 99th percentile of the latency in nanoseconds.
+	 */
+	public long getP99Nanos() {
+		return this.p99Nanos;
+	}
+
+	/**
+	 * Returns the maximum latency in nanoseconds.
+	 */
+	public long getMaxNanos() {
+		return this.maxNanos;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Load test %s[%s]: %d invocations in %.1f s "
+				+ "(%.1f/s), latency p50 %.3f ms, p90 %.3f ms, "
+				+ "p99 %.3f ms, max %.3f ms, %d failed, %d missed", testClass
+				.getName(), scenarioName, invocations, elapsedNanos / 1e9,
+				getThroughput(), p50Nanos / 1e6, p90Nanos / 1e6,
+				p99Nanos / 1e6, maxNanos / 1e6, failures, missed);
+	}
+
+}
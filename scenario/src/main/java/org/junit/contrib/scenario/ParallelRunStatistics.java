@@ -0,0 +1,89 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The statistics of running the scenarios of a test class in parallel, see
+ * {@link ParallelRunListener}.
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ */
+public final class ParallelRunStatistics {
+
+	private final Class<?> testClass;
+
+	private final int maxActive;
+
+	private final long busyNanos;
+
+	private final long wallNanos;
+
+	ParallelRunStatistics(final Class<?> testClass, final int maxActive,
+			final long busyNanos, final long wallNanos) {
+		super();
+		this.testClass = testClass;
+		this.maxActive = maxActive;
+		this.busyNanos = busyNanos;
+		this.wallNanos = wallNanos;
+	}
+
+	public Class<?> getTestClass() {
+		return this.testClass;
+	}
+
+	/**
+	 * Returns the maximum number of scenarios (or test methods) that were
+	 * running at the same time.
+	 */
+	public int getMaxActive() {
+		return this.maxActive;
+	}
+
+	/**
+	 * Returns the sum of the elapsed times of all scenarios (or test methods)
+	 * in nanoseconds, that is, about the time a sequential run would take.
+	 */
+	public long getBusyNanos() {
+		return this.busyNanos;
+	}
+
+	/**
+	 * Returns the elapsed (wall clock) time of the whole run in nanoseconds.
+	 */
+	public long getWallNanos() {
+		return this.wallNanos;
+	}
+
+	/**
+	 * Returns the time saved compared with sequential execution in
+	 * nanoseconds, or 0 if none.
+	 */
+	public long getSavedNanos() {
+		return Math.max(0, busyNanos - wallNanos);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: at most %d scenarios concurrently active, "
+				+ "%d ms sequential time in %d ms wall time (%d ms saved)",
+				testClass.getName(), maxActive, TimeUnit.NANOSECONDS
+						.toMillis(busyNanos), TimeUnit.NANOSECONDS
+						.toMillis(wallNanos), TimeUnit.NANOSECONDS
+						.toMillis(getSavedNanos()));
+	}
+
+}
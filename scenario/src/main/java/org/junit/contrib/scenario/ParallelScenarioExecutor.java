@@ -0,0 +1,326 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.runner.Runner;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.model.FrameworkMethod;
+
+/**
+ * <p>
+ * Internal executor running scenarios (and optionally the test methods of a
+ * scenario) on a bounded thread pool, see {@link ParallelScenarios}.
+ * </p>
+ * <p>
+ * The events of each scenario are recorded while it runs and reported to the
+ * real {@link RunNotifier} by the calling thread, in the same order the
+ * scenarios would have been run sequentially. Only a limited number of
+ * scenarios is submitted ahead of the one currently reported, so lazily
+ * evaluated scenario lists are not materialized.
+ * </p>
+ * <p>
+ * With virtual threads, each scenario runs on its own (virtual) thread and
+ * the number of scenarios running at the same time is limited by the
+ * configured number of threads, if any, and otherwise by the number of
+ * scenarios submitted ahead ({@value #MAX_IN_FLIGHT}). On Java versions
+ * without virtual threads, a pool of at most
+ * {@value #MAX_PLATFORM_THREADS} platform threads is used instead. After the
+ * run, the statistics (such as the maximum number of concurrently active
+ * scenarios) are reported to the {@link ParallelRunListener}s.
+ * </p>
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ */
+final class ParallelScenarioExecutor {
+
+	static final String PARALLELISM_PROPERTY = "junit.scenario.parallelism";
+
+	static final String PARALLEL_METHODS_PROPERTY = "junit.scenario.parallelMethods";
+
+	static final String VIRTUAL_THREADS_PROPERTY = "junit.scenario.virtualThreads";
+
+	/**
+	 * The maximum number of scenarios submitted ahead of the one currently
+	 * reported, if the number of threads is unlimited.
+	 */
+	static final int MAX_IN_FLIGHT = 1000;
+
+	/**
+	 * The number of platform threads used for virtual threads if they are
+	 * not supported and the number of threads is unlimited.
+	 */
+	static final int MAX_PLATFORM_THREADS = 256;
+
+	private static final List<ParallelRunListener> LISTENERS = new CopyOnWriteArrayList<ParallelRunListener>();
+
+	private final Class<?> testClass;
+
+	/**
+	 * The maximum number of concurrently running units, or 0 if unlimited.
+	 */
+	private final int parallelism;
+
+	private final boolean parallelMethods;
+
+	private final boolean virtualThreads;
+
+	private final AtomicInteger active = new AtomicInteger();
+
+	private final AtomicInteger maxActive = new AtomicInteger();
+
+	private final AtomicLong busyNanos = new AtomicLong();
+
+	ParallelScenarioExecutor(final Class<?> testClass, final int parallelism,
+			final boolean parallelMethods, final boolean virtualThreads) {
+		super();
+		this.testClass = testClass;
+		this.parallelism = parallelism;
+		this.parallelMethods = parallelMethods;
+		this.virtualThreads = virtualThreads;
+	}
+
+	/**
+	 * Creates the executor configured for the test class by the
+	 * {@link ParallelScenarios} annotation or the system properties.
+	 * 
+	 * @param klass
+	 *            the test class.
+	 * @return the executor or <code>null</code> if the scenarios of the test
+	 *         class should be run sequentially.
+	 */
+	static ParallelScenarioExecutor forTestClass(final Class<?> klass) {
+		final ParallelScenarios annotation = klass
+				.getAnnotation(ParallelScenarios.class);
+		final String threads = System.getProperty(PARALLELISM_PROPERTY);
+		final String virtual = System.getProperty(VIRTUAL_THREADS_PROPERTY);
+		if (annotation == null && threads == null && virtual == null) {
+			return null;
+		}
+
+		final boolean virtualThreads = virtual != null ? Boolean
+				.parseBoolean(virtual.trim()) : annotation != null
+				&& annotation.virtualThreads();
+
+		int parallelism = threads != null ? Integer.parseInt(threads.trim())
+				: annotation != null ? annotation.threads() : 0;
+		if (parallelism <= 0) {
+			parallelism = virtualThreads ? 0 : Runtime.getRuntime()
+					.availableProcessors();
+		}
+
+		final String methods = System.getProperty(PARALLEL_METHODS_PROPERTY);
+		final boolean parallelMethods = methods != null ? Boolean
+				.parseBoolean(methods.trim()) : annotation != null
+				&& annotation.methods();
+
+		if (parallelism == 1) {
+			return null;
+		}
+		return new ParallelScenarioExecutor(klass, parallelism,
+				parallelMethods, virtualThreads);
+	}
+
+	static void addListener(final ParallelRunListener listener) {
+		if (listener == null) {
+			throw new NullPointerException("listener may not be null");
+		}
+		LISTENERS.add(listener);
+	}
+
+	static void removeListener(final ParallelRunListener listener) {
+		LISTENERS.remove(listener);
+	}
+
+	/**
+	 * Runs all scenario runners provided and waits for them to finish.
+	 * 
+	 * @param runners
+	 *            the scenario runners.
+	 * @param notifier
+	 *            the notifier to report the results to.
+	 */
+	void run(final Iterator<? extends Runner> runners,
+			final RunNotifier notifier) throws Throwable {
+		ExecutorService executor = virtualThreads ? newVirtualThreadPerTaskExecutor()
+				: null;
+		// without virtual threads, the number of threads must be limited
+		final int limit = parallelism > 0 || executor != null ? parallelism
+				: MAX_PLATFORM_THREADS;
+		if (executor == null) {
+			executor = Executors.newFixedThreadPool(limit,
+					new ScenarioThreadFactory());
+		}
+		final Semaphore permits = limit > 0 ? new Semaphore(limit) : null;
+		final int window = limit > 0 ? 2 * limit : MAX_IN_FLIGHT;
+		final LinkedList<Future<RecordingRunNotifier>> pending = new LinkedList<Future<RecordingRunNotifier>>();
+		final long start = System.nanoTime();
+		try {
+			while (runners.hasNext()) {
+				final Runner runner = runners.next();
+				if (parallelMethods && runner instanceof SingleScenarioRunner
+						&& ((SingleScenarioRunner) runner).isMethodsIndependent()) {
+					final SingleScenarioRunner scenarioRunner = (SingleScenarioRunner) runner;
+					for (FrameworkMethod method : scenarioRunner.getMethods()) {
+						pending.add(executor.submit(methodTask(scenarioRunner,
+								method, permits)));
+					}
+				} else {
+					pending.add(executor.submit(runnerTask(runner, permits)));
+				}
+				while (pending.size() > window) {
+					replay(pending.removeFirst(), notifier);
+				}
+			}
+			while (!pending.isEmpty()) {
+				replay(pending.removeFirst(), notifier);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		final long wallNanos = System.nanoTime() - start;
+		if (!LISTENERS.isEmpty()) {
+			final ParallelRunStatistics statistics = new ParallelRunStatistics(
+					testClass, maxActive.get(), busyNanos.get(), wallNanos);
+			for (ParallelRunListener listener : LISTENERS) {
+				listener.parallelRunFinished(statistics);
+			}
+		}
+	}
+
+	/**
+	 * Creates an executor service starting a new virtual thread for each
+	 * task. This class is compiled for Java 6, so the method is called using
+	 * reflection.
+	 * 
+	 * @return the executor service or <code>null</code> if virtual threads
+	 *         are not supported by this Java version.
+	 */
+	private static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod(
+					"newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (NoSuchMethodException e) {
+			return null;
+		} catch (Exception e) {
+			// e.g. preview feature not enabled
+			return null;
+		}
+	}
+
+	/**
+	 * Runs a unit of work, limiting the number of concurrently active units
+	 * and keeping track of the statistics.
+	 */
+	private void execute(final Runnable unit, final Semaphore permits)
+			throws InterruptedException {
+		if (permits != null) {
+			permits.acquire();
+		}
+		try {
+			final int now = active.incrementAndGet();
+			int max;
+			while (now > (max = maxActive.get())
+					&& !maxActive.compareAndSet(max, now)) {
+				// retry
+			}
+			final long start = System.nanoTime();
+			try {
+				unit.run();
+			} finally {
+				busyNanos.addAndGet(System.nanoTime() - start);
+				active.decrementAndGet();
+			}
+		} finally {
+			if (permits != null) {
+				permits.release();
+			}
+		}
+	}
+
+	private static void replay(final Future<RecordingRunNotifier> future,
+			final RunNotifier notifier) throws Throwable {
+		try {
+			future.get().replay(notifier);
+		} catch (ExecutionException e) {
+			throw e.getCause();
+		}
+	}
+
+	private Callable<RecordingRunNotifier> runnerTask(final Runner runner,
+			final Semaphore permits) {
+		return new Callable<RecordingRunNotifier>() {
+			public RecordingRunNotifier call() throws InterruptedException {
+				final RecordingRunNotifier recorder = new RecordingRunNotifier();
+				execute(new Runnable() {
+					public void run() {
+						runner.run(recorder);
+					}
+				}, permits);
+				return recorder;
+			}
+		};
+	}
+
+	private Callable<RecordingRunNotifier> methodTask(
+			final SingleScenarioRunner runner, final FrameworkMethod method,
+			final Semaphore permits) {
+		return new Callable<RecordingRunNotifier>() {
+			public RecordingRunNotifier call() throws InterruptedException {
+				final RecordingRunNotifier recorder = new RecordingRunNotifier();
+				execute(new Runnable() {
+					public void run() {
+						runner.runMethod(method, recorder);
+					}
+				}, permits);
+				return recorder;
+			}
+		};
+	}
+
+	/**
+	 * Creates named daemon threads, so that a test run is never kept alive by
+	 * the pool.
+	 */
+	static final class ScenarioThreadFactory implements ThreadFactory {
+
+		private static final AtomicInteger POOL_NUMBER = new AtomicInteger();
+
+		private final int poolNumber = POOL_NUMBER.incrementAndGet();
+
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		public Thread newThread(final Runnable r) {
+			final Thread thread = new Thread(r, "scenario-" + poolNumber
+					+ "-" + threadNumber.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+
+}
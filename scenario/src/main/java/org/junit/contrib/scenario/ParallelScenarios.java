@@ -0,0 +1,71 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>
+ * Annotation for a test class run by <code>ScenarioRunner</code> whose
+ * scenarios may be run concurrently. The scenarios will be run on a pool of
+ * {@link #threads()} threads. If {@link #methods()} is <code>true</code>, the
+ * test methods of a single scenario are run concurrently too.
+ * </p>
+ * <p>
+ * Parallel execution can be enabled for all test classes with the system
+ * property <code>junit.scenario.parallelism</code> (the number of threads)
+ * and for test methods with <code>junit.scenario.parallelMethods</code>.
+ * Virtual threads can be enabled with
+ * <code>junit.scenario.virtualThreads</code>. The system properties take
+ * precedence over the annotation.
+ * </p>
+ * 
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ * @see ScenarioRunner
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ParallelScenarios {
+
+	/**
+	 * The maximum number of scenarios (or test methods) run at the same time.
+	 * If not positive, the number of available processors is used (or no
+	 * limit at all when using {@link #virtualThreads() virtual threads}).
+	 */
+	int threads() default 0;
+
+	/**
+	 * Whether the test methods of a single scenario may be run concurrently.
+	 * This is ignored for test classes with {@link BeforeScenario},
+	 * {@link AfterScenario} or {@link ScenarioResult} methods.
+	 */
+	boolean methods() default false;
+
+	/**
+	 * Whether each scenario should be run on its own virtual thread. This is
+	 * intended for scenarios that mostly wait for I/O. The number of
+	 * scenarios running at the same time is limited by {@link #threads()} if
+	 * positive, and otherwise only by the number of scenarios submitted
+	 * ahead. On Java versions without virtual threads, a pool of platform
+	 * threads is used instead, limited to 256 threads if
+	 * {@link #threads()} is not positive.
+	 */
+	boolean virtualThreads() default false;
+
+}
@@ -0,0 +1,82 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>
+ * Annotation for a test class run by <code>ScenarioRunner</code> whose test
+ * methods double as performance regression tests. Each test method is invoked
+ * {@link #warmup()} times to warm up and then {@link #runs()} times measuring
+ * the elapsed time, all on the same test instance and within the same
+ * &#064;Before and &#064;After methods and rules. The median of the measured
+ * runs is compared to the baseline of the test method and scenario stored in
+ * {@link #value() the baseline file}. If it exceeds the baseline by more than
+ * {@link #tolerance()}, the test fails. Test methods without baseline never
+ * fail for performance reasons. For example:
+ * 
+ * <pre>
+ * &#064;RunWith(ScenarioRunner.class)
+ * &#064;PerformanceBaseline(&quot;src/test/resources/calculator.baseline&quot;)
+ * public class CalculatorTest {
+ * 	...
+ * }
+ * </pre>
+ * 
+ * </p>
+ * <p>
+ * To create or update the baseline file, run the tests with the system
+ * property <code>junit.scenario.updateBaseline</code> set to
+ * <code>true</code>. The medians measured are then written to the file
+ * instead of being compared. The file contains one line per test method and
+ * scenario with the median in nanoseconds, the name of the scenario and the
+ * name of the test method, separated by tabs. The measured times depend on
+ * the machine, so the baseline should be created on the machine running the
+ * regression tests, and scenarios should not be run in parallel.
+ * </p>
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ * @see ScenarioRunner
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface PerformanceBaseline {
+
+	/**
+	 * The path of the baseline file.
+	 */
+	String value();
+
+	/**
+	 * The tolerated relative slowdown, for example 0.25 to fail if a test
+	 * method is more than 25% slower than its baseline.
+	 */
+	double tolerance() default 0.25;
+
+	/**
+	 * The number of invocations before measuring.
+	 */
+	int warmup() default 3;
+
+	/**
+	 * The number of measured invocations.
+	 */
+	int runs() default 5;
+
+}
@@ -0,0 +1,112 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.runner.Description;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunNotifier;
+
+/**
+ * Internal notifier recording the events of tests run concurrently, so that
+ * they can be replayed later to the real {@link RunNotifier} from a single
+ * thread and in a deterministic order.
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ */
+final class RecordingRunNotifier extends RunNotifier {
+
+	private enum EventType {
+		STARTED, FAILURE, ASSUMPTION_FAILED, IGNORED, FINISHED
+	}
+
+	private static final class Event {
+		private final EventType type;
+		private final Description description;
+		private final Failure failure;
+
+		private Event(final EventType type, final Description description,
+				final Failure failure) {
+			this.type = type;
+			this.description = description;
+			this.failure = failure;
+		}
+	}
+
+	private final List<Event> events = new ArrayList<Event>();
+
+	private synchronized void record(final EventType type,
+			final Description description, final Failure failure) {
+		events.add(new Event(type, description, failure));
+	}
+
+	@Override
+	public void fireTestStarted(final Description description) {
+		record(EventType.STARTED, description, null);
+	}
+
+	@Override
+	public void fireTestFailure(final Failure failure) {
+		record(EventType.FAILURE, null, failure);
+	}
+
+	@Override
+	public void fireTestAssumptionFailed(final Failure failure) {
+		record(EventType.ASSUMPTION_FAILED, null, failure);
+	}
+
+	@Override
+	public void fireTestIgnored(final Description description) {
+		record(EventType.IGNORED, description, null);
+	}
+
+	@Override
+	public void fireTestFinished(final Description description) {
+		record(EventType.FINISHED, description, null);
+	}
+
+	/**
+	 * Replays all recorded events to the notifier provided in the order they
+	 * have been recorded.
+	 * 
+	 * @param notifier
+	 *            the notifier to report the events to.
+	 */
+	synchronized void replay(final RunNotifier notifier) {
+		for (Event event : events) {
+			switch (event.type) {
+			case STARTED:
+				notifier.fireTestStarted(event.description);
+				break;
+			case FAILURE:
+				notifier.fireTestFailure(event.failure);
+				break;
+			case ASSUMPTION_FAILED:
+				notifier.fireTestAssumptionFailed(event.failure);
+				break;
+			case IGNORED:
+				notifier.fireTestIgnored(event.description);
+				break;
+			case FINISHED:
+				notifier.fireTestFinished(event.description);
+				break;
+			}
+		}
+		events.clear();
+	}
+
+}
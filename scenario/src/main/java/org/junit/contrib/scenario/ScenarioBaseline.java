@@ -0,0 +1,187 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.Statement;
+
+/**
+ * Internal performance regression gate of a test class annotated with
+ * {@link PerformanceBaseline}.
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ */
+final class ScenarioBaseline {
+
+	static final String UPDATE_BASELINE_PROPERTY = "junit.scenario.updateBaseline";
+
+	private final File file;
+
+	private final PerformanceBaseline settings;
+
+	private final boolean update;
+
+	/**
+	 * The baseline (or, when updating, the measured) medians in nanoseconds
+	 * by scenario and test method name.
+	 */
+	private final Map<String, Long> medians;
+
+	private boolean modified;
+
+	ScenarioBaseline(final PerformanceBaseline settings, final boolean update)
+			throws IOException {
+		super();
+		if (settings.runs() < 1 || settings.warmup() < 0
+				|| settings.tolerance() < 0) {
+			throw new IllegalArgumentException(
+					"Invalid @PerformanceBaseline settings");
+		}
+		this.file = new File(settings.value());
+		this.settings = settings;
+		this.update = update;
+		this.medians = load(file);
+	}
+
+	/**
+	 * Creates the performance gate of the test class provided.
+	 * 
+	 * @return the gate or <code>null</code> if the test class is not
+	 *         annotated with {@link PerformanceBaseline}.
+	 */
+	static ScenarioBaseline forTestClass(final Class<?> klass)
+			throws IOException {
+		final PerformanceBaseline settings = klass
+				.getAnnotation(PerformanceBaseline.class);
+		if (settings == null) {
+			return null;
+		}
+		return new ScenarioBaseline(settings, Boolean.getBoolean(
+				UPDATE_BASELINE_PROPERTY));
+	}
+
+	/**
+	 * Wraps the statement invoking a test method to invoke it repeatedly and
+	 * compare the median elapsed time to the baseline.
+	 */
+	Statement measure(final Scenario scenario, final FrameworkMethod method,
+			final Statement invoker) {
+		return new Statement() {
+			@Override
+			public void evaluate() throws Throwable {
+				for (int i = 0; i < settings.warmup(); i++) {
+					invoker.evaluate();
+				}
+				final long[] times = new long[settings.runs()];
+				for (int i = 0; i < times.length; i++) {
+					final long start = System.nanoTime();
+					invoker.evaluate();
+					times[i] = System.nanoTime() - start;
+				}
+				verify(key(scenario, method), median(times));
+			}
+		};
+	}
+
+	private static String key(final Scenario scenario,
+			final FrameworkMethod method) {
+		return scenario.getName() + "\t" + method.getName();
+	}
+
+	static long median(final long[] times) {
+		final long[] sorted = times.clone();
+		Arrays.sort(sorted);
+		final int middle = sorted.length / 2;
+		return sorted.length % 2 == 1 ? sorted[middle]
+				: (sorted[middle - 1] + sorted[middle]) / 2;
+	}
+
+	private synchronized void verify(final String key, final long median) {
+		if (update) {
+			medians.put(key, median);
+			modified = true;
+			return;
+		}
+		final Long baseline = medians.get(key);
+		if (baseline == null) {
+			return;
+		}
+		final double limit = baseline * (1 + settings.tolerance());
+		if (median > limit) {
+			throw new AssertionError(String.format(
+					"Performance regression: median of %d runs is %.3f ms, "
+							+ "%.0f%% slower than the baseline of %.3f ms "
+							+ "(tolerance %.0f%%)", settings.runs(),
+					median / 1e6, (median - baseline) * 100.0 / baseline,
+					baseline / 1e6, settings.tolerance() * 100));
+		}
+	}
+
+	/**
+	 * Writes the measured medians to the baseline file, if updating.
+	 */
+	synchronized void save() throws IOException {
+		if (!modified) {
+			return;
+		}
+		final Writer writer = new OutputStreamWriter(new FileOutputStream(
+				file), "UTF-8");
+		try {
+			for (Map.Entry<String, Long> entry : medians.entrySet()) {
+				writer.write(entry.getValue() + "\t" + entry.getKey() + "\n");
+			}
+		} finally {
+			writer.close();
+		}
+		modified = false;
+	}
+
+	private static Map<String, Long> load(final File file) throws IOException {
+		final Map<String, Long> medians = new TreeMap<String, Long>();
+		if (!file.exists()) {
+			return medians;
+		}
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(file), "UTF-8"));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				final String[] fields = line.split("\t", 2);
+				if (fields.length == 2) {
+					medians.put(fields[1], Long.valueOf(fields[0].trim()));
+				}
+			}
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid baseline file " + file + ": "
+					+ e.getMessage());
+		} finally {
+			reader.close();
+		}
+		return medians;
+	}
+
+}
@@ -0,0 +1,100 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+/**
+ * Internal state of a single execution of a scenario, shared by all test
+ * methods run for the scenario. The context is discarded once the scenario
+ * has been run, so that no state is kept for scenarios already run.
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ */
+final class ScenarioContext {
+
+	private final Scenario scenario;
+
+	/**
+	 * Whether the scenario result has been computed (successfully or not).
+	 */
+	boolean resultComputed;
+
+	/**
+	 * The memoized scenario result, see {@link ScenarioResult}.
+	 */
+	Object result;
+
+	/**
+	 * The failure computing the scenario result, if any.
+	 */
+	Throwable resultFailure;
+
+	/**
+	 * The instance the &#064;BeforeScenario and &#064;AfterScenario instance
+	 * methods are called on, or <code>null</code> if not created (yet). Its
+	 * {@link ScenarioFixture} fields are copied to the test instances.
+	 */
+	Object hookTarget;
+
+	/**
+	 * The parameters of a {@link LazyScenario}, created on demand and
+	 * released by {@link #release()}.
+	 */
+	private Object[] parameters;
+
+	/**
+	 * The failure creating the parameters of a {@link LazyScenario}, if any.
+	 */
+	private Exception parametersFailure;
+
+	ScenarioContext(final Scenario scenario) {
+		super();
+		this.scenario = scenario;
+	}
+
+	Scenario getScenario() {
+		return this.scenario;
+	}
+
+	/**
+	 * Returns the parameters of the {@link LazyScenario}, creating them on the
+	 * first call. If creating them failed, the same exception is thrown again.
+	 */
+	synchronized Object[] getParameters() throws Exception {
+		if (this.parametersFailure != null) {
+			throw this.parametersFailure;
+		}
+		if (this.parameters == null) {
+			try {
+				this.parameters = ((LazyScenario) scenario).createParameters();
+			} catch (Exception e) {
+				this.parametersFailure = e;
+				throw e;
+			}
+		}
+		return this.parameters;
+	}
+
+	/**
+	 * Releases the state held for the scenario once it has been run.
+	 */
+	synchronized void release() {
+		this.parameters = null;
+		this.parametersFailure = null;
+		this.hookTarget = null;
+		this.result = null;
+		this.resultFailure = null;
+	}
+
+}
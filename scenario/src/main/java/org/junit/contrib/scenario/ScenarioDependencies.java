@@ -0,0 +1,51 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>
+ * Annotation for a test class run by <code>ScenarioRunner</code> listing the
+ * production classes its scenarios depend on. If the result cache is enabled
+ * by the system property <code>junit.scenario.resultCache</code> (naming the
+ * cache file), a scenario that passed before is not run again as long as its
+ * name, its parameters, the bytecode of the test class and the bytecode of the
+ * classes listed here did not change. Such scenarios are reported as ignored.
+ * </p>
+ * <p>
+ * Changes of classes not listed do not invalidate the cached results, so list
+ * all classes tested by the scenarios. The cache can only be used for
+ * scenarios with parameters whose <code>toString()</code> describes them
+ * completely, like <code>ParameterizedScenario</code>s of numbers and
+ * strings, and is never used for {@link LazyScenario}s.
+ * </p>
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ * @see ScenarioRunner
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ScenarioDependencies {
+
+	/**
+	 * The production classes tested by the scenarios.
+	 */
+	Class<?>[] value();
+
+}
@@ -0,0 +1,64 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>
+ * Annotation for a field of the test class holding a fixture shared by all
+ * test methods of a scenario. The field is set by the &#064;BeforeScenario
+ * instance methods of the test class and copied to each instance the test
+ * methods of the scenario are run on. For example:
+ * 
+ * <pre>
+ * &#064;ScenarioFixture
+ * public Database database;
+ * 
+ * &#064;BeforeScenario
+ * public void startDatabase() {
+ * 	database = Database.start(schema);
+ * }
+ * 
+ * &#064;AfterScenario
+ * public void stopDatabase() {
+ * 	database.stop();
+ * }
+ * 
+ * &#064;Test
+ * public void shouldFindCustomer() {
+ * 	assertThat(database.find(customerId), is(notNullValue()));
+ * }
+ * </pre>
+ * 
+ * </p>
+ * <p>
+ * The fields annotated must be public and not static. As the fixture is
+ * shared, the test methods should not modify it.
+ * </p>
+ * 
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ * @see BeforeScenario
+ * @see ScenarioRunner
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface ScenarioFixture {
+
+}
@@ -0,0 +1,477 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * <p>
+ * A <code>ScenarioGenerator</code> creates {@link ParameterizedScenario}s
+ * combining the values of several dimensions. Each dimension is one parameter
+ * of the test class constructor. For example:
+ * 
+ * <pre>
+ * &#064;Scenarios
+ * public static ScenarioList scenarios() {
+ * 	return new ScenarioGenerator()
+ * 		.dimension(&quot;browser&quot;, &quot;firefox&quot;, &quot;chrome&quot;, &quot;safari&quot;)
+ * 		.dimension(&quot;os&quot;, &quot;linux&quot;, &quot;windows&quot;, &quot;mac&quot;)
+ * 		.dimension(&quot;locale&quot;, Locale.GERMAN, Locale.ENGLISH)
+ * 		.pairwise();
+ * }
+ * </pre>
+ * 
+ * </p>
+ * <p>
+ * All scenario lists created are lazily evaluated (see
+ * {@link ScenarioList#fromIterable(Iterable)}), the combinations are computed
+ * while the scenarios are iterated and are not held in memory. The scenarios
+ * are named after their values, e.g. <code>browser=firefox, os=linux,
+ * locale=de</code>. The following modes are supported:
+ * <ul>
+ * <li>{@link #cartesian()} - all combinations of all values.</li>
+ * <li>{@link #pairwise()} and {@link #nWise(int)} - a covering array, that is
+ * a (usually much smaller) set of combinations where each combination of
+ * values of any <code>n</code> dimensions occurs at least once. The covering
+ * array is computed by a deterministic greedy algorithm and is not
+ * necessarily minimal.</li>
+ * <li>{@link #sample(int, long)} - distinct combinations chosen at random,
+ * reproducible by the seed.</li>
+ * </ul>
+ * </p>
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ */
+public final class ScenarioGenerator {
+
+	/**
+	 * The maximum number of values of a dimension tried when completing a
+	 * combination of a covering array.
+	 */
+	private static final int CANDIDATES = 64;
+
+	private final List<String> names = new ArrayList<String>();
+
+	private final List<Object[]> dimensions = new ArrayList<Object[]>();
+
+	/**
+	 * Adds a dimension, that is a parameter of the test class constructor.
+	 * 
+	 * @param name
+	 *            the name of the dimension, used to name the scenarios.
+	 * @param values
+	 *            the values of the dimension, at least one.
+	 * @return this generator.
+	 */
+	public ScenarioGenerator dimension(final String name,
+			final Object... values) {
+		if (values == null || values.length == 0) {
+			throw new IllegalArgumentException("Dimension " + name
+					+ " has no values");
+		}
+		names.add(name);
+		dimensions.add(values.clone());
+		return this;
+	}
+
+	/**
+	 * Returns all combinations of the values of all dimensions. The last
+	 * dimension varies fastest.
+	 * 
+	 * @return the lazily evaluated <code>ScenarioList</code>.
+	 */
+	public ScenarioList cartesian() {
+		final Object[][] values = values();
+		return ScenarioList.fromIterable(new Iterable<Scenario>() {
+			public Iterator<Scenario> iterator() {
+				return new CombinationIterator(values) {
+
+					private int[] next = new int[values.length];
+
+					@Override
+					protected int[] computeNext() {
+						final int[] current = next;
+						if (current != null) {
+							next = current.clone();
+							int i = values.length - 1;
+							while (i >= 0 && ++next[i] == values[i].length) {
+								next[i--] = 0;
+							}
+							if (i < 0) {
+								next = null;
+							}
+						}
+						return current;
+					}
+				};
+			}
+		});
+	}
+
+	/**
+	 * Returns a covering array for all pairs of values, see
+	 * {@link #nWise(int)}.
+	 * 
+	 * @return the lazily evaluated <code>ScenarioList</code>.
+	 */
+	public ScenarioList pairwise() {
+		return nWise(2);
+	}
+
+	/**
+	 * Returns combinations such that each combination of values of any
+	 * <code>n</code> dimensions is part of at least one scenario. The
+	 * combinations are computed one after the other by a greedy algorithm:
+	 * each combination starts with a combination of values not yet covered
+	 * and is completed by the values covering the most combinations not yet
+	 * covered. The memory used is one bit per combination of values of
+	 * <code>n</code> dimensions.
+	 * 
+	 * @param n
+	 *            the number of dimensions whose values are combined, at
+	 *            least 1.
+	 * @return the lazily evaluated <code>ScenarioList</code>.
+	 */
+	public ScenarioList nWise(final int n) {
+		if (n < 1) {
+			throw new IllegalArgumentException("n must be at least 1: " + n);
+		}
+		final Object[][] values = values();
+		if (n >= values.length) {
+			return cartesian();
+		}
+		return ScenarioList.fromIterable(new Iterable<Scenario>() {
+			public Iterator<Scenario> iterator() {
+				return new CoveringArrayIterator(values, n);
+			}
+		});
+	}
+
+	/**
+	 * Returns distinct combinations chosen at random. The same seed results
+	 * in the same scenarios.
+	 * 
+	 * @param count
+	 *            the number of scenarios, not negative. If there are less
+	 *            combinations, all combinations are returned (in random
+	 *            order).
+	 * @param seed
+	 *            the seed of the random number generator.
+	 * @return the lazily evaluated <code>ScenarioList</code>.
+	 */
+	public ScenarioList sample(final int count, final long seed) {
+		if (count < 0) {
+			throw new IllegalArgumentException("count must not be negative: "
+					+ count);
+		}
+		final Object[][] values = values();
+		long total = 1;
+		for (Object[] dimension : values) {
+			total = total > Long.MAX_VALUE / dimension.length ? Long.MAX_VALUE
+					: total * dimension.length;
+		}
+		final long size = Math.min(count, total);
+		return ScenarioList.fromIterable(new Iterable<Scenario>() {
+			public Iterator<Scenario> iterator() {
+				final Random random = new Random(seed);
+				final Set<List<Integer>> drawn = new HashSet<List<Integer>>();
+				return new CombinationIterator(values) {
+
+					@Override
+					protected int[] computeNext() {
+						if (drawn.size() == size) {
+							return null;
+						}
+						while (true) {
+							final int[] combination = new int[values.length];
+							final List<Integer> key = new ArrayList<Integer>(
+									values.length);
+							for (int i = 0; i < values.length; i++) {
+								combination[i] = random
+										.nextInt(values[i].length);
+								key.add(combination[i]);
+							}
+							if (drawn.add(key)) {
+								return combination;
+							}
+						}
+					}
+				};
+			}
+		});
+	}
+
+	private Object[][] values() {
+		if (dimensions.isEmpty()) {
+			throw new IllegalStateException("No dimensions");
+		}
+		return dimensions.toArray(new Object[dimensions.size()][]);
+	}
+
+	/**
+	 * Base class of the iterators, creating a scenario for each combination
+	 * of value indexes.
+	 */
+	private abstract class CombinationIterator implements Iterator<Scenario> {
+
+		private final Object[][] values;
+
+		private final String[] dimensionNames = names
+				.toArray(new String[names.size()]);
+
+		private int[] next;
+
+		private boolean computed;
+
+		CombinationIterator(final Object[][] values) {
+			super();
+			this.values = values;
+		}
+
+		/**
+		 * Computes the indexes of the values of the next combination.
+		 * 
+		 * @return the indexes or <code>null</code> if there are no more
+		 *         combinations.
+		 */
+		protected abstract int[] computeNext();
+
+		public boolean hasNext() {
+			if (!computed) {
+				next = computeNext();
+				computed = true;
+			}
+			return next != null;
+		}
+
+		public Scenario next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			computed = false;
+			final Object[] parameters = new Object[values.length];
+			final StringBuilder name = new StringBuilder();
+			for (int i = 0; i < values.length; i++) {
+				parameters[i] = values[i][next[i]];
+				if (i > 0) {
+					name.append(", ");
+				}
+				name.append(dimensionNames[i]).append('=').append(
+						parameters[i]);
+			}
+			return new ParameterizedScenario(name.toString(), parameters);
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException(
+					"ScenarioList is read-only");
+		}
+	}
+
+	/**
+	 * Computes a covering array one combination at a time. The combinations
+	 * of values of each <code>n</code> dimensions (a "tuple") not yet covered
+	 * are tracked in one bit set per combination of dimensions.
+	 */
+	private final class CoveringArrayIterator extends CombinationIterator {
+
+		private final Object[][] values;
+
+		/**
+		 * The dimensions of each combination of <code>n</code> dimensions.
+		 */
+		private final int[][] combinations;
+
+		/**
+		 * The covered tuples of each combination of dimensions, indexed by
+		 * the mixed radix number of the value indexes.
+		 */
+		private final BitSet[] covered;
+
+		/**
+		 * The number of tuples of each combination of dimensions.
+		 */
+		private final int[] tuples;
+
+		/**
+		 * The combinations of dimensions each dimension is part of.
+		 */
+		private final int[][] combinationsOf;
+
+		/**
+		 * The value tried first when completing a combination, per dimension,
+		 * so that all values are tried eventually.
+		 */
+		private final int[] offsets;
+
+		private long uncovered;
+
+		/**
+		 * The combination of dimensions and the first tuple of it that might
+		 * not be covered yet.
+		 */
+		private int combination;
+
+		private int tuple;
+
+		CoveringArrayIterator(final Object[][] values, final int n) {
+			super(values);
+			this.values = values;
+			final List<int[]> list = new ArrayList<int[]>();
+			addCombinations(list, new int[n], 0, 0);
+			this.combinations = list.toArray(new int[list.size()][]);
+			this.covered = new BitSet[combinations.length];
+			this.tuples = new int[combinations.length];
+			for (int c = 0; c < combinations.length; c++) {
+				long size = 1;
+				for (int dimension : combinations[c]) {
+					size *= values[dimension].length;
+					if (size > Integer.MAX_VALUE) {
+						throw new IllegalArgumentException(
+								"Too many combinations of values");
+					}
+				}
+				tuples[c] = (int) size;
+				covered[c] = new BitSet(tuples[c]);
+				uncovered += size;
+			}
+			this.combinationsOf = new int[values.length][];
+			for (int d = 0; d < values.length; d++) {
+				final List<Integer> of = new ArrayList<Integer>();
+				for (int c = 0; c < combinations.length; c++) {
+					for (int dimension : combinations[c]) {
+						if (dimension == d) {
+							of.add(c);
+						}
+					}
+				}
+				combinationsOf[d] = new int[of.size()];
+				for (int i = 0; i < combinationsOf[d].length; i++) {
+					combinationsOf[d][i] = of.get(i);
+				}
+			}
+			this.offsets = new int[values.length];
+		}
+
+		private void addCombinations(final List<int[]> list,
+				final int[] current, final int index, final int start) {
+			if (index == current.length) {
+				list.add(current.clone());
+				return;
+			}
+			for (int d = start; d < values.length; d++) {
+				current[index] = d;
+				addCombinations(list, current, index + 1, d + 1);
+			}
+		}
+
+		@Override
+		protected int[] computeNext() {
+			if (uncovered == 0) {
+				return null;
+			}
+			final int[] row = new int[values.length];
+			Arrays.fill(row, -1);
+
+			// start with the first tuple not yet covered
+			tuple = covered[combination].nextClearBit(tuple);
+			while (tuple >= tuples[combination]) {
+				tuple = covered[++combination].nextClearBit(0);
+			}
+			final int[] dimensions = combinations[combination];
+			int remainder = tuple;
+			for (int i = dimensions.length - 1; i >= 0; i--) {
+				final int length = values[dimensions[i]].length;
+				row[dimensions[i]] = remainder % length;
+				remainder /= length;
+			}
+
+			// complete it greedily
+			for (int d = 0; d < values.length; d++) {
+				if (row[d] < 0) {
+					row[d] = chooseValue(row, d);
+				}
+			}
+
+			for (int c = 0; c < combinations.length; c++) {
+				final int index = tupleIndex(c, row);
+				if (!covered[c].get(index)) {
+					covered[c].set(index);
+					uncovered--;
+				}
+			}
+			return row;
+		}
+
+		/**
+		 * Chooses the value of the dimension provided that covers the most
+		 * tuples not yet covered together with the values already chosen.
+		 */
+		private int chooseValue(final int[] row, final int d) {
+			final int length = values[d].length;
+			final int candidates = Math.min(length, CANDIDATES);
+			int best = offsets[d];
+			int bestGain = -1;
+			for (int i = 0; i < candidates; i++) {
+				final int value = (offsets[d] + i) % length;
+				row[d] = value;
+				int gain = 0;
+				int possible = 0;
+				for (int c : combinationsOf[d]) {
+					final int index = tupleIndex(c, row);
+					if (index >= 0) {
+						possible++;
+						if (!covered[c].get(index)) {
+							gain++;
+						}
+					}
+				}
+				if (gain > bestGain) {
+					best = value;
+					bestGain = gain;
+					if (gain == possible) {
+						break;
+					}
+				}
+			}
+			offsets[d] = (best + 1) % length;
+			return best;
+		}
+
+		/**
+		 * Returns the index of the tuple of the combination of dimensions
+		 * provided, or -1 if not all of its values are chosen yet.
+		 */
+		private int tupleIndex(final int c, final int[] row) {
+			int index = 0;
+			for (int dimension : combinations[c]) {
+				if (row[dimension] < 0) {
+					return -1;
+				}
+				index = index * values[dimension].length + row[dimension];
+			}
+			return index;
+		}
+	}
+
+}
@@ -0,0 +1,130 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.runner.Runner;
+
+/**
+ * Internal history of the durations and outcomes of the scenarios of a test
+ * class, enabled by the system property <code>junit.scenario.history</code>
+ * naming the history file (see {@link ScenarioTimings} for the format). The
+ * durations and outcomes of the current run are recorded and appended to the
+ * file once all scenarios have been run. The history of previous runs is
+ * used to run the scenarios that failed last time first, followed by the
+ * scenarios without history and then the other scenarios, longest first.
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ */
+final class ScenarioHistory {
+
+	static final String HISTORY_PROPERTY = "junit.scenario.history";
+
+	private final File file;
+
+	private final Class<?> testClass;
+
+	private final Map<String, ScenarioTimings.Entry> previous;
+
+	private final Map<String, ScenarioTimings.Entry> current = new LinkedHashMap<String, ScenarioTimings.Entry>();
+
+	ScenarioHistory(final File file, final Class<?> testClass)
+			throws IOException {
+		super();
+		this.file = file;
+		this.testClass = testClass;
+		this.previous = ScenarioTimings.load(file, testClass);
+	}
+
+	/**
+	 * Creates the history configured by system properties.
+	 * 
+	 * @return the history or <code>null</code> if no history is recorded.
+	 */
+	static ScenarioHistory forTestClass(final Class<?> klass)
+			throws IOException {
+		final String history = System.getProperty(HISTORY_PROPERTY);
+		if (history == null) {
+			return null;
+		}
+		return new ScenarioHistory(new File(history), klass);
+	}
+
+	/**
+	 * Records the duration and outcome of (a part of) a scenario. If a
+	 * scenario is recorded more than once, the durations are added up.
+	 */
+	synchronized void record(final Scenario scenario, final long nanos,
+			final boolean failed) {
+		final String name = scenario.getName();
+		final ScenarioTimings.Entry entry = current.get(name);
+		final long millis = nanos / 1000000;
+		current.put(name, entry == null ? new ScenarioTimings.Entry(millis,
+				failed) : new ScenarioTimings.Entry(entry.millis + millis,
+				entry.failed || failed));
+	}
+
+	/**
+	 * Appends the scenarios recorded to the history file.
+	 */
+	synchronized void save() throws IOException {
+		if (!current.isEmpty()) {
+			ScenarioTimings.append(file, testClass, current);
+			current.clear();
+		}
+	}
+
+	/**
+	 * Sorts the runners of the scenarios provided according to the history
+	 * of previous runs. The order of scenarios with the same history is not
+	 * changed.
+	 */
+	void sort(final List<Runner> runners) {
+		Collections.sort(runners, new Comparator<Runner>() {
+			public int compare(final Runner o1, final Runner o2) {
+				final ScenarioTimings.Entry e1 = previous
+						.get(((SingleScenarioRunner) o1).getScenario()
+								.getName());
+				final ScenarioTimings.Entry e2 = previous
+						.get(((SingleScenarioRunner) o2).getScenario()
+								.getName());
+				final int rank1 = rank(e1);
+				final int rank2 = rank(e2);
+				if (rank1 != rank2) {
+					return rank1 < rank2 ? -1 : 1;
+				}
+				if (e1 == null || e1.millis == e2.millis) {
+					return 0;
+				}
+				return e1.millis > e2.millis ? -1 : 1;
+			}
+		});
+	}
+
+	private static int rank(final ScenarioTimings.Entry entry) {
+		if (entry == null) {
+			return 1;
+		}
+		return entry.failed ? 0 : 2;
+	}
+
+}
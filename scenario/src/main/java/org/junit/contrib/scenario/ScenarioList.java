@@ -17,7 +17,6 @@ package org.junit.contrib.scenario;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.List;
 
 /**
  * A <code>ScenarioList</code> is an order read-only list of scenarios. The
@@ -91,7 +90,47 @@ public final class ScenarioList implements Iterable<Scenario> {
 		return new ScenarioList(scenarioCollection);
 	}
 
-	private final List<Scenario> scenarios;
+	/**
+	 * <p>
+	 * Creates a new lazily evaluated {@link ScenarioList} backed by the
+	 * iterable provided. Other than {@link #fromList(Collection)} the scenarios
+	 * are not copied. Instead, the scenarios are requested from the iterable's
+	 * iterator each time the <code>ScenarioList</code> is iterated, so the
+	 * iterable can generate scenarios on demand. For example:
+	 * 
+	 * <pre>
+	 * ScenarioList.fromIterable(new Iterable&lt;Scenario&gt;() {
+	 * 	public Iterator&lt;Scenario&gt; iterator() {
+	 * 		return new MyScenarioReader(&quot;scenarios.txt&quot;);
+	 * 	}
+	 * });
+	 * </pre>
+	 * 
+	 * </p>
+	 * <p>
+	 * A <code>ScenarioRunner</code> will not keep a runner for each scenario
+	 * of a lazily evaluated list. The per-scenario runners are created right
+	 * before the scenario is run and discarded afterwards. Please note that the
+	 * iterable will be iterated more than once (e.g. to describe and to run
+	 * the tests), each time returning the scenarios in the same order.
+	 * </p>
+	 * 
+	 * @param scenarioSource
+	 *            iterable used to create the scenarios on demand.
+	 * @return the lazily evaluated <code>ScenarioList</code> backed by
+	 *         <code>scenarioSource</code>.
+	 */
+	public static ScenarioList fromIterable(
+			final Iterable<? extends Scenario> scenarioSource) {
+		if (scenarioSource == null) {
+			throw new NullPointerException("scenarioSource may not be null");
+		}
+		return new ScenarioList(scenarioSource, true);
+	}
+
+	private final Iterable<? extends Scenario> scenarios;
+
+	private final boolean lazy;
 
 	/**
 	 * Private constructor, see static factory methods.
@@ -100,8 +139,32 @@ public final class ScenarioList implements Iterable<Scenario> {
 	 *            collection of scenarios.
 	 */
 	private ScenarioList(final Collection<? extends Scenario> scenarios) {
+		this(new ArrayList<Scenario>(scenarios), false);
+	}
+
+	/**
+	 * Private constructor, see static factory methods.
+	 * 
+	 * @param scenarios
+	 *            source of scenarios.
+	 * @param lazy
+	 *            <code>true</code> if the scenarios are created on demand.
+	 */
+	private ScenarioList(final Iterable<? extends Scenario> scenarios,
+			final boolean lazy) {
 		super();
-		this.scenarios = new ArrayList<Scenario>(scenarios);
+		this.scenarios = scenarios;
+		this.lazy = lazy;
+	}
+
+	/**
+	 * Returns <code>true</code> if the scenarios of this list are created on
+	 * demand and should not be held in memory all at once.
+	 * 
+	 * @return <code>true</code> if this list is lazily evaluated.
+	 */
+	boolean isLazy() {
+		return this.lazy;
 	}
 
 	/**
@@ -109,7 +172,22 @@ public final class ScenarioList implements Iterable<Scenario> {
 	 * in proper sequence.
 	 */
 	public Iterator<Scenario> iterator() {
-		return scenarios.iterator();
+		final Iterator<? extends Scenario> it = scenarios.iterator();
+		return new Iterator<Scenario>() {
+
+			public boolean hasNext() {
+				return it.hasNext();
+			}
+
+			public Scenario next() {
+				return it.next();
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException(
+						"ScenarioList is read-only");
+			}
+		};
 	}
 
 }
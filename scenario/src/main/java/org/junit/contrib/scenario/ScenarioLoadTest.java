@@ -0,0 +1,470 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.runner.Description;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.model.FrameworkMethod;
+
+/**
+ * Internal driver of the load tests of a test class, see {@link LoadTest}.
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ */
+final class ScenarioLoadTest {
+
+	static final String LOAD_DURATION_PROPERTY = "junit.scenario.loadDuration";
+
+	static final String LOAD_RATE_PROPERTY = "junit.scenario.loadRate";
+
+	static final String LOAD_CONCURRENCY_PROPERTY = "junit.scenario.loadConcurrency";
+
+	static final String LOAD_REPORT_PROPERTY = "junit.scenario.loadReport";
+
+	/**
+	 * The number of threads used at a fixed rate if the concurrency is not
+	 * limited.
+	 */
+	static final int MAX_THREADS = 256;
+
+	/**
+	 * The maximum number of invocations waiting for a thread at a fixed rate.
+	 * Further invocations are not started, but counted as missed.
+	 */
+	static final int MAX_BACKLOG = 10000;
+
+	private static final List<LoadTestListener> LISTENERS = new CopyOnWriteArrayList<LoadTestListener>();
+
+	private final long durationNanos;
+
+	private final double rate;
+
+	private final int concurrency;
+
+	ScenarioLoadTest(final long durationMillis, final double rate,
+			final int concurrency) {
+		super();
+		if (durationMillis <= 0) {
+			throw new IllegalArgumentException(
+					"Load test duration must be positive: " + durationMillis);
+		}
+		this.durationNanos = TimeUnit.MILLISECONDS.toNanos(durationMillis);
+		this.rate = rate;
+		this.concurrency = concurrency;
+	}
+
+	/**
+	 * Creates the load test configured for the test class provided.
+	 * 
+	 * @return the load test or <code>null</code> if the scenarios are run
+	 *         normally.
+	 */
+	static ScenarioLoadTest forTestClass(final Class<?> klass) {
+		final LoadTest annotation = klass.getAnnotation(LoadTest.class);
+		final String duration = System.getProperty(LOAD_DURATION_PROPERTY);
+		if (annotation == null && duration == null) {
+			return null;
+		}
+		final String rate = System.getProperty(LOAD_RATE_PROPERTY);
+		final String concurrency = System
+				.getProperty(LOAD_CONCURRENCY_PROPERTY);
+		return new ScenarioLoadTest(duration != null ? Long.parseLong(duration
+				.trim()) : annotation.duration(), rate != null ? Double
+				.parseDouble(rate.trim()) : annotation != null ? annotation
+				.rate() : 0, concurrency != null ? Integer
+				.parseInt(concurrency.trim()) : annotation != null ? annotation
+				.concurrency() : 0);
+	}
+
+	static void addListener(final LoadTestListener listener) {
+		if (listener == null) {
+			throw new NullPointerException("listener may not be null");
+		}
+		LISTENERS.add(listener);
+	}
+
+	static void removeListener(final LoadTestListener listener) {
+		LISTENERS.remove(listener);
+	}
+
+	/**
+	 * Runs the load test of a scenario and reports a test result for each of
+	 * the test methods.
+	 */
+	void run(final TestClassRunnerForScenarios classRunner,
+			final ScenarioContext context,
+			final List<FrameworkMethod> methods, final RunNotifier notifier)
+			throws InterruptedException, IOException {
+		final Scenario scenario = context.getScenario();
+		final Result result = new Result(methods.size());
+		final long start = System.nanoTime();
+		if (rate > 0) {
+			runOpenLoop(classRunner, context, methods, result, start);
+		} else {
+			runClosedLoop(classRunner, context, methods, result, start);
+		}
+		final long elapsed = System.nanoTime() - start;
+		final LoadTestReport report = result.getReport(classRunner
+				.getTestClass().getJavaClass(), scenario, elapsed);
+		for (LoadTestListener listener : LISTENERS) {
+			listener.loadTestFinished(report);
+		}
+		writeReport(report);
+
+		for (int i = 0; i < methods.size(); i++) {
+			final Description description = classRunner.describeMethod(
+					scenario, methods.get(i));
+			notifier.fireTestStarted(description);
+			final Throwable failure = result.getFailure(i);
+			if (failure != null) {
+				final AssertionError error = new AssertionError(String.format(
+						"%d of %d invocations failed during load test",
+						result.getFailed(i), result.getInvocations(i)));
+				error.initCause(failure);
+				notifier.fireTestFailure(new Failure(description, error));
+			}
+			notifier.fireTestFinished(description);
+		}
+	}
+
+	/**
+	 * Appends the report to the report file, if configured, as a single line
+	 * in JSON format.
+	 */
+	static synchronized void writeReport(final LoadTestReport report)
+			throws IOException {
+		final String file = System.getProperty(LOAD_REPORT_PROPERTY);
+		if (file == null) {
+			return;
+		}
+		final StringBuilder json = new StringBuilder();
+		json.append("{\"testClass\": ");
+		ScenarioProfiler.appendString(json, report.getTestClass().getName());
+		json.append(", \"scenario\": ");
+		ScenarioProfiler.appendString(json, report.getScenarioName());
+		json.append(", \"invocations\": ").append(report.getInvocations());
+		json.append(", \"failures\": ").append(report.getFailures());
+		json.append(", \"missed\": ").append(report.getMissed());
+		json.append(", \"elapsedNanos\": ").append(report.getElapsedNanos());
+		json.append(", \"p50Nanos\": ").append(report.getP50Nanos());
+		json.append(", \"p90Nanos\": ").append(report.getP90Nanos());
+		json.append(", \"p99Nanos\": ").append(report.getP99Nanos());
+		json.append(", \"maxNanos\": ").append(report.getMaxNanos());
+		json.append("}\n");
+		final Writer writer = new OutputStreamWriter(new FileOutputStream(
+				new File(file), true), "UTF-8");
+		try {
+			writer.write(json.toString());
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Starts invocations at fixed intervals, each on a thread of a bounded
+	 * pool (as far as the concurrency allows). The latency is measured from
+	 * the time the invocation was scheduled. Invocations that do not fit into
+	 * the backlog, or that would start after the duration of the load test,
+	 * are not run but counted as missed.
+	 */
+	private void runOpenLoop(final TestClassRunnerForScenarios classRunner,
+			final ScenarioContext context,
+			final List<FrameworkMethod> methods, final Result result,
+			final long start) throws InterruptedException {
+		final int threads = concurrency > 0 ? concurrency : MAX_THREADS;
+		final ExecutorService executor = new ThreadPoolExecutor(threads,
+				threads, 0, TimeUnit.NANOSECONDS,
+				new ArrayBlockingQueue<Runnable>(MAX_BACKLOG),
+				new ParallelScenarioExecutor.ScenarioThreadFactory(),
+				new RejectedExecutionHandler() {
+					public void rejectedExecution(final Runnable r,
+							final ThreadPoolExecutor e) {
+						result.miss(((Invocation) r).index);
+					}
+				});
+		final double interval = 1e9 / rate;
+		try {
+			for (long i = 0;; i++) {
+				final long scheduled = start + (long) (i * interval);
+				if (scheduled - start >= durationNanos) {
+					break;
+				}
+				long wait;
+				while ((wait = scheduled - System.nanoTime()) > 0) {
+					LockSupport.parkNanos(wait);
+					if (Thread.interrupted()) {
+						throw new InterruptedException();
+					}
+				}
+				final int index = (int) (i % methods.size());
+				executor.execute(new Invocation(index) {
+					public void run() {
+						if (System.nanoTime() - start >= durationNanos) {
+							result.miss(index);
+						} else {
+							invoke(classRunner, context, methods, index,
+									result, scheduled);
+						}
+					}
+				});
+			}
+			executor.shutdown();
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Invokes the test methods back to back on a fixed number of threads.
+	 */
+	private void runClosedLoop(final TestClassRunnerForScenarios classRunner,
+			final ScenarioContext context,
+			final List<FrameworkMethod> methods, final Result result,
+			final long start) throws InterruptedException {
+		final int threads = Math.max(concurrency, 1);
+		final ExecutorService executor = Executors.newFixedThreadPool(
+				threads, new ParallelScenarioExecutor.ScenarioThreadFactory());
+		final AtomicLong counter = new AtomicLong();
+		try {
+			for (int t = 0; t < threads; t++) {
+				executor.execute(new Runnable() {
+					public void run() {
+						while (!Thread.currentThread().isInterrupted()) {
+							final long begin = System.nanoTime();
+							if (begin - start >= durationNanos) {
+								return;
+							}
+							final int index = (int) (counter.getAndIncrement() % methods
+									.size());
+							invoke(classRunner, context, methods, index,
+									result, begin);
+						}
+					}
+				});
+			}
+			executor.shutdown();
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void invoke(final TestClassRunnerForScenarios classRunner,
+			final ScenarioContext context,
+			final List<FrameworkMethod> methods, final int index,
+			final Result result, final long scheduled) {
+		final InvocationNotifier notifier = new InvocationNotifier();
+		classRunner.runMethod(context, methods.get(index), notifier);
+		result.add(index, System.nanoTime() - scheduled, notifier.failure);
+	}
+
+	/**
+	 * An invocation of a test method at a fixed rate.
+	 */
+	private abstract static class Invocation implements Runnable {
+
+		final int index;
+
+		Invocation(final int index) {
+			super();
+			this.index = index;
+		}
+	}
+
+	/**
+	 * Notifier of a single invocation, only remembering its failure.
+	 */
+	private static final class InvocationNotifier extends RunNotifier {
+
+		private Throwable failure;
+
+		@Override
+		public void fireTestStarted(final Description description) {
+			// not reported
+		}
+
+		@Override
+		public void fireTestFailure(final Failure failure) {
+			this.failure = failure.getException();
+		}
+
+		@Override
+		public void fireTestAssumptionFailed(final Failure failure) {
+			// not reported
+		}
+
+		@Override
+		public void fireTestIgnored(final Description description) {
+			// not reported
+		}
+
+		@Override
+		public void fireTestFinished(final Description description) {
+			// not reported
+		}
+	}
+
+	/**
+	 * The latencies and failures of the invocations of a scenario. The
+	 * latencies are counted in a histogram of fixed size: latencies below
+	 * {@value #SUB_BUCKETS} ns are exact, larger latencies are rounded up to
+	 * a relative precision of 1/64.
+	 */
+	static final class Result {
+
+		static final int SUB_BUCKETS = 128;
+
+		/**
+		 * The counts of the latencies, indexed by {@link #bucket(long)}.
+		 */
+		private final long[] histogram = new long[bucket(Long.MAX_VALUE) + 1];
+
+		private long count;
+
+		private long max;
+
+		private final long[] invocations;
+
+		private final long[] failed;
+
+		private final long[] missed;
+
+		private final Throwable[] failures;
+
+		Result(final int methods) {
+			super();
+			invocations = new long[methods];
+			failed = new long[methods];
+			missed = new long[methods];
+			failures = new Throwable[methods];
+		}
+
+		/**
+		 * Returns the histogram bucket of a latency: the latency itself if
+		 * below {@link #SUB_BUCKETS}, and otherwise 64 buckets per power of
+		 * two.
+		 */
+		static int bucket(final long latency) {
+			if (latency < SUB_BUCKETS) {
+				return (int) Math.max(latency, 0);
+			}
+			final int exponent = 63 - Long.numberOfLeadingZeros(latency);
+			final int shift = exponent - 6;
+			return SUB_BUCKETS + (exponent - 7) * 64
+					+ (int) (latency >>> shift) - 64;
+		}
+
+		/**
+		 * Returns the largest latency of a histogram bucket.
+		 */
+		static long highestLatency(final int bucket) {
+			if (bucket < SUB_BUCKETS) {
+				return bucket;
+			}
+			final int shift = (bucket - SUB_BUCKETS) / 64 + 1;
+			final long lowest = (64L + (bucket - SUB_BUCKETS) % 64) << shift;
+			return lowest + (1L << shift) - 1;
+		}
+
+		synchronized void add(final int method, final long latency,
+				final Throwable failure) {
+			histogram[bucket(latency)]++;
+			count++;
+			max = Math.max(max, latency);
+			invocations[method]++;
+			if (failure != null) {
+				failed[method]++;
+				if (failures[method] == null) {
+					failures[method] = failure;
+				}
+			}
+		}
+
+		/**
+		 * Counts an invocation that was scheduled but not run.
+		 */
+		synchronized void miss(final int method) {
+			missed[method]++;
+		}
+
+		/**
+		 * Returns the latency of the percentile provided in nanoseconds
+		 * (nearest rank), or 0 if there were no invocations.
+		 */
+		synchronized long percentile(final double percentile) {
+			if (count == 0) {
+				return 0;
+			}
+			final long rank = Math.max(
+					(long) Math.ceil(percentile / 100 * count), 1);
+			long seen = 0;
+			for (int i = 0; i < histogram.length; i++) {
+				seen += histogram[i];
+				if (seen >= rank) {
+					return Math.min(highestLatency(i), max);
+				}
+			}
+			return max;
+		}
+
+		synchronized long getCount() {
+			return count;
+		}
+
+		synchronized long getInvocations(final int method) {
+			return invocations[method];
+		}
+
+		synchronized long getFailed(final int method) {
+			return failed[method];
+		}
+
+		synchronized Throwable getFailure(final int method) {
+			return failures[method];
+		}
+
+		synchronized LoadTestReport getReport(final Class<?> testClass,
+				final Scenario scenario, final long elapsedNanos) {
+			long errors = 0;
+			long notRun = 0;
+			for (int i = 0; i < failed.length; i++) {
+				errors += failed[i];
+				notRun += missed[i];
+			}
+			return new LoadTestReport(testClass, scenario.getName(), count,
+					errors, notRun, elapsedNanos, percentile(50),
+					percentile(90), percentile(99), percentile(100));
+		}
+	}
+
+}
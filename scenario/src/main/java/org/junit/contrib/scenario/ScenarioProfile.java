@@ -0,0 +1,96 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+/**
+ * The resources used by a scenario or by a single test method of a scenario,
+ * see {@link ScenarioProfiler}.
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ */
+public final class ScenarioProfile {
+
+	private final Class<?> testClass;
+
+	private final String scenarioName;
+
+	private final String methodName;
+
+	private final long wallNanos;
+
+	private final long cpuNanos;
+
+	private final long allocatedBytes;
+
+	ScenarioProfile(final Class<?> testClass, final String scenarioName,
+			final String methodName, final long wallNanos,
+			final long cpuNanos, final long allocatedBytes) {
+		super();
+		this.testClass = testClass;
+		this.scenarioName = scenarioName;
+		this.methodName = methodName;
+		this.wallNanos = wallNanos;
+		this.cpuNanos = cpuNanos;
+		this.allocatedBytes = allocatedBytes;
+	}
+
+	public Class<?> getTestClass() {
+		return this.testClass;
+	}
+
+	public String getScenarioName() {
+		return this.scenarioName;
+	}
+
+	/**
+	 * Returns the name of the test method, or <code>null</code> if this is
+	 * the profile of a whole scenario.
+	 */
+	public String getMethodName() {
+		return this.methodName;
+	}
+
+	/**
+	 * Returns the elapsed (wall clock) time in nanoseconds.
+	 */
+	public long getWallNanos() {
+		return this.wallNanos;
+	}
+
+	/**
+	 * Returns the CPU time of the thread running the test in nanoseconds, or
+	 * -1 if not supported by the JVM.
+	 */
+	public long getCpuNanos() {
+		return this.cpuNanos;
+	}
+
+	/**
+	 * Returns the number of bytes allocated by the thread running the test,
+	 * or -1 if not supported by the JVM.
+	 */
+	public long getAllocatedBytes() {
+		return this.allocatedBytes;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s[%s]%s: %d ns wall, %d ns cpu, %d bytes",
+				testClass.getName(), scenarioName, methodName == null ? ""
+						: "." + methodName, wallNanos, cpuNanos,
+				allocatedBytes);
+	}
+
+}
@@ -0,0 +1,39 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+/**
+ * Listener for the profiles of scenarios and test methods, see
+ * {@link ScenarioProfiler#addListener(ScenarioProfileListener)}. A
+ * <code>RunListener</code> may implement this interface to receive the
+ * profiles together with the other test events. If scenarios are run in
+ * parallel, the listener is called concurrently from several threads.
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ */
+public interface ScenarioProfileListener {
+
+	/**
+	 * Called after a test method has been run for a scenario.
+	 */
+	void testProfiled(ScenarioProfile profile);
+
+	/**
+	 * Called after all test methods of a scenario (and its
+	 * &#064;BeforeScenario and &#064;AfterScenario methods) have been run.
+	 */
+	void scenarioProfiled(ScenarioProfile profile);
+
+}
@@ -0,0 +1,338 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * <p>
+ * Profiles the scenarios run by <code>ScenarioRunner</code>: the elapsed
+ * time, the CPU time and the number of bytes allocated by each scenario and by
+ * each test method of a scenario. The CPU time and the allocated bytes are
+ * measured for the thread running the test using the thread MX bean; they are
+ * -1 if not supported by the JVM.
+ * </p>
+ * <p>
+ * Profiling is enabled if a listener is registered using
+ * {@link #addListener(ScenarioProfileListener)}, or if the system property
+ * <code>junit.scenario.profile</code> names a report file. The report lists
+ * the slowest and the most allocating scenarios of all test classes run so
+ * far in JSON format, and is written each time a test class is done. The
+ * number of scenarios listed can be set with the system property
+ * <code>junit.scenario.profileTop</code> (default 10):
+ * 
+ * <pre>
+ * {&quot;slowest&quot;: [
+ *   {&quot;testClass&quot;: &quot;com.example.CalculatorTest&quot;, &quot;scenario&quot;: &quot;1+2=3&quot;,
+ *    &quot;wallNanos&quot;: 1250000, &quot;cpuNanos&quot;: 1100000, &quot;allocatedBytes&quot;: 52000},
+ *   ...],
+ *  &quot;mostAllocating&quot;: [...]}
+ * </pre>
+ * 
+ * </p>
+ * <p>
+ * If the test methods of a scenario are run in parallel (see
+ * {@link ParallelScenarios#methods()}), only the test methods are profiled.
+ * </p>
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ */
+public final class ScenarioProfiler {
+
+	static final String PROFILE_PROPERTY = "junit.scenario.profile";
+
+	static final String PROFILE_TOP_PROPERTY = "junit.scenario.profileTop";
+
+	private static final int DEFAULT_TOP = 10;
+
+	private static final List<ScenarioProfileListener> LISTENERS = new CopyOnWriteArrayList<ScenarioProfileListener>();
+
+	private static final ThreadMXBean THREADS = ManagementFactory
+			.getThreadMXBean();
+
+	/**
+	 * <code>com.sun.management.ThreadMXBean.getThreadAllocatedBytes(long)</code>
+	 * or <code>null</code> if not available.
+	 */
+	private static final Method ALLOCATED_BYTES = allocatedBytesMethod();
+
+	private static final Comparator<ScenarioProfile> BY_WALL_TIME = new Comparator<ScenarioProfile>() {
+		public int compare(final ScenarioProfile o1, final ScenarioProfile o2) {
+			return compareLongs(o1.getWallNanos(), o2.getWallNanos());
+		}
+	};
+
+	private static final Comparator<ScenarioProfile> BY_ALLOCATED_BYTES = new Comparator<ScenarioProfile>() {
+		public int compare(final ScenarioProfile o1, final ScenarioProfile o2) {
+			return compareLongs(o1.getAllocatedBytes(), o2
+					.getAllocatedBytes());
+		}
+	};
+
+	/**
+	 * The slowest scenarios so far, the fastest of them first.
+	 */
+	private static final PriorityQueue<ScenarioProfile> SLOWEST = new PriorityQueue<ScenarioProfile>(
+			DEFAULT_TOP + 1, BY_WALL_TIME);
+
+	/**
+	 * The most allocating scenarios so far, the least allocating first.
+	 */
+	private static final PriorityQueue<ScenarioProfile> MOST_ALLOCATING = new PriorityQueue<ScenarioProfile>(
+			DEFAULT_TOP + 1, BY_ALLOCATED_BYTES);
+
+	private ScenarioProfiler() {
+		super();
+	}
+
+	/**
+	 * Registers a listener to be notified of the profile of each scenario
+	 * and test method.
+	 * 
+	 * @param listener
+	 *            the listener to add.
+	 */
+	public static void addListener(final ScenarioProfileListener listener) {
+		if (listener == null) {
+			throw new NullPointerException("listener may not be null");
+		}
+		LISTENERS.add(listener);
+	}
+
+	/**
+	 * Removes a listener registered before.
+	 * 
+	 * @param listener
+	 *            the listener to remove.
+	 */
+	public static void removeListener(final ScenarioProfileListener listener) {
+		LISTENERS.remove(listener);
+	}
+
+	private static Method allocatedBytesMethod() {
+		try {
+			final Class<?> c = Class
+					.forName("com.sun.management.ThreadMXBean");
+			if (!c.isInstance(THREADS)) {
+				return null;
+			}
+			final Method method = c.getMethod("getThreadAllocatedBytes",
+					long.class);
+			final Method supported = c
+					.getMethod("isThreadAllocatedMemorySupported");
+			if (!Boolean.TRUE.equals(supported.invoke(THREADS))) {
+				return null;
+			}
+			c.getMethod("setThreadAllocatedMemoryEnabled", boolean.class)
+					.invoke(THREADS, true);
+			return method;
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	private static int compareLongs(final long a, final long b) {
+		return a < b ? -1 : a == b ? 0 : 1;
+	}
+
+	/**
+	 * Returns whether profiling is enabled.
+	 */
+	static boolean isEnabled() {
+		return !LISTENERS.isEmpty()
+				|| System.getProperty(PROFILE_PROPERTY) != null;
+	}
+
+	/**
+	 * Starts measuring the current thread.
+	 * 
+	 * @return the stopwatch or <code>null</code> if profiling is disabled.
+	 */
+	static Stopwatch start() {
+		return isEnabled() ? new Stopwatch() : null;
+	}
+
+	/**
+	 * Measures the resources used by the current thread.
+	 */
+	static final class Stopwatch {
+
+		private final long wall;
+
+		private final long cpu;
+
+		private final long allocated;
+
+		Stopwatch() {
+			super();
+			this.allocated = allocatedBytes();
+			this.cpu = cpuTime();
+			this.wall = System.nanoTime();
+		}
+
+		/**
+		 * Stops measuring and reports the profile of a test method, or of a
+		 * whole scenario if <code>methodName</code> is <code>null</code>.
+		 */
+		void stop(final Class<?> testClass, final Scenario scenario,
+				final String methodName) {
+			final long wallNanos = System.nanoTime() - wall;
+			final long cpuNanos = cpu < 0 ? -1 : cpuTime() - cpu;
+			final long allocatedBytes = allocated < 0 ? -1 : allocatedBytes()
+					- allocated;
+			final ScenarioProfile profile = new ScenarioProfile(testClass,
+					scenario.getName(), methodName, wallNanos, cpuNanos,
+					allocatedBytes);
+			if (methodName == null) {
+				scenarioProfiled(profile);
+			} else {
+				for (ScenarioProfileListener listener : LISTENERS) {
+					listener.testProfiled(profile);
+				}
+			}
+		}
+	}
+
+	private static long cpuTime() {
+		if (!THREADS.isCurrentThreadCpuTimeSupported()) {
+			return -1;
+		}
+		return THREADS.getCurrentThreadCpuTime();
+	}
+
+	private static long allocatedBytes() {
+		if (ALLOCATED_BYTES == null) {
+			return -1;
+		}
+		try {
+			return (Long) ALLOCATED_BYTES.invoke(THREADS, Thread
+					.currentThread().getId());
+		} catch (Exception e) {
+			return -1;
+		}
+	}
+
+	private static void scenarioProfiled(final ScenarioProfile profile) {
+		for (ScenarioProfileListener listener : LISTENERS) {
+			listener.scenarioProfiled(profile);
+		}
+		final int top = top();
+		synchronized (SLOWEST) {
+			offer(SLOWEST, profile, top);
+			offer(MOST_ALLOCATING, profile, top);
+		}
+	}
+
+	private static void offer(final PriorityQueue<ScenarioProfile> queue,
+			final ScenarioProfile profile, final int top) {
+		queue.offer(profile);
+		while (queue.size() > top) {
+			queue.poll();
+		}
+	}
+
+	private static int top() {
+		final String top = System.getProperty(PROFILE_TOP_PROPERTY);
+		return top == null ? DEFAULT_TOP : Integer.parseInt(top.trim());
+	}
+
+	/**
+	 * Writes the report file, if configured.
+	 */
+	static void writeReport() throws IOException {
+		final String report = System.getProperty(PROFILE_PROPERTY);
+		if (report == null) {
+			return;
+		}
+		final StringBuilder json = new StringBuilder();
+		synchronized (SLOWEST) {
+			json.append("{\"slowest\": ");
+			appendProfiles(json, SLOWEST, BY_WALL_TIME);
+			json.append(",\n \"mostAllocating\": ");
+			appendProfiles(json, MOST_ALLOCATING, BY_ALLOCATED_BYTES);
+			json.append("}\n");
+		}
+		final Writer writer = new OutputStreamWriter(new FileOutputStream(
+				new File(report)), "UTF-8");
+		try {
+			writer.write(json.toString());
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Forgets all scenarios profiled so far (for testing).
+	 */
+	static void reset() {
+		synchronized (SLOWEST) {
+			SLOWEST.clear();
+			MOST_ALLOCATING.clear();
+		}
+	}
+
+	private static void appendProfiles(final StringBuilder json,
+			final PriorityQueue<ScenarioProfile> queue,
+			final Comparator<ScenarioProfile> comparator) {
+		final List<ScenarioProfile> profiles = new ArrayList<ScenarioProfile>(
+				queue);
+		Collections.sort(profiles, Collections.reverseOrder(comparator));
+		json.append('[');
+		for (int i = 0; i < profiles.size(); i++) {
+			final ScenarioProfile profile = profiles.get(i);
+			json.append(i == 0 ? "\n" : ",\n");
+			json.append("  {\"testClass\": ");
+			appendString(json, profile.getTestClass().getName());
+			json.append(", \"scenario\": ");
+			appendString(json, profile.getScenarioName());
+			json.append(", \"wallNanos\": ").append(profile.getWallNanos());
+			json.append(", \"cpuNanos\": ").append(profile.getCpuNanos());
+			json.append(", \"allocatedBytes\": ").append(
+					profile.getAllocatedBytes());
+			json.append('}');
+		}
+		json.append(']');
+	}
+
+	static void appendString(final StringBuilder json,
+			final String value) {
+		json.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				json.append('\\').append(c);
+			} else if (c < ' ') {
+				json.append(String.format("\\u%04x", (int) c));
+			} else {
+				json.append(c);
+			}
+		}
+		json.append('"');
+	}
+
+}
@@ -0,0 +1,64 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * <p>
+ * Annotation for a method computing the result of a scenario once, and for the
+ * fields of the test class the result is assigned to. This is useful if the
+ * system under test is expensive to run but there are several test methods
+ * verifying different aspects of the same result. For example:
+ * 
+ * <pre>
+ * &#064;ScenarioResult
+ * public Invoice computeResult() {
+ * 	return new Billing().createInvoice(order);
+ * }
+ * 
+ * &#064;ScenarioResult
+ * public Invoice invoice;
+ * 
+ * &#064;Test
+ * public void shouldHaveTotal() {
+ * 	assertThat(invoice.getTotal(), is(expectedTotal));
+ * }
+ * </pre>
+ * 
+ * </p>
+ * <p>
+ * The method annotated must be public, return the result and take no
+ * parameters or a single parameter the {@link Scenario} is assigned to. It is
+ * called by <code>ScenarioRunner</code> when the first test instance of a
+ * scenario is created (on that instance, if not static), after the
+ * &#064;BeforeScenario methods. The result (or the exception thrown) is
+ * shared by all test methods of the scenario and released once the scenario
+ * has been run. There may be only one such method per test class. The fields
+ * annotated must be public and not static.
+ * </p>
+ * 
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ * @see ScenarioRunner
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target( { ElementType.METHOD, ElementType.FIELD })
+public @interface ScenarioResult {
+
+}
@@ -0,0 +1,435 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Internal cache of passed scenarios, enabled by the system property
+ * <code>junit.scenario.resultCache</code> naming the cache file. Each line of
+ * the file is the name of a test class, the name of a passed scenario and its
+ * key, separated by tabs. The key is a hash of the values of the scenario
+ * parameters and of the bytecode of the test class and the classes listed by
+ * {@link ScenarioDependencies} (including their nested, local and anonymous
+ * classes). A scenario with the same key as recorded is not run again. The
+ * entry of a scenario is removed if it fails.
+ * </p>
+ * <p>
+ * Only scenarios whose parameters are primitive wrappers, strings, enums or
+ * arrays of those are cached, as the values of other objects can not be
+ * compared between runs.
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ */
+final class ScenarioResultCache {
+
+	static final String RESULT_CACHE_PROPERTY = "junit.scenario.resultCache";
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final File file;
+
+	private final Class<?> testClass;
+
+	/**
+	 * The hash of the bytecode of the test class and its dependencies.
+	 */
+	private final String fingerprint;
+
+	/**
+	 * The keys of the passed scenarios by scenario name.
+	 */
+	private final Map<String, String> passed;
+
+	/**
+	 * Whether the passed scenarios have changed since loaded.
+	 */
+	private boolean modified;
+
+	ScenarioResultCache(final File file, final Class<?> testClass)
+			throws IOException {
+		super();
+		this.file = file;
+		this.testClass = testClass;
+		this.fingerprint = fingerprint(testClass);
+		this.passed = new LinkedHashMap<String, String>();
+		if (file.exists()) {
+			update(null);
+		}
+	}
+
+	/**
+	 * Creates the result cache configured by system properties.
+	 * 
+	 * @return the cache or <code>null</code> if no results are cached.
+	 */
+	static ScenarioResultCache forTestClass(final Class<?> klass)
+			throws IOException {
+		final String cache = System.getProperty(RESULT_CACHE_PROPERTY);
+		if (cache == null) {
+			return null;
+		}
+		return new ScenarioResultCache(new File(cache), klass);
+	}
+
+	/**
+	 * Returns whether the scenario provided passed with the same key before.
+	 */
+	synchronized boolean isPassed(final Scenario scenario) {
+		final String key = key(scenario);
+		return key != null && key.equals(passed.get(scenario.getName()));
+	}
+
+	/**
+	 * Records the outcome of a scenario.
+	 * 
+	 * @param failed
+	 *            whether a test method of the scenario failed.
+	 * @param complete
+	 *            whether all test methods of the scenario have been run.
+	 */
+	synchronized void record(final Scenario scenario, final boolean failed,
+			final boolean complete) {
+		final String name = scenario.getName();
+		if (failed) {
+			modified |= passed.remove(name) != null;
+			return;
+		}
+		final String key = key(scenario);
+		if (complete && key != null && !key.equals(passed.get(name))) {
+			passed.put(name, key);
+			modified = true;
+		}
+	}
+
+	/**
+	 * Writes the passed scenarios of the test class to the cache file.
+	 */
+	synchronized void save() throws IOException {
+		if (modified) {
+			update(passed);
+			modified = false;
+		}
+	}
+
+	/**
+	 * Reads the cache file while locked, and replaces the entries of the test
+	 * class by the entries provided (if not <code>null</code>).
+	 */
+	private void update(final Map<String, String> entries) throws IOException {
+		final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			final FileChannel channel = raf.getChannel();
+			final FileLock lock = channel.lock();
+			try {
+				final Map<String, Map<String, String>> all = read(channel);
+				if (entries == null) {
+					final Map<String, String> loaded = all.get(testClass
+							.getName());
+					if (loaded != null) {
+						passed.putAll(loaded);
+					}
+					return;
+				}
+				all.put(testClass.getName(), entries);
+				channel.truncate(0);
+				write(channel, all);
+			} finally {
+				lock.release();
+			}
+		} finally {
+			raf.close();
+		}
+	}
+
+	private static Map<String, Map<String, String>> read(
+			final FileChannel channel) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+		while (buffer.hasRemaining()
+				&& channel.read(buffer, buffer.position()) >= 0) {
+			// read the whole file
+		}
+		buffer.flip();
+		final Map<String, Map<String, String>> all = new LinkedHashMap<String, Map<String, String>>();
+		for (String line : UTF_8.decode(buffer).toString().split("\n")) {
+			final String[] fields = line.split("\t", 3);
+			if (fields.length == 3) {
+				Map<String, String> entries = all.get(fields[0]);
+				if (entries == null) {
+					entries = new LinkedHashMap<String, String>();
+					all.put(fields[0], entries);
+				}
+				entries.put(fields[1], fields[2]);
+			}
+		}
+		return all;
+	}
+
+	private static void write(final FileChannel channel,
+			final Map<String, Map<String, String>> all) throws IOException {
+		final StringBuilder text = new StringBuilder();
+		for (Map.Entry<String, Map<String, String>> entries : all.entrySet()) {
+			for (Map.Entry<String, String> entry : entries.getValue()
+					.entrySet()) {
+				text.append(entries.getKey()).append('\t').append(
+						entry.getKey()).append('\t').append(entry.getValue())
+						.append('\n');
+			}
+		}
+		final ByteBuffer buffer = UTF_8.encode(text.toString());
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * Returns the key of the scenario provided, or <code>null</code> if the
+	 * scenario can not be cached.
+	 */
+	String key(final Scenario scenario) {
+		final Object[] parameters;
+		if (scenario instanceof ParameterizedScenario) {
+			parameters = ((ParameterizedScenario) scenario).getParameters();
+		} else if (scenario instanceof ScenarioTable.Row) {
+			parameters = ((ScenarioTable.Row) scenario).getParameters();
+		} else {
+			return null;
+		}
+		final MessageDigest digest = sha1();
+		digest.update(fingerprint.getBytes(UTF_8));
+		if (!addValue(digest, parameters)) {
+			return null;
+		}
+		return hex(digest.digest());
+	}
+
+	/**
+	 * Hashes the type and the value of a parameter.
+	 * 
+	 * @return <code>false</code> if the value can not be hashed.
+	 */
+	private static boolean addValue(final MessageDigest digest,
+			final Object value) {
+		if (value == null) {
+			addString(digest, "null");
+			return true;
+		}
+		final Class<?> type = value.getClass();
+		if (type.isArray()) {
+			addString(digest, type.getName());
+			final int length = Array.getLength(value);
+			addString(digest, Integer.toString(length));
+			for (int i = 0; i < length; i++) {
+				if (!addValue(digest, Array.get(value, i))) {
+					return false;
+				}
+			}
+			return true;
+		}
+		if (value instanceof Enum<?>) {
+			addString(digest, ((Enum<?>) value).getDeclaringClass().getName());
+			addString(digest, ((Enum<?>) value).name());
+			return true;
+		}
+		if (type == String.class || type == Boolean.class
+				|| type == Character.class || type == Byte.class
+				|| type == Short.class || type == Integer.class
+				|| type == Long.class || type == Float.class
+				|| type == Double.class) {
+			// toString() is exact for the wrappers
+			addString(digest, type.getName());
+			addString(digest, value.toString());
+			return true;
+		}
+		return false;
+	}
+
+	private static void addString(final MessageDigest digest,
+			final String value) {
+		final byte[] bytes = value.getBytes(UTF_8);
+		digest.update(new byte[] { (byte) (bytes.length >>> 24),
+				(byte) (bytes.length >>> 16), (byte) (bytes.length >>> 8),
+				(byte) bytes.length });
+		digest.update(bytes);
+	}
+
+	/**
+	 * Hashes the bytecode of the test class (including its superclasses and
+	 * nested classes) and of its dependencies.
+	 */
+	static String fingerprint(final Class<?> testClass) throws IOException {
+		final MessageDigest digest = sha1();
+		for (Class<?> c = testClass; c != null && c != Object.class; c = c
+				.getSuperclass()) {
+			addBytecode(digest, c);
+		}
+		final ScenarioDependencies dependencies = testClass
+				.getAnnotation(ScenarioDependencies.class);
+		if (dependencies != null) {
+			for (Class<?> c : dependencies.value()) {
+				addBytecode(digest, c);
+			}
+		}
+		return hex(digest.digest());
+	}
+
+	private static void addBytecode(final MessageDigest digest,
+			final Class<?> c) throws IOException {
+		for (byte[] bytecode : getBytecode(c).values()) {
+			digest.update(bytecode);
+		}
+	}
+
+	/**
+	 * Returns the bytecode of a class and of all classes declared in it
+	 * (member, local and anonymous classes, recursively) by binary name.
+	 * {@link Class#getDeclaredClasses()} does not return local and anonymous
+	 * classes, so they are found by the names starting with
+	 * <code>Outer$</code> in the constant pool of the class: a class file
+	 * refers to all classes declared in it in its <code>InnerClasses</code>
+	 * attribute.
+	 */
+	static Map<String, byte[]> getBytecode(final Class<?> c)
+			throws IOException {
+		final ClassLoader loader = c.getClassLoader() == null ? ClassLoader
+				.getSystemClassLoader() : c.getClassLoader();
+		final Map<String, byte[]> bytecode = new LinkedHashMap<String, byte[]>();
+		addBytecode(bytecode, c.getName(), loader);
+		return bytecode;
+	}
+
+	private static void addBytecode(final Map<String, byte[]> bytecode,
+			final String name, final ClassLoader loader) throws IOException {
+		final InputStream in = loader.getResourceAsStream(name.replace('.',
+				'/')
+				+ ".class");
+		if (in == null) {
+			throw new IOException("Bytecode of " + name + " not found");
+		}
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try {
+			final byte[] buffer = new byte[4096];
+			int read;
+			while ((read = in.read(buffer)) >= 0) {
+				out.write(buffer, 0, read);
+			}
+		} finally {
+			in.close();
+		}
+		final byte[] bytes = out.toByteArray();
+		bytecode.put(name, bytes);
+		for (String internalName : getClassNames(bytes)) {
+			final String inner = internalName.replace('/', '.');
+			if (inner.startsWith(name + "$") && !bytecode.containsKey(inner)) {
+				addBytecode(bytecode, inner, loader);
+			}
+		}
+	}
+
+	/**
+	 * Returns the names of the classes in the constant pool of a class file,
+	 * in internal form.
+	 */
+	private static Set<String> getClassNames(final byte[] bytes)
+			throws IOException {
+		final DataInputStream in = new DataInputStream(
+				new ByteArrayInputStream(bytes));
+		if (in.readInt() != 0xCAFEBABE) {
+			throw new IOException("Invalid class file");
+		}
+		in.readInt(); // version
+		final int count = in.readUnsignedShort();
+		final String[] utf8 = new String[count];
+		final int[] classes = new int[count];
+		int classCount = 0;
+		for (int i = 1; i < count; i++) {
+			final int tag = in.readUnsignedByte();
+			switch (tag) {
+			case 1: // Utf8
+				utf8[i] = in.readUTF();
+				break;
+			case 7: // Class
+				classes[classCount++] = in.readUnsignedShort();
+				break;
+			case 8: // String
+			case 16: // MethodType
+			case 19: // Module
+			case 20: // Package
+				in.skipBytes(2);
+				break;
+			case 15: // MethodHandle
+				in.skipBytes(3);
+				break;
+			case 3: // Integer
+			case 4: // Float
+			case 9: // Fieldref
+			case 10: // Methodref
+			case 11: // InterfaceMethodref
+			case 12: // NameAndType
+			case 17: // Dynamic
+			case 18: // InvokeDynamic
+				in.skipBytes(4);
+				break;
+			case 5: // Long
+			case 6: // Double
+				in.skipBytes(8);
+				i++;
+				break;
+			default:
+				throw new IOException("Invalid constant pool tag " + tag);
+			}
+		}
+		final Set<String> names = new LinkedHashSet<String>();
+		for (int i = 0; i < classCount; i++) {
+			names.add(utf8[classes[i]]);
+		}
+		return names;
+	}
+
+	private static MessageDigest sha1() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String hex(final byte[] bytes) {
+		final StringBuilder hex = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			hex.append(Character.forDigit((b >> 4) & 15, 16)).append(
+					Character.forDigit(b & 15, 16));
+		}
+		return hex.toString();
+	}
+
+}
@@ -14,17 +14,22 @@
  */
 package org.junit.contrib.scenario;
 
-import java.lang.reflect.Constructor;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
+import org.junit.runner.Description;
 import org.junit.runner.Runner;
+import org.junit.runner.manipulation.Filter;
+import org.junit.runner.manipulation.NoTestsRemainException;
+import org.junit.runner.manipulation.Sorter;
 import org.junit.runner.notification.RunNotifier;
-import org.junit.runners.BlockJUnit4ClassRunner;
 import org.junit.runners.Suite;
 import org.junit.runners.model.FrameworkMethod;
-import org.junit.runners.model.InitializationError;
 import org.junit.runners.model.Statement;
 import org.junit.runners.model.TestClass;
 
@@ -115,6 +120,77 @@ import org.junit.runners.model.TestClass;
  * </pre>
  * 
  * </p>
+ * <h3>Large scenario sets</h3>
+ * <p>
+ * By default the runner creates a runner for each scenario up front and keeps
+ * all of them (and therefore all scenarios) until the test class is done. If
+ * you have a very large number of scenarios, create the {@link ScenarioList}
+ * with {@link ScenarioList#fromIterable(Iterable)} instead. The scenarios will
+ * then be requested on demand and the runner for each scenario will be created
+ * right before the scenario is run and discarded afterwards.
+ * </p>
+ * <h3>Parallel execution</h3>
+ * <p>
+ * Annotate the test class with {@link ParallelScenarios &#064;ParallelScenarios}
+ * to run its scenarios on a bounded pool of threads. Each scenario creates its
+ * own test instances, but the test class must not share mutable static state
+ * between scenarios. Results are reported in the same order as for sequential
+ * execution, each scenario after it has completed. The statistics of each
+ * parallel run are reported to the listeners registered with
+ * {@link #addListener(ParallelRunListener)}.
+ * </p>
+ * <h3>Sharding</h3>
+ * <p>
+ * To split the scenarios of a test class across several JVMs (for example
+ * forks of a CI build), set the system properties
+ * <code>junit.scenario.shardIndex</code> (starting with 0) and
+ * <code>junit.scenario.shardCount</code>. Each JVM runs only the scenarios of
+ * its shard, selected by a stable hash of the scenario name. If the system
+ * property <code>junit.scenario.shardTimings</code> names an existing timing
+ * file, or if the scenarios are {@link WeightedScenario}s (and not lazily
+ * evaluated), the scenarios are distributed so that all shards take about the
+ * same time. The timing file must not change while the JVMs start, so use a
+ * copy of the duration history rather than the history file itself.
+ * </p>
+ * <h3>Duration history</h3>
+ * <p>
+ * If the system property <code>junit.scenario.history</code> names a file,
+ * the duration and outcome of each scenario is appended to that file after
+ * the test class has been run. On later runs, the scenarios that failed last
+ * time are run first, followed by new scenarios and then the others, longest
+ * first, so that failures are reported early and parallel execution is not
+ * held up by a long scenario started last. Lazily evaluated scenarios are
+ * recorded, but not reordered. A copy of the history file can be used to
+ * balance shards.
+ * </p>
+ * <h3>Result cache</h3>
+ * <p>
+ * If the system property <code>junit.scenario.resultCache</code> names a
+ * file, scenarios that passed are recorded in that file and reported as
+ * ignored on later runs, unless their parameters, the test class or the
+ * production classes listed by {@link ScenarioDependencies
+ * &#064;ScenarioDependencies} changed.
+ * </p>
+ * <h3>Profiling</h3>
+ * <p>
+ * The elapsed time, CPU time and allocated bytes of each scenario and test
+ * method can be reported to listeners and to a report file of the slowest
+ * scenarios, see {@link ScenarioProfiler}.
+ * </p>
+ * <h3>Performance regression tests</h3>
+ * <p>
+ * Annotate the test class with {@link PerformanceBaseline
+ * &#064;PerformanceBaseline} to measure each test method of each scenario
+ * repeatedly and fail if it got slower than recorded in a baseline file.
+ * </p>
+ * <h3>Load tests</h3>
+ * <p>
+ * Annotate the test class with {@link LoadTest &#064;LoadTest} to invoke the
+ * test methods of each scenario at a target rate or concurrency for a fixed
+ * duration. The achieved throughput and latency percentiles of each scenario
+ * are reported to the listeners registered with
+ * {@link #addListener(LoadTestListener)}.
+ * </p>
  * <h3>Before, after and rules together with scenarios</h3>
  * <p>
  * When using <code>ScenarioRunner</code> together with &#064;Before,
@@ -127,6 +203,14 @@ import org.junit.runners.model.TestClass;
  * <li>rules, &#064;Before and &#064;After will be executed once for each
  * combinatin of test methods and scenarios (that means for each element in the
  * cross product of test methods and scenarios available).
+ * <li>{@link BeforeScenario &#064;BeforeScenario} and
+ * {@link AfterScenario &#064;AfterScenario} will be executed once for each
+ * scenario, before the first and after the last test method of the
+ * scenario. The fixture they build can be shared with the test methods using
+ * {@link ScenarioFixture &#064;ScenarioFixture} fields.</li>
+ * <li>a {@link ScenarioResult &#064;ScenarioResult} method will be executed
+ * once for each scenario, and the result will be shared by all test methods
+ * of the scenario.</li>
  * </p>
  * 
  * 
@@ -137,80 +221,118 @@ public class ScenarioRunner extends Suite {
 	private final ArrayList<Runner> runners = new ArrayList<Runner>();
 
 	/**
-	 * Internal Runner for Scenarios.
-	 * 
-	 * @author Stefan Penndorf <stefan@cyphoria.net>
+	 * The runner shared by all scenarios.
 	 */
-	private static final class TestClassRunnerForScenarios extends
-			BlockJUnit4ClassRunner {
-
-		private final Scenario scenario;
-
-		public TestClassRunnerForScenarios(final Class<?> klass,
-				final Scenario testScenario) throws InitializationError {
-			super(klass);
-			this.scenario = testScenario;
-		}
-
-		@Override
-		public Object createTest() throws Exception {
-			final Constructor<?> constructor = getTestClass()
-					.getOnlyConstructor();
-			final Class<?>[] parameters = constructor.getParameterTypes();
+	private final TestClassRunnerForScenarios classRunner;
 
-			if (parameters.length == 1
-					&& Scenario.class.isAssignableFrom(parameters[0])) {
-				return constructor.newInstance(this.scenario);
-			}
+	/**
+	 * The lazily evaluated scenarios or <code>null</code> if all runners have
+	 * been created up front.
+	 */
+	private final ScenarioList lazyScenarios;
 
-			if (this.scenario instanceof ParameterizedScenario) {
-				return constructor
-						.newInstance(((ParameterizedScenario) this.scenario)
-								.getParameters());
-			}
-			
-			throw new Exception("Expected Constructor with single Scenario "
-					+ "argument when using custom Scenario "
-					+ "implementation.");
-		}
+	/**
+	 * The executor for parallel execution or <code>null</code> if the
+	 * scenarios are run sequentially.
+	 */
+	private final ParallelScenarioExecutor parallelExecutor;
 
-		@Override
-		protected String getName() {
-			return String.format("[%s]", this.scenario.getName());
-		}
+	/**
+	 * The scenarios of this shard or <code>null</code> if all scenarios are
+	 * run.
+	 */
+	private final ScenarioSharding sharding;
 
-		@Override
-		protected String testName(final FrameworkMethod method) {
-			return String.format("%s[%s]", method.getName(),
-					this.scenario.getName());
-		}
+	/**
+	 * The history of scenario durations and outcomes or <code>null</code> if
+	 * no history is recorded.
+	 */
+	private final ScenarioHistory history;
 
-		@Override
-		protected void validateConstructor(List<Throwable> errors) {
-			validateOnlyOneConstructor(errors);
-		}
+	/**
+	 * The cache of passed scenarios or <code>null</code> if all scenarios are
+	 * run.
+	 */
+	private final ScenarioResultCache resultCache;
 
-		@Override
-		protected Statement classBlock(RunNotifier notifier) {
-			return childrenInvoker(notifier);
-		}
+	private Filter filter;
 
-	}
+	private Sorter sorter;
 
 	public ScenarioRunner(Class<?> klass) throws Throwable {
 		super(klass, (List<Runner>) null);
 		final TestClass testClass = getTestClass();
+		this.classRunner = new TestClassRunnerForScenarios(
+				testClass.getJavaClass());
+		// load tests are never run in parallel with each other
+		this.parallelExecutor = classRunner.getLoadTest() == null ? ParallelScenarioExecutor
+				.forTestClass(klass)
+				: null;
 		ScenarioList scenarios = getScenarioList(testClass);
+		this.sharding = ScenarioSharding.forTestClass(klass, scenarios);
+		this.history = ScenarioHistory.forTestClass(klass);
+		this.resultCache = ScenarioResultCache.forTestClass(klass);
+		if (scenarios.isLazy()) {
+			this.lazyScenarios = scenarios;
+			return;
+		}
+		this.lazyScenarios = null;
 		for (Scenario scenario : scenarios) {
-			final Runner runner = createRunner(testClass, scenario);
-			runners.add(runner);
+			if (sharding == null || sharding.accepts(scenario)) {
+				final Runner runner = createRunner(scenario);
+				runners.add(runner);
+			}
 		}
+		if (history != null) {
+			history.sort(runners);
+		}
+	}
+
+	/**
+	 * Registers a listener to be notified of the statistics of each parallel
+	 * run, see {@link ParallelScenarios}.
+	 * 
+	 * @param listener
+	 *            the listener to add.
+	 */
+	public static void addListener(final ParallelRunListener listener) {
+		ParallelScenarioExecutor.addListener(listener);
+	}
+
+	/**
+	 * Removes a listener registered before.
+	 * 
+	 * @param listener
+	 *            the listener to remove.
+	 */
+	public static void removeListener(final ParallelRunListener listener) {
+		ParallelScenarioExecutor.removeListener(listener);
+	}
+
+	/**
+	 * Registers a listener to be notified of the result of the load test of
+	 * each scenario, see {@link LoadTest}.
+	 * 
+	 * @param listener
+	 *            the listener to add.
+	 */
+	public static void addListener(final LoadTestListener listener) {
+		ScenarioLoadTest.addListener(listener);
+	}
+
+	/**
+	 * Removes a listener registered before.
+	 * 
+	 * @param listener
+	 *            the listener to remove.
+	 */
+	public static void removeListener(final LoadTestListener listener) {
+		ScenarioLoadTest.removeListener(listener);
 	}
 
-	private Runner createRunner(final TestClass testClass,
-			final Scenario scenario) throws InitializationError {
-		return new TestClassRunnerForScenarios(testClass.getJavaClass(),
-				scenario);
+	private SingleScenarioRunner createRunner(final Scenario scenario) {
+		return new SingleScenarioRunner(classRunner, scenario, history,
+				resultCache);
 	}
 
 	private final ScenarioList getScenarioList(final TestClass testClass)
@@ -224,6 +346,147 @@ public class ScenarioRunner extends Suite {
 		return runners;
 	}
 
+	@Override
+	public Description getDescription() {
+		final Description description = Description.createSuiteDescription(
+				getName(), getRunnerAnnotations());
+		final Iterator<Runner> it = scenarioRunners();
+		while (it.hasNext()) {
+			description.addChild(it.next().getDescription());
+		}
+		return description;
+	}
+
+	@Override
+	protected Statement childrenInvoker(final RunNotifier notifier) {
+		return new Statement() {
+			@Override
+			public void evaluate() throws Throwable {
+				try {
+					runScenarios(notifier);
+				} finally {
+					if (history != null) {
+						history.save();
+					}
+					if (resultCache != null) {
+						resultCache.save();
+					}
+					ScenarioProfiler.writeReport();
+					if (classRunner.getBaseline() != null) {
+						classRunner.getBaseline().save();
+					}
+				}
+			}
+		};
+	}
+
+	private void runScenarios(final RunNotifier notifier) throws Throwable {
+		if (parallelExecutor != null) {
+			parallelExecutor.run(scenarioRunners(), notifier);
+			return;
+		}
+		final Iterator<Runner> it = scenarioRunners();
+		while (it.hasNext()) {
+			it.next().run(notifier);
+		}
+	}
+
+	/**
+	 * Returns the filtered and sorted scenario runners. For lazily evaluated
+	 * scenarios the runners are created on demand.
+	 */
+	private Iterator<Runner> scenarioRunners() {
+		if (lazyScenarios == null) {
+			return runners.iterator();
+		}
+		final Iterator<Scenario> scenarios = lazyScenarios.iterator();
+		return new Iterator<Runner>() {
+
+			private Runner next;
+
+			public boolean hasNext() {
+				while (next == null && scenarios.hasNext()) {
+					next = createFilteredRunner(scenarios.next());
+				}
+				return next != null;
+			}
+
+			public Runner next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				final Runner runner = next;
+				next = null;
+				return runner;
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Creates the runner for a single lazily evaluated scenario and applies
+	 * the current filter and sorter.
+	 * 
+	 * @return the runner or <code>null</code> if the scenario belongs to
+	 *         another shard or the filter excludes all test methods of the
+	 *         scenario.
+	 */
+	private Runner createFilteredRunner(final Scenario scenario) {
+		if (sharding != null && !sharding.accepts(scenario)) {
+			return null;
+		}
+		final SingleScenarioRunner runner = createRunner(scenario);
+		if (filter != null) {
+			try {
+				filter.apply(runner);
+			} catch (NoTestsRemainException e) {
+				return null;
+			}
+		}
+		if (sorter != null) {
+			sorter.apply(runner);
+		}
+		return runner;
+	}
+
+	@Override
+	public void filter(final Filter filter) throws NoTestsRemainException {
+		if (lazyScenarios != null) {
+			this.filter = this.filter == null ? filter : this.filter
+					.intersect(filter);
+			return;
+		}
+		for (Iterator<Runner> it = runners.iterator(); it.hasNext();) {
+			try {
+				filter.apply(it.next());
+			} catch (NoTestsRemainException e) {
+				it.remove();
+			}
+		}
+		if (runners.isEmpty()) {
+			throw new NoTestsRemainException();
+		}
+	}
+
+	@Override
+	public void sort(final Sorter sorter) {
+		if (lazyScenarios != null) {
+			this.sorter = sorter;
+			return;
+		}
+		for (Runner runner : runners) {
+			sorter.apply(runner);
+		}
+		Collections.sort(runners, new Comparator<Runner>() {
+			public int compare(final Runner o1, final Runner o2) {
+				return sorter.compare(o1.getDescription(), o2.getDescription());
+			}
+		});
+	}
+
 	private final FrameworkMethod getParametersMethod(TestClass testClass)
 			throws Exception {
 		final List<FrameworkMethod> methods = testClass
@@ -0,0 +1,212 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Internal selection of the scenarios of one shard, if the scenarios of a test
+ * class are split across several JVMs. The shard is configured by system
+ * properties:
+ * <ul>
+ * <li><code>junit.scenario.shardIndex</code> - the shard run by this JVM,
+ * starting with 0.</li>
+ * <li><code>junit.scenario.shardCount</code> - the number of shards.</li>
+ * <li><code>junit.scenario.shardTimings</code> - optional timing file, see
+ * {@link ScenarioTimings}. The file is only read, so it may be a copy of the
+ * history file (see {@link ScenarioHistory}) taken before the JVMs are
+ * started, but not the history file the JVMs append to.</li>
+ * </ul>
+ * <p>
+ * By default a scenario belongs to the shard given by a stable hash of its
+ * name, so each JVM selects its scenarios independently. If the timing file
+ * exists or if there are {@link WeightedScenario}s (in a scenario list that
+ * is not lazy), the scenarios are distributed so that the shards have about
+ * the same total duration (or weight) instead. Scenarios without timing or
+ * weight are assumed to take the average time. All JVMs must see the same
+ * scenarios and timing file to agree on the distribution. Balancing iterates
+ * all scenarios up front and keeps their names, also for lazy scenario lists.
+ * </p>
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ */
+final class ScenarioSharding {
+
+	static final String SHARD_INDEX_PROPERTY = "junit.scenario.shardIndex";
+
+	static final String SHARD_COUNT_PROPERTY = "junit.scenario.shardCount";
+
+	static final String SHARD_TIMINGS_PROPERTY = "junit.scenario.shardTimings";
+
+	private final int index;
+
+	private final int count;
+
+	/**
+	 * The names of the scenarios of this shard if the scenarios are
+	 * balanced, or <code>null</code> if the scenarios are selected by hash.
+	 */
+	private final Set<String> selected;
+
+	ScenarioSharding(final int index, final int count,
+			final Set<String> selected) {
+		super();
+		if (count < 1 || index < 0 || index >= count) {
+			throw new IllegalArgumentException(String.format(
+					"Invalid shard %d of %d", index, count));
+		}
+		this.index = index;
+		this.count = count;
+		this.selected = selected;
+	}
+
+	/**
+	 * Creates the sharding configured by system properties.
+	 * 
+	 * @return the sharding or <code>null</code> if all scenarios are run.
+	 */
+	static ScenarioSharding forTestClass(final Class<?> klass,
+			final ScenarioList scenarios) throws IOException {
+		final String shardCount = System.getProperty(SHARD_COUNT_PROPERTY);
+		if (shardCount == null) {
+			return null;
+		}
+		final int count = Integer.parseInt(shardCount.trim());
+		final String shardIndex = System.getProperty(SHARD_INDEX_PROPERTY);
+		final int index = shardIndex == null ? 0 : Integer
+				.parseInt(shardIndex.trim());
+		if (count == 1 && index == 0) {
+			return null;
+		}
+		final String timingFile = System.getProperty(SHARD_TIMINGS_PROPERTY);
+		final Map<String, Long> timings = timingFile == null ? Collections
+				.<String, Long> emptyMap() : ScenarioTimings.loadDurations(
+				new File(timingFile), klass);
+		if (timings.isEmpty() && scenarios.isLazy()) {
+			// not worth another pass over the scenarios to look for weights
+			return new ScenarioSharding(index, count, null);
+		}
+		return balance(index, count, scenarios, timings);
+	}
+
+	/**
+	 * Creates the sharding, balancing the scenarios by timing or weight if
+	 * there is any.
+	 */
+	static ScenarioSharding balance(final int index, final int count,
+			final Iterable<Scenario> scenarios, final Map<String, Long> timings) {
+		boolean balanced = !timings.isEmpty();
+		if (!balanced) {
+			for (Scenario scenario : scenarios) {
+				if (scenario instanceof WeightedScenario) {
+					balanced = true;
+					break;
+				}
+			}
+		}
+		if (!balanced) {
+			return new ScenarioSharding(index, count, null);
+		}
+		final Map<String, Double> weights = new LinkedHashMap<String, Double>();
+		double known = 0;
+		int knownCount = 0;
+		for (Scenario scenario : scenarios) {
+			final String name = scenario.getName();
+			Double weight = null;
+			final Long timing = timings.get(name);
+			if (timing != null) {
+				weight = timing.doubleValue();
+			} else if (scenario instanceof WeightedScenario) {
+				weight = ((WeightedScenario) scenario).getWeight();
+			}
+			if (weight != null) {
+				known += weight;
+				knownCount++;
+			}
+			final Double previous = weights.get(name);
+			if (previous == null) {
+				weights.put(name, weight);
+			} else if (weight != null) {
+				weights.put(name, previous + weight);
+			}
+		}
+		final double average = knownCount == 0 ? 1 : known / knownCount;
+		final List<Map.Entry<String, Double>> entries = new ArrayList<Map.Entry<String, Double>>(
+				weights.entrySet());
+		for (Map.Entry<String, Double> entry : entries) {
+			if (entry.getValue() == null) {
+				entry.setValue(average);
+			}
+		}
+		// longest processing time first, assigned to the least loaded shard
+		Collections.sort(entries, new Comparator<Map.Entry<String, Double>>() {
+			public int compare(final Map.Entry<String, Double> o1,
+					final Map.Entry<String, Double> o2) {
+				final int result = o2.getValue().compareTo(o1.getValue());
+				return result != 0 ? result : o1.getKey().compareTo(
+						o2.getKey());
+			}
+		});
+		final double[] loads = new double[count];
+		final Set<String> selected = new HashSet<String>();
+		for (Map.Entry<String, Double> entry : entries) {
+			int shard = 0;
+			for (int i = 1; i < count; i++) {
+				if (loads[i] < loads[shard]) {
+					shard = i;
+				}
+			}
+			loads[shard] += entry.getValue();
+			if (shard == index) {
+				selected.add(entry.getKey());
+			}
+		}
+		return new ScenarioSharding(index, count, selected);
+	}
+
+	/**
+	 * Returns whether the scenario provided is run in this shard.
+	 */
+	boolean accepts(final Scenario scenario) {
+		final String name = scenario.getName();
+		if (selected != null) {
+			return selected.contains(name);
+		}
+		return shardOf(name, count) == index;
+	}
+
+	/**
+	 * Returns the shard of the scenario name provided, based on a hash that
+	 * does not depend on the JVM (64 bit FNV-1a of the characters).
+	 */
+	static int shardOf(final String name, final int count) {
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < name.length(); i++) {
+			hash ^= name.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return (int) ((hash >>> 1) % count);
+	}
+
+}
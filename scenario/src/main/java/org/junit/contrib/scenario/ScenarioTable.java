@@ -0,0 +1,262 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+import java.lang.reflect.Array;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>
+ * A <code>ScenarioTable</code> holds a table of scenario parameters column by
+ * column. Each column is a single array, numeric columns are primitive arrays
+ * (<code>int[]</code>, <code>long[]</code>, <code>double[]</code>, ...). Other
+ * than {@link ScenarioList#fromArray(Object[][][])} no object is kept per
+ * scenario, so large numeric tables need much less memory. For example:
+ * 
+ * <pre>
+ * &#064;Scenarios
+ * public static ScenarioList scenarios() {
+ * 	final int[] summand1 = new int[1000000];
+ * 	final int[] summand2 = new int[1000000];
+ * 	final long[] sum = new long[1000000];
+ * 	...
+ * 	return ScenarioTable.fromColumns(summand1, summand2, sum).toScenarioList();
+ * }
+ * </pre>
+ * 
+ * </p>
+ * <p>
+ * The rows are created on demand while the scenarios are iterated. If the
+ * constructor of the test class takes the parameters of a row, the values are
+ * boxed only to call the constructor. A test class may also take a single
+ * {@link Row} parameter and read the values using the primitive accessors,
+ * like {@link Row#getInt(int)}, without any boxing at all:
+ * 
+ * <pre>
+ * public CalculatorTest(final ScenarioTable.Row row) {
+ * 	this.summand1 = row.getInt(0);
+ * 	...
+ * }
+ * </pre>
+ * 
+ * </p>
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ */
+public final class ScenarioTable implements Iterable<Scenario> {
+
+	/**
+	 * Creates a new table from the columns provided. The scenarios are named
+	 * by their row number, starting with 0.
+	 * 
+	 * @param columns
+	 *            arrays of equal length, one per parameter.
+	 * @return the <code>ScenarioTable</code>.
+	 */
+	public static ScenarioTable fromColumns(final Object... columns) {
+		return new ScenarioTable(null, columns);
+	}
+
+	/**
+	 * Creates a new table from the scenario names and columns provided.
+	 * 
+	 * @param names
+	 *            the names of the scenarios.
+	 * @param columns
+	 *            arrays of the same length as <code>names</code>, one per
+	 *            parameter.
+	 * @return the <code>ScenarioTable</code>.
+	 */
+	public static ScenarioTable fromColumns(final String[] names,
+			final Object... columns) {
+		if (names == null) {
+			throw new NullPointerException("names may not be null");
+		}
+		return new ScenarioTable(names, columns);
+	}
+
+	private final String[] names;
+
+	private final Object[] columns;
+
+	private final int rows;
+
+	/**
+	 * Private constructor, see static factory methods.
+	 */
+	private ScenarioTable(final String[] names, final Object[] columns) {
+		super();
+		int length = names == null ? -1 : names.length;
+		for (Object column : columns) {
+			if (column == null || !column.getClass().isArray()) {
+				throw new IllegalArgumentException("Column is not an array: "
+						+ column);
+			}
+			final int columnLength = Array.getLength(column);
+			if (length >= 0 && length != columnLength) {
+				throw new IllegalArgumentException(
+						"All columns must have the same length");
+			}
+			length = columnLength;
+		}
+		this.names = names;
+		this.columns = columns.clone();
+		this.rows = Math.max(length, 0);
+	}
+
+	/**
+	 * Returns the number of scenarios of this table.
+	 */
+	public int size() {
+		return this.rows;
+	}
+
+	/**
+	 * Returns a lazily evaluated {@link ScenarioList} backed by this table.
+	 */
+	public ScenarioList toScenarioList() {
+		return ScenarioList.fromIterable(this);
+	}
+
+	/**
+	 * Returns an iterator creating the rows of this table on demand.
+	 */
+	public Iterator<Scenario> iterator() {
+		return new Iterator<Scenario>() {
+
+			private int next;
+
+			public boolean hasNext() {
+				return next < rows;
+			}
+
+			public Scenario next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return new Row(ScenarioTable.this, next++);
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException(
+						"ScenarioTable is read-only");
+			}
+		};
+	}
+
+	/**
+	 * A single row of a {@link ScenarioTable}, created on demand.
+	 */
+	public static final class Row implements Scenario {
+
+		private final ScenarioTable table;
+
+		private final int row;
+
+		private Row(final ScenarioTable table, final int row) {
+			super();
+			this.table = table;
+			this.row = row;
+		}
+
+		public String getName() {
+			return table.names == null ? String.valueOf(row)
+					: table.names[row];
+		}
+
+		/**
+		 * Returns the index of this row within the table.
+		 */
+		public int getRow() {
+			return this.row;
+		}
+
+		/**
+		 * Returns the number of parameters of this row.
+		 */
+		public int getParameterCount() {
+			return table.columns.length;
+		}
+
+		public int getInt(final int column) {
+			return ((int[]) table.columns[column])[row];
+		}
+
+		public long getLong(final int column) {
+			return ((long[]) table.columns[column])[row];
+		}
+
+		public double getDouble(final int column) {
+			return ((double[]) table.columns[column])[row];
+		}
+
+		public float getFloat(final int column) {
+			return ((float[]) table.columns[column])[row];
+		}
+
+		public short getShort(final int column) {
+			return ((short[]) table.columns[column])[row];
+		}
+
+		public byte getByte(final int column) {
+			return ((byte[]) table.columns[column])[row];
+		}
+
+		public char getChar(final int column) {
+			return ((char[]) table.columns[column])[row];
+		}
+
+		public boolean getBoolean(final int column) {
+			return ((boolean[]) table.columns[column])[row];
+		}
+
+		/**
+		 * Returns the value of the column provided, boxed if the column is a
+		 * primitive array.
+		 */
+		public Object get(final int column) {
+			return Array.get(table.columns[column], row);
+		}
+
+		/**
+		 * Returns the (boxed) values of this row, used to call the constructor
+		 * of the test class.
+		 */
+		Object[] getParameters() {
+			final Object[] parameters = new Object[table.columns.length];
+			for (int i = 0; i < parameters.length; i++) {
+				parameters[i] = get(i);
+			}
+			return parameters;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(table) + row;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Row))
+				return false;
+			final Row other = (Row) obj;
+			return table == other.table && row == other.row;
+		}
+	}
+
+}
@@ -0,0 +1,215 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Internal access to a timing (history) file, containing the duration and
+ * outcome of scenarios of previous runs. The file is only ever appended to,
+ * one line per scenario and run, with the duration in milliseconds, the
+ * outcome (<code>pass</code> or <code>fail</code>), the name of the test
+ * class and the name of the scenario, separated by tabs:
+ * 
+ * <pre>
+ * 1250	pass	com.example.CalculatorTest	1+2=3
+ * </pre>
+ * 
+ * <p>
+ * Lines without outcome are read as passed. If a scenario is listed more than
+ * once, the durations are averaged with more weight on recent runs, and the
+ * outcome of the last run counts. When the file has grown to many times the
+ * number of scenarios it lists, it is compacted to one line per scenario
+ * while being read. The file is locked while being read or written, so that
+ * several JVMs can share it.
+ * </p>
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ */
+final class ScenarioTimings {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/**
+	 * The number of lines per scenario that triggers compaction.
+	 */
+	private static final int COMPACT_FACTOR = 4;
+
+	/**
+	 * The minimum number of lines of a file to be compacted.
+	 */
+	private static final int COMPACT_MIN_LINES = 1000;
+
+	/**
+	 * The recorded duration and outcome of a scenario.
+	 */
+	static final class Entry {
+
+		final long millis;
+
+		final boolean failed;
+
+		Entry(final long millis, final boolean failed) {
+			super();
+			this.millis = millis;
+			this.failed = failed;
+		}
+	}
+
+	private ScenarioTimings() {
+		super();
+	}
+
+	/**
+	 * Reads the durations of the scenarios of the test class provided.
+	 * 
+	 * @return the durations in milliseconds by scenario name, empty if the
+	 *         file does not exist.
+	 */
+	static Map<String, Long> loadDurations(final File file,
+			final Class<?> testClass) throws IOException {
+		final Map<String, Long> durations = new HashMap<String, Long>();
+		for (Map.Entry<String, Entry> entry : load(file, testClass)
+				.entrySet()) {
+			durations.put(entry.getKey(), entry.getValue().millis);
+		}
+		return durations;
+	}
+
+	/**
+	 * Reads the entries of the scenarios of the test class provided.
+	 * 
+	 * @return the entries by scenario name, empty if the file does not exist.
+	 */
+	static Map<String, Entry> load(final File file, final Class<?> testClass)
+			throws IOException {
+		final Map<String, Entry> entries = new HashMap<String, Entry>();
+		if (!file.exists()) {
+			return entries;
+		}
+		final String prefix = testClass.getName() + "\t";
+		final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			final FileChannel channel = raf.getChannel();
+			final FileLock lock = channel.lock();
+			try {
+				final Map<String, Entry> all = new LinkedHashMap<String, Entry>();
+				final int lines = read(channel, all);
+				if (lines > COMPACT_MIN_LINES
+						&& lines > COMPACT_FACTOR * all.size()) {
+					channel.truncate(0);
+					write(channel, all);
+				}
+				for (Map.Entry<String, Entry> entry : all.entrySet()) {
+					if (entry.getKey().startsWith(prefix)) {
+						entries.put(entry.getKey().substring(prefix.length()),
+								entry.getValue());
+					}
+				}
+			} finally {
+				lock.release();
+			}
+		} finally {
+			raf.close();
+		}
+		return entries;
+	}
+
+	/**
+	 * Appends the entries of the scenarios of the test class provided.
+	 */
+	static void append(final File file, final Class<?> testClass,
+			final Map<String, Entry> entries) throws IOException {
+		final Map<String, Entry> lines = new LinkedHashMap<String, Entry>();
+		for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+			lines.put(testClass.getName() + "\t" + entry.getKey(), entry
+					.getValue());
+		}
+		final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			final FileChannel channel = raf.getChannel();
+			final FileLock lock = channel.lock();
+			try {
+				channel.position(channel.size());
+				write(channel, lines);
+			} finally {
+				lock.release();
+			}
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Reads all lines, merging the lines of the same scenario.
+	 * 
+	 * @return the number of lines read.
+	 */
+	private static int read(final FileChannel channel,
+			final Map<String, Entry> entries) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+		while (buffer.hasRemaining() && channel.read(buffer, buffer
+				.position()) >= 0) {
+			// read the whole file
+		}
+		buffer.flip();
+		int lines = 0;
+		for (String line : UTF_8.decode(buffer).toString().split("\n")) {
+			final String[] fields = line.split("\t", 4);
+			final boolean hasOutcome = fields.length == 4;
+			if (fields.length < 3) {
+				continue;
+			}
+			lines++;
+			final long millis;
+			try {
+				millis = Long.parseLong(fields[0].trim());
+			} catch (NumberFormatException e) {
+				continue;
+			}
+			final boolean failed = hasOutcome && "fail".equals(fields[1]);
+			final String key = hasOutcome ? fields[2] + "\t" + fields[3]
+					: fields[1] + "\t" + fields[2];
+			final Entry previous = entries.get(key);
+			entries.put(key, new Entry(previous == null ? millis
+					: (previous.millis + millis) / 2, failed));
+		}
+		return lines;
+	}
+
+	private static void write(final FileChannel channel,
+			final Map<String, Entry> entries) throws IOException {
+		final StringBuilder text = new StringBuilder();
+		for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+			text.append(entry.getValue().millis).append('\t').append(
+					entry.getValue().failed ? "fail" : "pass").append('\t')
+					.append(entry.getKey()).append('\n');
+		}
+		final ByteBuffer buffer = UTF_8.encode(text.toString());
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+}
@@ -0,0 +1,291 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.internal.AssumptionViolatedException;
+import org.junit.runner.Description;
+import org.junit.runner.Runner;
+import org.junit.runner.manipulation.Filter;
+import org.junit.runner.manipulation.Filterable;
+import org.junit.runner.manipulation.NoTestsRemainException;
+import org.junit.runner.manipulation.Sortable;
+import org.junit.runner.manipulation.Sorter;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runner.notification.StoppedByUserException;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.Statement;
+
+/**
+ * Internal runner for a single scenario. The runner only holds the scenario,
+ * the test methods are run by the {@link TestClassRunnerForScenarios} shared
+ * by all scenarios of the test class.
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ */
+final class SingleScenarioRunner extends Runner implements Filterable,
+		Sortable {
+
+	private final TestClassRunnerForScenarios classRunner;
+
+	private final Scenario scenario;
+
+	/**
+	 * The test methods remaining after filtering or sorting, or
+	 * <code>null</code> if all test methods of the test class are run in
+	 * their original order.
+	 */
+	private List<FrameworkMethod> methods;
+
+	/**
+	 * The history to record the duration and outcome of the scenario in, or
+	 * <code>null</code>.
+	 */
+	private final ScenarioHistory history;
+
+	/**
+	 * The cache of passed scenarios, or <code>null</code>.
+	 */
+	private final ScenarioResultCache cache;
+
+	public SingleScenarioRunner(final TestClassRunnerForScenarios classRunner,
+			final Scenario scenario, final ScenarioHistory history,
+			final ScenarioResultCache cache) {
+		super();
+		this.classRunner = classRunner;
+		this.scenario = scenario;
+		this.history = history;
+		this.cache = cache;
+	}
+
+	Scenario getScenario() {
+		return this.scenario;
+	}
+
+	/**
+	 * Returns the test methods run for the scenario, after filtering and
+	 * sorting.
+	 */
+	List<FrameworkMethod> getMethods() {
+		return methods == null ? classRunner.getTestMethods() : methods;
+	}
+
+	/**
+	 * Runs a single test method for the scenario, independently of the other
+	 * test methods, see {@link #isMethodsIndependent()}.
+	 */
+	void runMethod(final FrameworkMethod method, final RunNotifier notifier) {
+		if (cache != null && cache.isPassed(scenario)) {
+			notifier.fireTestIgnored(classRunner.describeMethod(scenario,
+					method));
+			return;
+		}
+		if (history != null || cache != null) {
+			final long start = System.nanoTime();
+			final OutcomeNotifier outcome = new OutcomeNotifier(notifier);
+			try {
+				runMethodUnrecorded(method, outcome);
+			} finally {
+				record(System.nanoTime() - start, outcome.failed, false);
+			}
+			return;
+		}
+		runMethodUnrecorded(method, notifier);
+	}
+
+	private void runMethodUnrecorded(final FrameworkMethod method,
+			final RunNotifier notifier) {
+		final ScenarioContext context = new ScenarioContext(scenario);
+		try {
+			classRunner.runMethod(context, method, notifier);
+		} finally {
+			context.release();
+		}
+	}
+
+	@Override
+	public Description getDescription() {
+		final Description description = Description.createSuiteDescription(
+				String.format("[%s]", scenario.getName()),
+				classRunner.getTestClass().getAnnotations());
+		for (FrameworkMethod method : getMethods()) {
+			description.addChild(classRunner.describeMethod(scenario, method));
+		}
+		return description;
+	}
+
+	@Override
+	public void run(final RunNotifier notifier) {
+		if (cache != null && cache.isPassed(scenario)) {
+			for (FrameworkMethod method : getMethods()) {
+				notifier.fireTestIgnored(classRunner.describeMethod(scenario,
+						method));
+			}
+			return;
+		}
+		if (history != null || cache != null) {
+			final long start = System.nanoTime();
+			final OutcomeNotifier outcome = new OutcomeNotifier(notifier);
+			try {
+				runUnrecorded(outcome);
+			} finally {
+				record(System.nanoTime() - start, outcome.failed,
+						methods == null);
+			}
+			return;
+		}
+		runUnrecorded(notifier);
+	}
+
+	/**
+	 * Records the duration and outcome of the scenario (or one of its test
+	 * methods) in the history and result cache.
+	 */
+	private void record(final long nanos, final boolean failed,
+			final boolean complete) {
+		if (history != null) {
+			history.record(scenario, nanos, failed);
+		}
+		if (cache != null) {
+			cache.record(scenario, failed, complete);
+		}
+	}
+
+	private void runUnrecorded(final RunNotifier notifier) {
+		final ScenarioContext context = new ScenarioContext(scenario);
+		final Statement statement = classRunner.withProfiling(context,
+				classRunner.withScenarioHooks(context, new Statement() {
+					@Override
+					public void evaluate() throws InterruptedException,
+							IOException {
+						final ScenarioLoadTest loadTest = classRunner
+								.getLoadTest();
+						if (loadTest != null) {
+							loadTest.run(classRunner, context, getMethods(),
+									notifier);
+							return;
+						}
+						for (FrameworkMethod method : getMethods()) {
+							classRunner.runMethod(context, method, notifier);
+						}
+					}
+				}));
+		try {
+			statement.evaluate();
+		} catch (AssumptionViolatedException e) {
+			notifier.fireTestIgnored(getDescription());
+		} catch (StoppedByUserException e) {
+			throw e;
+		} catch (Throwable e) {
+			notifier.fireTestFailure(new Failure(getDescription(), e));
+		} finally {
+			context.release();
+		}
+	}
+
+	/**
+	 * Returns whether the test methods of the scenario may be run
+	 * independently of each other, that is, whether there are no
+	 * &#064;BeforeScenario, &#064;AfterScenario or &#064;ScenarioResult
+	 * methods.
+	 */
+	boolean isMethodsIndependent() {
+		return !classRunner.hasScenarioState();
+	}
+
+	public void filter(final Filter filter) throws NoTestsRemainException {
+		final List<FrameworkMethod> remaining = new ArrayList<FrameworkMethod>(
+				getMethods());
+		for (Iterator<FrameworkMethod> it = remaining.iterator(); it.hasNext();) {
+			if (!filter.shouldRun(classRunner.describeMethod(scenario,
+					it.next()))) {
+				it.remove();
+			}
+		}
+		if (remaining.isEmpty()) {
+			throw new NoTestsRemainException();
+		}
+		this.methods = remaining;
+	}
+
+	public void sort(final Sorter sorter) {
+		final List<FrameworkMethod> sorted = new ArrayList<FrameworkMethod>(
+				getMethods());
+		Collections.sort(sorted, new Comparator<FrameworkMethod>() {
+			public int compare(final FrameworkMethod o1,
+					final FrameworkMethod o2) {
+				return sorter.compare(
+						classRunner.describeMethod(scenario, o1),
+						classRunner.describeMethod(scenario, o2));
+			}
+		});
+		this.methods = sorted;
+	}
+
+	/**
+	 * Notifier passing all events on to another notifier, remembering whether
+	 * a test failed.
+	 */
+	private static final class OutcomeNotifier extends RunNotifier {
+
+		private final RunNotifier notifier;
+
+		private volatile boolean failed;
+
+		OutcomeNotifier(final RunNotifier notifier) {
+			super();
+			this.notifier = notifier;
+		}
+
+		@Override
+		public void fireTestStarted(final Description description) {
+			notifier.fireTestStarted(description);
+		}
+
+		@Override
+		public void fireTestFailure(final Failure failure) {
+			failed = true;
+			notifier.fireTestFailure(failure);
+		}
+
+		@Override
+		public void fireTestAssumptionFailed(final Failure failure) {
+			notifier.fireTestAssumptionFailed(failure);
+		}
+
+		@Override
+		public void fireTestIgnored(final Description description) {
+			notifier.fireTestIgnored(description);
+		}
+
+		@Override
+		public void fireTestFinished(final Description description) {
+			notifier.fireTestFinished(description);
+		}
+
+		@Override
+		public void pleaseStop() {
+			notifier.pleaseStop();
+		}
+	}
+
+}
@@ -0,0 +1,420 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.runner.Description;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.BlockJUnit4ClassRunner;
+import org.junit.runners.model.FrameworkField;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.MultipleFailureException;
+import org.junit.runners.model.Statement;
+
+/**
+ * Internal runner executing the test methods of a test class for any
+ * scenario. The test class is scanned and validated only once, all scenarios
+ * share the same test methods and constructor. The {@link ScenarioContext} a
+ * test method is run for is bound to the current thread while the method is
+ * running.
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ */
+final class TestClassRunnerForScenarios extends BlockJUnit4ClassRunner {
+
+	private final ThreadLocal<ScenarioContext> currentContext = new ThreadLocal<ScenarioContext>();
+
+	private final Constructor<?> constructor;
+
+	private final boolean scenarioConstructor;
+
+	/**
+	 * The performance regression gate or <code>null</code>.
+	 */
+	private final ScenarioBaseline baseline;
+
+	/**
+	 * The load test driver or <code>null</code>.
+	 */
+	private final ScenarioLoadTest loadTest;
+
+	public TestClassRunnerForScenarios(final Class<?> klass)
+			throws InitializationError {
+		super(klass);
+		try {
+			this.baseline = ScenarioBaseline.forTestClass(klass);
+			this.loadTest = ScenarioLoadTest.forTestClass(klass);
+		} catch (Exception e) {
+			throw new InitializationError(e);
+		}
+		this.constructor = getTestClass().getOnlyConstructor();
+		final Class<?>[] parameters = constructor.getParameterTypes();
+		this.scenarioConstructor = parameters.length == 1
+				&& Scenario.class.isAssignableFrom(parameters[0]);
+	}
+
+	/**
+	 * Returns the test methods of the test class.
+	 * 
+	 * @return the test methods, shared by all scenarios.
+	 */
+	List<FrameworkMethod> getTestMethods() {
+		return getChildren();
+	}
+
+	/**
+	 * Describes the test method when run for the scenario provided.
+	 */
+	Description describeMethod(final Scenario scenario,
+			final FrameworkMethod method) {
+		return Description.createTestDescription(getTestClass().getJavaClass(),
+				testName(method, scenario), method.getAnnotations());
+	}
+
+	/**
+	 * Runs a single test method for the scenario of the context provided,
+	 * including all rules, befores and afters.
+	 */
+	void runMethod(final ScenarioContext context,
+			final FrameworkMethod method, final RunNotifier notifier) {
+		final ScenarioProfiler.Stopwatch stopwatch = ScenarioProfiler.start();
+		currentContext.set(context);
+		try {
+			runChild(method, notifier);
+		} finally {
+			currentContext.remove();
+			if (stopwatch != null) {
+				stopwatch.stop(getTestClass().getJavaClass(), context
+						.getScenario(), method.getName());
+			}
+		}
+	}
+
+	/**
+	 * Returns the performance regression gate of the test class, or
+	 * <code>null</code> if it has no {@link PerformanceBaseline}.
+	 */
+	ScenarioBaseline getBaseline() {
+		return this.baseline;
+	}
+
+	/**
+	 * Returns the load test driver of the test class, or <code>null</code> if
+	 * its scenarios are run normally, see {@link LoadTest}.
+	 */
+	ScenarioLoadTest getLoadTest() {
+		return this.loadTest;
+	}
+
+	@Override
+	protected Statement methodInvoker(final FrameworkMethod method,
+			final Object test) {
+		final Statement invoker = super.methodInvoker(method, test);
+		if (baseline == null || loadTest != null) {
+			return invoker;
+		}
+		return baseline.measure(currentContext.get().getScenario(), method,
+				invoker);
+	}
+
+	/**
+	 * Wraps the statement running a whole scenario to profile it, if
+	 * profiling is enabled, see {@link ScenarioProfiler}.
+	 */
+	Statement withProfiling(final ScenarioContext context,
+			final Statement statement) {
+		if (!ScenarioProfiler.isEnabled()) {
+			return statement;
+		}
+		return new Statement() {
+			@Override
+			public void evaluate() throws Throwable {
+				final ScenarioProfiler.Stopwatch stopwatch = new ScenarioProfiler.Stopwatch();
+				try {
+					statement.evaluate();
+				} finally {
+					stopwatch.stop(getTestClass().getJavaClass(), context
+							.getScenario(), null);
+				}
+			}
+		};
+	}
+
+	/**
+	 * Returns whether the test methods of a scenario share state, that is,
+	 * whether the test class has &#064;BeforeScenario, &#064;AfterScenario or
+	 * &#064;ScenarioResult methods.
+	 */
+	boolean hasScenarioState() {
+		return !getTestClass().getAnnotatedMethods(BeforeScenario.class)
+				.isEmpty()
+				|| !getTestClass().getAnnotatedMethods(AfterScenario.class)
+						.isEmpty()
+				|| !getTestClass().getAnnotatedMethods(ScenarioResult.class)
+						.isEmpty();
+	}
+
+	/**
+	 * Wraps the statement running the test methods of a scenario with the
+	 * &#064;BeforeScenario and &#064;AfterScenario methods of the test class.
+	 * The &#064;AfterScenario methods are run even if the statement or a
+	 * &#064;BeforeScenario method failed.
+	 */
+	Statement withScenarioHooks(final ScenarioContext context,
+			final Statement statement) {
+		final List<FrameworkMethod> befores = new ArrayList<FrameworkMethod>(
+				getTestClass().getAnnotatedMethods(BeforeScenario.class));
+		final List<FrameworkMethod> afters = getTestClass()
+				.getAnnotatedMethods(AfterScenario.class);
+		if (befores.isEmpty() && afters.isEmpty()) {
+			return statement;
+		}
+		// superclass methods first
+		Collections.reverse(befores);
+		return new Statement() {
+			@Override
+			public void evaluate() throws Throwable {
+				final List<Throwable> errors = new ArrayList<Throwable>();
+				try {
+					for (FrameworkMethod before : befores) {
+						invokeHook(before);
+					}
+					statement.evaluate();
+				} catch (Throwable e) {
+					errors.add(e);
+				} finally {
+					for (FrameworkMethod after : afters) {
+						try {
+							invokeHook(after);
+						} catch (Throwable e) {
+							errors.add(e);
+						}
+					}
+				}
+				MultipleFailureException.assertEmpty(errors);
+			}
+
+			private void invokeHook(final FrameworkMethod method)
+					throws Throwable {
+				Object instance = null;
+				if (!Modifier.isStatic(method.getMethod().getModifiers())) {
+					synchronized (context) {
+						if (context.hookTarget == null) {
+							context.hookTarget = newInstance(context);
+						}
+						instance = context.hookTarget;
+					}
+				}
+				invoke(method, instance, context.getScenario());
+			}
+		};
+	}
+
+	private static Object invoke(final FrameworkMethod method,
+			final Object target, final Scenario scenario) throws Throwable {
+		if (method.getMethod().getParameterTypes().length == 0) {
+			return method.invokeExplosively(target);
+		}
+		return method.invokeExplosively(target, scenario);
+	}
+
+	@Override
+	public Object createTest() throws Exception {
+		final ScenarioContext context = currentContext.get();
+		final Object test = newInstance(context);
+		final Object hookTarget;
+		synchronized (context) {
+			hookTarget = context.hookTarget;
+		}
+		if (hookTarget != null) {
+			for (FrameworkField field : getTestClass().getAnnotatedFields(
+					ScenarioFixture.class)) {
+				field.getField().set(test, field.getField().get(hookTarget));
+			}
+		}
+		final List<FrameworkField> fields = getTestClass().getAnnotatedFields(
+				ScenarioResult.class);
+		if (!fields.isEmpty()) {
+			final Object result = getScenarioResult(context, test);
+			for (FrameworkField field : fields) {
+				field.getField().set(test, result);
+			}
+		}
+		return test;
+	}
+
+	/**
+	 * Returns the result of the scenario, computing it on the first call for
+	 * the context provided.
+	 */
+	private Object getScenarioResult(final ScenarioContext context,
+			final Object test) throws Exception {
+		synchronized (context) {
+			if (!context.resultComputed) {
+				context.resultComputed = true;
+				final FrameworkMethod method = getTestClass()
+						.getAnnotatedMethods(ScenarioResult.class).get(0);
+				try {
+					context.result = invoke(method, test, context
+							.getScenario());
+				} catch (Throwable e) {
+					context.resultFailure = e;
+				}
+			}
+			final Throwable failure = context.resultFailure;
+			if (failure instanceof Exception) {
+				throw (Exception) failure;
+			} else if (failure instanceof Error) {
+				throw (Error) failure;
+			} else if (failure != null) {
+				throw new Exception(failure);
+			}
+			return context.result;
+		}
+	}
+
+	/**
+	 * Creates an instance of the test class for the scenario of the context
+	 * provided.
+	 */
+	private Object newInstance(final ScenarioContext context) throws Exception {
+
+		final Scenario scenario = context.getScenario();
+
+		if (this.scenarioConstructor) {
+			return constructor.newInstance(scenario);
+		}
+
+		if (scenario instanceof ParameterizedScenario) {
+			return constructor.newInstance(((ParameterizedScenario) scenario)
+					.getParameters());
+		}
+
+		if (scenario instanceof LazyScenario) {
+			return constructor.newInstance(context.getParameters());
+		}
+
+		if (scenario instanceof ScenarioTable.Row) {
+			return constructor.newInstance(((ScenarioTable.Row) scenario)
+					.getParameters());
+		}
+
+		throw new Exception("Expected Constructor with single Scenario "
+				+ "argument when using custom Scenario "
+				+ "implementation.");
+	}
+
+	@Override
+	protected String testName(final FrameworkMethod method) {
+		return testName(method, currentContext.get().getScenario());
+	}
+
+	private String testName(final FrameworkMethod method,
+			final Scenario scenario) {
+		return String.format("%s[%s]", method.getName(), scenario.getName());
+	}
+
+	@Override
+	protected void validateConstructor(List<Throwable> errors) {
+		validateOnlyOneConstructor(errors);
+	}
+
+	@Override
+	protected void collectInitializationErrors(final List<Throwable> errors) {
+		super.collectInitializationErrors(errors);
+		validateScenarioHooks(BeforeScenario.class, errors);
+		validateScenarioHooks(AfterScenario.class, errors);
+		validateScenarioResult(errors);
+		validateScenarioFixtures(errors);
+	}
+
+	private void validateScenarioFixtures(final List<Throwable> errors) {
+		for (FrameworkField field : getTestClass().getAnnotatedFields(
+				ScenarioFixture.class)) {
+			final int modifiers = field.getField().getModifiers();
+			if (!Modifier.isPublic(modifiers) || Modifier.isStatic(modifiers)) {
+				errors.add(new Exception("Field " + field.getField().getName()
+						+ " should be public and not static"));
+			}
+		}
+	}
+
+	private void validateScenarioResult(final List<Throwable> errors) {
+		final List<FrameworkMethod> methods = getTestClass()
+				.getAnnotatedMethods(ScenarioResult.class);
+		final List<FrameworkField> fields = getTestClass().getAnnotatedFields(
+				ScenarioResult.class);
+		if (methods.size() > 1) {
+			errors.add(new Exception(
+					"Only one @ScenarioResult method is allowed"));
+		}
+		if (methods.isEmpty() && !fields.isEmpty()) {
+			errors.add(new Exception(
+					"@ScenarioResult fields require a @ScenarioResult method"));
+		}
+		for (FrameworkMethod method : methods) {
+			final Method m = method.getMethod();
+			final Class<?>[] parameters = m.getParameterTypes();
+			if (!Modifier.isPublic(m.getModifiers())
+					|| m.getReturnType() == Void.TYPE) {
+				errors.add(new Exception("Method " + m.getName()
+						+ " should be public and return the result"));
+			}
+			if (parameters.length > 1 || parameters.length == 1
+					&& !Scenario.class.isAssignableFrom(parameters[0])) {
+				errors.add(new Exception("Method " + m.getName()
+						+ " should have no parameters or a single "
+						+ "Scenario parameter"));
+			}
+		}
+		for (FrameworkField field : fields) {
+			final int modifiers = field.getField().getModifiers();
+			if (!Modifier.isPublic(modifiers) || Modifier.isStatic(modifiers)) {
+				errors.add(new Exception("Field " + field.getField().getName()
+						+ " should be public and not static"));
+			}
+		}
+	}
+
+	private void validateScenarioHooks(
+			final Class<? extends Annotation> annotation,
+			final List<Throwable> errors) {
+		for (FrameworkMethod method : getTestClass().getAnnotatedMethods(
+				annotation)) {
+			final Method m = method.getMethod();
+			final Class<?>[] parameters = m.getParameterTypes();
+			if (!Modifier.isPublic(m.getModifiers())
+					|| m.getReturnType() != Void.TYPE) {
+				errors.add(new Exception("Method " + m.getName()
+						+ " should be public and void"));
+			}
+			if (parameters.length > 1 || parameters.length == 1
+					&& !Scenario.class.isAssignableFrom(parameters[0])) {
+				errors.add(new Exception("Method " + m.getName()
+						+ " should have no parameters or a single "
+						+ "Scenario parameter"));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,35 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+/**
+ * A {@link Scenario} with an estimate of its cost, for example its expected
+ * duration in milliseconds. When running the scenarios of a test class in
+ * several shards, the scenarios are distributed so that each shard gets about
+ * the same total weight. The weights of lazily evaluated scenario lists are
+ * ignored. See {@link ScenarioRunner} for details on sharding.
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ */
+public interface WeightedScenario extends Scenario {
+
+	/**
+	 * Returns the weight of this scenario. Must not be negative.
+	 * 
+	 * @return the weight of this scenario.
+	 */
+	double getWeight();
+
+}
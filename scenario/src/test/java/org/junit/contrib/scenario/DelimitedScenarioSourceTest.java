@@ -0,0 +1,157 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.util.Iterator;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+
+/**
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ */
+public class DelimitedScenarioSourceTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	public enum Operation {
+		ADD, SUBTRACT
+	}
+
+	public static final class TypedSample {
+		public TypedSample(final int i, final Long l, final double d,
+				final boolean b, final Operation op, final String s,
+				final BigDecimal decimal) {
+		}
+	}
+
+	public static final class UnconvertedSample {
+		public UnconvertedSample(final Scenario scenario) {
+		}
+	}
+
+	private static File sumsFile;
+
+	@RunWith(ScenarioRunner.class)
+	public static final class CsvCalculatorSample {
+
+		@Scenarios
+		public static ScenarioList scenarios() {
+			return DelimitedScenarioSource.csv(sumsFile,
+					CsvCalculatorSample.class);
+		}
+
+		private final int summand1;
+		private final int summand2;
+		private final int sum;
+
+		public CsvCalculatorSample(final int summand1, final int summand2,
+				final int sum) {
+			this.summand1 = summand1;
+			this.summand2 = summand2;
+			this.sum = sum;
+		}
+
+		@Test
+		public void shouldSum() {
+			assertThat(summand1 + summand2, is(sum));
+		}
+	}
+
+	private File write(final String content) throws IOException {
+		final File file = folder.newFile("scenarios.txt");
+		final Writer writer = new OutputStreamWriter(new FileOutputStream(
+				file), "UTF-8");
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+		return file;
+	}
+
+	private static ParameterizedScenario next(final Iterator<Scenario> it) {
+		return (ParameterizedScenario) it.next();
+	}
+
+	@Test
+	public void shouldConvertToConstructorParameterTypes() throws IOException {
+		final File file = write("name,i,l,d,b,op,s,decimal\n"
+				+ "first,1,2,3.5,true,ADD,text,1.10\r\n"
+				+ "second,-1,,0,false,SUBTRACT,,0\n");
+
+		final Iterator<Scenario> it = new DelimitedScenarioSource(file, ',',
+				true, TypedSample.class).iterator();
+
+		final ParameterizedScenario first = next(it);
+		assertThat(first.getName(), is("first"));
+		assertThat(first.getParameters(), is(new Object[] { 1, 2L, 3.5,
+				true, Operation.ADD, "text", new BigDecimal("1.10") }));
+		final ParameterizedScenario second = next(it);
+		assertThat(second.getParameters(), is(new Object[] { -1, null, 0.0,
+				false, Operation.SUBTRACT, null, BigDecimal.ZERO }));
+		assertThat(it.hasNext(), is(false));
+	}
+
+	@Test
+	public void shouldParseQuotedFieldsAcrossChunks() throws IOException {
+		final File file = write("\"a, \"\"quoted\"\"\nname\"\tx\n\n"
+				+ "äöü\ty\n");
+
+		final DelimitedScenarioSource source = new DelimitedScenarioSource(
+				file, '\t', false, UnconvertedSample.class);
+		source.setChunkSize(3);
+		final Iterator<Scenario> it = source.iterator();
+
+		final ParameterizedScenario first = next(it);
+		assertThat(first.getName(), is("a, \"quoted\"\nname"));
+		assertThat(first.getParameters(), is(new Object[] { "x" }));
+		assertThat(next(it).getName(), is("äöü"));
+		assertThat(it.hasNext(), is(false));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldRejectRowsWithWrongNumberOfColumns() throws IOException {
+		final File file = write("first,1,2\n");
+		new DelimitedScenarioSource(file, ',', false,
+				CsvCalculatorSample.class).iterator().next();
+	}
+
+	@Test
+	public void shouldRunScenariosFromFile() throws IOException {
+		sumsFile = write("name,summand1,summand2,sum\n" + "0+0=0,0,0,0\n"
+				+ "1+2=3,1,2,3\n" + "2+2=5,2,2,5\n");
+
+		final Result result = JUnitCore.runClasses(CsvCalculatorSample.class);
+
+		assertThat(result.getRunCount(), is(3));
+		assertThat(result.getFailureCount(), is(1));
+	}
+}
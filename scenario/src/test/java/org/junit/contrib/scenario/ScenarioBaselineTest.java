@@ -0,0 +1,173 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+
+/**
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ */
+public class ScenarioBaselineTest {
+
+	private static final String BASELINE_FILE = "target/ScenarioBaselineTest.baseline";
+
+	@RunWith(ScenarioRunner.class)
+	@PerformanceBaseline(value = BASELINE_FILE, warmup = 1, runs = 3, tolerance = 0.5)
+	public static final class MeasuredSample {
+
+		static final AtomicInteger invocations = new AtomicInteger();
+
+		@Scenarios
+		public static ScenarioList scenarios() {
+			return ScenarioList.fromArray(new Object[][][] {
+					{ { "fast" }, { 1 } }, { { "slow" }, { 20 } },
+					{ { "new" }, { 20 } } });
+		}
+
+		private final int millis;
+
+		public MeasuredSample(final Integer millis) {
+			this.millis = millis;
+		}
+
+		@Test
+		public void shouldBeFast() throws InterruptedException {
+			invocations.incrementAndGet();
+			Thread.sleep(millis);
+		}
+	}
+
+	private final File file = new File(BASELINE_FILE);
+
+	@Before
+	public void deleteBaseline() {
+		file.delete();
+		MeasuredSample.invocations.set(0);
+	}
+
+	@After
+	public void clearProperties() {
+		System.clearProperty(ScenarioBaseline.UPDATE_BASELINE_PROPERTY);
+		file.delete();
+	}
+
+	private void writeBaseline(final String content) throws IOException {
+		final Writer writer = new OutputStreamWriter(new FileOutputStream(
+				file), "UTF-8");
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+	}
+
+	@Test
+	public void shouldComputeMedian() {
+		assertThat(ScenarioBaseline.median(new long[] { 5, 1, 100 }), is(5L));
+		assertThat(ScenarioBaseline.median(new long[] { 4, 1, 100, 2 }),
+				is(3L));
+	}
+
+	@Test
+	public void shouldFailScenariosSlowerThanBaseline() throws IOException {
+		writeBaseline("1000000000\tfast\tshouldBeFast\n"
+				+ "1000000\tslow\tshouldBeFast\n");
+
+		final Result result = JUnitCore.runClasses(MeasuredSample.class);
+
+		assertThat(result.getRunCount(), is(3));
+		assertThat(MeasuredSample.invocations.get(), is(12));
+		assertThat(result.getFailureCount(), is(1));
+		assertThat(result.getFailures().get(0).getDescription()
+				.getMethodName(), endsWith("[slow]"));
+		assertThat(result.getFailures().get(0).getMessage(),
+				containsString("Performance regression"));
+	}
+
+	@Test
+	public void shouldPassScenariosWithinBaseline() throws IOException {
+		writeBaseline("10000000000\tfast\tshouldBeFast\n"
+				+ "10000000000\tslow\tshouldBeFast\n"
+				+ "10000000000\tnew\tshouldBeFast\n");
+
+		final Result result = JUnitCore.runClasses(MeasuredSample.class);
+
+		assertThat(result.getRunCount(), is(3));
+		assertThat(result.getFailureCount(), is(0));
+	}
+
+	@Test
+	public void shouldUpdateBaseline() throws IOException {
+		writeBaseline("1\tslow\tshouldBeFast\n");
+		System.setProperty(ScenarioBaseline.UPDATE_BASELINE_PROPERTY, "true");
+
+		final Result result = JUnitCore.runClasses(MeasuredSample.class);
+
+		assertThat(result.getFailureCount(), is(0));
+		final Map<String, Long> baseline = readBaseline();
+		assertThat(baseline.keySet(), is((Set<String>) new HashSet<String>(
+				Arrays.asList("fast", "slow", "new"))));
+		assertThat(baseline.get("fast") >= 1000000L, is(true));
+		assertThat(baseline.get("slow") >= 20000000L, is(true));
+		assertThat(baseline.get("new") >= 20000000L, is(true));
+	}
+
+	/**
+	 * Reads the baseline of <code>shouldBeFast</code> by scenario name.
+	 */
+	private Map<String, Long> readBaseline() throws IOException {
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(file), "UTF-8"));
+		final Map<String, Long> baseline = new HashMap<String, Long>();
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				final String[] fields = line.split("\t");
+				assertThat(fields.length, is(3));
+				assertThat(fields[2], is("shouldBeFast"));
+				baseline.put(fields[1], Long.parseLong(fields[0]));
+			}
+		} finally {
+			reader.close();
+		}
+		return baseline;
+	}
+}
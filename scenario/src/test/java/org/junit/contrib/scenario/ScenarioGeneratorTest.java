@@ -0,0 +1,212 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+
+/**
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ */
+public class ScenarioGeneratorTest {
+
+	@RunWith(ScenarioRunner.class)
+	public static final class PairwiseSample {
+
+		@Scenarios
+		public static ScenarioList scenarios() {
+			return new ScenarioGenerator().dimension("a", 1, 2, 3)
+					.dimension("b", 1, 2, 3).dimension("c", 1, 2, 3)
+					.dimension("d", 1, 2, 3).pairwise();
+		}
+
+		private final int a;
+
+		public PairwiseSample(final int a, final int b, final int c,
+				final int d) {
+			this.a = a;
+		}
+
+		@Test
+		public void shouldRun() {
+			assertThat(a > 0, is(true));
+		}
+	}
+
+	private static List<Object[]> parameters(final ScenarioList list) {
+		final List<Object[]> result = new ArrayList<Object[]>();
+		for (Scenario scenario : list) {
+			result.add(((ParameterizedScenario) scenario).getParameters());
+		}
+		return result;
+	}
+
+	private static List<String> names(final ScenarioList list) {
+		final List<String> result = new ArrayList<String>();
+		for (Scenario scenario : list) {
+			result.add(scenario.getName());
+		}
+		return result;
+	}
+
+	/**
+	 * Asserts that each combination of values of any n dimensions is part of
+	 * at least one row.
+	 */
+	private static void assertCovered(final List<Object[]> rows,
+			final int[] sizes, final int n, final int start,
+			final List<Integer> dimensions) {
+		if (dimensions.size() == n) {
+			final Set<List<Object>> seen = new HashSet<List<Object>>();
+			for (Object[] row : rows) {
+				final List<Object> tuple = new ArrayList<Object>();
+				for (int d : dimensions) {
+					tuple.add(row[d]);
+				}
+				seen.add(tuple);
+			}
+			int expected = 1;
+			for (int d : dimensions) {
+				expected *= sizes[d];
+			}
+			assertThat("dimensions " + dimensions, seen.size(), is(expected));
+			return;
+		}
+		for (int d = start; d < sizes.length; d++) {
+			dimensions.add(d);
+			assertCovered(rows, sizes, n, d + 1, dimensions);
+			dimensions.remove(dimensions.size() - 1);
+		}
+	}
+
+	private static Integer[] range(final int size) {
+		final Integer[] values = new Integer[size];
+		for (int i = 0; i < size; i++) {
+			values[i] = i;
+		}
+		return values;
+	}
+
+	@Test
+	public void shouldCreateCartesianProduct() {
+		final ScenarioList list = new ScenarioGenerator().dimension("x", 1,
+				2).dimension("y", "a", "b", "c").cartesian();
+
+		assertThat(names(list), is(Arrays.asList("x=1, y=a", "x=1, y=b",
+				"x=1, y=c", "x=2, y=a", "x=2, y=b", "x=2, y=c")));
+		assertThat(parameters(list).get(5), is(new Object[] { 2, "c" }));
+		assertThat(list.isLazy(), is(true));
+	}
+
+	@Test
+	public void shouldCoverAllPairs() {
+		final int[] sizes = { 4, 3, 5, 2, 3, 4 };
+		final ScenarioGenerator generator = new ScenarioGenerator();
+		int product = 1;
+		for (int i = 0; i < sizes.length; i++) {
+			generator.dimension("d" + i, (Object[]) range(sizes[i]));
+			product *= sizes[i];
+		}
+
+		final List<Object[]> rows = parameters(generator.pairwise());
+
+		assertCovered(rows, sizes, 2, 0, new ArrayList<Integer>());
+		assertThat(rows.size(), lessThan(40));
+		assertThat(rows.size(), lessThan(product));
+		assertThat(names(generator.pairwise()), is(names(generator
+				.pairwise())));
+	}
+
+	@Test
+	public void shouldCoverAllTriples() {
+		final int[] sizes = { 3, 3, 3, 3, 3 };
+		final ScenarioGenerator generator = new ScenarioGenerator();
+		for (int i = 0; i < sizes.length; i++) {
+			generator.dimension("d" + i, (Object[]) range(sizes[i]));
+		}
+
+		final List<Object[]> rows = parameters(generator.nWise(3));
+
+		assertCovered(rows, sizes, 3, 0, new ArrayList<Integer>());
+		assertThat(rows.size(), lessThan(243));
+	}
+
+	@Test
+	public void shouldScaleToLargeDimensions() {
+		final int[] sizes = { 2000, 10, 10, 10, 10 };
+		final ScenarioGenerator generator = new ScenarioGenerator();
+		for (int i = 0; i < sizes.length; i++) {
+			generator.dimension("d" + i, (Object[]) range(sizes[i]));
+		}
+
+		final List<Object[]> rows = parameters(generator.pairwise());
+
+		assertCovered(rows, sizes, 2, 0, new ArrayList<Integer>());
+		assertThat(rows.size(), lessThan(2 * 2000 * 10));
+	}
+
+	@Test
+	public void shouldSampleDistinctCombinationsReproducibly() {
+		final ScenarioGenerator generator = new ScenarioGenerator()
+				.dimension("x", (Object[]) range(1000)).dimension("y",
+						(Object[]) range(1000));
+
+		final List<String> names = names(generator.sample(100, 42));
+
+		assertThat(names.size(), is(100));
+		assertThat(new HashSet<String>(names).size(), is(100));
+		assertThat(names(generator.sample(100, 42)), is(names));
+		assertThat(names(generator.sample(100, 43)).equals(names), is(false));
+	}
+
+	@Test
+	public void shouldSampleAtMostAllCombinations() {
+		final ScenarioList list = new ScenarioGenerator().dimension("x", 1,
+				2).dimension("y", 1, 2).sample(10, 1);
+
+		assertThat(names(list).size(), is(4));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldRejectNegativeSampleCount() {
+		new ScenarioGenerator().dimension("x", 1, 2).sample(-1, 1);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldRejectEmptyDimension() {
+		new ScenarioGenerator().dimension("x");
+	}
+
+	@Test
+	public void shouldRunGeneratedScenarios() {
+		final Result result = JUnitCore.runClasses(PairwiseSample.class);
+
+		assertThat(result.getRunCount(), lessThan(81));
+		assertThat(result.getFailureCount(), is(0));
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+
+/**
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ */
+public class ScenarioHistoryTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@RunWith(ScenarioRunner.class)
+	public static final class HistorySample {
+
+		static final List<String> order = Collections
+				.synchronizedList(new ArrayList<String>());
+
+		@Scenarios
+		public static ScenarioList scenarios() {
+			return ScenarioList.fromArray(new Object[][][] {
+					{ { "fast" }, { 0 } }, { { "slow" }, { 50 } },
+					{ { "fails" }, { -1 } } });
+		}
+
+		private final int millis;
+
+		public HistorySample(final Integer millis) {
+			this.millis = millis;
+		}
+
+		@Test
+		public void shouldRun() throws InterruptedException {
+			order.add(millis < 0 ? "fails" : millis == 0 ? "fast" : "slow");
+			Thread.sleep(Math.max(millis, 0));
+			assertThat(millis >= 0, is(true));
+		}
+	}
+
+	@After
+	public void clearProperties() {
+		System.clearProperty(ScenarioHistory.HISTORY_PROPERTY);
+	}
+
+	private static void write(final File file, final String content)
+			throws IOException {
+		final Writer writer = new OutputStreamWriter(new FileOutputStream(
+				file), "UTF-8");
+		try {
+			writer.write(content);
+		} finally {
+			writer.close();
+		}
+	}
+
+	@Test
+	public void shouldMergeEntriesOfSameScenario() throws IOException {
+		final String name = HistorySample.class.getName();
+		final File file = folder.newFile("history.txt");
+		write(file, "100\tpass\t" + name + "\ta\n" + "300\tfail\t" + name
+				+ "\ta\n" + "50\t" + name + "\tb\n"
+				+ "10\tpass\tother.Test\ta\n");
+
+		final Map<String, ScenarioTimings.Entry> entries = ScenarioTimings
+				.load(file, HistorySample.class);
+
+		assertThat(entries.size(), is(2));
+		assertThat(entries.get("a").millis, is(200L));
+		assertThat(entries.get("a").failed, is(true));
+		assertThat(entries.get("b").millis, is(50L));
+		assertThat(entries.get("b").failed, is(false));
+	}
+
+	@Test
+	public void shouldCompactFile() throws IOException {
+		final File file = folder.newFile("history.txt");
+		final Map<String, ScenarioTimings.Entry> entries = new LinkedHashMap<String, ScenarioTimings.Entry>();
+		entries.put("a", new ScenarioTimings.Entry(10, false));
+		entries.put("b", new ScenarioTimings.Entry(20, true));
+		for (int i = 0; i < 1000; i++) {
+			ScenarioTimings.append(file, HistorySample.class, entries);
+		}
+		final long size = file.length();
+
+		final Map<String, ScenarioTimings.Entry> loaded = ScenarioTimings
+				.load(file, HistorySample.class);
+
+		assertThat(file.length() < size / 100, is(true));
+		assertThat(loaded.get("a").millis, is(10L));
+		assertThat(loaded.get("b").failed, is(true));
+		assertThat(ScenarioTimings.load(file, HistorySample.class).get("b")
+				.millis, is(20L));
+	}
+
+	@Test
+	public void shouldRunFailedAndLongestScenariosFirst() throws IOException {
+		final File file = new File(folder.getRoot(), "history.txt");
+		System.setProperty(ScenarioHistory.HISTORY_PROPERTY, file.getPath());
+
+		HistorySample.order.clear();
+		final Result first = JUnitCore.runClasses(HistorySample.class);
+		assertThat(first.getFailureCount(), is(1));
+		final List<String> firstOrder = new ArrayList<String>(
+				HistorySample.order);
+
+		HistorySample.order.clear();
+		JUnitCore.runClasses(HistorySample.class);
+
+		assertThat(ScenarioTimings.load(file, HistorySample.class).size(),
+				is(3));
+		assertThat(ScenarioTimings.load(file, HistorySample.class).get(
+				"slow").millis >= 50, is(true));
+		assertThat(firstOrder, is(Arrays.asList("fast", "slow", "fails")));
+		assertThat(HistorySample.order, is(Arrays.asList("fails", "slow",
+				"fast")));
+	}
+}
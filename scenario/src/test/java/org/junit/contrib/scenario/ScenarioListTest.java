@@ -19,6 +19,7 @@ import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.junit.Assert.assertThat;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
@@ -130,4 +131,35 @@ public class ScenarioListTest {
 		}
 	}
 		
+	public static class ScenarioListFromIterableTest {
+
+		@Test
+		public void shouldBuildFromEmptyIterable() {
+			List<CustomScenario> emptyList = Collections.emptyList();
+			assertEmpty(ScenarioList.fromIterable(emptyList));
+		}
+
+		@Test
+		public void shouldRequestScenariosOnEachIteration() {
+			final List<CustomScenario> scenarios = new ArrayList<CustomScenario>();
+			final ScenarioList result = ScenarioList.fromIterable(scenarios);
+			assertEmpty(result);
+
+			final CustomScenario scenario = new CustomScenario("foo");
+			scenarios.add(scenario);
+
+			assertThat(result.iterator().next(), is((Scenario) scenario));
+			assertThat(result.isLazy(), is(true));
+		}
+
+		@Test(expected = UnsupportedOperationException.class)
+		public void shouldBeReadOnly() {
+			final ScenarioList result = ScenarioList.fromIterable(Arrays
+					.asList(new CustomScenario("foo")));
+			final Iterator<Scenario> it = result.iterator();
+			it.next();
+			it.remove();
+		}
+	}
+
 }
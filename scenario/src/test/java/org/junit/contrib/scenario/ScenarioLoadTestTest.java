@@ -0,0 +1,256 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+
+/**
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ */
+public class ScenarioLoadTestTest {
+
+	@RunWith(ScenarioRunner.class)
+	@LoadTest(rate = 100, duration = 300)
+	public static final class RateSample {
+
+		static final AtomicInteger invocations = new AtomicInteger();
+
+		@Scenarios
+		public static ScenarioList scenarios() {
+			return ScenarioList.fromArray(new Object[][][] {
+					{ { "good" }, { false } }, { { "bad" }, { true } } });
+		}
+
+		private final boolean failing;
+
+		public RateSample(final Boolean failing) {
+			this.failing = failing;
+		}
+
+		@Test
+		public void shouldRespond() {
+			invocations.incrementAndGet();
+			assertThat(failing, is(false));
+		}
+	}
+
+	@RunWith(ScenarioRunner.class)
+	@LoadTest(rate = 100, concurrency = 1, duration = 200)
+	public static final class SlowSample {
+
+		static final AtomicInteger invocations = new AtomicInteger();
+
+		@Scenarios
+		public static ScenarioList scenarios() {
+			return ScenarioList.fromArray(new Object[][][] { { { "slow" },
+					{ 20 } } });
+		}
+
+		private final int millis;
+
+		public SlowSample(final Integer millis) {
+			this.millis = millis;
+		}
+
+		@Test
+		public void shouldRespondSlowly() throws InterruptedException {
+			invocations.incrementAndGet();
+			Thread.sleep(millis);
+		}
+	}
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private final List<LoadTestReport> reports = Collections
+			.synchronizedList(new ArrayList<LoadTestReport>());
+
+	private final LoadTestListener listener = new LoadTestListener() {
+		public void loadTestFinished(final LoadTestReport report) {
+			reports.add(report);
+		}
+	};
+
+	@Before
+	public void addListener() {
+		ScenarioRunner.addListener(listener);
+	}
+
+	@After
+	public void removeListener() {
+		ScenarioRunner.removeListener(listener);
+		System.clearProperty(ScenarioLoadTest.LOAD_REPORT_PROPERTY);
+	}
+
+	@Before
+	@After
+	public void reset() {
+		RateSample.invocations.set(0);
+		SlowSample.invocations.set(0);
+		System.clearProperty(ScenarioLoadTest.LOAD_DURATION_PROPERTY);
+		System.clearProperty(ScenarioLoadTest.LOAD_RATE_PROPERTY);
+		System.clearProperty(ScenarioLoadTest.LOAD_CONCURRENCY_PROPERTY);
+	}
+
+	@Test
+	public void shouldInvokeTestsAtTargetRate() {
+		final Result result = JUnitCore.runClasses(RateSample.class);
+
+		assertThat(result.getRunCount(), is(2));
+		assertThat(RateSample.invocations.get(), is(60));
+		assertThat(result.getFailureCount(), is(1));
+		assertThat(result.getFailures().get(0).getDescription()
+				.getMethodName(), endsWith("[bad]"));
+		assertThat(result.getFailures().get(0).getMessage(),
+				containsString("30 of 30 invocations failed"));
+	}
+
+	@Test
+	public void shouldReportEachScenarioToListeners() {
+		JUnitCore.runClasses(RateSample.class);
+
+		assertThat(reports.size(), is(2));
+		final LoadTestReport good = reports.get(0);
+		assertThat(good.getTestClass() == RateSample.class, is(true));
+		assertThat(good.getScenarioName(), is("good"));
+		assertThat(good.getInvocations(), is(30L));
+		assertThat(good.getFailures(), is(0L));
+		assertThat(good.getElapsedNanos() >= 290000000L, is(true));
+		assertThat(good.getP50Nanos() <= good.getP90Nanos()
+				&& good.getP90Nanos() <= good.getP99Nanos()
+				&& good.getP99Nanos() <= good.getMaxNanos(), is(true));
+		final LoadTestReport bad = reports.get(1);
+		assertThat(bad.getScenarioName(), is("bad"));
+		assertThat(bad.getFailures(), is(30L));
+	}
+
+	@Test
+	public void shouldAppendReportFile() throws IOException {
+		final File report = new File(folder.getRoot(), "load.json");
+		System.setProperty(ScenarioLoadTest.LOAD_REPORT_PROPERTY, report
+				.getPath());
+
+		JUnitCore.runClasses(RateSample.class);
+
+		final List<String> lines = new ArrayList<String>();
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(report), "UTF-8"));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+		} finally {
+			reader.close();
+		}
+		assertThat(lines.size(), is(2));
+		assertThat(lines.get(0), containsString("\"testClass\": \""
+				+ RateSample.class.getName() + "\""));
+		assertThat(lines.get(0), containsString("\"scenario\": \"good\""));
+		assertThat(lines.get(0), containsString("\"invocations\": 30,"));
+		assertThat(lines.get(1), containsString("\"scenario\": \"bad\""));
+		assertThat(lines.get(1), containsString("\"failures\": 30,"));
+	}
+
+	@Test
+	public void shouldCountMissedInvocationsOfSlowScenarios() {
+		final Result result = JUnitCore.runClasses(SlowSample.class);
+
+		assertThat(result.getFailureCount(), is(0));
+		assertThat(reports.size(), is(1));
+		final LoadTestReport report = reports.get(0);
+		// 20 invocations scheduled, but at most 11 of 20 ms fit into 200 ms
+		assertThat(report.getInvocations(), is((long) SlowSample.invocations
+				.get()));
+		assertThat(report.getInvocations() <= 11, is(true));
+		assertThat(report.getInvocations() + report.getMissed(), is(20L));
+		assertThat(report.getElapsedNanos() < 1000000000L, is(true));
+	}
+
+	@Test
+	public void shouldOverrideAnnotationBySystemProperties() {
+		System.setProperty(ScenarioLoadTest.LOAD_DURATION_PROPERTY, "100");
+		System.setProperty(ScenarioLoadTest.LOAD_RATE_PROPERTY, "0");
+		System.setProperty(ScenarioLoadTest.LOAD_CONCURRENCY_PROPERTY, "2");
+
+		final Result result = JUnitCore.runClasses(SlowSample.class);
+
+		assertThat(result.getFailureCount(), is(0));
+		final int invocations = SlowSample.invocations.get();
+		assertThat(invocations >= 2 && invocations <= 12, is(true));
+	}
+
+	@Test
+	public void shouldComputePercentilesFromScheduledStart() {
+		final ScenarioLoadTest.Result result = new ScenarioLoadTest.Result(1);
+		for (int i = 1; i <= 100; i++) {
+			result.add(0, i, null);
+		}
+
+		assertThat(result.getCount(), is(100L));
+		assertThat(result.percentile(50), is(50L));
+		assertThat(result.percentile(99), is(99L));
+		assertThat(result.percentile(100), is(100L));
+		assertThat(new ScenarioLoadTest.Result(1).percentile(50), is(0L));
+	}
+
+	@Test
+	public void shouldKeepLatenciesInBoundedHistogram() {
+		final ScenarioLoadTest.Result result = new ScenarioLoadTest.Result(1);
+		for (int i = 0; i < 1000; i++) {
+			result.add(0, 1000000L + i, null);
+		}
+		result.add(0, 5000000000L, null);
+
+		final long p50 = result.percentile(50);
+		assertThat(p50 >= 1000499L && p50 <= 1000499L * 65 / 64, is(true));
+		assertThat(result.percentile(100), is(5000000000L));
+		for (long latency : new long[] { 0, 127, 128, 255, 256, 1000001,
+				Long.MAX_VALUE }) {
+			final int bucket = ScenarioLoadTest.Result.bucket(latency);
+			final long highest = ScenarioLoadTest.Result
+					.highestLatency(bucket);
+			assertThat(String.valueOf(latency), highest >= latency
+					&& highest - latency <= latency / 64, is(true));
+			if (bucket > 0) {
+				assertThat(ScenarioLoadTest.Result
+						.highestLatency(bucket - 1) < latency, is(true));
+			}
+		}
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.RunWith;
+
+/**
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ */
+public class ScenarioProfilerTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@RunWith(ScenarioRunner.class)
+	public static final class ProfiledSample {
+
+		static volatile Object sink;
+
+		@Scenarios
+		public static ScenarioList scenarios() {
+			return ScenarioList.fromArray(new Object[][][] {
+					{ { "idle" }, { 0, 0 } }, { { "sleeps" }, { 50, 0 } },
+					{ { "allocates" }, { 0, 4 * 1024 * 1024 } } });
+		}
+
+		private final int millis;
+		private final int bytes;
+
+		public ProfiledSample(final Integer millis, final Integer bytes) {
+			this.millis = millis;
+			this.bytes = bytes;
+		}
+
+		@Test
+		public void shouldSleep() throws InterruptedException {
+			Thread.sleep(millis);
+		}
+
+		@Test
+		public void shouldAllocate() {
+			sink = new byte[bytes];
+		}
+	}
+
+	private final List<ScenarioProfile> tests = Collections
+			.synchronizedList(new ArrayList<ScenarioProfile>());
+
+	private final List<ScenarioProfile> scenarios = Collections
+			.synchronizedList(new ArrayList<ScenarioProfile>());
+
+	private final ScenarioProfileListener listener = new ScenarioProfileListener() {
+		public void testProfiled(final ScenarioProfile profile) {
+			tests.add(profile);
+		}
+
+		public void scenarioProfiled(final ScenarioProfile profile) {
+			scenarios.add(profile);
+		}
+	};
+
+	@Before
+	public void addListener() {
+		ScenarioProfiler.reset();
+		ScenarioProfiler.addListener(listener);
+	}
+
+	@After
+	public void removeListener() {
+		ScenarioProfiler.removeListener(listener);
+		System.clearProperty(ScenarioProfiler.PROFILE_PROPERTY);
+		System.clearProperty(ScenarioProfiler.PROFILE_TOP_PROPERTY);
+		ScenarioProfiler.reset();
+	}
+
+	private static ScenarioProfile find(final List<ScenarioProfile> profiles,
+			final String scenario) {
+		for (ScenarioProfile profile : profiles) {
+			if (profile.getScenarioName().equals(scenario)) {
+				return profile;
+			}
+		}
+		throw new AssertionError("No profile for " + scenario);
+	}
+
+	@Test
+	public void shouldProfileScenariosAndTestMethods() {
+		JUnitCore.runClasses(ProfiledSample.class);
+
+		assertThat(tests.size(), is(6));
+		assertThat(scenarios.size(), is(3));
+		final ScenarioProfile sleeps = find(scenarios, "sleeps");
+		assertThat(sleeps.getTestClass() == ProfiledSample.class, is(true));
+		assertThat(sleeps.getMethodName() == null, is(true));
+		assertThat(sleeps.getWallNanos() >= 50000000L, is(true));
+		assertThat(tests.get(0).getMethodName() != null, is(true));
+		final ScenarioProfile allocates = find(scenarios, "allocates");
+		if (allocates.getAllocatedBytes() >= 0) {
+			assertThat(allocates.getAllocatedBytes() >= 4 * 1024 * 1024,
+					is(true));
+		}
+		if (sleeps.getCpuNanos() >= 0) {
+			assertThat(sleeps.getCpuNanos() < sleeps.getWallNanos(), is(true));
+		}
+	}
+
+	@Test
+	public void shouldWriteReportOfSlowestScenarios() throws IOException {
+		final File report = new File(folder.getRoot(), "profile.json");
+		System.setProperty(ScenarioProfiler.PROFILE_PROPERTY, report
+				.getPath());
+		System.setProperty(ScenarioProfiler.PROFILE_TOP_PROPERTY, "2");
+
+		JUnitCore.runClasses(ProfiledSample.class);
+
+		final StringBuilder json = new StringBuilder();
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(report), "UTF-8"));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				json.append(line).append('\n');
+			}
+		} finally {
+			reader.close();
+		}
+		final String slowest = json.substring(0, json
+				.indexOf("mostAllocating"));
+		assertThat(slowest, containsString("\"scenario\": \"sleeps\""));
+		assertThat(slowest.indexOf("\"scenario\"") == slowest
+				.indexOf("\"scenario\": \"sleeps\""), is(true));
+		assertThat(slowest.split("testClass").length, is(3));
+		assertThat(json.toString(), containsString("\"testClass\": \""
+				+ ProfiledSample.class.getName() + "\""));
+	}
+}
@@ -0,0 +1,229 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+
+/**
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ */
+public class ScenarioResultCacheTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@RunWith(ScenarioRunner.class)
+	@ScenarioDependencies(ScenarioRunnerSystemTest.Calculator.class)
+	public static final class CachedSample {
+
+		static final List<String> run = Collections
+				.synchronizedList(new ArrayList<String>());
+
+		static int secondSum = 2;
+
+		@Scenarios
+		public static ScenarioList scenarios() {
+			return ScenarioList.fromArray(new Object[][][] {
+					{ { "first" }, { 1, 1, 2 } },
+					{ { "second" }, { 1, 1, secondSum } },
+					{ { "fails" }, { 1, 1, 3 } } });
+		}
+
+		private final String name;
+		private final Integer summand1;
+		private final Integer summand2;
+		private final Integer sum;
+
+		public CachedSample(final Integer summand1, final Integer summand2,
+				final Integer sum) {
+			this.name = summand1 + "+" + summand2 + "=" + sum;
+			this.summand1 = summand1;
+			this.summand2 = summand2;
+			this.sum = sum;
+		}
+
+		@Test
+		public void shouldSum() {
+			run.add(name);
+			assertThat(new ScenarioRunnerSystemTest.Calculator().sum(
+					summand1, summand2), is(sum));
+		}
+	}
+
+	@RunWith(ScenarioRunner.class)
+	public static final class MutableParameterSample {
+
+		static final List<String> run = Collections
+				.synchronizedList(new ArrayList<String>());
+
+		@Scenarios
+		public static ScenarioList scenarios() {
+			return ScenarioList.fromArray(new Object[][][] { { { "builder" },
+					{ new StringBuilder("value") } } });
+		}
+
+		private final StringBuilder value;
+
+		public MutableParameterSample(final StringBuilder value) {
+			this.value = value;
+		}
+
+		@Test
+		public void shouldRun() {
+			run.add(value.toString());
+		}
+	}
+
+	public static final class LocalClassesSample {
+
+		public Runnable anonymous() {
+			return new Runnable() {
+				public void run() {
+					// nothing to do
+				}
+			};
+		}
+
+		public Object local() {
+			class Local {
+				// no members
+			}
+			return new Local();
+		}
+	}
+
+	@After
+	public void clearProperties() {
+		System.clearProperty(ScenarioResultCache.RESULT_CACHE_PROPERTY);
+		CachedSample.secondSum = 2;
+	}
+
+	@Test
+	public void shouldSkipPassedScenariosWithSameKey() {
+		final File file = new File(folder.getRoot(), "cache.txt");
+		System.setProperty(ScenarioResultCache.RESULT_CACHE_PROPERTY, file
+				.getPath());
+
+		CachedSample.run.clear();
+		final Result first = JUnitCore.runClasses(CachedSample.class);
+		assertThat(first.getRunCount(), is(3));
+		assertThat(first.getIgnoreCount(), is(0));
+		assertThat(CachedSample.run.size(), is(3));
+
+		CachedSample.run.clear();
+		final Result second = JUnitCore.runClasses(CachedSample.class);
+		assertThat(second.getRunCount(), is(1));
+		assertThat(second.getIgnoreCount(), is(2));
+		assertThat(CachedSample.run, is(Arrays.asList("1+1=3")));
+
+		// changed parameters invalidate the scenario only
+		CachedSample.secondSum = 3;
+		CachedSample.run.clear();
+		final Result third = JUnitCore.runClasses(CachedSample.class);
+		assertThat(third.getIgnoreCount(), is(1));
+		assertThat(CachedSample.run, is(Arrays.asList("1+1=3", "1+1=3")));
+	}
+
+	@Test
+	public void shouldRunAllScenariosWithoutCache() {
+		CachedSample.run.clear();
+		JUnitCore.runClasses(CachedSample.class);
+		JUnitCore.runClasses(CachedSample.class);
+
+		assertThat(CachedSample.run.size(), is(6));
+	}
+
+	@Test
+	public void shouldFingerprintBytecodeOfTestClassAndDependencies()
+			throws IOException {
+		final String fingerprint = ScenarioResultCache
+				.fingerprint(CachedSample.class);
+
+		assertThat(ScenarioResultCache.fingerprint(CachedSample.class),
+				is(fingerprint));
+		assertThat(ScenarioResultCache.fingerprint(
+				ScenarioRunnerSystemTest.Calculator.class).equals(
+				fingerprint), is(false));
+	}
+
+	@Test
+	public void shouldNotCacheScenariosWithOtherParameters() {
+		final File file = new File(folder.getRoot(), "cache.txt");
+		System.setProperty(ScenarioResultCache.RESULT_CACHE_PROPERTY, file
+				.getPath());
+
+		MutableParameterSample.run.clear();
+		JUnitCore.runClasses(MutableParameterSample.class);
+		final Result second = JUnitCore
+				.runClasses(MutableParameterSample.class);
+
+		assertThat(second.getIgnoreCount(), is(0));
+		assertThat(MutableParameterSample.run.size(), is(2));
+	}
+
+	@Test
+	public void shouldKeyParametersByTypeAndValue() throws IOException {
+		final ScenarioResultCache cache = new ScenarioResultCache(new File(
+				folder.getRoot(), "cache.txt"), CachedSample.class);
+
+		final String key = cache.key(new ParameterizedScenario("a", 1,
+				new int[] { 1, 2 }, TimeUnit.SECONDS, null));
+		assertThat(key != null, is(true));
+		assertThat(cache.key(new ParameterizedScenario("a", 1, new int[] {
+				1, 2 }, TimeUnit.SECONDS, null)), is(key));
+		assertThat(key.equals(cache.key(new ParameterizedScenario("a", "1",
+				new int[] { 1, 2 }, TimeUnit.SECONDS, null))), is(false));
+		assertThat(key.equals(cache.key(new ParameterizedScenario("a", 1L,
+				new int[] { 1, 2 }, TimeUnit.SECONDS, null))), is(false));
+		assertThat(key.equals(cache.key(new ParameterizedScenario("a", 1,
+				new long[] { 1, 2 }, TimeUnit.SECONDS, null))), is(false));
+		assertThat(cache.key(new ParameterizedScenario("a", new Object())),
+				is((String) null));
+		assertThat(cache.key(new ParameterizedScenario("a",
+				(Object) new Object[] { "b", new ArrayList<String>() })),
+				is((String) null));
+	}
+
+	@Test
+	public void shouldFingerprintLocalAndAnonymousClasses() throws IOException {
+		final Set<String> classes = ScenarioResultCache.getBytecode(
+				LocalClassesSample.class).keySet();
+
+		final String name = LocalClassesSample.class.getName();
+		assertThat(classes.contains(name), is(true));
+		assertThat(classes.contains(name + "$1"), is(true));
+		assertThat(classes.contains(name + "$1Local"), is(true));
+		assertThat(classes.size(), is(3));
+	}
+}
@@ -15,6 +15,7 @@
 package org.junit.contrib.scenario;
 
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.endsWith;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertEquals;
@@ -22,9 +23,19 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.After;
 import org.junit.AfterClass;
@@ -41,6 +52,7 @@ import org.junit.runner.Result;
 import org.junit.runner.RunWith;
 import org.junit.runner.Runner;
 import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
 import org.junit.runners.model.InitializationError;
 
 /**
@@ -119,6 +131,30 @@ public class ScenarioRunnerSystemTest {
 				.getDisplayName());
 	}
 
+	@Test
+	public void shouldFilterSingleTestOfScenario() {
+		final Request request = Request.method(CalculatorScenarioSample.class,
+				"shouldSumSymmetrically[1+2=3]");
+		assertEquals(1, request.getRunner().testCount());
+		assertEquals(1, new JUnitCore().run(request).getRunCount());
+	}
+
+	@Test
+	public void shouldSortTestsWithinScenarios() {
+		final Runner runner = Request.aClass(CalculatorScenarioSample.class)
+				.sortWith(new Comparator<Description>() {
+					public int compare(Description o1, Description o2) {
+						return o2.getDisplayName().compareTo(
+								o1.getDisplayName());
+					}
+				}).getRunner();
+		final Description scenario = runner.getDescription().getChildren()
+				.get(0);
+		assertEquals("[1+2=3]", scenario.getDisplayName());
+		assertEquals("shouldSumSymmetrically[1+2=3]", scenario.getChildren()
+				.get(0).getMethodName());
+	}
+
 	@RunWith(ScenarioRunner.class)
 	public static final class HasTestFailureScenario {
 
@@ -428,4 +464,529 @@ public class ScenarioRunnerSystemTest {
 		Result r = JUnitCore.runClasses(HasScenarioWithBadName.class);
 		assertThat(r.getFailures(), is(equalTo(noFailures)));
 	}
+
+	@RunWith(ScenarioRunner.class)
+	public static final class LazyScenarioSample {
+
+		static final int COUNT = 1000;
+
+		static int lastGenerated;
+
+		@Scenarios
+		public static ScenarioList scenarios() {
+			return ScenarioList.fromIterable(new Iterable<Scenario>() {
+				public Iterator<Scenario> iterator() {
+					return new Iterator<Scenario>() {
+						private int next;
+
+						public boolean hasNext() {
+							return next < COUNT;
+						}
+
+						public Scenario next() {
+							lastGenerated = next;
+							return new ParameterizedScenario("n=" + next,
+									next++);
+						}
+
+						public void remove() {
+							throw new UnsupportedOperationException();
+						}
+					};
+				}
+			});
+		}
+
+		private final Integer value;
+
+		public LazyScenarioSample(final Integer value) {
+			super();
+			this.value = value;
+		}
+
+		@Test
+		public void shouldBeGeneratedOnDemand() {
+			assertThat(lastGenerated, is(value));
+		}
+
+		@Test
+		public void shouldBeSmall() {
+			assertThat(value < COUNT, is(true));
+		}
+	}
+
+	@Test
+	public void shouldRunLazyScenariosOnDemand() {
+		final Result result = JUnitCore.runClasses(LazyScenarioSample.class);
+		assertThat(result.getFailures(), is(equalTo(Collections
+				.<Failure> emptyList())));
+		assertEquals(2 * LazyScenarioSample.COUNT, result.getRunCount());
+	}
+
+	@Test
+	public void shouldDescribeLazyScenarios() {
+		final Runner runner = Request.aClass(LazyScenarioSample.class)
+				.getRunner();
+		assertEquals(2 * LazyScenarioSample.COUNT, runner.testCount());
+		assertEquals("[n=0]", runner.getDescription().getChildren().get(0)
+				.getDisplayName());
+	}
+
+	@Test
+	public void shouldFilterLazyScenarios() {
+		final Request request = Request.method(LazyScenarioSample.class,
+				"shouldBeSmall[n=7]");
+		final Result result = new JUnitCore().run(request);
+		assertEquals(1, result.getRunCount());
+		assertEquals(1, request.getRunner().testCount());
+	}
+
+	@RunWith(ScenarioRunner.class)
+	@ParallelScenarios(threads = 4)
+	public static final class ParallelScenarioSample {
+
+		static final Set<String> threads = Collections
+				.synchronizedSet(new HashSet<String>());
+
+		static final CountDownLatch started = new CountDownLatch(4);
+
+		@Scenarios
+		public static ScenarioList scenarios() {
+			final List<Scenario> scenarios = new ArrayList<Scenario>();
+			for (int i = 0; i < 16; i++) {
+				scenarios.add(new ParameterizedScenario("s" + i, i));
+			}
+			return ScenarioList.fromList(scenarios);
+		}
+
+		private final Integer value;
+
+		public ParallelScenarioSample(final Integer value) {
+			super();
+			this.value = value;
+		}
+
+		@Test
+		public void first() throws InterruptedException {
+			threads.add(Thread.currentThread().getName());
+			started.countDown();
+			// all threads of the pool are busy at the same time
+			assertThat(started.await(10, TimeUnit.SECONDS), is(true));
+		}
+
+		@Test
+		public void second() {
+			assertThat(value % 3 != 2, is(true));
+		}
+	}
+
+	@Test
+	public void shouldRunScenariosInParallelAndReportInOrder() {
+		final List<String> events = new ArrayList<String>();
+		final JUnitCore core = new JUnitCore();
+		core.addListener(new RunListener() {
+			@Override
+			public void testStarted(Description description) {
+				events.add(description.getMethodName());
+			}
+		});
+		final Result result = core.run(ParallelScenarioSample.class);
+
+		assertEquals(32, result.getRunCount());
+		assertEquals(5, result.getFailureCount());
+		assertEquals(4, ParallelScenarioSample.threads.size());
+		assertEquals(32, events.size());
+		for (int i = 0; i < 16; i++) {
+			assertThat(events.get(2 * i), endsWith("[s" + i + "]"));
+			assertThat(events.get(2 * i + 1), endsWith("[s" + i + "]"));
+		}
+	}
+
+	@Test
+	public void shouldRunMethodsInParallelWhenConfigured() {
+		System.setProperty(ParallelScenarioExecutor.PARALLELISM_PROPERTY, "2");
+		System.setProperty(
+				ParallelScenarioExecutor.PARALLEL_METHODS_PROPERTY, "true");
+		try {
+			final Result result = JUnitCore
+					.runClasses(CalculatorScenarioSample.class);
+			assertEquals(6, result.getRunCount());
+			assertEquals(0, result.getFailureCount());
+		} finally {
+			System.clearProperty(ParallelScenarioExecutor.PARALLELISM_PROPERTY);
+			System.clearProperty(ParallelScenarioExecutor.PARALLEL_METHODS_PROPERTY);
+		}
+	}
+
+	@RunWith(ScenarioRunner.class)
+	@ParallelScenarios(virtualThreads = true)
+	public static final class VirtualThreadScenarioSample {
+
+		static final int COUNT = 200;
+
+		static final CountDownLatch inFlight = new CountDownLatch(COUNT);
+
+		@Scenarios
+		public static ScenarioList scenarios() {
+			final List<Scenario> scenarios = new ArrayList<Scenario>();
+			for (int i = 0; i < COUNT; i++) {
+				scenarios.add(new ParameterizedScenario("io" + i));
+			}
+			return ScenarioList.fromList(scenarios);
+		}
+
+		@Test
+		public void waitForAllScenarios() throws InterruptedException {
+			inFlight.countDown();
+			// simulates I/O: only completes if all scenarios are in flight
+			assertThat(inFlight.await(10, TimeUnit.SECONDS), is(true));
+		}
+	}
+
+	@Test
+	public void shouldRunAllScenariosConcurrentlyOnVirtualThreads() {
+		final List<ParallelRunStatistics> runs = new ArrayList<ParallelRunStatistics>();
+		final ParallelRunListener listener = new ParallelRunListener() {
+			public void parallelRunFinished(
+					final ParallelRunStatistics statistics) {
+				runs.add(statistics);
+			}
+		};
+		ScenarioRunner.addListener(listener);
+		final Result result;
+		try {
+			result = JUnitCore.runClasses(VirtualThreadScenarioSample.class);
+		} finally {
+			ScenarioRunner.removeListener(listener);
+		}
+		assertThat(result.getFailures(), is(equalTo(Collections
+				.<Failure> emptyList())));
+		assertEquals(VirtualThreadScenarioSample.COUNT, result.getRunCount());
+		assertEquals(1, runs.size());
+		final ParallelRunStatistics statistics = runs.get(0);
+		assertEquals(VirtualThreadScenarioSample.class, statistics
+				.getTestClass());
+		assertEquals(VirtualThreadScenarioSample.COUNT, statistics
+				.getMaxActive());
+		assertThat(statistics.getBusyNanos() >= statistics.getSavedNanos(),
+				is(true));
+		assertThat(statistics.toString(), containsString("at most "
+				+ VirtualThreadScenarioSample.COUNT
+				+ " scenarios concurrently active"));
+	}
+
+	public static final class FixtureScenario implements Scenario {
+		private final String name;
+		private StringBuilder fixture;
+
+		public FixtureScenario(final String name) {
+			super();
+			this.name = name;
+		}
+
+		public String getName() {
+			return this.name;
+		}
+	}
+
+	@RunWith(ScenarioRunner.class)
+	public static final class ScenarioHooksSample {
+
+		static final StringBuilder log = new StringBuilder();
+
+		@Scenarios
+		public static ScenarioList scenarios() {
+			return ScenarioList.fromList(Arrays.asList(new FixtureScenario(
+					"a"), new FixtureScenario("fail")));
+		}
+
+		@BeforeScenario
+		public static void buildFixture(final FixtureScenario scenario) {
+			log.append("(before " + scenario.getName());
+			if ("fail".equals(scenario.getName())) {
+				throw new IllegalStateException("fixture failed");
+			}
+			scenario.fixture = new StringBuilder();
+		}
+
+		@AfterScenario
+		public void releaseFixture(final FixtureScenario scenario) {
+			log.append(" after " + scenario.getName() + " "
+					+ (scenario.fixture == null ? "-" : scenario.fixture)
+					+ ")");
+		}
+
+		private final FixtureScenario scenario;
+
+		public ScenarioHooksSample(final FixtureScenario scenario) {
+			super();
+			this.scenario = scenario;
+		}
+
+		@Test
+		public void first() {
+			log.append(" test");
+			scenario.fixture.append("x");
+		}
+
+		@Test
+		public void second() {
+			log.append(" test");
+			scenario.fixture.append("x");
+		}
+
+		@Test
+		public void third() {
+			log.append(" test");
+			scenario.fixture.append("x");
+		}
+	}
+
+	@Test
+	public void shouldRunScenarioHooksOncePerScenario() {
+		ScenarioHooksSample.log.setLength(0);
+		final Result result = JUnitCore.runClasses(ScenarioHooksSample.class);
+		assertEquals("(before a test test test after a xxx)"
+				+ "(before fail after fail -)",
+				ScenarioHooksSample.log.toString());
+		assertEquals(3, result.getRunCount());
+		assertEquals(1, result.getFailureCount());
+		assertEquals("fixture failed", result.getFailures().get(0)
+				.getMessage());
+		assertEquals("[fail]", result.getFailures().get(0).getDescription()
+				.getDisplayName());
+	}
+
+	@RunWith(ScenarioRunner.class)
+	public static final class ScenarioFixtureSample {
+
+		static final List<List<String>> built = new ArrayList<List<String>>();
+
+		static final List<List<String>> used = new ArrayList<List<String>>();
+
+		@Scenarios
+		public static ScenarioList scenarios() {
+			return ScenarioList.fromArray(new Object[][][] {
+					{ { "a" }, { "a" } }, { { "b" }, { "b" } } });
+		}
+
+		private final String name;
+
+		public ScenarioFixtureSample(final String name) {
+			super();
+			this.name = name;
+		}
+
+		@ScenarioFixture
+		public List<String> fixture;
+
+		@BeforeScenario
+		public void buildFixture() {
+			fixture = new ArrayList<String>();
+			fixture.add(name);
+			built.add(fixture);
+		}
+
+		@AfterScenario
+		public void releaseFixture() {
+			fixture.add("released");
+		}
+
+		@Test
+		public void first() {
+			assertEquals(Arrays.asList(name), fixture);
+			used.add(fixture);
+		}
+
+		@Test
+		public void second() {
+			assertEquals(Arrays.asList(name), fixture);
+			used.add(fixture);
+		}
+	}
+
+	@Test
+	public void shouldShareFixtureOfInstanceHooksWithTestMethods() {
+		ScenarioFixtureSample.built.clear();
+		ScenarioFixtureSample.used.clear();
+		final Result result = JUnitCore.runClasses(ScenarioFixtureSample.class);
+		assertThat(result.getFailures(), is(equalTo(Collections
+				.<Failure> emptyList())));
+		assertEquals(4, result.getRunCount());
+		assertEquals(2, ScenarioFixtureSample.built.size());
+		final List<String> a = ScenarioFixtureSample.built.get(0);
+		final List<String> b = ScenarioFixtureSample.built.get(1);
+		assertEquals(Arrays.asList("a", "released"), a);
+		assertEquals(Arrays.asList("b", "released"), b);
+		assertThat(ScenarioFixtureSample.used.get(0) == a, is(true));
+		assertThat(ScenarioFixtureSample.used.get(1) == a, is(true));
+		assertThat(ScenarioFixtureSample.used.get(2) == b, is(true));
+		assertThat(ScenarioFixtureSample.used.get(3) == b, is(true));
+	}
+
+	@RunWith(ScenarioRunner.class)
+	public static final class InvalidScenarioHook {
+
+		@Scenarios
+		public static ScenarioList scenarios() {
+			return ScenarioList.fromArray(new Object[][][] { { { "a" }, {} } });
+		}
+
+		@BeforeScenario
+		public void invalid(final String notAScenario) {
+			// never called
+		}
+
+		@Test
+		public void someTest() {
+			// never called
+		}
+	}
+
+	@Test
+	public void shouldFailForInvalidScenarioHook() throws Throwable {
+		expectedException.expect(InitializationError.class);
+
+		new ScenarioRunner(InvalidScenarioHook.class);
+	}
+
+	@RunWith(ScenarioRunner.class)
+	public static final class ScenarioResultSample {
+
+		static final AtomicInteger computations = new AtomicInteger();
+
+		@Scenarios
+		public static ScenarioList scenarios() {
+			return ScenarioList.fromArray(new Object[][][] {
+					{ { "1+2=3" }, { 1, 2, 3 } },
+					{ { "2+2=4" }, { 2, 2, 4 } },
+					{ { "fails" }, { null, 2, 4 } } });
+		}
+
+		private final Integer summand1;
+		private final Integer summand2;
+		private final Integer sum;
+
+		public ScenarioResultSample(Integer summand1, Integer summand2,
+				Integer sum) {
+			super();
+			this.summand1 = summand1;
+			this.summand2 = summand2;
+			this.sum = sum;
+		}
+
+		@ScenarioResult
+		public Integer calculate() {
+			computations.incrementAndGet();
+			return new Calculator().sum(summand1, summand2);
+		}
+
+		@ScenarioResult
+		public Integer result;
+
+		@Test
+		public void shouldCalculateCorrectSum() {
+			assertThat(result, is(sum));
+		}
+
+		@Test
+		public void shouldBePositive() {
+			assertThat(result > 0, is(true));
+		}
+	}
+
+	@Test
+	public void shouldComputeScenarioResultOncePerScenario() {
+		ScenarioResultSample.computations.set(0);
+		final Result result = JUnitCore.runClasses(ScenarioResultSample.class);
+		assertEquals(6, result.getRunCount());
+		assertEquals(3, ScenarioResultSample.computations.get());
+		assertEquals(2, result.getFailureCount());
+		for (Failure failure : result.getFailures()) {
+			assertThat(failure.getDescription().getMethodName(),
+					endsWith("[fails]"));
+			assertThat(failure.getException(),
+					is(NullPointerException.class));
+		}
+	}
+
+	@RunWith(ScenarioRunner.class)
+	public static final class LazyParametersSample {
+
+		static final AtomicInteger created = new AtomicInteger();
+
+		static final AtomicInteger failed = new AtomicInteger();
+
+		@Scenarios
+		public static ScenarioList scenarios() {
+			final List<Scenario> scenarios = new ArrayList<Scenario>();
+			for (int i = 1; i <= 3; i++) {
+				final int size = i;
+				scenarios.add(new LazyScenario("size " + size,
+						new Callable<Object[]>() {
+							public Object[] call() {
+								created.incrementAndGet();
+								return new Object[] { new byte[size], size };
+							}
+						}));
+			}
+			scenarios.add(new LazyScenario("fails", new Callable<Object[]>() {
+				public Object[] call() throws Exception {
+					failed.incrementAndGet();
+					throw new IOException("not found");
+				}
+			}));
+			return ScenarioList.fromList(scenarios);
+		}
+
+		private final byte[] payload;
+		private final int size;
+
+		public LazyParametersSample(final byte[] payload, final int size) {
+			this.payload = payload;
+			this.size = size;
+		}
+
+		@Test
+		public void shouldHavePayloadOfSize() {
+			assertThat(payload.length, is(size));
+		}
+
+		@Test
+		public void shouldHavePayload() {
+			assertNotNull(payload);
+		}
+	}
+
+	@Test
+	public void shouldCreateLazyParametersOncePerScenario() {
+		LazyParametersSample.created.set(0);
+		LazyParametersSample.failed.set(0);
+		final Result result = JUnitCore.runClasses(LazyParametersSample.class);
+		assertEquals(8, result.getRunCount());
+		assertEquals(3, LazyParametersSample.created.get());
+		assertEquals(1, LazyParametersSample.failed.get());
+		assertEquals(2, result.getFailureCount());
+		for (Failure failure : result.getFailures()) {
+			assertThat(failure.getDescription().getMethodName(),
+					endsWith("[fails]"));
+			assertThat(failure.getException(), is(IOException.class));
+		}
+	}
+
+	@Test
+	public void shouldReleaseLazyParametersAfterRun() throws Exception {
+		final ScenarioContext context = new ScenarioContext(new LazyScenario(
+				"foo", new Callable<Object[]>() {
+					public Object[] call() {
+						return new Object[] { new byte[1] };
+					}
+				}));
+		final Object[] parameters = context.getParameters();
+		assertThat(context.getParameters(), is(parameters));
+
+		context.release();
+
+		assertThat(context.getParameters() == parameters, is(false));
+	}
 }
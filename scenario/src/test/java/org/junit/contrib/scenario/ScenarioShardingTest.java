@@ -0,0 +1,267 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+
+/**
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ */
+public class ScenarioShardingTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	@RunWith(ScenarioRunner.class)
+	public static final class ShardedSample {
+
+		static final Set<String> run = Collections
+				.synchronizedSet(new HashSet<String>());
+
+		@Scenarios
+		public static ScenarioList scenarios() {
+			return ScenarioList.fromList(scenarioList(20));
+		}
+
+		private final Scenario scenario;
+
+		public ShardedSample(final Scenario scenario) {
+			this.scenario = scenario;
+		}
+
+		@Test
+		public void shouldRun() {
+			run.add(scenario.getName());
+		}
+	}
+
+	private static final class Weighted implements WeightedScenario {
+
+		private final String name;
+		private final double weight;
+
+		Weighted(final String name, final double weight) {
+			this.name = name;
+			this.weight = weight;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public double getWeight() {
+			return weight;
+		}
+	}
+
+	private static List<Scenario> scenarioList(final int size) {
+		final List<Scenario> scenarios = new ArrayList<Scenario>();
+		for (int i = 0; i < size; i++) {
+			scenarios.add(new ParameterizedScenario("s" + i));
+		}
+		return scenarios;
+	}
+
+	@After
+	public void clearProperties() {
+		System.clearProperty(ScenarioSharding.SHARD_INDEX_PROPERTY);
+		System.clearProperty(ScenarioSharding.SHARD_COUNT_PROPERTY);
+		System.clearProperty(ScenarioSharding.SHARD_TIMINGS_PROPERTY);
+		System.clearProperty(ScenarioHistory.HISTORY_PROPERTY);
+	}
+
+	private static void assertPartitioned(final List<Scenario> scenarios,
+			final List<ScenarioSharding> shards) {
+		for (Scenario scenario : scenarios) {
+			int count = 0;
+			for (ScenarioSharding shard : shards) {
+				if (shard.accepts(scenario)) {
+					count++;
+				}
+			}
+			assertThat(scenario.getName(), count, is(1));
+		}
+	}
+
+	@Test
+	public void shouldAssignEachScenarioToOneShardByHash() {
+		final List<Scenario> scenarios = scenarioList(1000);
+		final List<ScenarioSharding> shards = new ArrayList<ScenarioSharding>();
+		for (int i = 0; i < 4; i++) {
+			shards.add(ScenarioSharding.balance(i, 4, scenarios, Collections
+					.<String, Long> emptyMap()));
+		}
+
+		assertPartitioned(scenarios, shards);
+		for (ScenarioSharding shard : shards) {
+			int count = 0;
+			for (Scenario scenario : scenarios) {
+				if (shard.accepts(scenario)) {
+					count++;
+				}
+			}
+			assertThat(Math.abs(count - 250), lessThan(50));
+		}
+	}
+
+	@Test
+	public void shouldUseStableHash() {
+		assertThat(ScenarioSharding.shardOf("1+2=3", 1000), is(ScenarioSharding
+				.shardOf("1+2=3", 1000)));
+		assertThat(ScenarioSharding.shardOf("", 7), is(ScenarioSharding
+				.shardOf("", 7)));
+	}
+
+	@Test
+	public void shouldBalanceByTimings() {
+		final List<Scenario> scenarios = scenarioList(4);
+		final Map<String, Long> timings = new HashMap<String, Long>();
+		timings.put("s0", 100L);
+		timings.put("s1", 60L);
+		timings.put("s2", 40L);
+
+		final ScenarioSharding first = ScenarioSharding.balance(0, 2,
+				scenarios, timings);
+		final ScenarioSharding second = ScenarioSharding.balance(1, 2,
+				scenarios, timings);
+
+		assertPartitioned(scenarios, Arrays.asList(first, second));
+		// s0 (100) + s2 (40) and s3 (average 67) + s1 (60)
+		assertThat(first.accepts(scenarios.get(0)), is(true));
+		assertThat(second.accepts(scenarios.get(1)), is(true));
+		assertThat(first.accepts(scenarios.get(2)), is(true));
+		assertThat(second.accepts(scenarios.get(3)), is(true));
+	}
+
+	@Test
+	public void shouldBalanceByWeight() {
+		final List<Scenario> scenarios = new ArrayList<Scenario>();
+		scenarios.add(new Weighted("heavy", 10));
+		for (int i = 0; i < 10; i++) {
+			scenarios.add(new Weighted("light" + i, 1));
+		}
+
+		final ScenarioSharding first = ScenarioSharding.balance(0, 2,
+				scenarios, Collections.<String, Long> emptyMap());
+
+		assertThat(first.accepts(scenarios.get(0)), is(true));
+		for (int i = 1; i < scenarios.size(); i++) {
+			assertThat(first.accepts(scenarios.get(i)), is(false));
+		}
+	}
+
+	@Test
+	public void shouldRunOnlyScenariosOfShard() throws IOException {
+		final File timings = folder.newFile("timings.txt");
+		final Writer writer = new OutputStreamWriter(new FileOutputStream(
+				timings), "UTF-8");
+		try {
+			writer.write("500\t" + ShardedSample.class.getName() + "\ts7\n");
+			writer.write("500\tother.Test\ts8\n");
+		} finally {
+			writer.close();
+		}
+		System.setProperty(ScenarioSharding.SHARD_COUNT_PROPERTY, "3");
+		System.setProperty(ScenarioSharding.SHARD_TIMINGS_PROPERTY, timings
+				.getPath());
+		ShardedSample.run.clear();
+		int total = 0;
+		for (int i = 0; i < 3; i++) {
+			System.setProperty(ScenarioSharding.SHARD_INDEX_PROPERTY, String
+					.valueOf(i));
+			final Result result = JUnitCore.runClasses(ShardedSample.class);
+			assertThat(result.getFailureCount(), is(0));
+			total += result.getRunCount();
+		}
+
+		assertThat(total, is(20));
+		assertThat(ShardedSample.run.size(), is(20));
+	}
+
+	@Test
+	public void shouldNotIterateLazyScenariosWithoutTimings()
+			throws IOException {
+		final int[] iterations = new int[1];
+		final ScenarioList scenarios = ScenarioList
+				.fromIterable(new Iterable<Scenario>() {
+					public Iterator<Scenario> iterator() {
+						iterations[0]++;
+						return scenarioList(10).iterator();
+					}
+				});
+		System.setProperty(ScenarioSharding.SHARD_COUNT_PROPERTY, "2");
+
+		final ScenarioSharding sharding = ScenarioSharding.forTestClass(
+				ShardedSample.class, scenarios);
+
+		assertThat(iterations[0], is(0));
+		assertThat(sharding.accepts(new ParameterizedScenario("s1")),
+				is(ScenarioSharding.shardOf("s1", 2) == 0));
+	}
+
+	@Test
+	public void shouldNotBalanceByHistoryFile() throws IOException {
+		final File history = folder.newFile("history.txt");
+		final Writer writer = new OutputStreamWriter(new FileOutputStream(
+				history), "UTF-8");
+		try {
+			for (int i = 0; i < 20; i++) {
+				writer.write((i + 1) * 100 + "\t"
+						+ ShardedSample.class.getName() + "\ts" + i + "\n");
+			}
+		} finally {
+			writer.close();
+		}
+		System.setProperty(ScenarioHistory.HISTORY_PROPERTY, history
+				.getPath());
+		System.setProperty(ScenarioSharding.SHARD_COUNT_PROPERTY, "3");
+		System.setProperty(ScenarioSharding.SHARD_INDEX_PROPERTY, "1");
+
+		final List<Scenario> scenarios = scenarioList(20);
+		final ScenarioSharding sharding = ScenarioSharding.forTestClass(
+				ShardedSample.class, ScenarioList.fromList(scenarios));
+
+		for (Scenario scenario : scenarios) {
+			assertThat(scenario.getName(), sharding.accepts(scenario),
+					is(ScenarioSharding.shardOf(scenario.getName(), 3) == 1));
+		}
+	}
+}
@@ -0,0 +1,97 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+import java.util.Iterator;
+
+/**
+ * <p>
+ * Compares memory footprint and construction time of a {@link ScenarioTable}
+ * against {@link ScenarioList#fromArray(Object[][][])} for one million numeric
+ * scenarios. This is not run as part of the build, run it using:
+ * 
+ * <pre>
+ * java -cp ... org.junit.contrib.scenario.ScenarioTableBenchmark [rows]
+ * </pre>
+ * 
+ * </p>
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ */
+public final class ScenarioTableBenchmark {
+
+	private ScenarioTableBenchmark() {
+		super();
+	}
+
+	public static void main(final String... args) {
+		final int rows = args.length > 0 ? Integer.parseInt(args[0])
+				: 1000000;
+		for (int i = 0; i < 3; i++) {
+			measureArray(rows);
+			measureTable(rows);
+		}
+	}
+
+	private static void measureArray(final int rows) {
+		final long before = usedMemory();
+		final long start = System.nanoTime();
+		final Object[][][] arrs = new Object[rows][][];
+		for (int i = 0; i < rows; i++) {
+			arrs[i] = new Object[][] { { "row " + i },
+					{ i, (long) i * 2, i * 0.5 } };
+		}
+		final ScenarioList list = ScenarioList.fromArray(arrs);
+		report("ScenarioList.fromArray", rows, start, before, list);
+	}
+
+	private static void measureTable(final int rows) {
+		final long before = usedMemory();
+		final long start = System.nanoTime();
+		final int[] a = new int[rows];
+		final long[] b = new long[rows];
+		final double[] c = new double[rows];
+		for (int i = 0; i < rows; i++) {
+			a[i] = i;
+			b[i] = (long) i * 2;
+			c[i] = i * 0.5;
+		}
+		final ScenarioList list = ScenarioTable.fromColumns(a, b, c)
+				.toScenarioList();
+		report("ScenarioTable", rows, start, before, list);
+	}
+
+	private static void report(final String name, final int rows,
+			final long start, final long before, final ScenarioList list) {
+		final long millis = (System.nanoTime() - start) / 1000000;
+		final long bytes = usedMemory() - before;
+		int count = 0;
+		for (Iterator<Scenario> it = list.iterator(); it.hasNext(); it.next()) {
+			count++;
+		}
+		System.out.println(String.format(
+				"%-24s %d rows: %5d ms, %6d KB retained", name, count,
+				millis, bytes / 1024));
+	}
+
+	private static long usedMemory() {
+		final Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 4; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+}
@@ -0,0 +1,126 @@
+/*
+ * The copyright holders of this work license this file to You under
+ * the Apache License, Version 2.0 (the "License"); you may not use this
+ * file except in compliance with the License.  You may obtain a copy of
+ * the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.junit.contrib.scenario;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.Iterator;
+
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+
+/**
+ * 
+ * @author Stefan Penndorf <stefan@cyphoria.net>
+ */
+public class ScenarioTableTest {
+
+	@RunWith(ScenarioRunner.class)
+	public static final class BoxedSample {
+
+		@Scenarios
+		public static ScenarioList scenarios() {
+			return ScenarioTable.fromColumns(new int[] { 0, 1, 2 },
+					new int[] { 0, 2, 2 }, new long[] { 0, 3, 5 })
+					.toScenarioList();
+		}
+
+		private final int summand1;
+		private final int summand2;
+		private final long sum;
+
+		public BoxedSample(final int summand1, final int summand2,
+				final long sum) {
+			this.summand1 = summand1;
+			this.summand2 = summand2;
+			this.sum = sum;
+		}
+
+		@Test
+		public void shouldSum() {
+			assertThat((long) summand1 + summand2, is(sum));
+		}
+	}
+
+	@RunWith(ScenarioRunner.class)
+	public static final class RowSample {
+
+		@Scenarios
+		public static ScenarioList scenarios() {
+			return ScenarioTable.fromColumns(new String[] { "half", "twice" },
+					new double[] { 0.5, 2 }, new double[] { 4, 4 },
+					new double[] { 2, 8 }).toScenarioList();
+		}
+
+		private final ScenarioTable.Row row;
+
+		public RowSample(final ScenarioTable.Row row) {
+			this.row = row;
+		}
+
+		@Test
+		public void shouldMultiply() {
+			assertThat(row.getDouble(0) * row.getDouble(1), is(row
+					.getDouble(2)));
+		}
+	}
+
+	@Test
+	public void shouldCreateRowsOnDemand() {
+		final ScenarioTable table = ScenarioTable.fromColumns(new int[] { 1,
+				2 }, new boolean[] { true, false }, new String[] { "a", null });
+
+		final Iterator<Scenario> it = table.iterator();
+		final ScenarioTable.Row first = (ScenarioTable.Row) it.next();
+		final ScenarioTable.Row second = (ScenarioTable.Row) it.next();
+
+		assertThat(table.size(), is(2));
+		assertThat(it.hasNext(), is(false));
+		assertThat(first.getName(), is("0"));
+		assertThat(first.getInt(0), is(1));
+		assertThat(first.getBoolean(1), is(true));
+		assertThat(second.getParameters(), is(new Object[] { 2, false, null }));
+		assertThat(table.iterator().next(), is((Scenario) first));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldRejectColumnsOfDifferentLength() {
+		ScenarioTable.fromColumns(new int[2], new long[3]);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldRejectColumnsThatAreNoArrays() {
+		ScenarioTable.fromColumns(new int[2], Integer.valueOf(1));
+	}
+
+	@Test
+	public void shouldRunWithBoxedConstructorParameters() {
+		final Result result = JUnitCore.runClasses(BoxedSample.class);
+
+		assertThat(result.getRunCount(), is(3));
+		assertThat(result.getFailureCount(), is(1));
+	}
+
+	@Test
+	public void shouldRunWithRowConstructorParameter() {
+		final Result result = JUnitCore.runClasses(RowSample.class);
+
+		assertThat(result.getRunCount(), is(2));
+		assertThat(result.getFailureCount(), is(0));
+	}
+}